@@ -106,9 +106,7 @@ const EventList = () => {
       setEventRatings(ratingsMap);
       setEventRatingStats(statsMap);
       
-      if (eventsData.length > 0 && eventsData[0].eventOrganizer) {
-        setOrganizerRating(eventsData[0].eventOrganizer.averageRating || 0);
-      }
+      setOrganizerRating(await eventService.getMyOrganizerRating());
       
       setEvents(eventsData);
     } catch (error) {
@@ -154,9 +152,7 @@ const EventList = () => {
         setEventRatings(ratingsMap);
         setEventRatingStats(statsMap);
         
-        if (eventsData.length > 0 && eventsData[0].eventOrganizer) {
-          setOrganizerRating(eventsData[0].eventOrganizer.averageRating || 0);
-        }
+        setOrganizerRating(await eventService.getMyOrganizerRating());
         
         setEvents(eventsData);
         setLocalities(localitiesData);
@@ -260,13 +256,22 @@ const EventList = () => {
     });
   };
 
-  const handleEdit = async (event) => {
-    if (event.status === 'INACTIVE') {
+  // The list holds event summaries, details (rooms, reservations) come from the detail endpoint
+  const loadFullEvent = (event) => eventService.getEventById(event.id);
+
+  const showDetails = async (event) => {
+    setSelectedEvent(await loadFullEvent(event));
+    setShowDetailModal(true);
+  };
+
+  const handleEdit = async (summary) => {
+    if (summary.status === 'INACTIVE') {
       toast.warning('Inactive events cannot be edited');
       return;
     }
     
-    if (!event || !event.rooms[0].locality) return;
+    const event = await loadFullEvent(summary);
+    if (!event || !event.rooms || !event.rooms[0]?.locality) return;
     
     const [hours, minutes] = event.startTime.split(':').map(Number);
     const endDate = new Date();
@@ -361,7 +366,8 @@ const EventList = () => {
       setShowModal(false);
     } catch (error) {
       console.error('Failed to save event:', error);
-      toast.error('Failed to save event');
+      // 409 - a selected room is already occupied at that time
+      toast.error(error.response?.status === 409 ? error.response.data : 'Failed to save event');
     }
   };
 
@@ -502,12 +508,8 @@ const EventList = () => {
   };
 
   const renderEventStatistics = (event) => {
-    // Filter out CANCELLED reservations
-    const confirmedReservations = event.reservations ? 
-      event.reservations.filter(r => r.status !== "CANCELLED") : 
-      [];
-    
-    const reservationCount = confirmedReservations.length;
+    // Event summaries carry the number of free seats instead of the reservations
+    const reservationCount = event.maxCapacity - event.seatsLeft;
     const reservationRate = event.maxCapacity > 0 
       ? (reservationCount / event.maxCapacity) * 100 
       : 0;
@@ -669,7 +671,8 @@ const EventList = () => {
     );
   };
 
-  const showStats = async (event) => {
+  const showStats = async (summary) => {
+    const event = await loadFullEvent(summary);
     try {
       // Fetch detailed rating statistics including count and distribution
       const stats = await eventRatingService.getEventRatingStats(event.id);
@@ -830,10 +833,7 @@ const EventList = () => {
                 <div className="event-card-header">
                   <Card.Title 
                     className="cursor-pointer"
-                    onClick={() => {
-                      setSelectedEvent(event);
-                      setShowDetailModal(true);
-                    }}
+                    onClick={() => showDetails(event)}
                   >
                     {event.name}
                   </Card.Title>
@@ -854,10 +854,7 @@ const EventList = () => {
                   <Button 
                     variant="outline-primary" 
                     size="sm"
-                    onClick={() => {
-                      setSelectedEvent(event);
-                      setShowDetailModal(true);
-                    }}
+                    onClick={() => showDetails(event)}
                   >
                     View Details
                   </Button>
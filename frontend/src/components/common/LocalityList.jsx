@@ -33,27 +33,24 @@ const LocalityList = () => {
     try {
       const data = await localityService.getMyLocalities();
       setLocalities(data);
-      data.forEach(locality => {
-        loadEventCounts(locality.id);
-      });
+      loadEventCounts();
     } catch (error) {
       console.error('Failed to load localities:', error);
     }
   };
 
-  const loadEventCounts = async (localityId) => {
+  // Event counts of all localities in one dashboard request
+  const loadEventCounts = async () => {
     try {
-      const data = await localityService.getEventCountsByLocality(localityId);
-      setEventCounts(prev => ({
-        ...prev,
-        [localityId]: data
-      }));
+      const dashboard = await localityService.getDashboard();
+      const counts = {};
+      dashboard.forEach(locality => {
+        counts[locality.localityId] = { active: locality.activeEvents, total: locality.totalEvents };
+      });
+      setEventCounts(counts);
     } catch (error) {
-      console.error(`Failed to load event counts for locality ${localityId}:`, error);
-      setEventCounts(prev => ({
-        ...prev,
-        [localityId]: { active: 0, total: 0 }
-      }));
+      console.error('Failed to load event counts:', error);
+      setEventCounts({});
     }
   };
 
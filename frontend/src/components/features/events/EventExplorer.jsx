@@ -1,4 +1,4 @@
-import { useState, useEffect } from 'react';
+import { useState, useEffect, useRef } from 'react';
 import { Container, Row, Col, Form, InputGroup, Card, Button, Badge } from 'react-bootstrap';
 import { FaSearch, FaFilter, FaSortAmountDown, FaMapMarkerAlt, FaRegCalendarAlt, FaCalendarDay, FaTag, FaGlobeAmericas } from 'react-icons/fa';
 import { eventService } from '../../../services/eventService';
@@ -16,17 +16,21 @@ const EventExplorer = () => {
   
   const [events, setEvents] = useState([]);
   const [filteredEvents, setFilteredEvents] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [priceRange, setPriceRange] = useState({ min: 0, max: 1000 });
   const [dateRange, setDateRange] = useState({ from: '', to: '' });
   const [selectedCity, setSelectedCity] = useState('');
   const [selectedCountry, setSelectedCountry] = useState('');
   const [selectedCategories, setSelectedCategories] = useState([]);
-  const [sortOption, setSortOption] = useState('nameAsc');
+  const [sortOption, setSortOption] = useState('dateAsc');
   const [cities, setCities] = useState([]);
   const [countries, setCountries] = useState([]);
   const [viewType, setViewType] = useState('list'); // 'list' or 'grid'
   const [searchQuery, setSearchQuery] = useState('');
+  // Filters sent with the last request; responses of older requests are ignored
+  const requestedFilters = useRef(null);
 
   // Parse URL query parameters on component mount
   useEffect(() => {
@@ -54,83 +58,72 @@ const EventExplorer = () => {
     setSelectedCategories([]);
   };
 
-  // Fetch events data
+  // City and country options with the number of their upcoming events
   useEffect(() => {
-    const fetchEvents = async () => {
+    const fetchCities = async () => {
       try {
-        const eventData = await eventService.getUpcomingEvents();
-        setEvents(eventData);
-        setFilteredEvents(eventData);
-        
-        // Extract unique cities and countries
-        const uniqueCities = [...new Set(eventData.map(event => event.rooms[0].locality.city.name))];
-        const uniqueCountries = [...new Set(eventData.map(event => event.rooms[0].locality.city.country))];
-        
-        setCities(uniqueCities);
-        setCountries(uniqueCountries);
-        
-        setLoading(false);
+        const counts = await eventService.getUpcomingEventCounts();
+        setCities(counts.cities);
+        setCountries([...new Set(counts.cities.map(city => city.country))]);
       } catch (err) {
-        console.error('Error fetching events:', err);
-        setLoading(false);
+        console.error('Error fetching cities:', err);
       }
     };
 
-    fetchEvents();
+    fetchCities();
   }, []);
 
-  // Apply filters and search
+  // Filtering is done by the server; a change of the filters reloads the first page (debounced while typing)
   useEffect(() => {
-    let result = [...events];
-    
-    // Search filter
-    if (searchQuery) {
-      const query = searchQuery.toLowerCase();
-      result = result.filter(event => 
-        event.name.toLowerCase().includes(query) || 
-        event.description.toLowerCase().includes(query) ||
-        event.rooms[0].locality.city.name.toLowerCase().includes(query)
-      );
-    }
-    
-    // Price range filter
-    result = result.filter(event => 
-      event.price >= priceRange.min && event.price <= priceRange.max
-    );
-    
-    // Date range filter
-    if (dateRange.from) {
-      result = result.filter(event => 
-        moment(event.eventDate).isSameOrAfter(moment(dateRange.from))
-      );
-    }
-    
-    if (dateRange.to) {
-      result = result.filter(event => 
-        moment(event.eventDate).isSameOrBefore(moment(dateRange.to))
-      );
-    }
-    
-    // Country filter
-    if (selectedCountry) {
-      result = result.filter(event => 
-        event.rooms[0].locality.city.country === selectedCountry
-      );
-    }
-    
-    // City filter
-    if (selectedCity) {
-      result = result.filter(event => 
-        event.rooms[0].locality.city.name === selectedCity
-      );
-    }
-    
-    // Category filter
-    if (selectedCategories.length > 0) {
-      result = result.filter(event => 
-        selectedCategories.includes(event.category)
-      );
+    const filters = {
+      search: searchQuery.trim(),
+      category: selectedCategories,
+      minPrice: priceRange.min,
+      maxPrice: priceRange.max,
+      dateFrom: dateRange.from,
+      dateTo: dateRange.to,
+      cityId: selectedCity,
+      country: selectedCountry
+    };
+    requestedFilters.current = filters;
+
+    const timer = setTimeout(async () => {
+      try {
+        const page = await eventService.getUpcomingEvents(filters);
+        if (requestedFilters.current === filters) {
+          setEvents(page.items);
+          setNextCursor(page.nextCursor);
+        }
+      } catch (err) {
+        console.error('Error fetching events:', err);
+      } finally {
+        setLoading(false);
+      }
+    }, 300);
+
+    return () => clearTimeout(timer);
+  }, [searchQuery, priceRange, dateRange, selectedCity, selectedCountry, selectedCategories]);
+
+  // Append the next page of the current filters
+  const loadMore = async () => {
+    const filters = requestedFilters.current;
+    setLoadingMore(true);
+    try {
+      const page = await eventService.getUpcomingEvents({ ...filters, cursor: nextCursor });
+      if (requestedFilters.current === filters) {
+        setEvents(prev => [...prev, ...page.items]);
+        setNextCursor(page.nextCursor);
+      }
+    } catch (err) {
+      console.error('Error fetching more events:', err);
+    } finally {
+      setLoadingMore(false);
     }
+  };
+
+  // Pages come in date order, other sort options reorder the loaded events
+  useEffect(() => {
+    let result = [...events];
     
     // Apply sorting
     switch(sortOption) {
@@ -164,7 +157,7 @@ const EventExplorer = () => {
     }
     
     setFilteredEvents(result);
-  }, [events, searchQuery, priceRange, dateRange, selectedCity, selectedCountry, sortOption, selectedCategories]);
+  }, [events, sortOption]);
   
   // Handle search input change
   const handleSearchChange = (e) => {
@@ -274,7 +267,10 @@ const EventExplorer = () => {
               <Form.Label><FaGlobeAmericas /> Country</Form.Label>
               <Form.Select 
                 value={selectedCountry} 
-                onChange={(e) => setSelectedCountry(e.target.value)}
+                onChange={(e) => {
+                  setSelectedCountry(e.target.value);
+                  setSelectedCity('');
+                }}
               >
                 <option value="">All Countries</option>
                 {countries.map((country, index) => (
@@ -292,9 +288,11 @@ const EventExplorer = () => {
                 onChange={(e) => setSelectedCity(e.target.value)}
               >
                 <option value="">All Cities</option>
-                {cities.map((city, index) => (
-                  <option key={index} value={city}>{city}</option>
-                ))}
+                {cities
+                  .filter(city => !selectedCountry || city.country === selectedCountry)
+                  .map(city => (
+                    <option key={city.cityId} value={city.cityId}>{city.cityName} ({city.count})</option>
+                  ))}
               </Form.Select>
             </Form.Group>
           </Col>
@@ -353,7 +351,7 @@ const EventExplorer = () => {
       {/* Results Counter */}
       <div className="results-counter mb-3">
         <p className="text-secondary">
-          Showing {filteredEvents.length} of {events.length} events
+          Showing {filteredEvents.length} {nextCursor ? 'loaded ' : ''}events
           {selectedCategories.length > 0 && (
             <span className="ms-2">
               (Filtered by {selectedCategories.length} {selectedCategories.length === 1 ? 'category' : 'categories'})
@@ -430,7 +428,7 @@ const EventExplorer = () => {
                                   <FaMapMarkerAlt className="icon text-primary" />
                                 </div>
                                 <div className="ms-2 event-detail-text">
-                                  {event.rooms[0].locality.city.name}
+                                  {event.cityName}
                                 </div>
                               </div>
                             </div>
@@ -508,7 +506,7 @@ const EventExplorer = () => {
                       <div className="location-container text-center">
                         <div className="d-flex justify-content-center align-items-center">
                           <FaMapMarkerAlt className="icon text-primary" />
-                          <span className="ms-2">{event.rooms[0].locality.city.name}</span>
+                          <span className="ms-2">{event.cityName}</span>
                         </div>
                       </div>
                     </div>
@@ -529,6 +527,14 @@ const EventExplorer = () => {
           })}
         </Row>
       )}
+
+      {nextCursor && (
+        <div className="text-center my-4">
+          <Button variant="outline-primary" onClick={loadMore} disabled={loadingMore}>
+            {loadingMore ? 'Loading...' : 'Load more events'}
+          </Button>
+        </div>
+      )}
     </Container>
   );
 };
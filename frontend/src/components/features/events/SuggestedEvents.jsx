@@ -210,7 +210,7 @@ const SuggestedEvents = () => {
                         </div>
                         <div className="info-group date-price-group">
                           <div className="info-item location-item">
-                            <span>{event.rooms[0].locality.city.name}</span>
+                            <span>{event.cityName}</span>
                             <FaMapMarkerAlt className="info-icon" /> 
                           </div>
                           <div className="info-item price-item">
@@ -42,26 +42,13 @@ const CategoriesPage = () => {
     '#5D5C61', '#379683', '#7395AE'
   ];
 
-  // Fetch events and count them by category
+  // Fetch the number of upcoming events in each category
   useEffect(() => {
     const fetchEventCounts = async () => {
       try {
         setLoading(true);
-        const events = await eventService.getUpcomingEvents();
-        
-        // Count events by category
-        const counts = {};
-        eventCategories.forEach(category => {
-          counts[category] = 0;
-        });
-        
-        events.forEach(event => {
-          if (event.category && counts[event.category] !== undefined) {
-            counts[event.category]++;
-          }
-        });
-        
-        setCategoryEventCounts(counts);
+        const { categories } = await eventService.getUpcomingEventCounts();
+        setCategoryEventCounts(categories);
       } catch (error) {
         console.error('Error fetching event counts:', error);
       } finally {
@@ -18,8 +18,7 @@ const EventOrganizerPage = () => {
         const events = await eventService.getMyEvents();
         
         if (events && events.length > 0) {
-          // Extract organizer data from the first event (all events belong to the same organizer)
-          const organizerRating = events[0].eventOrganizer?.averageRating || 0;
+          const organizerRating = await eventService.getMyOrganizerRating();
           
           // Calculate total and active events
           const totalEvents = events.length;
@@ -34,9 +34,17 @@ const LocalityDetailPage = () => {
         const localityResponse = await axios.get(`http://localhost:8080/api/localities/${id}`);
         setLocality(localityResponse.data);
         
-        // Fetch events for this locality with active status filter
-        const eventsResponse = await axios.get(`http://localhost:8080/api/localities/${id}/events`);
-        setEvents(eventsResponse.data);
+        // Fetch events for this locality (paginated with a keyset cursor; follow it to the last page)
+        const localityEvents = [];
+        let cursor = null;
+        do {
+          const eventsResponse = await axios.get(`http://localhost:8080/api/localities/${id}/events`, {
+            params: cursor ? { limit: 100, cursor } : { limit: 100 }
+          });
+          localityEvents.push(...eventsResponse.data.items);
+          cursor = eventsResponse.data.nextCursor;
+        } while (cursor);
+        setEvents(localityEvents);
         
         setLoading(false);
       } catch (err) {
@@ -1,4 +1,4 @@
-import { authenticatedRequest } from './authService';
+import { authenticatedRequest, getUserName } from './authService';
 import axios from 'axios';
 import { handleApiError } from '../utils/errorUtils';
 import { API_BASE_URL } from '../config';
@@ -6,11 +6,17 @@ import { API_BASE_URL } from '../config';
 const API_URL = `${API_BASE_URL}/api`;
 
 export const eventService = {
+  // Returns event summaries; use getEventById for rooms and reservations
   getMyEvents: async () => {
     const response = await authenticatedRequest('GET', true, `${API_URL}/events/my`);
     return response.data;
   },
 
+  getMyOrganizerRating: async () => {
+    const response = await authenticatedRequest('GET', true, `${API_URL}/event-organizers/username/${getUserName()}`);
+    return response.data?.averageRating || 0;
+  },
+
   createEvent: async (eventData) => {
     const formData = new FormData();
     Object.keys(eventData).forEach(key => {
@@ -92,8 +98,24 @@ export const eventService = {
     }
   },
 
-  getUpcomingEvents: async () => {
-    const response = await authenticatedRequest('GET', false, `${API_URL}/events/upcoming`);
+  // Upcoming events are paginated with a keyset cursor; returns one page and the cursor of the next one.
+  // Empty filters are left out, array values (e.g. category) are sent as repeated parameters
+  getUpcomingEvents: async (params = {}) => {
+    const query = new URLSearchParams({ limit: 100 });
+    Object.entries(params).forEach(([key, value]) => {
+      if (Array.isArray(value)) {
+        value.forEach(item => query.append(key, item));
+      } else if (value !== null && value !== undefined && value !== '') {
+        query.set(key, value);
+      }
+    });
+    const response = await authenticatedRequest('GET', false, `${API_URL}/events/upcoming?${query.toString()}`);
+    return { items: response.data.items, nextCursor: response.data.nextCursor };
+  },
+
+  // Numbers of upcoming events by category and by city ({ categories: { name: count }, cities: [...] })
+  getUpcomingEventCounts: async () => {
+    const response = await authenticatedRequest('GET', false, `${API_URL}/events/upcoming/counts`);
     return response.data;
   },
 
@@ -89,5 +89,11 @@ export const localityService = {
   getEventCountsByLocality: async (id) => {
     const response = await authenticatedRequest('GET', true, `${API_URL}/localities/${id}/event-counts`);
     return response.data;
+  },
+
+  // Localities of the logged in space renter with room, capacity and event aggregates
+  getDashboard: async () => {
+    const response = await authenticatedRequest('GET', true, `${API_URL}/localities/dashboard`);
+    return response.data;
   }
 };
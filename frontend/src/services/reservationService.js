@@ -59,3 +59,57 @@ export const cancelReservation = async (reservationId) => {
   
   return response.data;
 };
+
+export const joinWaitlist = async (eventId) => {
+  const token = getToken();
+  if (!token) {
+    throw new Error('Not authenticated');
+  }
+  
+  const response = await axios.post(
+    `${API_BASE_URL_PATH}/api/reservations/waitlist`, 
+    { eventId }, 
+    {
+      headers: {
+        'Authorization': `Bearer ${token}`
+      }
+    }
+  );
+  
+  return response.data;
+};
+
+// Position in the waitlist - cheap to poll while the event is full
+export const getWaitlistPosition = async (eventId) => {
+  const token = getToken();
+  if (!token) {
+    throw new Error('Not authenticated');
+  }
+  
+  const response = await axios.get(
+    `${API_BASE_URL_PATH}/api/reservations/waitlist/${eventId}`, 
+    {
+      headers: {
+        'Authorization': `Bearer ${token}`
+      }
+    }
+  );
+  
+  return response.data;
+};
+
+export const leaveWaitlist = async (eventId) => {
+  const token = getToken();
+  if (!token) {
+    throw new Error('Not authenticated');
+  }
+  
+  await axios.delete(
+    `${API_BASE_URL_PATH}/api/reservations/waitlist/${eventId}`, 
+    {
+      headers: {
+        'Authorization': `Bearer ${token}`
+      }
+    }
+  );
+};
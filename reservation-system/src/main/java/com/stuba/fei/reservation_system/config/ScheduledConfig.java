@@ -1,6 +1,9 @@
 package com.stuba.fei.reservation_system.config;
 
 import com.stuba.fei.reservation_system.service.EventStatusService;
+import com.stuba.fei.reservation_system.service.HighDemandReservationService;
+import com.stuba.fei.reservation_system.service.ReservationHoldService;
+import com.stuba.fei.reservation_system.service.UserTasteProfileService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -13,15 +16,27 @@ public class ScheduledConfig {
 
     @Autowired
     private EventStatusService eventStatusService;
+    @Autowired
+    private HighDemandReservationService highDemandReservationService;
+    @Autowired
+    private ReservationHoldService reservationHoldService;
+    @Autowired
+    private UserTasteProfileService userTasteProfileService;
 
     /**
-     * Update event statuses when the application starts up
-     * This is the only time we update event statuses automatically
+     * Update event statuses when the application starts up and start the status engine,
+     * which then switches events to INACTIVE when they start
      */
     @PostConstruct
     public void updateEventStatusesOnStartup() {
         System.out.println("Application startup: Updating event statuses...");
-        int updatedCount = eventStatusService.updateAllEventStatuses();
+        int updatedCount = eventStatusService.initialize();
         System.out.println("Application startup: Updated status for " + updatedCount + " events");
+        int highDemandCount = highDemandReservationService.recover();
+        System.out.println("Application startup: Recovered seat inventory for " + highDemandCount + " high-demand events");
+        int holdCount = reservationHoldService.reconcile();
+        System.out.println("Application startup: Restored expiry of " + holdCount + " seat holds");
+        int profileCount = userTasteProfileService.reconcile();
+        System.out.println("Application startup: Scheduled rebuild of " + profileCount + " user taste profiles");
     }
 }
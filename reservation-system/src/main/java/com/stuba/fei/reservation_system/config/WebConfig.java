@@ -21,7 +21,7 @@ public class WebConfig implements WebMvcConfigurer {
                     "http://localhost"        // Docker frontend on default port
                 )
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .allowedHeaders("Authorization", "Content-Type")
+                .allowedHeaders("Authorization", "Content-Type", "Idempotency-Key")
                 .allowCredentials(true); // Can be true with specific origins
     }
 
@@ -1,6 +1,10 @@
 package com.stuba.fei.reservation_system.controller;
 
+import com.stuba.fei.reservation_system.dto.EventPage;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import com.stuba.fei.reservation_system.dto.UpcomingEventCounts;
 import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
 import com.stuba.fei.reservation_system.model.users.SpaceRenter;
 import com.stuba.fei.reservation_system.repository.RoomRepository;
 import com.stuba.fei.reservation_system.repository.users.EventOrganizerRepository;
@@ -8,6 +12,7 @@ import com.stuba.fei.reservation_system.service.EventService;
 import com.stuba.fei.reservation_system.service.users.EventOrganizerService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -25,7 +30,10 @@ import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import com.stuba.fei.reservation_system.security.controller.UserRole;
 
 @RestController
@@ -49,21 +57,81 @@ public class EventController {
 
     }
 
-    // Získať všetky udalosti
+    // Získať udalosti po stránkach (keyset cursor) s voliteľnými filtrami
     @GetMapping
-    public ResponseEntity<List<Event>> getAllEvents() {
-        return ResponseEntity.ok(eventService.getAllEvents());
+    public ResponseEntity<?> getAllEvents(
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Long cityId,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(required = false) EventStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            EventPage<EventSummary> page = eventService.getEventsPage(category, search, minPrice, maxPrice, cityId,
+                    country, dateFrom, dateTo, status != null ? EnumSet.of(status) : null, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
+    // category sa môže opakovať (category=Music&category=Sports), search hľadá v názve a popise
     @GetMapping("/upcoming")
-    public ResponseEntity<List<Event>> getAllUpcomingEvents() {
-        return ResponseEntity.ok(eventService.getUpcomingEvents());
+    public ResponseEntity<?> getAllUpcomingEvents(
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Long cityId,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(eventService.getUpcomingEvents(category, search, minPrice, maxPrice, cityId,
+                    country, dateFrom, dateTo, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Počty nadchádzajúcich udalostí podľa kategórie a mesta (prehľad kategórií, možnosti filtrov)
+    @GetMapping("/upcoming/counts")
+    public ResponseEntity<UpcomingEventCounts> getUpcomingEventCounts() {
+        return ResponseEntity.ok(eventService.getUpcomingEventCounts());
+    }
+
+    // Nadchádzajúce udalosti v okolí bodu (polomer) alebo vo výreze mapy (obdĺžnik), najbližšie ako prvé
+    @GetMapping("/nearby")
+    public ResponseEntity<?> getNearbyEvents(
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(required = false) Double minLatitude,
+            @RequestParam(required = false) Double maxLatitude,
+            @RequestParam(required = false) Double minLongitude,
+            @RequestParam(required = false) Double maxLongitude,
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(eventService.getNearbyEvents(longitude, latitude, radiusKm,
+                    minLatitude, maxLatitude, minLongitude, maxLongitude, days, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     // Vytvoriť novú udalosť s obrázkom
     @PreAuthorize("hasRole('EVENT_ORGANIZER')")
     @PostMapping
-    public ResponseEntity<Event> createEvent(
+    public ResponseEntity<?> createEvent(
             @RequestParam("name") String name,                     // Názov udalosti
             @RequestParam(value = "description", required = false) String description,       // Popis udalosti
             @RequestParam("category") String category,             // Kategória udalosti
@@ -100,6 +168,10 @@ public class EventController {
             return ResponseEntity.internalServerError().body(null);  // Chyba pri ukladaní obrázka
         } catch (DateTimeParseException e) {
             return ResponseEntity.badRequest().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());  // Miestnosť je v tom čase obsadená
         }
     }
 
@@ -156,11 +228,30 @@ public class EventController {
             return ResponseEntity.internalServerError().body("Chyba pri spracovaní obrázka");
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());  // Miestnosť je v tom čase obsadená
         } catch (DateTimeParseException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @PreAuthorize("hasRole('EVENT_ORGANIZER')")
+    @PutMapping("/{eventId}/high-demand")
+    public ResponseEntity<?> setHighDemand(@PathVariable Long eventId, @RequestParam boolean enabled) {
+        try {
+            Integer seatsLeft = eventService.setHighDemand(eventId, enabled);
+            Map<String, Object> response = new HashMap<>();
+            response.put("eventId", eventId);
+            response.put("highDemand", enabled);
+            response.put("seatsLeft", seatsLeft);
+            return ResponseEntity.ok(response);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteEvent(@PathVariable Long id) {
         try {
@@ -200,9 +291,9 @@ public class EventController {
 
     // Získať udalosti aktuálne prihláseného používateľa
     @GetMapping("/my")
-    public ResponseEntity<List<Event>> getMyEvents() {
+    public ResponseEntity<List<EventSummary>> getMyEvents() {
         try {
-            List<Event> myEvents = eventService.getMyEvents();
+            List<EventSummary> myEvents = eventService.getMyEvents();
             return ResponseEntity.ok(myEvents);
         } catch (Exception e) {
             e.printStackTrace();
@@ -217,7 +308,12 @@ public class EventController {
             @RequestParam(required = false) Double latitude) {
 
         try {
-            List<Event> suggestedEvents = eventService.getSuggestedEvents(longitude, latitude);
+            // Anonymous visitors get the snapshot of their location cell, already serialized
+            byte[] snapshot = eventService.getAnonymousSuggestedEventsJson(longitude, latitude);
+            if (snapshot != null) {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(snapshot);
+            }
+            List<EventSummary> suggestedEvents = eventService.getSuggestedEvents(longitude, latitude);
             return ResponseEntity.ok(suggestedEvents);
         } catch (Exception e) {
             e.printStackTrace();
@@ -6,6 +6,7 @@ import com.stuba.fei.reservation_system.model.users.EventOrganizer;
 import com.stuba.fei.reservation_system.model.users.RegisteredUser;
 import com.stuba.fei.reservation_system.service.EventRatingService;
 import com.stuba.fei.reservation_system.service.EventService;
+import com.stuba.fei.reservation_system.service.IdempotencyService;
 import com.stuba.fei.reservation_system.service.users.EventOrganizerService;
 import com.stuba.fei.reservation_system.service.users.RegisteredUserService;
 import org.springframework.http.ResponseEntity;
@@ -22,21 +23,30 @@ public class EventRatingController {
     private final EventService eventService;
     private final RegisteredUserService registeredUserService;
     private final EventOrganizerService eventOrganizerService;
+    private final IdempotencyService idempotencyService;
 
     public EventRatingController(EventRatingService eventRatingService, 
                                  EventService eventService,
                                  RegisteredUserService registeredUserService,
-                                 EventOrganizerService eventOrganizerService) {
+                                 EventOrganizerService eventOrganizerService,
+                                 IdempotencyService idempotencyService) {
         this.eventRatingService = eventRatingService;
         this.eventService = eventService;
         this.registeredUserService = registeredUserService;
         this.eventOrganizerService = eventOrganizerService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/event/{eventId}")
     public ResponseEntity<?> rateEvent(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @PathVariable Long eventId,
             @RequestBody Map<String, Integer> ratingData) {
+        return idempotencyService.execute(idempotencyKey, "POST /api/ratings/event/" + eventId, ratingData,
+                () -> saveRating(eventId, ratingData));
+    }
+
+    private ResponseEntity<?> saveRating(Long eventId, Map<String, Integer> ratingData) {
         System.out.println("Received rating data: " + ratingData);
         try {
             // Get authenticated user
@@ -1,6 +1,8 @@
 package com.stuba.fei.reservation_system.controller;
 
-import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.dto.EventPage;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import com.stuba.fei.reservation_system.dto.LocalityDashboard;
 import com.stuba.fei.reservation_system.model.Locality;
 import com.stuba.fei.reservation_system.model.dto.LocalityRequest;
 import com.stuba.fei.reservation_system.model.users.Person;
@@ -65,12 +67,16 @@ public class LocalityController {
 
     // Get events for a specific locality
     @GetMapping("/{id}/events")
-    public ResponseEntity<?> getEventsByLocality(@PathVariable Long id) {
+    public ResponseEntity<?> getEventsByLocality(@PathVariable Long id,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer limit) {
         try {
-            List<Event> events = localityService.getEventsByLocality(id);
+            EventPage<EventSummary> events = localityService.getEventsByLocality(id, cursor, limit);
             return ResponseEntity.ok(events);
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error fetching events for locality: " + e.getMessage()));
@@ -91,6 +97,13 @@ public class LocalityController {
         }
     }
 
+    // Prehľad lokalít prihláseného SpaceRentera s počtami miestností a udalostí (namiesto event-counts pre každú lokalitu)
+    @PreAuthorize("hasRole('SPACE_RENTER')")
+    @GetMapping("/dashboard")
+    public ResponseEntity<List<LocalityDashboard>> getDashboard() {
+        return ResponseEntity.ok(localityService.getDashboard());
+    }
+
     @PreAuthorize("hasRole('SPACE_RENTER')")
     @PostMapping
     public ResponseEntity<?> createLocality(@Valid @RequestBody LocalityRequest request) {
@@ -2,9 +2,14 @@ package com.stuba.fei.reservation_system.controller;
 
 import com.stuba.fei.reservation_system.dto.ReservationRequest;
 import com.stuba.fei.reservation_system.dto.ReservationResponse;
+import com.stuba.fei.reservation_system.dto.WaitlistResponse;
+import com.stuba.fei.reservation_system.handler.TemporarilyUnavailableException;
 import com.stuba.fei.reservation_system.model.Reservation;
+import com.stuba.fei.reservation_system.service.IdempotencyService;
 import com.stuba.fei.reservation_system.service.ReservationService;
+import com.stuba.fei.reservation_system.service.WaitlistService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -18,10 +23,15 @@ import java.util.List;
 public class ReservationController {
 
     private final ReservationService reservationService;
+    private final WaitlistService waitlistService;
+    private final IdempotencyService idempotencyService;
 
     @Autowired
-    public ReservationController(ReservationService reservationService) {
+    public ReservationController(ReservationService reservationService, WaitlistService waitlistService,
+                                 IdempotencyService idempotencyService) {
         this.reservationService = reservationService;
+        this.waitlistService = waitlistService;
+        this.idempotencyService = idempotencyService;
     }
 
     @GetMapping
@@ -50,10 +60,51 @@ public class ReservationController {
 
     @PreAuthorize("hasRole('REGISTERED_USER')")
     @PostMapping
-    public ResponseEntity<?> createReservation(@RequestBody ReservationRequest reservationRequest) {
+    public ResponseEntity<?> createReservation(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody ReservationRequest reservationRequest) {
+        // A retried request with the same Idempotency-Key gets the original response
+        return idempotencyService.execute(idempotencyKey, "POST /api/reservations", reservationRequest, () -> {
+            try {
+                ReservationResponse response = reservationService.createReservationForLoggedUser(reservationRequest);
+                return new ResponseEntity<>(response, HttpStatus.CREATED);
+            } catch (TemporarilyUnavailableException e) {
+                // Inventár high-demand udalosti sa práve prestavuje - rovnakú požiadavku možno zopakovať
+                return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ErrorResponse(e.getMessage()));
+            } catch (RuntimeException e) {
+                return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse(e.getMessage()));
+            }
+        });
+    }
+
+    @PreAuthorize("hasRole('REGISTERED_USER')")
+    @PostMapping("/hold")
+    public ResponseEntity<?> holdReservation(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody ReservationRequest reservationRequest) {
+        return idempotencyService.execute(idempotencyKey, "POST /api/reservations/hold", reservationRequest, () -> {
+            try {
+                ReservationResponse response = reservationService.holdReservationForLoggedUser(reservationRequest);
+                return new ResponseEntity<>(response, HttpStatus.CREATED);
+            } catch (RuntimeException e) {
+                return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse(e.getMessage()));
+            }
+        });
+    }
+
+    @PreAuthorize("hasRole('REGISTERED_USER')")
+    @PutMapping("/{id}/confirm")
+    public ResponseEntity<?> confirmReservation(@PathVariable Long id) {
         try {
-            ReservationResponse response = reservationService.createReservationForLoggedUser(reservationRequest);
-            return new ResponseEntity<>(response, HttpStatus.CREATED);
+            ReservationResponse response = reservationService.confirmReservation(id);
+            return new ResponseEntity<>(response, HttpStatus.OK);
         } catch (RuntimeException e) {
             return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
@@ -104,4 +155,49 @@ public class ReservationController {
         reservationService.deleteReservation(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    @PreAuthorize("hasRole('REGISTERED_USER')")
+    @PostMapping("/waitlist")
+    public ResponseEntity<?> joinWaitlist(@RequestBody ReservationRequest reservationRequest) {
+        try {
+            WaitlistResponse response = waitlistService.joinWaitlist(reservationRequest.getEventId());
+            return new ResponseEntity<>(response, HttpStatus.CREATED);
+        } catch (RuntimeException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PreAuthorize("hasRole('REGISTERED_USER')")
+    @GetMapping("/waitlist")
+    public ResponseEntity<List<WaitlistResponse>> getMyWaitlist() {
+        return new ResponseEntity<>(waitlistService.getMyWaitlist(), HttpStatus.OK);
+    }
+
+    // Lacné dotazovanie na poradie v rade (namiesto opakovaných pokusov o rezerváciu)
+    @PreAuthorize("hasRole('REGISTERED_USER')")
+    @GetMapping("/waitlist/{eventId}")
+    public ResponseEntity<?> getWaitlistPosition(@PathVariable Long eventId) {
+        try {
+            return new ResponseEntity<>(waitlistService.getMyEntry(eventId), HttpStatus.OK);
+        } catch (RuntimeException e) {
+            return ResponseEntity
+                .status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PreAuthorize("hasRole('REGISTERED_USER')")
+    @DeleteMapping("/waitlist/{eventId}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable Long eventId) {
+        try {
+            waitlistService.leaveWaitlist(eventId);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (RuntimeException e) {
+            return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(e.getMessage()));
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package com.stuba.fei.reservation_system.controller;
+
+import com.stuba.fei.reservation_system.dto.FreeSlot;
+import com.stuba.fei.reservation_system.service.RoomService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/rooms")
+public class RoomScheduleController {
+    private final RoomService roomService;
+
+    public RoomScheduleController(RoomService roomService) {
+        this.roomService = roomService;
+    }
+
+    // Voľné časové okná, v ktorých sú všetky zvolené miestnosti voľné aspoň zadaný počet minút
+    @GetMapping("/free-slots")
+    public ResponseEntity<?> getFreeSlots(
+            @RequestParam List<Long> roomIds,                         // Zoznam ID miestností
+            @RequestParam LocalDate dateFrom,                         // Prvý deň (vrátane)
+            @RequestParam LocalDate dateTo,                           // Posledný deň (vrátane)
+            @RequestParam Integer duration,                           // Požadovaná dĺžka v minútach
+            @RequestParam(required = false) String openFrom,          // Otváracia hodina, napr. 08:00
+            @RequestParam(required = false) String openTo) {          // Zatváracia hodina, napr. 20:00
+        try {
+            LocalTime open = openFrom != null ? LocalTime.parse(openFrom) : null;
+            LocalTime close = openTo != null ? LocalTime.parse(openTo) : null;
+            List<FreeSlot> slots = roomService.getFreeSlots(roomIds, dateFrom, dateTo, duration, open, close);
+            return ResponseEntity.ok(slots);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("Neplatný formát času. Použite HH:mm.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+}
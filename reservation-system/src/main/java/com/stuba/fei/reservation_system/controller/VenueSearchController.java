@@ -0,0 +1,51 @@
+package com.stuba.fei.reservation_system.controller;
+
+import com.stuba.fei.reservation_system.dto.VenueMatch;
+import com.stuba.fei.reservation_system.service.VenueSearchService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/venues")
+public class VenueSearchController {
+    private final VenueSearchService venueSearchService;
+
+    public VenueSearchController(VenueSearchService venueSearchService) {
+        this.venueSearchService = venueSearchService;
+    }
+
+    // Vyhľadanie miestností pre udalosť v meste alebo v okolí bodu, s kapacitou a voľným časom
+    @PreAuthorize("hasRole('EVENT_ORGANIZER')")
+    @GetMapping("/search")
+    public ResponseEntity<?> searchVenues(
+            @RequestParam(required = false) Long cityId,                  // ID mesta
+            @RequestParam(required = false) Double latitude,              // Alebo poloha a okruh v km
+            @RequestParam(required = false) Double longitude,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(required = false) Integer minCapacity,          // Minimálna kapacita
+            @RequestParam(required = false) LocalDate date,               // Voliteľný čas udalosti: dátum,
+            @RequestParam(required = false) String startTime,             // začiatok (HH:mm)
+            @RequestParam(required = false) Integer duration,             // a dĺžka v minútach
+            @RequestParam(required = false) Integer limit) {
+        try {
+            LocalTime time = startTime != null ? LocalTime.parse(startTime).truncatedTo(ChronoUnit.MINUTES) : null;
+            List<VenueMatch> venues = venueSearchService.search(cityId, latitude, longitude, radiusKm,
+                    minCapacity, date, time, duration, limit);
+            return ResponseEntity.ok(venues);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("Neplatný formát času. Použite HH:mm.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.Getter;
+
+/**
+ * Number of upcoming events in one city, the city options of the event explorer
+ */
+@Getter
+public class CityEventCount {
+    private final Long cityId;
+    private final String cityName;
+    private final String country;
+    private final int count;
+
+    public CityEventCount(Long cityId, String cityName, String country, long count) {
+        this.cityId = cityId;
+        this.cityName = cityName;
+        this.country = country;
+        this.count = (int) count;
+    }
+}
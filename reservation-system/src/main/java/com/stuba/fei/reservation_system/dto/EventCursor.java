@@ -0,0 +1,53 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for event listings.
+ * Points at the last returned row by (eventDate, startTime, id) so the next page
+ * continues strictly after it, independent of how many rows precede it.
+ */
+@Getter
+public class EventCursor {
+    private final LocalDate eventDate;
+    private final LocalTime startTime;
+    private final Long id;
+
+    public EventCursor(LocalDate eventDate, LocalTime startTime, Long id) {
+        this.eventDate = eventDate;
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = eventDate + "|" + startTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor The value previously returned as nextCursor (can be null)
+     * @return The decoded cursor or null for the first page
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public static EventCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new EventCursor(LocalDate.parse(parts[0]), LocalTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
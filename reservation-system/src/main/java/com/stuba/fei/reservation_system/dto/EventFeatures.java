@@ -0,0 +1,42 @@
+package com.stuba.fei.reservation_system.dto;
+
+import com.stuba.fei.reservation_system.model.EventStatus;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Features of an event used by suggestion scoring.
+ * Loaded with a single constructor-expression query (see EventRepository.FEATURE_SELECT), city and its
+ * coordinates are taken from the event's rooms (all rooms of an event are in the same locality).
+ */
+@Getter
+public class EventFeatures {
+    private final Long id;
+    private final EventStatus status;
+    private final String category;
+    private final Double price;
+    private final int maxCapacity;
+    private final int takenSeats;
+    private final LocalDate eventDate;
+    private final LocalTime startTime;
+    private final Long cityId;
+    private final Double latitude;
+    private final Double longitude;
+
+    public EventFeatures(Long id, EventStatus status, String category, Double price, int maxCapacity, int takenSeats,
+                         LocalDate eventDate, LocalTime startTime, Long cityId, Double latitude, Double longitude) {
+        this.id = id;
+        this.status = status;
+        this.category = category;
+        this.price = price;
+        this.maxCapacity = maxCapacity;
+        this.takenSeats = takenSeats;
+        this.eventDate = eventDate;
+        this.startTime = startTime;
+        this.cityId = cityId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+}
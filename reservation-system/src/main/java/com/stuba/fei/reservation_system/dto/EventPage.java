@@ -0,0 +1,17 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ * nextCursor is null when there are no more results.
+ */
+@Getter
+@AllArgsConstructor
+public class EventPage<T> {
+    private List<T> items;
+    private String nextCursor;
+}
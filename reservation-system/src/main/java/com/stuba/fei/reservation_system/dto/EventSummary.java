@@ -0,0 +1,56 @@
+package com.stuba.fei.reservation_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Flat read model of an event used by list endpoints.
+ * Loaded with a single constructor-expression query (see EventRepository.SUMMARY_SELECT),
+ * so no rooms, organizer or reservations are touched. The full entity is served only by the detail endpoint.
+ */
+@Getter
+public class EventSummary {
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final LocalDate eventDate;
+    @JsonFormat(pattern = "HH:mm")
+    private final LocalTime startTime;
+    private final int duration;
+    private final Double price;
+    private final String category;
+    private final String cityName;
+    private final String country;
+    private final EventStatus status;
+    private final int maxCapacity;
+    private final int seatsLeft;
+    private final String imagePath;
+
+    public EventSummary(Long id, String name, String description, LocalDate eventDate, LocalTime startTime,
+                        int duration, Double price, String category, String cityName, String country,
+                        EventStatus status, int maxCapacity, int takenSeats, String imagePath) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.eventDate = eventDate;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.price = price;
+        this.category = category;
+        this.cityName = cityName;
+        this.country = country;
+        this.status = status;
+        this.maxCapacity = maxCapacity;
+        this.seatsLeft = Math.max(0, maxCapacity - takenSeats);
+        this.imagePath = imagePath;
+    }
+
+    @JsonFormat(pattern = "HH:mm")
+    public LocalTime getEndTime() {
+        return startTime != null ? startTime.plusMinutes(duration) : null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.stuba.fei.reservation_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Window in which all requested rooms are free.
+ * A window never spans midnight, one ending at the close of the day ends at 00:00 of the next day.
+ */
+@Getter
+@AllArgsConstructor
+public class FreeSlot {
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+    private LocalDateTime start;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+    private LocalDateTime end;
+    private int durationMinutes;
+}
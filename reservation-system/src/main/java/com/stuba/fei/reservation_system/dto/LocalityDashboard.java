@@ -0,0 +1,41 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One locality of a space renter's dashboard with the aggregates of its rooms and events.
+ * Events are counted once per locality even if they use several of its rooms; upcoming and past
+ * are decided by the start time, active by the ACTIVE status. nextEvent is the soonest upcoming
+ * event that is not INACTIVE, null if there is none.
+ */
+@Getter
+@Setter
+public class LocalityDashboard {
+    private final Long localityId;
+    private final String name;
+    private final String address;
+    private final String cityName;
+    private final String country;
+    private final int totalCapacity;
+    private final int roomCount;
+    private int activeEvents;
+    private int upcomingEvents;
+    private int pastEvents;
+    private EventSummary nextEvent;
+
+    public LocalityDashboard(Long localityId, String name, String address, String cityName, String country,
+                             int totalCapacity, long roomCount) {
+        this.localityId = localityId;
+        this.name = name;
+        this.address = address;
+        this.cityName = cityName;
+        this.country = country;
+        this.totalCapacity = totalCapacity;
+        this.roomCount = (int) roomCount;
+    }
+
+    public int getTotalEvents() {
+        return upcomingEvents + pastEvents;
+    }
+}
@@ -0,0 +1,56 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for geo searches.
+ * Points at the last returned event by (distance in meters, eventDate, startTime, id), the order of the results,
+ * so the next page of the same search continues strictly after it.
+ */
+@Getter
+public class NearbyCursor {
+    private final long distanceMeters;
+    private final LocalDate eventDate;
+    private final LocalTime startTime;
+    private final Long id;
+
+    public NearbyCursor(long distanceMeters, LocalDate eventDate, LocalTime startTime, Long id) {
+        this.distanceMeters = distanceMeters;
+        this.eventDate = eventDate;
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = distanceMeters + "|" + eventDate + "|" + startTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor The value previously returned as nextCursor (can be null)
+     * @return The decoded cursor or null for the first page
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public static NearbyCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new NearbyCursor(Long.parseLong(parts[0]), LocalDate.parse(parts[1]), LocalTime.parse(parts[2]),
+                    Long.parseLong(parts[3]));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.stuba.fei.reservation_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Getter;
+
+/**
+ * Event found by a geo search: its summary (serialized inline) with the locality it takes place in
+ * and the great-circle distance of that locality from the searched point.
+ */
+@Getter
+public class NearbyEvent {
+    @JsonUnwrapped
+    private final EventSummary event;
+    private final Long localityId;
+    private final double latitude;
+    private final double longitude;
+    private final double distanceKm;
+
+    public NearbyEvent(EventSummary event, Long localityId, double latitude, double longitude, double distanceKm) {
+        this.event = event;
+        this.localityId = localityId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.distanceKm = distanceKm;
+    }
+}
@@ -13,7 +13,10 @@ import java.time.LocalTime;
 @Setter
 @NoArgsConstructor
 public class ReservationResponse {
-    private Long id;
+    private Long id; // null if queued
+    // Reservation of a high-demand event admitted in memory and not stored yet: it has no id until the write-behind
+    // flush stores it (within a second), then it is listed by GET /api/reservations/user with its id
+    private boolean queued;
     private Long eventId;
     private String eventName;
     private String eventDescription;
@@ -27,12 +30,14 @@ public class ReservationResponse {
     private String eventImagePath;
     private LocalDateTime reservationDate;
     private String status;
+    private LocalDateTime holdExpiresAt; // only for PENDING reservations (seat holds)
     
     public static ReservationResponse fromReservation(Reservation reservation) {
         ReservationResponse response = new ReservationResponse();
         response.setId(reservation.getId());
         response.setReservationDate(reservation.getReservationDate());
         response.setStatus(reservation.getStatus().name());
+        response.setHoldExpiresAt(reservation.getHoldExpiresAt());
         
         // Event details
         if (reservation.getEvent() != null) {
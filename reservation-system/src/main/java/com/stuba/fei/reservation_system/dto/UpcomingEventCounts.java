@@ -0,0 +1,18 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers of upcoming events (ACTIVE or FULL, from today on) by category and by city,
+ * so category and city overviews do not have to download the events themselves
+ */
+@Getter
+@AllArgsConstructor
+public class UpcomingEventCounts {
+    private Map<String, Integer> categories;
+    private List<CityEventCount> cities;
+}
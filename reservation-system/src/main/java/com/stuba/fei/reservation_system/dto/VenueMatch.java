@@ -0,0 +1,25 @@
+package com.stuba.fei.reservation_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Room found by the venue search.
+ * fit is the requested capacity divided by the room's capacity (1.0 for a room of exactly the requested size),
+ * distanceKm is only set for a search around a point.
+ */
+@Getter
+@AllArgsConstructor
+public class VenueMatch {
+    private Long roomId;
+    private String roomName;
+    private Integer floor;
+    private int capacity;
+    private Long localityId;
+    private String localityName;
+    private String address;
+    private Long cityId;
+    private String cityName;
+    private Double distanceKm;
+    private double fit;
+}
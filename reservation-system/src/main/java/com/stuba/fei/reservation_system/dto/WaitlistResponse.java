@@ -0,0 +1,35 @@
+package com.stuba.fei.reservation_system.dto;
+
+import com.stuba.fei.reservation_system.model.WaitlistEntry;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class WaitlistResponse {
+    private Long id;
+    private Long eventId;
+    private String eventName;
+    private int position; // 1 = next in line, 0 if not waiting anymore
+    private int waitingCount;
+    private String status;
+    private LocalDateTime joinedAt;
+    private Long reservationId; // set once the entry was promoted to a reservation
+
+    public static WaitlistResponse fromEntry(WaitlistEntry entry, int position, int waitingCount) {
+        WaitlistResponse response = new WaitlistResponse();
+        response.setId(entry.getId());
+        response.setEventId(entry.getEvent().getId());
+        response.setEventName(entry.getEvent().getName());
+        response.setPosition(position);
+        response.setWaitingCount(waitingCount);
+        response.setStatus(entry.getStatus().name());
+        response.setJoinedAt(entry.getJoinedAt());
+        response.setReservationId(entry.getReservationId());
+        return response;
+    }
+}
@@ -1,6 +1,7 @@
 package com.stuba.fei.reservation_system.handler;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -68,6 +69,14 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>("Resource not found: " + ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    // 503 - SERVICE UNAVAILABLE (dočasný stav, klient môže požiadavku zopakovať)
+    @ExceptionHandler(TemporarilyUnavailableException.class)
+    public ResponseEntity<String> handleTemporarilyUnavailableException(TemporarilyUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
 //    // 500 - INTERNAL SERVER ERROR (neočakávaná chyba na strane servera)
 //    @ExceptionHandler(Exception.class)
 //    public ResponseEntity<String> handleGlobalException(Exception ex) {
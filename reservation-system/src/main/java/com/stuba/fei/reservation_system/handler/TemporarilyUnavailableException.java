@@ -0,0 +1,10 @@
+package com.stuba.fei.reservation_system.handler;
+
+/**
+ * Požiadavku teraz nie je možné spracovať, ale rovnaká požiadavka o chvíľu uspeje (503 s Retry-After)
+ */
+public class TemporarilyUnavailableException extends RuntimeException {
+    public TemporarilyUnavailableException(String message) {
+        super(message);
+    }
+}
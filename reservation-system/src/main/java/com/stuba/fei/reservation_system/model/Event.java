@@ -1,21 +1,29 @@
 package com.stuba.fei.reservation_system.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.stuba.fei.reservation_system.model.users.EventOrganizer;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 
 @Setter
 @Getter
 @Entity
-@Table(name = "event")
+// Úprava udalosti zapíše iba zmenené stĺpce, nie stav (FULL) zastaraný voči podmieneným UPDATE v EventRepository
+@DynamicUpdate
+@Table(name = "event", indexes = {
+        // Keyset pagination order (eventDate, startTime, id) and its filtered variants
+        @Index(name = "idx_event_date_time_id", columnList = "date, time, id"),
+        @Index(name = "idx_event_status_date_time_id", columnList = "status, date, time, id"),
+        @Index(name = "idx_event_category_date_time_id", columnList = "category, date, time, id")
+})
 public class Event {
 
     @Id
@@ -27,7 +35,21 @@ public class Event {
     private String description;
     @Column(nullable = false)
     private int maxCapacity;
-    //private int occupiedCapacity = 0;
+
+    // Počet CONFIRMED rezervácií - mení sa iba podmieneným UPDATE v EventRepository (takeSeat/releaseSeat).
+    // updatable = false: uloženie celej entity (úprava udalosti) neprepíše počítadlá zastaranou hodnotou
+    @Column(name = "confirmed_count", nullable = false, updatable = false)
+    private int confirmedCount = 0;
+
+    // Počet PENDING rezervácií (dočasne držané miesta) - mení sa iba podmieneným UPDATE v EventRepository
+    @Column(name = "held_count", nullable = false, updatable = false)
+    private int heldCount = 0;
+
+    // High-demand mode - seats are admitted from memory by HighDemandReservationService.
+    // Changed only by EventRepository.updateHighDemand, never by saving the entity
+    @Column(name = "high_demand", nullable = false, updatable = false)
+    private boolean highDemand = false;
+
     private String category;
     @Column(nullable = false)
     private Double price;
@@ -53,7 +75,9 @@ public class Event {
     @JoinTable(
             name = "event_rooms",
             joinColumns = @JoinColumn(name = "event_id"),
-            inverseJoinColumns = @JoinColumn(name = "room_id")
+            inverseJoinColumns = @JoinColumn(name = "room_id"),
+            // Events of a room (locality listings) read from the index alone
+            indexes = @Index(name = "idx_event_rooms_room_event", columnList = "room_id, event_id")
     )
     private List<Room> rooms;  // Udalosť môže mať viacero miestností
 
@@ -65,42 +89,12 @@ public class Event {
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Reservation> reservations;
 
+    @JsonIgnore
+    @OneToMany(mappedBy = "event", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<WaitlistEntry> waitlist;
+
     public LocalTime getEndTime() {
         return startTime.plusMinutes(duration);
     }
 
-    public void updateStatus() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime eventStart = LocalDateTime.of(eventDate, startTime);
-
-        // Ak rezervácie naplnili kapacitu → nastavíme FULL
-        // Count only CONFIRMED reservations
-        long confirmedReservations = reservations != null ? 
-            reservations.stream()
-                .filter(r -> r.getStatus() == Reservation.ReservationStatus.CONFIRMED)
-                .count() : 0;
-
-        System.out.println("Now: " + now);
-        System.out.println("Event starts: " + eventStart);
-        System.out.println("Confirmed reservations: " + confirmedReservations);
-        System.out.println("Max capacity: " + maxCapacity);
-
-
-        if (confirmedReservations >= maxCapacity) {
-            this.status = EventStatus.FULL;
-            return;
-        }
-
-        // Ak už uplynul dátum a čas udalosti → nastavíme INACTIVE
-        if (eventStart.isBefore(now)) {
-            this.status = EventStatus.INACTIVE;
-            return;
-        }
-
-        if (this.status != EventStatus.INACTIVE) {
-            this.status = EventStatus.ACTIVE;
-        }
-
-    }
-
 }
@@ -0,0 +1,44 @@
+package com.stuba.fei.reservation_system.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Uložená odpoveď na POST požiadavku s hlavičkou Idempotency-Key.
+ * Opakovaná požiadavka s rovnakým kľúčom dostane túto odpoveď bez opätovného spracovania.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "idempotency_record",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_scope_key", columnNames = {"scope_key"}),
+        indexes = @Index(name = "idx_idempotency_expires_at", columnList = "expires_at"))
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Používateľ + endpoint + kľúč od klienta
+    @Column(name = "scope_key", nullable = false, length = 400)
+    private String scopeKey;
+
+    @Column(nullable = false)
+    private int statusCode;
+
+    @Lob
+    private String responseBody;
+
+    // SHA-256 endpointu a tela požiadavky - kľúč použitý pre inú požiadavku sa odmietne
+    @Column(length = 64)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -30,6 +30,15 @@ public class Locality {
     @Min(value = 1, message = "Total capacity must be at least 1")
     private int totalCapacity;
 
+    // Súradnice adresy, null ak sa ju nepodarilo geokódovať (použijú sa súradnice mesta)
+    @JsonIgnore
+    @Column(nullable = true)
+    private Double longitude;
+
+    @JsonIgnore
+    @Column(nullable = true)
+    private Double latitude;
+
     @ManyToOne
     @JoinColumn(name = "city_id", nullable = false)
     private City city;
@@ -0,0 +1,28 @@
+package com.stuba.fei.reservation_system.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Jedna predpočítaná udalosť a jej skóre bez polohy
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@Embeddable
+public class PrecomputedSuggestion {
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(nullable = false)
+    private double score;
+
+    public PrecomputedSuggestion(Long eventId, double score) {
+        this.eventId = eventId;
+        this.score = score;
+    }
+}
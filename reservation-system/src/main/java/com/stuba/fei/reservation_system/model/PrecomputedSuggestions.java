@@ -0,0 +1,43 @@
+package com.stuba.fei.reservation_system.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Najlepšie udalosti pre používateľa vypočítané nočnou dávkou (bez polohy, najlepšia prvá).
+ * Udalosti mimo zoznamu mali skóre najviac cutoffScore, null znamená, že zoznam obsahuje všetky kandidátske udalosti.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "precomputed_suggestions")
+public class PrecomputedSuggestions {
+
+    // Rovnaké ako ID používateľa
+    @Id
+    private Long id;
+
+    @JsonIgnore
+    @MapsId
+    @OneToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "registered_user_id")
+    private RegisteredUser registeredUser;
+
+    // Čas pred výpočtom - zmeny udalostí a používateľa od tohto času nie sú v zozname
+    @Column(nullable = false)
+    private LocalDateTime computedAt;
+
+    private Double cutoffScore;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "precomputed_suggestion", joinColumns = @JoinColumn(name = "registered_user_id"))
+    @OrderColumn(name = "position")
+    private List<PrecomputedSuggestion> events = new ArrayList<>();
+}
@@ -11,6 +11,10 @@ import java.time.LocalDateTime;
 @Setter
 @Getter
 @Entity
+@Table(indexes = {
+        // Startup reconciliation of PENDING holds
+        @Index(name = "idx_reservation_status_hold_expires", columnList = "status, hold_expires_at")
+})
 public class Reservation {
 
     @Id
@@ -21,6 +25,10 @@ public class Reservation {
     @Enumerated(EnumType.STRING)
     private ReservationStatus status = ReservationStatus.CONFIRMED;
 
+    // Koniec dočasného držania miesta (iba pre PENDING rezervácie)
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+
     private Integer rating; // Rating from 0-5 stars, null if not rated
 
     @JsonIgnore
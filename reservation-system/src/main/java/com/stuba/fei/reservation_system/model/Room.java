@@ -12,6 +12,8 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
+// Miestnosti lokality čítané iba z indexu (udalosti lokality)
+@Table(indexes = @Index(name = "idx_room_locality_id", columnList = "locality_id, id"))
 public class Room {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,58 @@
+package com.stuba.fei.reservation_system.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Súhrn rezervácií používateľa (okrem zrušených) pre odporúčanie udalostí:
+ * počet rezervácií v každej kategórii a meste a priemer a rozptyl cien.
+ * Udržiava ho UserTasteProfileService pri vytvorení a zrušení rezervácie.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "user_taste_profile")
+public class UserTasteProfile {
+
+    // Rovnaké ako ID používateľa
+    @Id
+    private Long id;
+
+    @JsonIgnore
+    @MapsId
+    @OneToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "registered_user_id")
+    private RegisteredUser registeredUser;
+
+    @Column(nullable = false)
+    private int reservationCount;
+
+    // Rezervácie udalostí s cenou - priemer a rozptyl sú počítané z nich
+    @Column(nullable = false)
+    private int priceCount;
+
+    @Column(nullable = false)
+    private double priceMean;
+
+    // Súčet štvorcov odchýlok od priemeru (Welford), rozptyl = priceM2 / priceCount
+    @Column(name = "price_m2", nullable = false)
+    private double priceM2;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "user_taste_category", joinColumns = @JoinColumn(name = "registered_user_id"))
+    @MapKeyColumn(name = "category")
+    @Column(name = "reservations", nullable = false)
+    private Map<String, Integer> categoryCounts = new HashMap<>();
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "user_taste_city", joinColumns = @JoinColumn(name = "registered_user_id"))
+    @MapKeyColumn(name = "city_id")
+    @Column(name = "reservations", nullable = false)
+    private Map<Long, Integer> cityCounts = new HashMap<>();
+}
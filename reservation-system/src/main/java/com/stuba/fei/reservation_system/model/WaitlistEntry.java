@@ -0,0 +1,57 @@
+package com.stuba.fei.reservation_system.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Miesto v poradovníku (waitlist) na obsadenú udalosť.
+ * Ticket je poradové číslo v rámci udalosti - poradie v rade je počet čakajúcich s menším ticketom.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "waitlist_entry",
+        uniqueConstraints = @UniqueConstraint(name = "uk_waitlist_event_ticket", columnNames = {"event_id", "ticket"}),
+        indexes = {
+                @Index(name = "idx_waitlist_event_status_ticket", columnList = "event_id, status, ticket"),
+                @Index(name = "idx_waitlist_user_event_status", columnList = "registered_user_id, event_id, status")
+        })
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private int ticket;
+
+    @Column(nullable = false)
+    private LocalDateTime joinedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private WaitlistStatus status = WaitlistStatus.WAITING;
+
+    // Rezervácia vytvorená pri posune z radu (null kým používateľ čaká)
+    @Column(name = "reservation_id")
+    private Long reservationId;
+
+    @JsonIgnore
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "registered_user_id")
+    private RegisteredUser registeredUser;
+
+    @JsonIgnore
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "event_id")
+    private Event event;
+
+    public enum WaitlistStatus {
+        WAITING, PROMOTED, LEFT
+    }
+}
@@ -1,15 +1,430 @@
 package com.stuba.fei.reservation_system.repository;
 
+import com.stuba.fei.reservation_system.dto.CityEventCount;
+import com.stuba.fei.reservation_system.dto.EventFeatures;
+import com.stuba.fei.reservation_system.dto.EventSummary;
 import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Reservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
+
+    /**
+     * Select clause of the EventSummary read model. City is taken from the event's rooms
+     * (all rooms of an event are in the same locality) and seats from the confirmedCount/heldCount counters.
+     */
+    String SUMMARY_SELECT = """
+            SELECT new com.stuba.fei.reservation_system.dto.EventSummary(
+                e.id, e.name, e.description, e.eventDate, e.startTime, e.duration, e.price, e.category,
+                (SELECT MIN(c.name) FROM Event es JOIN es.rooms ro JOIN ro.locality l JOIN l.city c WHERE es = e),
+                (SELECT MIN(c.country) FROM Event es JOIN es.rooms ro JOIN ro.locality l JOIN l.city c WHERE es = e),
+                e.status, e.maxCapacity, e.confirmedCount + e.heldCount, e.imagePath)
+            FROM Event e
+            """;
+
+    /**
+     * Select clause of the EventFeatures read model used by suggestion scoring
+     */
+    String FEATURE_SELECT = """
+            SELECT new com.stuba.fei.reservation_system.dto.EventFeatures(
+                e.id, e.status, e.category, e.price, e.maxCapacity, e.confirmedCount + e.heldCount, e.eventDate, e.startTime,
+                (SELECT MIN(c.id) FROM Event es JOIN es.rooms ro JOIN ro.locality l JOIN l.city c WHERE es = e),
+                (SELECT MIN(c.latitude) FROM Event es JOIN es.rooms ro JOIN ro.locality l JOIN l.city c WHERE es = e),
+                (SELECT MIN(c.longitude) FROM Event es JOIN es.rooms ro JOIN ro.locality l JOIN l.city c WHERE es = e))
+            FROM Event e
+            """;
+
     List<Event> findByEventOrganizerId(Long eventOrganizerId);
-    List<Event> findByRooms_IdInAndEventDate(List<Long> roomIds, LocalDate eventDate);
     List<Event> findByEventDateGreaterThanEqualOrderByEventDateAsc(LocalDate date);
+    List<Event> findByStatusAndEventDateGreaterThanEqualOrderByEventDateAsc(EventStatus status, LocalDate date);
+
+    @Query(SUMMARY_SELECT + "WHERE e.eventOrganizer.id = :organizerId ORDER BY e.eventDate ASC, e.startTime ASC, e.id ASC")
+    List<EventSummary> findSummariesByOrganizerId(@Param("organizerId") Long organizerId);
+
+    @Query(SUMMARY_SELECT + "WHERE e.id IN :ids")
+    List<EventSummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset page of the summaries of events in a locality (any status) ordered by (eventDate, startTime, id).
+     * The locality's events are found through room (locality_id) and event_rooms (room_id, event_id),
+     * both read from their indexes. Cursor and page size work as in findSummaryPage.
+     */
+    @Query(SUMMARY_SELECT + """
+            WHERE e.id IN (SELECT el.id FROM Event el JOIN el.rooms r WHERE r.locality.id = :localityId)
+              AND (:afterDate IS NULL
+                   OR e.eventDate > :afterDate
+                   OR (e.eventDate = :afterDate AND e.startTime > :afterTime)
+                   OR (e.eventDate = :afterDate AND e.startTime = :afterTime AND e.id > :afterId))
+            ORDER BY e.eventDate ASC, e.startTime ASC, e.id ASC
+            """)
+    List<EventSummary> findSummaryPageByLocalityId(@Param("localityId") Long localityId,
+                                                   @Param("afterDate") LocalDate afterDate,
+                                                   @Param("afterTime") LocalTime afterTime,
+                                                   @Param("afterId") Long afterId,
+                                                   Pageable pageable);
+
+    /**
+     * Number of events in a locality by status, as [status, count] rows (statuses without events are missing)
+     */
+    @Query("""
+            SELECT e.status, COUNT(DISTINCT e.id)
+            FROM Event e JOIN e.rooms r
+            WHERE r.locality.id = :localityId
+            GROUP BY e.status
+            """)
+    List<Object[]> countByStatusInLocality(@Param("localityId") Long localityId);
+
+    /**
+     * Keyset page of event summaries ordered by (eventDate, startTime, id).
+     * Optional filters are passed as null. Categories are matched only when anyCategory is false
+     * (a collection parameter cannot be tested for null, so it is never empty). search is a lower-case LIKE
+     * pattern matched against the name and description. When afterDate is null the first page is returned,
+     * otherwise only rows strictly after (afterDate, afterTime, afterId) are read.
+     * The page size is taken from the Pageable, its offset is always 0.
+     */
+    @Query(SUMMARY_SELECT + """
+            WHERE e.status IN :statuses
+              AND (:anyCategory = true OR e.category IN :categories)
+              AND (:search IS NULL OR LOWER(e.name) LIKE :search ESCAPE '!'
+                   OR LOWER(e.description) LIKE :search ESCAPE '!')
+              AND (:minPrice IS NULL OR e.price >= :minPrice)
+              AND (:maxPrice IS NULL OR e.price <= :maxPrice)
+              AND (:dateFrom IS NULL OR e.eventDate >= :dateFrom)
+              AND (:dateTo IS NULL OR e.eventDate <= :dateTo)
+              AND (:cityId IS NULL OR EXISTS (
+                    SELECT 1 FROM Event e2 JOIN e2.rooms r
+                    WHERE e2 = e AND r.locality.city.id = :cityId))
+              AND (:country IS NULL OR EXISTS (
+                    SELECT 1 FROM Event e3 JOIN e3.rooms r3
+                    WHERE e3 = e AND r3.locality.city.country = :country))
+              AND (:afterDate IS NULL
+                   OR e.eventDate > :afterDate
+                   OR (e.eventDate = :afterDate AND e.startTime > :afterTime)
+                   OR (e.eventDate = :afterDate AND e.startTime = :afterTime AND e.id > :afterId))
+            ORDER BY e.eventDate ASC, e.startTime ASC, e.id ASC
+            """)
+    List<EventSummary> findSummaryPage(@Param("statuses") Collection<EventStatus> statuses,
+                         @Param("anyCategory") boolean anyCategory,
+                         @Param("categories") Collection<String> categories,
+                         @Param("search") String search,
+                         @Param("minPrice") Double minPrice,
+                         @Param("maxPrice") Double maxPrice,
+                         @Param("dateFrom") LocalDate dateFrom,
+                         @Param("dateTo") LocalDate dateTo,
+                         @Param("cityId") Long cityId,
+                         @Param("country") String country,
+                         @Param("afterDate") LocalDate afterDate,
+                         @Param("afterTime") LocalTime afterTime,
+                         @Param("afterId") Long afterId,
+                         Pageable pageable);
+
+    /**
+     * Number of events from the given date on by category, as [category, count] rows
+     */
+    @Query("""
+            SELECT e.category, COUNT(e)
+            FROM Event e
+            WHERE e.status IN :statuses AND e.eventDate >= :dateFrom
+            GROUP BY e.category
+            """)
+    List<Object[]> countByCategory(@Param("statuses") Collection<EventStatus> statuses,
+                                   @Param("dateFrom") LocalDate dateFrom);
+
+    /**
+     * Number of events from the given date on by the city of their rooms, ordered by country and city name
+     */
+    @Query("""
+            SELECT new com.stuba.fei.reservation_system.dto.CityEventCount(c.id, c.name, c.country, COUNT(DISTINCT e.id))
+            FROM Event e JOIN e.rooms r JOIN r.locality l JOIN l.city c
+            WHERE e.status IN :statuses AND e.eventDate >= :dateFrom
+            GROUP BY c.id, c.name, c.country
+            ORDER BY c.country, c.name
+            """)
+    List<CityEventCount> countByCity(@Param("statuses") Collection<EventStatus> statuses,
+                                     @Param("dateFrom") LocalDate dateFrom);
+
+    /**
+     * Schedule of the given rooms on the given dates as [roomId, eventId, eventDate, startTime, duration] rows
+     */
+    @Query("""
+            SELECT r.id, e.id, e.eventDate, e.startTime, e.duration
+            FROM Event e JOIN e.rooms r
+            WHERE r.id IN :roomIds AND e.eventDate IN :dates
+            """)
+    List<Object[]> findRoomIntervals(@Param("roomIds") Collection<Long> roomIds,
+                                     @Param("dates") Collection<LocalDate> dates);
+
+    /**
+     * Schedule of the given rooms between the dates (inclusive), rows as in findRoomIntervals
+     */
+    @Query("""
+            SELECT r.id, e.id, e.eventDate, e.startTime, e.duration
+            FROM Event e JOIN e.rooms r
+            WHERE r.id IN :roomIds AND e.eventDate >= :dateFrom AND e.eventDate <= :dateTo
+            """)
+    List<Object[]> findRoomIntervalsBetween(@Param("roomIds") Collection<Long> roomIds,
+                                            @Param("dateFrom") LocalDate dateFrom,
+                                            @Param("dateTo") LocalDate dateTo);
+
+    /**
+     * Keyset page of the events in the given localities with a status from the list, between the dates (inclusive),
+     * as [id, localityId, eventDate, startTime] rows ordered by (eventDate, startTime, id).
+     * When afterDate is null the first page is returned, otherwise only rows strictly after
+     * (afterDate, afterTime, afterId). The page size is taken from the Pageable, its offset is always 0.
+     */
+    @Query("""
+            SELECT e.id, MIN(r.locality.id), e.eventDate, e.startTime
+            FROM Event e JOIN e.rooms r
+            WHERE r.locality.id IN :localityIds
+              AND e.status IN :statuses
+              AND e.eventDate >= :dateFrom AND e.eventDate <= :dateTo
+              AND (:afterDate IS NULL
+                   OR e.eventDate > :afterDate
+                   OR (e.eventDate = :afterDate AND e.startTime > :afterTime)
+                   OR (e.eventDate = :afterDate AND e.startTime = :afterTime AND e.id > :afterId))
+            GROUP BY e.id, e.eventDate, e.startTime
+            ORDER BY e.eventDate ASC, e.startTime ASC, e.id ASC
+            """)
+    List<Object[]> findPlacePageByLocalityIds(@Param("localityIds") Collection<Long> localityIds,
+                                              @Param("statuses") Collection<EventStatus> statuses,
+                                              @Param("dateFrom") LocalDate dateFrom,
+                                              @Param("dateTo") LocalDate dateTo,
+                                              @Param("afterDate") LocalDate afterDate,
+                                              @Param("afterTime") LocalTime afterTime,
+                                              @Param("afterId") Long afterId,
+                                              Pageable pageable);
+
+    /**
+     * Event counts per locality of a space renter, as [localityId, active, upcoming, past] rows.
+     * Upcoming events start after (today, now), past ones at or before it.
+     */
+    @Query("""
+            SELECT r.locality.id,
+                   COUNT(DISTINCT CASE WHEN e.status = :active THEN e.id END),
+                   COUNT(DISTINCT CASE WHEN e.eventDate > :today OR (e.eventDate = :today AND e.startTime > :now)
+                                       THEN e.id END),
+                   COUNT(DISTINCT CASE WHEN e.eventDate < :today OR (e.eventDate = :today AND e.startTime <= :now)
+                                       THEN e.id END)
+            FROM Event e JOIN e.rooms r
+            WHERE r.locality.spaceRenter.id = :spaceRenterId
+            GROUP BY r.locality.id
+            """)
+    List<Object[]> countEventsPerLocalityOfSpaceRenter(@Param("spaceRenterId") Long spaceRenterId,
+                                                       @Param("active") EventStatus active,
+                                                       @Param("today") LocalDate today,
+                                                       @Param("now") LocalTime now);
+
+    /**
+     * The soonest upcoming event (not INACTIVE, starting after (today, now)) of every locality of a space renter,
+     * as [localityId, eventId] rows - one per locality, ties broken by id
+     */
+    @Query("""
+            SELECT n.localityId, n.eventId
+            FROM (SELECT r.locality.id AS localityId, e.id AS eventId,
+                         ROW_NUMBER() OVER (PARTITION BY r.locality.id
+                                            ORDER BY e.eventDate ASC, e.startTime ASC, e.id ASC) AS position
+                  FROM Event e JOIN e.rooms r
+                  WHERE r.locality.spaceRenter.id = :spaceRenterId
+                    AND e.status <> :inactive
+                    AND (e.eventDate > :today OR (e.eventDate = :today AND e.startTime > :now))) n
+            WHERE n.position = 1
+            """)
+    List<Object[]> findNextEventPerLocalityOfSpaceRenter(@Param("spaceRenterId") Long spaceRenterId,
+                                                         @Param("inactive") EventStatus inactive,
+                                                         @Param("today") LocalDate today,
+                                                         @Param("now") LocalTime now);
+
+    @Query(FEATURE_SELECT + "WHERE e.status <> :inactive")
+    List<EventFeatures> findFeaturesByStatusNot(@Param("inactive") EventStatus inactive);
+
+    @Query(FEATURE_SELECT + "WHERE e.id IN :ids")
+    List<EventFeatures> findFeaturesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Features of the events reserved by a user, one row per reservation not in the given status
+     */
+    @Query(FEATURE_SELECT + "JOIN Reservation r ON r.event = e WHERE r.registeredUser.id = :userId AND r.status <> :status")
+    List<EventFeatures> findFeaturesOfReservedEvents(@Param("userId") Long userId,
+                                                     @Param("status") Reservation.ReservationStatus status);
+
+    /**
+     * Start date and time of every event that is not INACTIVE yet, as [id, eventDate, startTime] rows.
+     */
+    @Query("SELECT e.id, e.eventDate, e.startTime FROM Event e WHERE e.status <> :inactive")
+    List<Object[]> findStartsByStatusNot(@Param("inactive") EventStatus inactive);
+
+    /**
+     * Switch the given events to INACTIVE (used when their start time is reached).
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Event e SET e.status = :inactive WHERE e.id IN :ids AND e.status <> :inactive")
+    int deactivateByIds(@Param("ids") Collection<Long> ids, @Param("inactive") EventStatus inactive);
+
+    /**
+     * Switch every event that already started to INACTIVE.
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET e.status = :inactive
+            WHERE e.status <> :inactive
+              AND (e.eventDate < :today OR (e.eventDate = :today AND e.startTime <= :now))
+            """)
+    int deactivateStartedBefore(@Param("today") LocalDate today,
+                                @Param("now") LocalTime now,
+                                @Param("inactive") EventStatus inactive);
+
+    /**
+     * Recompute FULL/ACTIVE from the seat counters (e.g. after a capacity change).
+     * INACTIVE events are left untouched. Pass null as eventId to refresh all events.
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET e.status = CASE WHEN e.confirmedCount + e.heldCount >= e.maxCapacity THEN :full ELSE :active END
+            WHERE e.status <> :inactive AND (:eventId IS NULL OR e.id = :eventId)
+            """)
+    int refreshCapacityStatus(@Param("eventId") Long eventId,
+                              @Param("full") EventStatus full,
+                              @Param("active") EventStatus active,
+                              @Param("inactive") EventStatus inactive);
+
+    /**
+     * Rebuild the seat counters from the reservation table (startup reconciliation).
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET
+                e.confirmedCount = (SELECT COUNT(r) FROM Reservation r WHERE r.event = e AND r.status = :confirmed),
+                e.heldCount = (SELECT COUNT(r) FROM Reservation r WHERE r.event = e AND r.status = :pending)
+            """)
+    int recountSeats(@Param("confirmed") Reservation.ReservationStatus confirmed,
+                     @Param("pending") Reservation.ReservationStatus pending);
+
+    /**
+     * Atomically take one seat of an ACTIVE event. The row lock of this single UPDATE serializes
+     * concurrent attempts, so confirmed and held seats can never exceed maxCapacity. The last seat switches the event to FULL.
+     * High-demand events are refused, their seats are taken by HighDemandReservationService.
+     * @return 1 if the seat was taken, 0 if the event is full, not ACTIVE or in high-demand mode
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET
+                e.status = CASE WHEN e.confirmedCount + e.heldCount + 1 >= e.maxCapacity THEN :full ELSE e.status END,
+                e.confirmedCount = e.confirmedCount + 1
+            WHERE e.id = :id AND e.status = :active AND e.confirmedCount + e.heldCount < e.maxCapacity
+                AND e.highDemand = false
+            """)
+    int takeSeat(@Param("id") Long id, @Param("full") EventStatus full, @Param("active") EventStatus active);
+
+    /**
+     * Same as {@link #takeSeat} but the seat is only held (PENDING reservation) until it is confirmed or expires
+     * @return 1 if the seat was held, 0 if the event is full, not ACTIVE or in high-demand mode
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET
+                e.status = CASE WHEN e.confirmedCount + e.heldCount + 1 >= e.maxCapacity THEN :full ELSE e.status END,
+                e.heldCount = e.heldCount + 1
+            WHERE e.id = :id AND e.status = :active AND e.confirmedCount + e.heldCount < e.maxCapacity
+                AND e.highDemand = false
+            """)
+    int holdSeat(@Param("id") Long id, @Param("full") EventStatus full, @Param("active") EventStatus active);
+
+    /**
+     * Turn a held seat into a confirmed one (the number of taken seats does not change)
+     * @return 1 if a held seat was confirmed, 0 if there was none
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET e.heldCount = e.heldCount - 1, e.confirmedCount = e.confirmedCount + 1
+            WHERE e.id = :id AND e.heldCount > 0
+            """)
+    int confirmHeldSeat(@Param("id") Long id);
+
+    /**
+     * Release a held seat of a cancelled or expired hold. A FULL event becomes ACTIVE again.
+     * @return 1 if a held seat was released, 0 if there was none
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET
+                e.status = CASE WHEN e.status = :full THEN :active ELSE e.status END,
+                e.heldCount = e.heldCount - 1
+            WHERE e.id = :id AND e.heldCount > 0
+            """)
+    int releaseHeldSeat(@Param("id") Long id, @Param("full") EventStatus full, @Param("active") EventStatus active);
+
+    /**
+     * Atomically release one seat. A FULL event (which has not started, otherwise it would be INACTIVE)
+     * becomes ACTIVE again.
+     * @return 1 if a seat was released, 0 if the counter was already 0
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET
+                e.status = CASE WHEN e.status = :full THEN :active ELSE e.status END,
+                e.confirmedCount = e.confirmedCount - 1
+            WHERE e.id = :id AND e.confirmedCount > 0
+            """)
+    int releaseSeat(@Param("id") Long id, @Param("full") EventStatus full, @Param("active") EventStatus active);
+
+    /**
+     * Add seats admitted in memory by the high-demand write-behind flush. Reaching capacity switches an ACTIVE event to FULL.
+     * Seats that would exceed the capacity are refused as a whole.
+     * @return 1 if the seats were added, 0 if they do not fit into the capacity
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Event e SET
+                e.status = CASE WHEN e.status = :active AND e.confirmedCount + e.heldCount + :seats >= e.maxCapacity
+                    THEN :full ELSE e.status END,
+                e.confirmedCount = e.confirmedCount + :seats
+            WHERE e.id = :id AND e.confirmedCount + e.heldCount + :seats <= e.maxCapacity
+            """)
+    int addConfirmedSeats(@Param("id") Long id, @Param("seats") int seats,
+                          @Param("full") EventStatus full, @Param("active") EventStatus active);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Event e SET e.highDemand = :highDemand WHERE e.id = :id")
+    int updateHighDemand(@Param("id") Long id, @Param("highDemand") boolean highDemand);
+
+    @Query("SELECT e.id FROM Event e WHERE e.highDemand = true AND e.status <> :status")
+    List<Long> findHighDemandEventIds(@Param("status") EventStatus status);
+
+    /**
+     * Load the event and lock its row until the end of the transaction
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Event e WHERE e.id = :id")
+    Optional<Event> findByIdForUpdate(@Param("id") Long id);
 }
@@ -1,8 +1,11 @@
 package com.stuba.fei.reservation_system.repository;
 
+import com.stuba.fei.reservation_system.dto.LocalityDashboard;
 import com.stuba.fei.reservation_system.model.Locality;
 import com.stuba.fei.reservation_system.model.users.SpaceRenter;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +13,28 @@ import java.util.List;
 @Repository
 public interface LocalityRepository extends JpaRepository<Locality, Long> {
     List<Locality> findBySpaceRenter(SpaceRenter spaceRenter);  // Použi správny názov
+
+    /**
+     * Coordinates of every locality as [id, latitude, longitude] rows, the city's if the address has none
+     */
+    @Query("""
+            SELECT l.id,
+                   CASE WHEN l.latitude IS NOT NULL AND l.longitude IS NOT NULL THEN l.latitude ELSE c.latitude END,
+                   CASE WHEN l.latitude IS NOT NULL AND l.longitude IS NOT NULL THEN l.longitude ELSE c.longitude END
+            FROM Locality l JOIN l.city c
+            """)
+    List<Object[]> findCoordinates();
+
+    /**
+     * Dashboard rows of a space renter's localities with their room counts (event aggregates are filled in later)
+     */
+    @Query("""
+            SELECT new com.stuba.fei.reservation_system.dto.LocalityDashboard(
+                l.id, l.name, l.address, c.name, c.country, l.totalCapacity, COUNT(r.id))
+            FROM Locality l JOIN l.city c LEFT JOIN l.rooms r
+            WHERE l.spaceRenter.id = :spaceRenterId
+            GROUP BY l.id, l.name, l.address, c.name, c.country, l.totalCapacity
+            ORDER BY l.name ASC, l.id ASC
+            """)
+    List<LocalityDashboard> findDashboardBySpaceRenterId(@Param("spaceRenterId") Long spaceRenterId);
 }
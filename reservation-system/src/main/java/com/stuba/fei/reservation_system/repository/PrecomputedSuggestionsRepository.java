@@ -0,0 +1,9 @@
+package com.stuba.fei.reservation_system.repository;
+
+import com.stuba.fei.reservation_system.model.PrecomputedSuggestions;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PrecomputedSuggestionsRepository extends JpaRepository<PrecomputedSuggestions, Long> {
+}
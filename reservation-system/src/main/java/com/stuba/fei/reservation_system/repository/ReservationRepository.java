@@ -3,10 +3,13 @@ package com.stuba.fei.reservation_system.repository;
 import com.stuba.fei.reservation_system.model.Reservation;
 import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,7 +21,55 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     boolean existsByRegisteredUserIdAndEventIdAndStatusNot(Long userId, Long eventId, ReservationStatus status);
     
     Optional<Reservation> findByRegisteredUserIdAndEventId(Long userId, Long eventId);
+
+    @Query("SELECT r.registeredUser.username FROM Reservation r WHERE r.event.id = :eventId AND r.status <> :status")
+    List<String> findUsernamesByEventIdAndStatusNot(@Param("eventId") Long eventId, @Param("status") ReservationStatus status);
+
+    @Query("SELECT DISTINCT r.registeredUser.id FROM Reservation r WHERE r.event.id = :eventId AND r.status <> :status")
+    List<Long> findUserIdsByEventIdAndStatusNot(@Param("eventId") Long eventId, @Param("status") ReservationStatus status);
+
+    /**
+     * IDs of the events the user has reserved (in any status)
+     */
+    @Query("SELECT r.event.id FROM Reservation r WHERE r.registeredUser.id = :userId")
+    List<Long> findEventIdsByRegisteredUserId(@Param("userId") Long userId);
+
+    /**
+     * Events reserved (in any status) by the given users, as [userId, eventId] rows
+     */
+    @Query("SELECT r.registeredUser.id, r.event.id FROM Reservation r WHERE r.registeredUser.id IN :userIds")
+    List<Object[]> findUserAndEventIdsByRegisteredUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Every reservation not in the given status as [eventId, userId] rows, ordered by event and user
+     */
+    @Query("SELECT r.event.id, r.registeredUser.id FROM Reservation r WHERE r.status <> :status ORDER BY r.event.id, r.registeredUser.id")
+    List<Object[]> findEventAndUserIdsByStatusNot(@Param("status") ReservationStatus status);
+
+    /**
+     * Number of reservations per user that are not in the given status, as [userId, count] rows
+     */
+    @Query("SELECT r.registeredUser.id, COUNT(r) FROM Reservation r WHERE r.status <> :status GROUP BY r.registeredUser.id")
+    List<Object[]> countByUserAndStatusNot(@Param("status") ReservationStatus status);
     
+    @Query("SELECT r.id, r.holdExpiresAt FROM Reservation r WHERE r.status = :status")
+    List<Object[]> findHolds(@Param("status") ReservationStatus status);
+
+    /**
+     * Move a reservation from one status to another only if it still has the expected status.
+     * Confirming, cancelling and expiring a hold race on this single UPDATE, so only one of them wins.
+     * @return 1 if the status was changed, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Reservation r SET r.status = :newStatus, r.holdExpiresAt = NULL
+            WHERE r.id = :id AND r.status = :expectedStatus
+            """)
+    int updateStatusIfCurrent(@Param("id") Long id,
+                              @Param("expectedStatus") ReservationStatus expectedStatus,
+                              @Param("newStatus") ReservationStatus newStatus);
+
     @Query("SELECT r FROM Reservation r WHERE r.event.id = :eventId AND r.rating IS NOT NULL")
     List<Reservation> findByEventIdWithRating(@Param("eventId") Long eventId);
     
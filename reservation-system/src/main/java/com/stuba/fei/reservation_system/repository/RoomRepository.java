@@ -3,9 +3,20 @@ package com.stuba.fei.reservation_system.repository;
 import com.stuba.fei.reservation_system.model.Locality;
 import com.stuba.fei.reservation_system.model.Room;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface RoomRepository extends JpaRepository<Room, Long> {
     List<Room> findAllByLocality(Locality locality);
-}
\ No newline at end of file
+
+    /**
+     * All rooms with their locality and city as
+     * [roomId, roomName, floor, capacity, localityId, localityName, address, cityId, cityName] rows
+     */
+    @Query("""
+            SELECT r.id, r.name, r.floor, r.capacity, l.id, l.name, l.address, c.id, c.name
+            FROM Room r JOIN r.locality l LEFT JOIN l.city c
+            """)
+    List<Object[]> findVenueRows();
+}
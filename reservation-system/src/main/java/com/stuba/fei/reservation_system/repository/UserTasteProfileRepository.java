@@ -0,0 +1,18 @@
+package com.stuba.fei.reservation_system.repository;
+
+import com.stuba.fei.reservation_system.model.UserTasteProfile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserTasteProfileRepository extends JpaRepository<UserTasteProfile, Long> {
+
+    /**
+     * Reservation count of every profile, as [userId, reservationCount] rows
+     */
+    @Query("SELECT p.id, p.reservationCount FROM UserTasteProfile p")
+    List<Object[]> findReservationCounts();
+}
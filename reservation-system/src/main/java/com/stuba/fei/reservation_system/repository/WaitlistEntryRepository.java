@@ -0,0 +1,34 @@
+package com.stuba.fei.reservation_system.repository;
+
+import com.stuba.fei.reservation_system.model.WaitlistEntry;
+import com.stuba.fei.reservation_system.model.WaitlistEntry.WaitlistStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    Optional<WaitlistEntry> findByEventIdAndRegisteredUserIdAndStatus(Long eventId, Long userId, WaitlistStatus status);
+
+    Optional<WaitlistEntry> findFirstByEventIdAndRegisteredUserIdOrderByTicketDesc(Long eventId, Long userId);
+
+    List<WaitlistEntry> findByRegisteredUserIdAndStatus(Long userId, WaitlistStatus status);
+
+    /**
+     * Head of the event's queue. Locking read, so concurrent promotions never pick the same entry.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<WaitlistEntry> findFirstByEventIdAndStatusOrderByTicketAsc(Long eventId, WaitlistStatus status);
+
+    @Query("SELECT COALESCE(MAX(w.ticket), 0) FROM WaitlistEntry w WHERE w.event.id = :eventId")
+    int findMaxTicket(@Param("eventId") Long eventId);
+
+    @Query("SELECT w.ticket FROM WaitlistEntry w WHERE w.event.id = :eventId AND w.status = :status")
+    List<Integer> findTickets(@Param("eventId") Long eventId, @Param("status") WaitlistStatus status);
+}
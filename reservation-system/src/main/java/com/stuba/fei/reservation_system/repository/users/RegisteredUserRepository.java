@@ -2,11 +2,18 @@ package com.stuba.fei.reservation_system.repository.users;
 
 import com.stuba.fei.reservation_system.model.users.RegisteredUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RegisteredUserRepository extends JpaRepository<RegisteredUser, Long> {
     Optional<RegisteredUser> findByUsername(String username); // Vráti Optional
+    List<RegisteredUser> findByUsernameIn(Collection<String> usernames);
+
+    @Query("SELECT u.id FROM RegisteredUser u ORDER BY u.id")
+    List<Long> findAllIds();
 }
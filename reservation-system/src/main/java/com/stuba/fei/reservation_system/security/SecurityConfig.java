@@ -72,7 +72,7 @@ public class SecurityConfig {
             "http://localhost"        // Docker frontend on default port
         )); 
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS")); // Povolené metódy
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type")); // Povolené hlavičky
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Idempotency-Key")); // Povolené hlavičky
         configuration.setAllowCredentials(true); // Can be true with specific origins
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,247 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Anonymous suggestions, which depend only on the visitor's location, kept as ready to send JSON per location cell.
+ * A cell is a geohash (about 1.2 x 0.6 km at the default precision 6) and its suggestions are computed for
+ * the cell's centre, so the nearest city and the distance scores are the same for every visitor in the cell.
+ * Visitors without a location share one snapshot.
+ * Snapshots are marked stale when their events change (all of them when an event may have become a better candidate)
+ * and recomputed in the background by {@link EventService#refreshAnonymousSuggestions}, meanwhile the stale
+ * snapshot is still served. Cells nobody asked for in a while are dropped.
+ */
+@Component
+public class AnonymousSuggestionSnapshots {
+    public static final String NO_LOCATION = "";
+
+    private static final String GEOHASH_BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private final ObjectMapper objectMapper;
+    private final int precision;
+    private final int maxCells;
+    private final long maxAgeMillis;
+    private final long idleMillis;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    // Incremented by every event change, a snapshot computed across one is stored as stale
+    private final AtomicLong changes = new AtomicLong();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public AnonymousSuggestionSnapshots(EventFeatureStore eventFeatureStore,
+                                        ObjectMapper objectMapper,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${suggestion.anonymous.geohash-precision:6}") int precision,
+                                        @Value("${suggestion.anonymous.max-cells:5000}") int maxCells,
+                                        @Value("${suggestion.anonymous.max-age-seconds:60}") long maxAgeSeconds,
+                                        @Value("${suggestion.anonymous.idle-seconds:600}") long idleSeconds) {
+        this.objectMapper = objectMapper;
+        this.precision = precision;
+        this.maxCells = maxCells;
+        this.maxAgeMillis = maxAgeSeconds * 1000;
+        this.idleMillis = idleSeconds * 1000;
+
+        this.hitCounter = lookups(meterRegistry, "hit");
+        this.missCounter = lookups(meterRegistry, "miss");
+        Gauge.builder("suggestions.anonymous.snapshots", snapshots, Map::size)
+                .description("Anonymous suggestion snapshots kept in memory")
+                .register(meterRegistry);
+
+        eventFeatureStore.addListener(this::onEventsChanged);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("suggestions.anonymous.lookups")
+                .description("Anonymous suggestion requests by snapshot lookup result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Geohash of the cell containing the location, NO_LOCATION if a coordinate is missing
+     */
+    public String cellOf(Double longitude, Double latitude) {
+        if (longitude == null || latitude == null) {
+            return NO_LOCATION;
+        }
+        double[] lonRange = {-180.0, 180.0};
+        double[] latRange = {-90.0, 90.0};
+        StringBuilder cell = new StringBuilder(precision);
+        boolean lonBit = true;
+        int bits = 0;
+        int index = 0;
+        while (cell.length() < precision) {
+            index = (index << 1) | split(lonBit ? lonRange : latRange, lonBit ? longitude : latitude);
+            lonBit = !lonBit;
+            if (++bits == 5) {
+                cell.append(GEOHASH_BASE32.charAt(index));
+                bits = 0;
+                index = 0;
+            }
+        }
+        return cell.toString();
+    }
+
+    /**
+     * @return [longitude, latitude] of the cell's centre, null for NO_LOCATION
+     */
+    public double[] centreOf(String cell) {
+        if (NO_LOCATION.equals(cell)) {
+            return null;
+        }
+        double[] lonRange = {-180.0, 180.0};
+        double[] latRange = {-90.0, 90.0};
+        boolean lonBit = true;
+        for (int c = 0; c < cell.length(); c++) {
+            int index = GEOHASH_BASE32.indexOf(cell.charAt(c));
+            for (int bit = 4; bit >= 0; bit--) {
+                double[] range = lonBit ? lonRange : latRange;
+                double mid = (range[0] + range[1]) / 2;
+                if (((index >> bit) & 1) == 1) {
+                    range[0] = mid;
+                } else {
+                    range[1] = mid;
+                }
+                lonBit = !lonBit;
+            }
+        }
+        return new double[] {(lonRange[0] + lonRange[1]) / 2, (latRange[0] + latRange[1]) / 2};
+    }
+
+    // Halve the range towards the value, 1 for the upper half
+    private static int split(double[] range, double value) {
+        double mid = (range[0] + range[1]) / 2;
+        if (value >= mid) {
+            range[0] = mid;
+            return 1;
+        }
+        range[1] = mid;
+        return 0;
+    }
+
+    /**
+     * @return The cell's snapshot (possibly stale), null if there is none yet
+     */
+    public Snapshot get(String cell) {
+        Snapshot snapshot = snapshots.get(cell);
+        if (snapshot == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        snapshot.lastAccess = System.currentTimeMillis();
+        return snapshot;
+    }
+
+    /**
+     * @return Value to pass to put, taken before the suggestions are computed
+     */
+    public long changeCount() {
+        return changes.get();
+    }
+
+    /**
+     * Store the cell's suggestions, serialized once
+     * @param changeCount changeCount() from before the suggestions were computed
+     */
+    public Snapshot put(String cell, List<EventSummary> suggestions, long changeCount) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(suggestions);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize suggestions: " + e.getMessage(), e);
+        }
+        Snapshot previous = snapshots.get(cell);
+        Snapshot snapshot = new Snapshot(List.copyOf(suggestions), json,
+                previous != null ? previous.lastAccess : System.currentTimeMillis());
+        snapshots.put(cell, snapshot);
+        if (changes.get() != changeCount) {
+            snapshot.stale = true;
+        }
+        if (previous == null && snapshots.size() > maxCells) {
+            evictLeastRecentlyUsed();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drop cells nobody asked for in a while
+     * @return Cells whose snapshots are stale or too old
+     */
+    public List<String> cellsToRefresh() {
+        long now = System.currentTimeMillis();
+        snapshots.values().removeIf(snapshot -> snapshot.lastAccess < now - idleMillis);
+        List<String> cells = new ArrayList<>();
+        snapshots.forEach((cell, snapshot) -> {
+            if (snapshot.stale || snapshot.builtAt < now - maxAgeMillis) {
+                cells.add(cell);
+            }
+        });
+        return cells;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        snapshots.entrySet().stream()
+                .min((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess))
+                .ifPresent(eldest -> snapshots.remove(eldest.getKey(), eldest.getValue()));
+    }
+
+    private void onEventsChanged(Collection<Long> eventIds, boolean newCandidates) {
+        changes.incrementAndGet();
+        if (newCandidates) {
+            snapshots.values().forEach(snapshot -> snapshot.stale = true);
+            return;
+        }
+        long[] changed = eventIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        for (Snapshot snapshot : snapshots.values()) {
+            for (EventSummary event : snapshot.suggestions) {
+                if (Arrays.binarySearch(changed, event.getId()) >= 0) {
+                    snapshot.stale = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Suggestions of one cell and their JSON (an immutable list and bytes that must not be modified)
+     */
+    public static final class Snapshot {
+        private final List<EventSummary> suggestions;
+        private final byte[] json;
+        private final long builtAt = System.currentTimeMillis();
+        private volatile long lastAccess;
+        private volatile boolean stale;
+
+        private Snapshot(List<EventSummary> suggestions, byte[] json, long lastAccess) {
+            this.suggestions = suggestions;
+            this.json = json;
+            this.lastAccess = lastAccess;
+        }
+
+        public List<EventSummary> getSuggestions() {
+            return suggestions;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+    }
+}
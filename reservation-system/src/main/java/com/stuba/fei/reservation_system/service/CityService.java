@@ -8,6 +8,7 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -16,8 +17,10 @@ import java.util.logging.Logger;
 public class CityService {
     private static final Logger logger = Logger.getLogger(CityService.class.getName());
     private final CityRepository cityRepository;
+    private final CitySpatialIndex citySpatialIndex;
     private final RestTemplate restTemplate = new RestTemplate();
     private static final String NOMINATIM_API_URL = "https://nominatim.openstreetmap.org/search";
+    private static final Map<String, Double> NO_COORDINATES = Collections.emptyMap();
 
     public City findOrCreateCity(String name, String country) {
         if (name == null || country == null) {
@@ -34,20 +37,33 @@ public class CityService {
                     newCity.setCountry(country);
 
                     // Fetch coordinates from OSM Nominatim API
-                    Map<String, Double> coordinates = getCoordinatesFromApi(name, country);
+                    Map<String, Double> coordinates = getCoordinatesFromApi(name + "," + country);
                     newCity.setLongitude(coordinates.get("longitude"));
                     newCity.setLatitude(coordinates.get("latitude"));
 
                     logger.info("Coordinates: " + newCity.getLongitude() + ", " + newCity.getLatitude());
-                    return cityRepository.save(newCity);
+                    City savedCity = cityRepository.save(newCity);
+                    citySpatialIndex.add(savedCity);
+                    return savedCity;
                 });
     }
 
-    private Map<String, Double> getCoordinatesFromApi(String city, String country) {
+    /**
+     * Geocode a street address in the given city
+     * @return Map with latitude and longitude, empty if the address was not found
+     */
+    public Map<String, Double> getAddressCoordinates(String address, City city) {
+        if (address == null || address.isBlank()) {
+            return NO_COORDINATES;
+        }
+        return getCoordinatesFromApi(address + "," + city.getName() + "," + city.getCountry());
+    }
+
+    private Map<String, Double> getCoordinatesFromApi(String query) {
         try {
             // Build the request URL with parameters
             String requestUrl = UriComponentsBuilder.fromHttpUrl(NOMINATIM_API_URL)
-                    .queryParam("q", city + "," + country)
+                    .queryParam("q", query)
                     .queryParam("format", "json")
                     .queryParam("limit", "1")
                     .build()
@@ -67,7 +83,7 @@ public class CityService {
             logger.severe("Error fetching coordinates: " + e.getMessage());
         }
         
-        // Return null values if the API call fails
-        return Map.of("latitude", null, "longitude", null);
+        // Return null values if the API call fails (Map.of does not accept nulls)
+        return NO_COORDINATES;
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.City;
+import com.stuba.fei.reservation_system.repository.CityRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory spatial index over city coordinates, answering nearest-city and radius queries
+ * in logarithmic time instead of scanning the city table. Cities are loaded lazily on first access;
+ * a city created later is added by {@link CityService#findOrCreateCity} once its transaction commits.
+ * Cities without coordinates are not indexed.
+ */
+@Component
+public class CitySpatialIndex {
+    private final CityRepository cityRepository;
+
+    // Coordinates [latitude, longitude] by city id, the source the tree is rebuilt from
+    private final Map<Long, double[]> coordinates = new HashMap<>();
+    private volatile GeoKdTree tree;
+
+    public CitySpatialIndex(CityRepository cityRepository) {
+        this.cityRepository = cityRepository;
+    }
+
+    /**
+     * @return Id of the city nearest to the given coordinates, or null if no city has coordinates
+     */
+    public Long findNearestCityId(double longitude, double latitude) {
+        long id = tree().nearest(latitude, longitude);
+        return id < 0 ? null : id;
+    }
+
+    /**
+     * @return Ids of the cities within the given distance (in kilometers), in no particular order
+     */
+    public List<Long> findCityIdsWithin(double longitude, double latitude, double radiusKm) {
+        return tree().withinRadius(latitude, longitude, radiusKm);
+    }
+
+    /**
+     * Add a newly created city. Inside a transaction the city is added after commit,
+     * so a rolled back city never shows up in the index.
+     */
+    public void add(City city) {
+        if (city.getId() == null || city.getLatitude() == null || city.getLongitude() == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(city.getId(), city.getLatitude(), city.getLongitude());
+                }
+            });
+        } else {
+            put(city.getId(), city.getLatitude(), city.getLongitude());
+        }
+    }
+
+    private GeoKdTree tree() {
+        GeoKdTree current = tree;
+        if (current == null) {
+            synchronized (this) {
+                if (tree == null) {
+                    for (City city : cityRepository.findAll()) {
+                        if (city.getLatitude() != null && city.getLongitude() != null) {
+                            coordinates.put(city.getId(), new double[] {city.getLatitude(), city.getLongitude()});
+                        }
+                    }
+                    tree = rebuild();
+                }
+                current = tree;
+            }
+        }
+        return current;
+    }
+
+    // New cities are rare, so the tree is rebuilt (O(n log n)) and queries never take a lock
+    private synchronized void put(Long id, double latitude, double longitude) {
+        if (tree == null) {
+            // Not loaded yet - the city will be read together with the others
+            return;
+        }
+        coordinates.put(id, new double[] {latitude, longitude});
+        tree = rebuild();
+    }
+
+    private GeoKdTree rebuild() {
+        int n = coordinates.size();
+        long[] ids = new long[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        int i = 0;
+        for (Map.Entry<Long, double[]> entry : coordinates.entrySet()) {
+            ids[i] = entry.getKey();
+            latitudes[i] = entry.getValue()[0];
+            longitudes[i] = entry.getValue()[1];
+            i++;
+        }
+        return new GeoKdTree(ids, latitudes, longitudes);
+    }
+}
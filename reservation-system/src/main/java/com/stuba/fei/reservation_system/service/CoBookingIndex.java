@@ -0,0 +1,205 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * "People who booked this also booked" signal for suggestions. For every event it keeps the users holding
+ * a PENDING or CONFIRMED reservation as a compressed bitmap of user IDs ({@link IntBitmap}).
+ * The neighbours of a user are everybody who booked one of the events the user booked, and a candidate event
+ * scores by the cosine similarity of its attendees and the neighbours - one bitmap intersection per candidate.
+ * Committed reservation changes are applied right away; the index is built on first use and periodically
+ * rebuilt from the reservation table, with the bitmaps of different events built in parallel.
+ * The periodic rebuild runs on a thread of its own, so it does not hold up the shared scheduler thread.
+ */
+@Component
+public class CoBookingIndex {
+    private static final Logger logger = Logger.getLogger(CoBookingIndex.class.getName());
+
+    private final ReservationRepository reservationRepository;
+    private final Object reloadLock = new Object();
+    // One rebuild at a time, a trigger while it is busy is dropped instead of queued
+    private final ThreadPoolExecutor rebuilder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "co-booking-rebuild");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    // Attendees by event ID, null until loaded. Bitmaps are immutable, a change replaces the event's bitmap.
+    private volatile Map<Long, IntBitmap> attendees;
+    // Guarded by this: changes that arrive while a rebuild runs, replayed on the rebuilt index
+    private List<Change> changesDuringReload;
+
+    public CoBookingIndex(ReservationRepository reservationRepository, UserTasteProfileService userTasteProfileService) {
+        this.reservationRepository = reservationRepository;
+        userTasteProfileService.addListener(this::onReservationChanged);
+    }
+
+    /**
+     * @param userId The user
+     * @param eventIds Events the user booked
+     * @return The users who booked the same events, for scoring candidates against
+     */
+    public Neighbours neighboursOf(Long userId, Collection<Long> eventIds) {
+        Map<Long, IntBitmap> index = index();
+        List<IntBitmap> bitmaps = new ArrayList<>(eventIds.size());
+        for (Long eventId : eventIds) {
+            IntBitmap users = index.get(eventId);
+            if (users != null) {
+                bitmaps.add(users);
+            }
+        }
+        return new Neighbours(index, IntBitmap.union(bitmaps).without(Math.toIntExact(userId)));
+    }
+
+    /**
+     * Start the periodic rebuild on the rebuild thread and return right away
+     */
+    @Scheduled(initialDelayString = "${suggestion.co-booking.reload-interval-ms:3600000}",
+            fixedDelayString = "${suggestion.co-booking.reload-interval-ms:3600000}")
+    public void scheduleReload() {
+        rebuilder.execute(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                logger.severe("Co-booking index: rebuild failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Rebuild the whole index from the reservation table
+     */
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                changesDuringReload = new ArrayList<>();
+            }
+            Map<Long, IntBitmap> rebuilt;
+            try {
+                rebuilt = build();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    changesDuringReload = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                // Adding and removing are idempotent, so changes already in the query result can be replayed
+                changesDuringReload.forEach(change -> apply(rebuilt, change));
+                changesDuringReload = null;
+                attendees = rebuilt;
+            }
+        }
+    }
+
+    private Map<Long, IntBitmap> build() {
+        // Ordered by event, so the rows of one event are contiguous and its user IDs sorted
+        List<Object[]> rows = reservationRepository.findEventAndUserIdsByStatusNot(ReservationStatus.CANCELLED);
+        int n = rows.size();
+        long[] eventIds = new long[n];
+        int[] userIds = new int[n];
+        List<Integer> eventStarts = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            eventIds[i] = (Long) rows.get(i)[0];
+            userIds[i] = Math.toIntExact((Long) rows.get(i)[1]);
+            if (i == 0 || eventIds[i] != eventIds[i - 1]) {
+                eventStarts.add(i);
+            }
+        }
+        eventStarts.add(n);
+
+        Map<Long, IntBitmap> index = new ConcurrentHashMap<>(Math.max(16, eventStarts.size() * 2));
+        IntStream.range(0, eventStarts.size() - 1).parallel().forEach(e -> {
+            int start = eventStarts.get(e);
+            int end = eventStarts.get(e + 1);
+            int[] users = new int[end - start];
+            System.arraycopy(userIds, start, users, 0, users.length);
+            index.put(eventIds[start], IntBitmap.of(users, users.length));
+        });
+        return index;
+    }
+
+    private Map<Long, IntBitmap> index() {
+        Map<Long, IntBitmap> index = attendees;
+        if (index == null) {
+            synchronized (reloadLock) {
+                if (attendees == null) {
+                    reload();
+                }
+                index = attendees;
+            }
+        }
+        return index;
+    }
+
+    private synchronized void onReservationChanged(Long userId, Long eventId, boolean added) {
+        Change change = new Change(eventId, Math.toIntExact(userId), added);
+        if (changesDuringReload != null) {
+            changesDuringReload.add(change);
+        }
+        if (attendees != null) {
+            apply(attendees, change);
+        }
+    }
+
+    private static void apply(Map<Long, IntBitmap> index, Change change) {
+        index.compute(change.eventId, (eventId, users) -> {
+            IntBitmap current = users != null ? users : IntBitmap.EMPTY;
+            IntBitmap updated = change.added ? current.with(change.userId) : current.without(change.userId);
+            return updated.cardinality() > 0 ? updated : null;
+        });
+    }
+
+    /**
+     * Users who booked the same events as one user (the user excluded)
+     */
+    public static final class Neighbours {
+        private final Map<Long, IntBitmap> index;
+        private final IntBitmap users;
+
+        private Neighbours(Map<Long, IntBitmap> index, IntBitmap users) {
+            this.index = index;
+            this.users = users;
+        }
+
+        public boolean isEmpty() {
+            return users.cardinality() == 0;
+        }
+
+        /**
+         * @return Cosine similarity of the event's attendees and the neighbours, between 0.0 and 1.0
+         */
+        public double similarity(long eventId) {
+            IntBitmap eventUsers = index.get(eventId);
+            if (eventUsers == null || users.cardinality() == 0) {
+                return 0.0;
+            }
+            int common = eventUsers.andCardinality(users);
+            return common == 0 ? 0.0 : common / Math.sqrt((double) eventUsers.cardinality() * users.cardinality());
+        }
+    }
+
+    private record Change(Long eventId, int userId, boolean added) {
+    }
+}
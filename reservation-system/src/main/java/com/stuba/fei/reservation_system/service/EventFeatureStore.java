@@ -0,0 +1,384 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.EventFeatures;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * In-memory feature table of events that have not started yet (ACTIVE and FULL), stored column-wise
+ * in primitive arrays so suggestion scoring is a tight loop without loading entities.
+ * Changed events are marked after their transaction commits and re-read in one batch every second;
+ * the whole table is reloaded periodically as a safety net for changes made outside the services.
+ * Listeners are told which rows actually changed after every refresh.
+ */
+@Component
+public class EventFeatureStore {
+    private static final Logger logger = Logger.getLogger(EventFeatureStore.class.getName());
+
+    public static final long NO_CITY = -1;
+    public static final int NO_CATEGORY = -1;
+
+    private static final double[] NO_VECTOR = {Double.NaN, Double.NaN, Double.NaN};
+
+    private static final int UNCHANGED = 0;
+    private static final int CHANGED = 1;
+    private static final int CHANGED_CANDIDATE = 2;
+
+    private final EventRepository eventRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<Long> changedIds = ConcurrentHashMap.newKeySet();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by lock
+    private final Columns columns = new Columns();
+    private final Map<Long, Integer> slotOfId = new HashMap<>();
+    private final Map<String, Integer> categoryOrdinals = new HashMap<>();
+    private final List<String> categoryNames = new ArrayList<>();
+
+    private volatile boolean loaded;
+
+    public EventFeatureStore(EventRepository eventRepository) {
+        this.eventRepository = eventRepository;
+    }
+
+    /**
+     * Run a reader over the feature columns. The columns must not be used after the reader returns.
+     */
+    public <T> T read(Function<Columns, T> reader) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return reader.apply(columns);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-read the event's features once the current transaction commits (right away without a transaction).
+     * Also used for deleted events, they are dropped from the table.
+     */
+    public void markChanged(Long eventId) {
+        if (eventId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changedIds.add(eventId);
+                }
+            });
+        } else {
+            changedIds.add(eventId);
+        }
+    }
+
+    public void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Apply the changes marked since the last run with one query
+     */
+    @Scheduled(fixedDelayString = "${suggestion.features.refresh-interval-ms:1000}")
+    public synchronized void applyChanges() {
+        if (!loaded || changedIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(changedIds);
+        ids.forEach(changedIds::remove);
+        try {
+            List<EventFeatures> rows = eventRepository.findFeaturesByIds(ids);
+            Set<Long> found = new HashSet<>();
+            List<Long> changed = new ArrayList<>();
+            boolean newCandidates = false;
+            lock.writeLock().lock();
+            try {
+                for (EventFeatures row : rows) {
+                    found.add(row.getId());
+                    int change = row.getStatus() == EventStatus.INACTIVE ? remove(row.getId()) : put(row);
+                    if (change != UNCHANGED) {
+                        changed.add(row.getId());
+                        newCandidates |= change == CHANGED_CANDIDATE;
+                    }
+                }
+                for (Long id : ids) {
+                    if (!found.contains(id) && remove(id) != UNCHANGED) {
+                        changed.add(id);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            notifyListeners(changed, newCandidates);
+        } catch (RuntimeException e) {
+            logger.severe("Event features: failed to refresh events " + ids + ": " + e.getMessage());
+            changedIds.addAll(ids);
+        }
+    }
+
+    /**
+     * Reload the whole table
+     */
+    @Scheduled(initialDelayString = "${suggestion.features.reload-interval-ms:300000}",
+            fixedDelayString = "${suggestion.features.reload-interval-ms:300000}")
+    public synchronized void reload() {
+        // Changes committed before the query are part of it, the ones marked later are applied afterwards
+        changedIds.clear();
+        List<EventFeatures> rows = eventRepository.findFeaturesByStatusNot(EventStatus.INACTIVE);
+        Set<Long> found = new HashSet<>();
+        List<Long> changed = new ArrayList<>();
+        boolean newCandidates = false;
+        lock.writeLock().lock();
+        try {
+            for (EventFeatures row : rows) {
+                found.add(row.getId());
+                int change = put(row);
+                if (change != UNCHANGED) {
+                    changed.add(row.getId());
+                    newCandidates |= change == CHANGED_CANDIDATE;
+                }
+            }
+            for (Long id : new ArrayList<>(slotOfId.keySet())) {
+                if (!found.contains(id)) {
+                    remove(id);
+                    changed.add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean initialLoad = !loaded;
+        loaded = true;
+        if (!initialLoad) {
+            notifyListeners(changed, newCandidates);
+        }
+    }
+
+    private void notifyListeners(List<Long> changed, boolean newCandidates) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.eventsChanged(changed, newCandidates);
+            } catch (RuntimeException e) {
+                logger.severe("Event features: listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return UNCHANGED, CHANGED (only the fill ratio changed or the event stopped being available)
+     *         or CHANGED_CANDIDATE (new or changed event that may now rank higher for anybody)
+     */
+    private int put(EventFeatures row) {
+        long cityId = row.getCityId() != null ? row.getCityId() : NO_CITY;
+        boolean hasCoordinates = row.getLatitude() != null && row.getLongitude() != null;
+        double latitude = hasCoordinates ? row.getLatitude() : Double.NaN;
+        double longitude = hasCoordinates ? row.getLongitude() : Double.NaN;
+        double price = row.getPrice() != null ? row.getPrice() : Double.NaN;
+        int category = categoryOrdinal(row.getCategory());
+        double fillRatio = row.getMaxCapacity() > 0 ? (double) row.getTakenSeats() / row.getMaxCapacity() : Double.NaN;
+        long start = row.getEventDate() != null && row.getStartTime() != null
+                ? LocalDateTime.of(row.getEventDate(), row.getStartTime())
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : Long.MAX_VALUE;
+        boolean active = row.getStatus() == EventStatus.ACTIVE;
+
+        Integer slot = slotOfId.get(row.getId());
+        int change;
+        int i;
+        if (slot != null) {
+            i = slot;
+            // Compared bit by bit, so NaN equals NaN
+            boolean sameCandidate = columns.cityIds[i] == cityId
+                    && Double.compare(columns.latitudes[i], latitude) == 0
+                    && Double.compare(columns.longitudes[i], longitude) == 0
+                    && Double.compare(columns.prices[i], price) == 0
+                    && columns.categories[i] == category
+                    && columns.starts[i] == start
+                    && (columns.active[i] || !active);
+            if (!sameCandidate) {
+                change = CHANGED_CANDIDATE;
+            } else if (Double.compare(columns.fillRatios[i], fillRatio) != 0 || columns.active[i] != active) {
+                change = CHANGED;
+            } else {
+                return UNCHANGED;
+            }
+        } else {
+            i = columns.size++;
+            columns.ensureCapacity(columns.size);
+            slotOfId.put(row.getId(), i);
+            change = active ? CHANGED_CANDIDATE : CHANGED;
+        }
+        columns.ids[i] = row.getId();
+        columns.cityIds[i] = cityId;
+        columns.latitudes[i] = latitude;
+        columns.longitudes[i] = longitude;
+        double[] vector = hasCoordinates ? GeoDistanceKernel.toVector(latitude, longitude) : NO_VECTOR;
+        columns.x[i] = vector[0];
+        columns.y[i] = vector[1];
+        columns.z[i] = vector[2];
+        columns.prices[i] = price;
+        columns.categories[i] = category;
+        columns.fillRatios[i] = fillRatio;
+        columns.starts[i] = start;
+        columns.active[i] = active;
+        return change;
+    }
+
+    // Move the last row into the freed slot, so the columns stay dense
+    private int remove(Long id) {
+        Integer slot = slotOfId.remove(id);
+        if (slot == null) {
+            return UNCHANGED;
+        }
+        int last = --columns.size;
+        if (slot != last) {
+            columns.move(last, slot);
+            slotOfId.put(columns.ids[slot], slot);
+        }
+        return CHANGED;
+    }
+
+    private int categoryOrdinal(String category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        return categoryOrdinals.computeIfAbsent(category, name -> {
+            categoryNames.add(name);
+            return categoryNames.size() - 1;
+        });
+    }
+
+    /**
+     * Notified after a refresh changed some rows (not on the initial load)
+     */
+    public interface ChangeListener {
+        /**
+         * @param eventIds Events whose features changed, were removed or stopped being available
+         * @param newCandidates true if some of them may now rank higher than before (new event, changed price,
+         *                      category, place or start, or available again) - false if they can only rank lower
+         *                      or only their fill ratio changed
+         */
+        void eventsChanged(Collection<Long> eventIds, boolean newCandidates);
+    }
+
+    /**
+     * Feature columns, one row per event. Absent values are NO_CITY, NO_CATEGORY or NaN,
+     * fillRatio is (confirmed + held seats) / capacity and start is the start time in epoch milliseconds.
+     * x, y, z is the location as a unit vector (see {@link GeoDistanceKernel}).
+     */
+    public final class Columns {
+        long[] ids = new long[0];
+        long[] cityIds = new long[0];
+        double[] latitudes = new double[0];
+        double[] longitudes = new double[0];
+        double[] x = new double[0];
+        double[] y = new double[0];
+        double[] z = new double[0];
+        double[] prices = new double[0];
+        int[] categories = new int[0];
+        double[] fillRatios = new double[0];
+        long[] starts = new long[0];
+        boolean[] active = new boolean[0];
+        int size;
+
+        /**
+         * @return Row of the event, or -1 if it is not in the table
+         */
+        int rowOf(long eventId) {
+            Integer slot = slotOfId.get(eventId);
+            return slot != null ? slot : -1;
+        }
+
+        /**
+         * @return Ordinal of the category (exact match), or NO_CATEGORY if no event has it
+         */
+        int categoryOrdinal(String category) {
+            Integer ordinal = category != null ? categoryOrdinals.get(category) : null;
+            return ordinal != null ? ordinal : NO_CATEGORY;
+        }
+
+        String categoryName(int ordinal) {
+            return categoryNames.get(ordinal);
+        }
+
+        /**
+         * @return For every category ordinal, whether it equals the given category ignoring case
+         */
+        boolean[] categoriesEqualIgnoreCase(String category) {
+            boolean[] matches = new boolean[categoryNames.size()];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = categoryNames.get(i).equalsIgnoreCase(category);
+            }
+            return matches;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int length = Math.max(capacity, Math.max(256, ids.length * 2));
+            ids = Arrays.copyOf(ids, length);
+            cityIds = Arrays.copyOf(cityIds, length);
+            latitudes = Arrays.copyOf(latitudes, length);
+            longitudes = Arrays.copyOf(longitudes, length);
+            x = Arrays.copyOf(x, length);
+            y = Arrays.copyOf(y, length);
+            z = Arrays.copyOf(z, length);
+            prices = Arrays.copyOf(prices, length);
+            categories = Arrays.copyOf(categories, length);
+            fillRatios = Arrays.copyOf(fillRatios, length);
+            starts = Arrays.copyOf(starts, length);
+            active = Arrays.copyOf(active, length);
+        }
+
+        private void move(int from, int to) {
+            ids[to] = ids[from];
+            cityIds[to] = cityIds[from];
+            latitudes[to] = latitudes[from];
+            longitudes[to] = longitudes[from];
+            x[to] = x[from];
+            y[to] = y[from];
+            z[to] = z[from];
+            prices[to] = prices[from];
+            categories[to] = categories[from];
+            fillRatios[to] = fillRatios[from];
+            starts[to] = starts[from];
+            active[to] = active[from];
+        }
+    }
+}
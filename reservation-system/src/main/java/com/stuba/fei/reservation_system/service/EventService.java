@@ -1,21 +1,35 @@
 package com.stuba.fei.reservation_system.service;
 
+import com.stuba.fei.reservation_system.dto.EventCursor;
+import com.stuba.fei.reservation_system.dto.EventPage;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import com.stuba.fei.reservation_system.dto.NearbyCursor;
+import com.stuba.fei.reservation_system.dto.NearbyEvent;
+import com.stuba.fei.reservation_system.dto.UpcomingEventCounts;
 import com.stuba.fei.reservation_system.handler.ResourceNotFoundException;
 import com.stuba.fei.reservation_system.model.Event;
 import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.PrecomputedSuggestions;
 import com.stuba.fei.reservation_system.model.Room;
+import com.stuba.fei.reservation_system.model.UserTasteProfile;
 import com.stuba.fei.reservation_system.model.users.EventOrganizer;
 import com.stuba.fei.reservation_system.model.users.RegisteredUser;
 import com.stuba.fei.reservation_system.repository.EventRepository;
 import com.stuba.fei.reservation_system.repository.LocalityRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
 import com.stuba.fei.reservation_system.repository.RoomRepository;
 import com.stuba.fei.reservation_system.repository.users.RegisteredUserRepository;
 import com.stuba.fei.reservation_system.service.users.EventOrganizerService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -27,20 +41,23 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Comparator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.HashSet;
-import com.stuba.fei.reservation_system.repository.CityRepository;
-import com.stuba.fei.reservation_system.model.City;
-import com.stuba.fei.reservation_system.model.Reservation;
 
 @Service
 public class EventService {
@@ -53,13 +70,54 @@ public class EventService {
     @Autowired
     private RegisteredUserRepository registeredUserRepository;
     @Autowired
+    private ReservationRepository reservationRepository;
+    @Autowired
     private EventOrganizerService eventOrganizerService;
     @Autowired
-    private CityRepository cityRepository;
+    private CitySpatialIndex citySpatialIndex;
+    @Autowired
+    private LocalitySpatialIndex localitySpatialIndex;
+    @Autowired
+    private EventFeatureStore eventFeatureStore;
+    @Autowired
+    private SuggestionCache suggestionCache;
+    @Autowired
+    private UserTasteProfileService userTasteProfileService;
+    @Autowired
+    private CoBookingIndex coBookingIndex;
+    @Autowired
+    private PrecomputedSuggestionStore precomputedSuggestionStore;
+    @Autowired
+    private AnonymousSuggestionSnapshots anonymousSuggestionSnapshots;
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+    @Autowired
+    private ScoringPool scoringPool;
+    @Autowired
+    private EventStatusService eventStatusService;
+    @Autowired
+    private HighDemandReservationService highDemandReservationService;
+    @Autowired
+    private WaitlistPositionIndex waitlistPositionIndex;
+    @Autowired
+    private RoomIntervalIndex roomIntervalIndex;
+    @Autowired
+    private WaitlistService waitlistService;
 
     private static final String UPLOAD_DIR = "uploaded-images/";
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
 
+    // Keyset pagination page sizes
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_LENGTH = 100;
+
+    // Geo search defaults and bounds
+    public static final double DEFAULT_NEARBY_RADIUS_KM = 10.0;
+    public static final double MAX_NEARBY_RADIUS_KM = 200.0;
+    public static final int DEFAULT_NEARBY_DAYS = 7;
+    public static final int MAX_NEARBY_DAYS = 365;
+
     // Configurable weights for scoring factors
     private static final double WEIGHT_SAME_CITY = 0.5;
     private static final double WEIGHT_DISTANCE = 0.35;
@@ -68,31 +126,101 @@ public class EventService {
 
     // Configurable weights for registered user scoring factors
     private static final double WEIGHT_USER_PREFERENCES = 0.6;
-    private static final double WEIGHT_USER_HISTORY = 0.2; 
+    private static final double WEIGHT_USER_HISTORY = 0.15;
+    private static final double WEIGHT_USER_CO_BOOKING = 0.05;
     private static final double WEIGHT_USER_LOCATION = 0.1;
     private static final double WEIGHT_USER_FREE_EVENT = 0.05;
     private static final double WEIGHT_USER_AVAILABILITY = 0.05;
 
-    // Získať všetky udalosti
-    public List<Event> getAllEvents() {
-        List<Event> events = eventRepository.findAll();
-        // Update and save status for all events before returning
-        events.forEach(this::updateAndSaveEventStatus);
-        return events;
+    private static final int SUGGESTION_COUNT = 12;
+    // Events per summary query when refreshing the anonymous snapshots
+    private static final int SUMMARY_BATCH_SIZE = 1000;
+    // Localities read by one query of a geo search while their events fit into the page
+    private static final int NEARBY_RING_SIZE = 64;
+
+    /**
+     * Get one keyset page of events matching the given filters (all filters are optional)
+     * @param categories Categories to include, null or empty means all categories
+     * @param search Text searched in the name and description, case-insensitive
+     * @param statuses Statuses to include, null or empty means all statuses
+     * @param cursor Cursor returned with the previous page, null for the first page
+     * @param limit Requested page size, clamped to MAX_PAGE_SIZE
+     * @return Page of event summaries ordered by date, time and id with the cursor of the next page
+     * @throws IllegalArgumentException If the cursor, the price range or the search is invalid
+     */
+    public EventPage<EventSummary> getEventsPage(Collection<String> categories, String search,
+                                          Double minPrice, Double maxPrice, Long cityId, String country,
+                                          LocalDate dateFrom, LocalDate dateTo, Collection<EventStatus> statuses,
+                                          String cursor, Integer limit) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        if (search != null && search.length() > MAX_SEARCH_LENGTH) {
+            throw new IllegalArgumentException("search must not be longer than " + MAX_SEARCH_LENGTH + " characters");
+        }
+        List<String> categoryFilter = categories == null ? List.of()
+                : categories.stream().filter(category -> category != null && !category.isBlank()).toList();
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        EventCursor after = EventCursor.decode(cursor);
+        Collection<EventStatus> statusFilter = statuses == null || statuses.isEmpty()
+                ? EnumSet.allOf(EventStatus.class) : statuses;
+
+        // Fetch one extra row to know whether another page exists
+        List<EventSummary> rows = eventRepository.findSummaryPage(
+                statusFilter,
+                categoryFilter.isEmpty(),
+                categoryFilter.isEmpty() ? List.of("") : categoryFilter,
+                likePattern(search),
+                minPrice,
+                maxPrice,
+                dateFrom,
+                dateTo,
+                cityId,
+                country != null && !country.isBlank() ? country : null,
+                after != null ? after.getEventDate() : null,
+                after != null ? after.getStartTime() : null,
+                after != null ? after.getId() : null,
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<EventSummary> items = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            EventSummary last = items.get(items.size() - 1);
+            nextCursor = new EventCursor(last.getEventDate(), last.getStartTime(), last.getId()).encode();
+        }
+
+        return new EventPage<>(items, nextCursor);
+    }
+
+    // Contains pattern for LIKE ... ESCAPE '!', null for a blank search
+    private static String likePattern(String search) {
+        if (search == null || search.isBlank()) {
+            return null;
+        }
+        String escaped = search.trim().toLowerCase(Locale.ROOT)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return "%" + escaped + "%";
     }
 
     // Získať jednu udalosť podľa ID
     public Optional<Event> getEventById(Long id) {
-        Optional<Event> eventOpt = eventRepository.findById(id);
-        eventOpt.ifPresent(this::updateAndSaveEventStatus);
-        return eventOpt;
+        return eventRepository.findById(id);
     }
 
     // Vytvoriť novú udalosť
     public Event createEvent(Event event) {
-        return eventRepository.save(event);
+        eventStatusService.track(event);
+        Event savedEvent = eventRepository.save(event);
+        eventStatusService.track(savedEvent);
+        eventFeatureStore.markChanged(savedEvent.getId());
+        return savedEvent;
     }
 
+    @Transactional(rollbackFor = IOException.class)
     public Event createEventWithImage(
             MultipartFile image,
             String name,
@@ -106,26 +234,6 @@ public class EventService {
             List<Long> roomIds
     ) throws IOException {
         Event event = new Event();
-        // Ak je obrázok prítomný
-        if (image != null && !image.isEmpty()) {
-            // Odstránenie medzier z názvu obrázku
-            String originalFileName = image.getOriginalFilename();
-            String cleanedFileName = originalFileName != null ? originalFileName.replaceAll("\\s+", "_") : "default_image";
-            // Generovanie náhodného UUID pre názov obrázka
-            String uniqueId = UUID.randomUUID().toString();
-            String newFileName = uniqueId + "_" + cleanedFileName;
-
-            // Vytvorenie cesty pre ukladanie obrázka
-            Path filePath = Paths.get(UPLOAD_DIR + newFileName);
-            Files.createDirectories(filePath.getParent()); // Vytvor priečinok, ak neexistuje
-            Files.write(filePath, image.getBytes()); // Ulož obrázok
-
-            // Nastavenie cesty k obrázku do udalosti
-            event.setImagePath(filePath.toString());
-        } else {
-            // Ak obrázok nie je prítomný, nechaj imagePath ako null
-            event.setImagePath(null);
-        }
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
@@ -149,11 +257,38 @@ public class EventService {
         event.setRooms(rooms); // Priradenie lokality
         event.setEventOrganizer(eventOrganizer);
 
-        // Ulož udalosť do databázy
+        // Ulož udalosť do databázy a zaraď ju do plánovača stavov
+        eventStatusService.track(event);
         Event eventt = eventRepository.save(event);
+        // Obsadenie miestností - pri kolízii s inou udalosťou sa transakcia vráti
+        RoomIntervalIndex.Placement placement = RoomIntervalIndex.Placement.of(eventt);
+        if (placement != null) {
+            roomIntervalIndex.book(eventt.getId(), null, placement);
+        }
+
+        // Ak je obrázok prítomný (až po kontrole obsadenosti, aby po odmietnutí nezostal na disku)
+        if (image != null && !image.isEmpty()) {
+            // Odstránenie medzier z názvu obrázku
+            String originalFileName = image.getOriginalFilename();
+            String cleanedFileName = originalFileName != null ? originalFileName.replaceAll("\\s+", "_") : "default_image";
+            // Generovanie náhodného UUID pre názov obrázka
+            String uniqueId = UUID.randomUUID().toString();
+            String newFileName = uniqueId + "_" + cleanedFileName;
+
+            // Vytvorenie cesty pre ukladanie obrázka
+            Path filePath = Paths.get(UPLOAD_DIR + newFileName);
+            Files.createDirectories(filePath.getParent()); // Vytvor priečinok, ak neexistuje
+            Files.write(filePath, image.getBytes()); // Ulož obrázok
+
+            // Nastavenie cesty k obrázku do udalosti (uloží sa pri commite)
+            eventt.setImagePath(filePath.toString());
+        }
+        eventStatusService.track(eventt);
+        eventFeatureStore.markChanged(eventt.getId());
         return eventt;
     }
 
+    @Transactional(rollbackFor = IOException.class)
     public Event updateEventWithImage(
             Long eventId,
             MultipartFile image,
@@ -179,6 +314,10 @@ public class EventService {
             throw new AccessDeniedException("Nemáte oprávnenie upravovať tento event");
         }
 
+        // Pôvodné obsadenie miestností
+        RoomIntervalIndex.Placement previousPlacement = RoomIntervalIndex.Placement.of(existingEvent);
+        int previousCapacity = existingEvent.getMaxCapacity();
+
         // 3. Aktualizácia základných polí
         if (name != null) existingEvent.setName(name);
         if (description != null) existingEvent.setDescription(description);
@@ -192,9 +331,36 @@ public class EventService {
         if (duration != null && duration < 15) {
             throw new IllegalArgumentException("Dĺžka trvania udalosti musí byť aspoň 15 minút.");
         }
-        existingEvent.setDuration(duration);
+        if (duration != null) existingEvent.setDuration(duration);
+
+        // 4. Aktualizácia miestností a lokality
+        if (roomIds != null) {
+            if (roomIds.isEmpty()) {
+                throw new IllegalArgumentException("Musíte zadať aspoň jednu miestnosť");
+            }
 
-        // 4. Spracovanie obrázka
+            // Kontrola existencie všetkých miestností
+            List<Room> rooms = roomRepository.findAllById(roomIds);
+            Set<Long> foundIds = rooms.stream()
+                    .map(Room::getId)
+                    .collect(Collectors.toSet());
+            List<Long> missingIds = roomIds.stream()
+                    .filter(id -> !foundIds.contains(id))
+                    .toList();
+
+            if (!missingIds.isEmpty()) {
+                throw new EntityNotFoundException("Nenašli sa miestnosti s ID: " + missingIds);
+            }
+            existingEvent.setRooms(rooms);
+        }
+
+        // 5. Kontrola obsadenosti miestností, ak sa zmenil čas alebo miestnosti
+        RoomIntervalIndex.Placement placement = RoomIntervalIndex.Placement.of(existingEvent);
+        if (placement != null && !placement.equals(previousPlacement)) {
+            roomIntervalIndex.book(existingEvent.getId(), previousPlacement, placement);
+        }
+
+        // 6. Spracovanie obrázka
         if (image != null && !image.isEmpty()) {
             // Odstráni starý obrázok
             if (existingEvent.getImagePath() != null) {
@@ -217,31 +383,59 @@ public class EventService {
             existingEvent.setImagePath(filePath.toString());
         }
 
-        // 5. Aktualizácia miestností a lokality
-        if (roomIds != null) {
-            if (roomIds.isEmpty()) {
-                throw new IllegalArgumentException("Musíte zadať aspoň jednu miestnosť");
+        // 7. Ulož zmeny a prepočítaj stav (čas začiatku, kapacita)
+        eventStatusService.track(existingEvent);
+        Event savedEvent = eventRepository.save(existingEvent);
+        if (savedEvent.isHighDemand()) {
+            // Inventár sa načíta až z potvrdených údajov
+            Long savedEventId = savedEvent.getId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    highDemandReservationService.reload(savedEventId);
+                }
+            });
+        }
+        if (capacity != null) {
+            eventStatusService.refreshCapacityStatus(savedEvent.getId());
+            // Nové miesta dostanú najprv čakajúci z poradovníka (v tej istej transakcii, riadok udalosti je zamknutý)
+            if (capacity > previousCapacity && !savedEvent.isHighDemand()) {
+                waitlistService.promoteToFreeSeats(savedEvent);
             }
+        }
+        eventFeatureStore.markChanged(savedEvent.getId());
+        // Profily používateľov s rezerváciou počítajú s kategóriou, cenou a mestom udalosti
+        if (category != null || price != null || roomIds != null) {
+            userTasteProfileService.onEventChanged(savedEvent.getId());
+        }
+        return savedEvent;
+    }
 
-            // Kontrola existencie všetkých miestností
-            List<Room> rooms = roomRepository.findAllById(roomIds);
-            Set<Long> foundIds = rooms.stream()
-                    .map(Room::getId)
-                    .collect(Collectors.toSet());
-            List<Long> missingIds = roomIds.stream()
-                    .filter(id -> !foundIds.contains(id))
-                    .toList();
+    /**
+     * Zapne alebo vypne high-demand režim udalosti (rezervácie z pamäte, zápis do DB v dávkach)
+     * @param eventId ID udalosti
+     * @param enabled true pre zapnutie režimu
+     * @return Počet voľných miest v pamäti, alebo null ak je režim vypnutý
+     */
+    public Integer setHighDemand(Long eventId, boolean enabled) throws AccessDeniedException {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new EntityNotFoundException("Event s ID " + eventId + " neexistuje"));
 
-            if (!missingIds.isEmpty()) {
-                throw new EntityNotFoundException("Nenašli sa miestnosti s ID: " + missingIds);
-            }
-            existingEvent.setRooms(rooms);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        EventOrganizer currentOrganizer = eventOrganizerService.getEventOrganizerByUsername(authentication.getName());
+        if (!event.getEventOrganizer().getId().equals(currentOrganizer.getId())) {
+            throw new AccessDeniedException("Nemáte oprávnenie upravovať tento event");
         }
 
-        // 6. Ulož zmeny
-        return eventRepository.save(existingEvent);
+        if (enabled) {
+            highDemandReservationService.enable(eventId);
+        } else {
+            highDemandReservationService.disable(eventId);
+        }
+        return highDemandReservationService.getRemainingSeats(eventId);
     }
 
+    @Transactional
     public void deleteEvent(Long id) throws IOException, AccessDeniedException {
         // Získaj udalosť podľa ID
         Optional<Event> eventOptional = eventRepository.findById(id);
@@ -266,20 +460,26 @@ public class EventService {
                 }
             }
             // Potom odstránime udalosť z databázy
+            roomIntervalIndex.release(event.getId(), RoomIntervalIndex.Placement.of(event));
+            highDemandReservationService.discard(event.getId());
+            userTasteProfileService.onEventChanged(event.getId());
             eventRepository.delete(event);
+            eventStatusService.untrack(event.getId());
+            waitlistPositionIndex.evict(event.getId());
+            eventFeatureStore.markChanged(event.getId());
         } else {
             throw new ResourceNotFoundException("Event not found");
         }
     }
 
     public List<LocalTime[]> getOccupiedTimes(List<Long> roomIds, LocalDate date, Long excludeEventId) {
-        List<Event> events = eventRepository.findByRooms_IdInAndEventDate(roomIds, date);
+        List<RoomIntervalIndex.Interval> intervals = roomIntervalIndex.occupied(roomIds, date);
         // Filter and map to time slots
-        return events.stream()
-                .filter(event -> excludeEventId == null || !event.getId().equals(excludeEventId))
-                .map(event -> new LocalTime[] {
-                        event.getStartTime(),
-                        event.getStartTime().plusMinutes(event.getDuration())
+        return intervals.stream()
+                .filter(interval -> excludeEventId == null || interval.eventId() != excludeEventId)
+                .map(interval -> new LocalTime[] {
+                        LocalTime.MIN.plusMinutes(interval.startMinute()),
+                        LocalTime.MIN.plusMinutes(interval.endMinute())
                 })
                 .collect(Collectors.toList());
     }
@@ -295,199 +495,227 @@ public class EventService {
     }
 
     // Získať udalosti pre aktuálne prihláseného používateľa
-    public List<Event> getMyEvents() {
+    public List<EventSummary> getMyEvents() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
         EventOrganizer currentOrganizer = eventOrganizerService.getEventOrganizerByUsername(username);
-        List<Event> events = getEventsByOrganizer(currentOrganizer);
-        
-        // Update and save status for all events before returning
-        events.forEach(this::updateAndSaveEventStatus);
-        
-        return events;
+        return eventRepository.findSummariesByOrganizerId(currentOrganizer.getId());
     }
 
-    // Helper method to update and save event status
-    private void updateAndSaveEventStatus(Event event) {
-        EventStatus oldStatus = event.getStatus();
-        event.updateStatus();
-        // Only save if status has changed
-        if (oldStatus != event.getStatus()) {
-            eventRepository.save(event);
+    /**
+     * Load summaries for already ranked events, keeping the ranking order
+     * @param rankedIds IDs of events in the order they should be returned
+     * @return Summaries in the same order
+     */
+    private List<EventSummary> toSummaries(List<Long> rankedIds) {
+        if (rankedIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        Map<Long, EventSummary> summariesById = eventRepository.findSummariesByIds(rankedIds).stream()
+                .collect(Collectors.toMap(EventSummary::getId, summary -> summary));
+        return rankedIds.stream()
+                .map(summariesById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
     
     /**
-     * Get suggested events based on user and location
+     * Get suggested events based on user and location.
+     * Results are cached per user and coarse location (see SuggestionCache),
+     * anonymous suggestions are served from snapshots per location cell (see AnonymousSuggestionSnapshots).
      * @param longitude The longitude coordinate (can be null)
      * @param latitude The latitude coordinate (can be null)
-     * @return A list of suggested events
+     * @return A list of suggested event summaries
+     */
+    public List<EventSummary> getSuggestedEvents(Double longitude, Double latitude) {
+        String username = loggedUsername();
+        if (username == null) {
+            return anonymousSnapshot(longitude, latitude).getSuggestions();
+        }
+        
+        Double coarseLongitude = suggestionCache.coarsen(longitude);
+        Double coarseLatitude = suggestionCache.coarsen(latitude);
+        return suggestionCache.get(username, coarseLongitude, coarseLatitude,
+                () -> computeSuggestedEvents(username, coarseLongitude, coarseLatitude));
+    }
+
+    /**
+     * Suggested events of an anonymous visitor as ready to send JSON
+     * @return The serialized suggestions, or null if the request is authenticated (use getSuggestedEvents)
+     */
+    public byte[] getAnonymousSuggestedEventsJson(Double longitude, Double latitude) {
+        return loggedUsername() == null ? anonymousSnapshot(longitude, latitude).getJson() : null;
+    }
+
+    /**
+     * Recompute the anonymous suggestion snapshots whose events changed or that are too old,
+     * loading the summaries of all of them with one query per chunk of events
      */
-    public List<Event> getSuggestedEvents(Double longitude, Double latitude) {
+    @Scheduled(fixedDelayString = "${suggestion.anonymous.refresh-interval-ms:1000}")
+    public void refreshAnonymousSuggestions() {
+        List<String> cells = anonymousSuggestionSnapshots.cellsToRefresh();
+        if (cells.isEmpty()) {
+            return;
+        }
+        long changeCount = anonymousSuggestionSnapshots.changeCount();
+        Map<String, List<Long>> rankedIds = new LinkedHashMap<>();
+        Set<Long> eventIds = new LinkedHashSet<>();
+        for (String cell : cells) {
+            List<Long> ranked = rankAnonymous(cell);
+            rankedIds.put(cell, ranked);
+            eventIds.addAll(ranked);
+        }
+        Map<Long, EventSummary> summariesById = new HashMap<>();
+        List<Long> ids = new ArrayList<>(eventIds);
+        for (int start = 0; start < ids.size(); start += SUMMARY_BATCH_SIZE) {
+            eventRepository.findSummariesByIds(ids.subList(start, Math.min(start + SUMMARY_BATCH_SIZE, ids.size())))
+                    .forEach(summary -> summariesById.put(summary.getId(), summary));
+        }
+        rankedIds.forEach((cell, ranked) -> anonymousSuggestionSnapshots.put(cell, ranked.stream()
+                .map(summariesById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()), changeCount));
+    }
+
+    /**
+     * @return Name of the authenticated user, null for an anonymous request
+     */
+    private String loggedUsername() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
         // Check if the user is authenticated and not anonymous
         if (authentication != null && 
             authentication.isAuthenticated() && 
             !authentication.getPrincipal().equals("anonymousUser")) {
-            
-            String username = authentication.getName();
+            return authentication.getName();
+        }
+        return null;
+    }
+
+    private AnonymousSuggestionSnapshots.Snapshot anonymousSnapshot(Double longitude, Double latitude) {
+        String cell = anonymousSuggestionSnapshots.cellOf(longitude, latitude);
+        AnonymousSuggestionSnapshots.Snapshot snapshot = anonymousSuggestionSnapshots.get(cell);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // Visitors of a cell without a snapshot yet share one computation
+        return requestCoalescer.execute("suggested-anonymous", List.of(cell), () -> {
+            long changeCount = anonymousSuggestionSnapshots.changeCount();
+            System.out.println("Suggesting events for anonymous user");
+            return anonymousSuggestionSnapshots.put(cell, toSummaries(rankAnonymous(cell)), changeCount);
+        });
+    }
+
+    // Anonymous suggestions for the centre of the cell
+    private List<Long> rankAnonymous(String cell) {
+        double[] centre = anonymousSuggestionSnapshots.centreOf(cell);
+        return centre != null ? getSuggestedEventsAnonym(centre[0], centre[1]) : getSuggestedEventsAnonym(null, null);
+    }
+
+    private List<EventSummary> computeSuggestedEvents(String username, Double longitude, Double latitude) {
+        if (username != null) {
             Optional<RegisteredUser> registeredUserOptional = registeredUserRepository.findByUsername(username);
             
             if (registeredUserOptional.isPresent()) {
                 RegisteredUser registeredUser = registeredUserOptional.get();
                 System.out.println("Suggesting events for user: " + registeredUser.getUsername());
-                return getSuggestedEventsRegisteredUser(registeredUser, longitude, latitude);
+                return toSummaries(getSuggestedEventsRegisteredUser(registeredUser, longitude, latitude));
             }
         }
         System.out.println("Suggesting events for anonymous user");
         // Default to anonymous suggestions if no valid authenticated user found
-        return getSuggestedEventsAnonym(longitude, latitude);
+        return toSummaries(getSuggestedEventsAnonym(longitude, latitude));
     }
     
     /**
      * Get events near a specific location for anonymous users
      * @param longitude The longitude coordinate
      * @param latitude The latitude coordinate
-     * @return A list of suggested events
+     * @return IDs of the suggested events, best first
      */
-    private List<Event> getSuggestedEventsAnonym(Double longitude, Double latitude) {
-        // Start with upcoming events
-        List<Event> upcomingEvents = getAvailableUpcomingEvents();
-        
-        // If no location provided, just return random upcoming events limited to 12
+    private List<Long> getSuggestedEventsAnonym(Double longitude, Double latitude) {
+        long now = System.currentTimeMillis();
+
+        // If no location provided, just return the soonest upcoming events limited to 12
         if (longitude == null || latitude == null) {
-            return upcomingEvents.stream()
-                    .limit(12)
-                    .collect(Collectors.toList());
+            return eventFeatureStore.read(features -> scoringPool.select(features.size, SUGGESTION_COUNT, (from, to, top) -> {
+                for (int i = from; i < to; i++) {
+                    if (isAvailable(features, i, now)) {
+                        // Earlier start = higher score
+                        top.offer(features.ids[i], -features.starts[i], features.starts[i]);
+                    }
+                }
+            }).toIds());
         }
         
-        Map<Event, Double> eventScores = new HashMap<>();
-        
         // Find the nearest city to the given coordinates
-        City nearestCity = findNearestCity(longitude, latitude);
+        Long nearestCityId = citySpatialIndex.findNearestCityId(longitude, latitude);
+        long nearestCity = nearestCityId != null ? nearestCityId : EventFeatureStore.NO_CITY;
+        double[] query = GeoDistanceKernel.toVector(latitude, longitude);
         
-        // Score each event
-        for (Event event : upcomingEvents) {
-            // Update status before scoring
-            updateAndSaveEventStatus(event);
-            
-            double score = 0.0;
-            
-            // 1. Check if event is in the same city (50%)
-            if (nearestCity != null) {
-                if (isEventInCity(event, nearestCity)) {
-                    score += WEIGHT_SAME_CITY;
+        return eventFeatureStore.read(features -> scoringPool.select(features.size, SUGGESTION_COUNT, (from, to, top) -> {
+            // Score the events block by block, the distances of a whole block at once
+            double[] chords = new double[GeoDistanceKernel.BLOCK_SIZE];
+            for (int block = from; block < to; block += GeoDistanceKernel.BLOCK_SIZE) {
+                int blockEnd = Math.min(block + GeoDistanceKernel.BLOCK_SIZE, to);
+                GeoDistanceKernel.squaredChords(features, block, blockEnd, query, chords);
+                
+                // The cheap factors first
+                for (int i = block; i < blockEnd; i++) {
+                    if (!isAvailable(features, i, now)) {
+                        continue;
+                    }
+                    double score = 0.0;
+                    
+                    // 1. Check if event is in the same city (50%)
+                    if (nearestCity != EventFeatureStore.NO_CITY) {
+                        if (features.cityIds[i] == nearestCity) {
+                            score += WEIGHT_SAME_CITY;
+                        }
+                    } else {
+                        // Alternative logic if no nearest city is found
+                        score += 0.3; // Base score for events without city context
+                    }
+                    
+                    // 3. Check if event is free (10%)
+                    if (features.prices[i] == 0.0) {
+                        score += WEIGHT_FREE_EVENT;
+                    }
+                    
+                    // 4. Check if event is "HOT" (5%)
+                    score += calculateAvailabilityScore(features.fillRatios[i]) * WEIGHT_AVAILABILITY;
+                    
+                    // 2. Check if event is within 15km (35%) - skipped when even the full distance score cannot reach the top 12
+                    double squaredChord = chords[i - block];
+                    if (!top.accepts(Double.isNaN(squaredChord) ? score : score + WEIGHT_DISTANCE)) {
+                        continue;
+                    }
+                    score += GeoDistanceKernel.distanceScore(squaredChord) * WEIGHT_DISTANCE;
+                    
+                    top.offer(features.ids[i], score, features.starts[i]);
                 }
-            } else {
-                // Alternative logic if no nearest city is found
-                score += 0.3; // Base score for events without city context
-            }
-            
-            // 2. Check if event is within 15km (35%)
-            double distanceScore = calculateDistanceScore(event, longitude, latitude);
-            score += (distanceScore * WEIGHT_DISTANCE);
-            
-            // 3. Check if event is free (10%)
-            if (event.getPrice() != null && event.getPrice() == 0.0) {
-                score += WEIGHT_FREE_EVENT;
             }
-            
-            // 4. Check if event is "HOT" (5%)
-            double availabilityScore = calculateAvailabilityScore(event);
-            score += (availabilityScore * WEIGHT_AVAILABILITY);
-            
-            eventScores.put(event, score);
-        }
-        
-        // Sort events by score (descending) and take top 12
-        return eventScores.entrySet().stream()
-                .sorted(Map.Entry.<Event, Double>comparingByValue().reversed())
-                .limit(12)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        }).toIds());
     }
-    
-    /**
-     * Check if an event is in a specific city
-     */
-    private boolean isEventInCity(Event event, City city) {
-        if (city == null || event.getRooms() == null || event.getRooms().isEmpty()) {
-            return false;
-        }
-        
-        // Get the city of the event's first room's locality
-        Room firstRoom = event.getRooms().get(0);
-        if (firstRoom.getLocality() != null && 
-            firstRoom.getLocality().getCity() != null) {
-            return firstRoom.getLocality().getCity().getId().equals(city.getId());
-        }
-        return false;
-    }
-    
-    /**
-     * Calculate score based on distance from coordinates to event location
-     * Full score (1.0) if within 5km, scaled down to 0 at 15km
-     */
-    private double calculateDistanceScore(Event event, Double longitude, Double latitude) {
-        if (event.getRooms() == null || event.getRooms().isEmpty()) {
-            return 0.0;
-        }
-        
-        Room firstRoom = event.getRooms().get(0);
-        if (firstRoom.getLocality() == null || 
-            firstRoom.getLocality().getCity() == null || 
-            firstRoom.getLocality().getCity().getLatitude() == null || 
-            firstRoom.getLocality().getCity().getLongitude() == null) {
-            return 0.0;
-        }
-        
-        double eventLat = firstRoom.getLocality().getCity().getLatitude();
-        double eventLon = firstRoom.getLocality().getCity().getLongitude();
-        
-        double distance = calculateDistance(latitude, longitude, eventLat, eventLon);
-        
-        // Full score if within 5km, scaled down to 0 at 15km
-        if (distance <= 5) {
-            return 1.0;
-        } else if (distance <= 15) {
-            return 1.0 - ((distance - 5) / 10);
-        } else {
-            return 0.0;
-        }
-    }
-    
+
     /**
-     * Calculate Haversine distance between two points
-     * @return Distance in kilometers
+     * Event can be suggested: ACTIVE (free capacity) and not started yet
      */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c;
+    private static boolean isAvailable(EventFeatureStore.Columns features, int i, long now) {
+        return features.active[i] && features.starts[i] > now;
     }
     
     /**
      * Calculate score for event availability
      * Full score (1.0) if almost full (less than 10% spots remaining)
+     * @param fillRatio Taken seats / capacity, NaN if the event has no capacity
      */
-    private double calculateAvailabilityScore(Event event) {
-        if (event.getReservations() == null || event.getMaxCapacity() <= 0) {
+    private double calculateAvailabilityScore(double fillRatio) {
+        if (Double.isNaN(fillRatio)) {
             return 0.0;
         }
         
-        int reservationCount = event.getReservations().size();
-        int availableSpots = event.getMaxCapacity() - reservationCount;
-        double availablePercentage = (double) availableSpots / event.getMaxCapacity();
+        double availablePercentage = 1.0 - fillRatio;
         
         // If less than 10% spots remaining, it's "HOT"
         if (availablePercentage <= 0.1) {
@@ -500,65 +728,10 @@ public class EventService {
         }
     }
     
-    /**
-     * Find the nearest city to the given coordinates
-     */
-    private City findNearestCity(Double longitude, Double latitude) {
-        List<City> allCities = cityRepository.findAll();
-        
-        if (allCities.isEmpty()) {
-            return null;
-        }
-        
-        City nearestCity = null;
-        double shortestDistance = Double.MAX_VALUE;
-        
-        for (City city : allCities) {
-            if (city.getLatitude() != null && city.getLongitude() != null) {
-                double distance = calculateDistance(
-                    latitude, longitude, city.getLatitude(), city.getLongitude()
-                );
-                
-                if (distance < shortestDistance) {
-                    shortestDistance = distance;
-                    nearestCity = city;
-                }
-            }
-        }
-        
-        return nearestCity;
-    }
-    
-    private List<Event> getSuggestedEventsRegisteredUser(RegisteredUser registeredUser, Double longitude, Double latitude) {
-        // Get upcoming available events
-        List<Event> upcomingEvents = getAvailableUpcomingEvents();
-        
-        // If no events are available, return empty list
-        if (upcomingEvents.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        // Extract IDs of events the user has already reserved
-        Set<Long> reservedEventIds;
-        if (registeredUser.getReservations() != null) {
-            reservedEventIds = registeredUser.getReservations().stream()
-                    .map(reservation -> reservation.getEvent().getId())
-                    .collect(Collectors.toSet());
-        } else {
-            reservedEventIds = new HashSet<>();
-        }
-
-        // Filter out events that the user has already reserved
-        List<Event> nonReservedEvents = upcomingEvents.stream()
-                .filter(event -> !reservedEventIds.contains(event.getId()))
-                .toList();
-        
-        // If no non-reserved events are available, return empty list
-        if (nonReservedEvents.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        Map<Event, Double> eventScores = new HashMap<>();
+    private List<Long> getSuggestedEventsRegisteredUser(RegisteredUser registeredUser, Double longitude, Double latitude) {
+        // Summary of the user's reservations and the events they already reserved (excluded from suggestions)
+        Optional<UserTasteProfile> profile = userTasteProfileService.findProfile(registeredUser.getId());
+        List<Long> reservedEventIds = reservationRepository.findEventIdsByRegisteredUserId(registeredUser.getId());
         
         // Print user preferences for debugging
         System.out.println("=== USER PREFERENCES ===");
@@ -570,300 +743,588 @@ public class EventService {
             registeredUser.getMaxPrice() != null ? registeredUser.getMaxPrice() : "Not set");
         System.out.printf("Preferred City: %s\n", 
             registeredUser.getPrefferedCity() != null ? registeredUser.getPrefferedCity().getName() : "Not set");
-        System.out.printf("Reservations: %d\n", 
-            registeredUser.getReservations() != null ? registeredUser.getReservations().size() : 0);
+        System.out.printf("Reservations: %d\n", profile.map(UserTasteProfile::getReservationCount).orElse(0));
         System.out.println("=======================");
         
-        // Score each event
-        for (Event event : nonReservedEvents) {
-            // Update status before scoring
-            updateAndSaveEventStatus(event);
-            
-            double score = 0.0;
-            
-            // ========== USER PREFERENCES (60%) ==========
-            double preferenceScore = calculatePreferenceScore(event, registeredUser);
-            double weightedPreferenceScore = preferenceScore * WEIGHT_USER_PREFERENCES;
-            score += weightedPreferenceScore;
-            
-            // ========== USER HISTORY (20%) ==========
-            double historyScore = calculateHistoryScore(event, registeredUser);
-            double weightedHistoryScore = historyScore * WEIGHT_USER_HISTORY;
-            score += weightedHistoryScore;
-            
-            // ========== LOCATION AND OTHER FACTORS (20%) ==========
-            // Find nearest city to provided coordinates if available
-            City locationCity = null;
-            if (longitude != null && latitude != null) {
-                locationCity = findNearestCity(longitude, latitude);
-            }
-            
-            // Location proximity (10%)
-            double locationScore = 0.0;
-            if (locationCity != null) {
-                if (isEventInCity(event, locationCity)) {
-                    locationScore += 0.5;  // Half of location score for same city
-                }
-                double distanceScore = calculateDistanceScore(event, longitude, latitude);
-                locationScore += (distanceScore * 0.5);  // Half of location score for proximity
-            }
-            // Apply location weight
-            double weightedLocationScore = locationScore * WEIGHT_USER_LOCATION;
-            score += weightedLocationScore;
-            
-            // Free event bonus (5%)
-            double freeScore = 0.0;
-            if (event.getPrice() != null && event.getPrice() == 0.0) {
-                freeScore = 1.0;  // Full score (1.0) if free
-            }
-            score += (freeScore * WEIGHT_USER_FREE_EVENT);
-            
-            // Availability/"hotness" score (5%)
-            double availabilityScore = calculateAvailabilityScore(event);
-            double weightedAvailabilityScore = availabilityScore * WEIGHT_USER_AVAILABILITY;
-            score += weightedAvailabilityScore;
-            
-            eventScores.put(event, score);
+        // Find nearest city to provided coordinates if available (once, it is the same for every event)
+        Long locationCityId = null;
+        if (longitude != null && latitude != null) {
+            locationCityId = citySpatialIndex.findNearestCityId(longitude, latitude);
+        }
+        long nearestCity = locationCityId != null ? locationCityId : EventFeatureStore.NO_CITY;
+        double lon = locationCityId != null ? longitude : 0.0;
+        double lat = locationCityId != null ? latitude : 0.0;
+        
+        // Rank the nightly precomputed list if it is still fresh, score all events otherwise (new users, stale lists)
+        TopKSelector top = precomputedSuggestionStore.findFresh(registeredUser.getId())
+                .map(precomputed -> rankPrecomputed(precomputed, registeredUser, profile.orElse(null), reservedEventIds,
+                        nearestCity, lon, lat))
+                .orElse(null);
+        if (top == null) {
+            top = scoreRegisteredUser(registeredUser, profile.orElse(null), reservedEventIds,
+                    nearestCity, lon, lat, SUGGESTION_COUNT, null);
         }
         
-        // Print event scores for debugging
+        // Print the chosen events for debugging
         System.out.println("=== EVENT SCORES (REGISTERED USER) ===");
-        System.out.println("SCORING EXPLANATION:");
-        System.out.println("- Total score ranges from 0.0 to 1.0");
-        System.out.println("- User Preferences (60%): Based on category, price, city matching user's settings");
-        System.out.println("- User History (20%): Based on similarities to previously attended events");
-        System.out.println("- Location (10%): Based on proximity to current location");
-        System.out.println("- Free Event Bonus (5%): Full points if event is free");
-        System.out.println("- Availability (5%): More points if event is nearly full (\"hot\")");
-        System.out.println("----------------------------------------");
+        for (int rank = 0; rank < top.size(); rank++) {
+            System.out.printf("Event ID: %d | TOTAL SCORE: %.2f (max possible: 1.0)\n", top.id(rank), top.score(rank));
+        }
+        System.out.println("======================================");
         
-        eventScores.forEach((event, score) -> {
-            // Get city name if available
-            String cityName = "No city";
-            double eventLat = 0.0;
-            double eventLon = 0.0;
-
-            if (event.getRooms() != null && !event.getRooms().isEmpty() &&
-                event.getRooms().get(0).getLocality() != null &&
-                event.getRooms().get(0).getLocality().getCity() != null) {
-                cityName = event.getRooms().get(0).getLocality().getCity().getName();
-
-                if (event.getRooms().get(0).getLocality().getCity().getLatitude() != null &&
-                    event.getRooms().get(0).getLocality().getCity().getLongitude() != null) {
-                    eventLat = event.getRooms().get(0).getLocality().getCity().getLatitude();
-                    eventLon = event.getRooms().get(0).getLocality().getCity().getLongitude();
-                }
-            }
+        return top.toIds();
+    }
 
-            // Calculate individual scores for detailed output
-            double preferenceScore = calculatePreferenceScore(event, registeredUser);
-            double weightedPreferenceScore = preferenceScore * WEIGHT_USER_PREFERENCES;
-            
-            double historyScore = calculateHistoryScore(event, registeredUser);
-            double weightedHistoryScore = historyScore * WEIGHT_USER_HISTORY;
+    /**
+     * Rank the events of a precomputed list, plus the events that changed since it was computed,
+     * with their current features and the user's location
+     * @return The best events, or null if events outside the list could still get into the top 12
+     */
+    private TopKSelector rankPrecomputed(PrecomputedSuggestions precomputed, RegisteredUser registeredUser,
+                                         UserTasteProfile profile, List<Long> reservedEventIds,
+                                         long nearestCity, double lon, double lat) {
+        Set<Long> eventIds = new LinkedHashSet<>();
+        precomputed.getEvents().forEach(event -> eventIds.add(event.getEventId()));
+        eventIds.addAll(precomputedSuggestionStore.candidatesChangedSince(precomputed.getComputedAt()));
+        TopKSelector top = scoreRegisteredUser(registeredUser, profile, reservedEventIds,
+                nearestCity, lon, lat, SUGGESTION_COUNT, eventIds).finish();
+        if (precomputed.getCutoffScore() == null) {
+            return top;
+        }
+        // Events outside the list scored at most the cutoff without location, so they can gain the location score at most
+        double maxLocationScore = nearestCity != EventFeatureStore.NO_CITY ? WEIGHT_USER_LOCATION : 0.0;
+        boolean complete = top.size() == SUGGESTION_COUNT
+                && top.score(SUGGESTION_COUNT - 1) >= precomputed.getCutoffScore() + maxLocationScore;
+        return complete ? top : null;
+    }
+
+    /**
+     * Score events for a registered user
+     * @param nearestCity City nearest to the user's location, NO_CITY without a location (no location score)
+     * @param count Number of best events to select
+     * @param eventIds Events to score (without duplicates), null for all events
+     * @return The best events that are available and not reserved by the user
+     */
+    TopKSelector scoreRegisteredUser(RegisteredUser registeredUser, UserTasteProfile profile, List<Long> reservedEventIds,
+                                     long nearestCity, double lon, double lat, int count, Collection<Long> eventIds) {
+        // People who booked the same events
+        CoBookingIndex.Neighbours neighbours = coBookingIndex.neighboursOf(registeredUser.getId(), reservedEventIds);
+        
+        return eventFeatureStore.read(features -> {
+            UserScoringContext user = new UserScoringContext(registeredUser, profile, reservedEventIds, features);
+            long now = System.currentTimeMillis();
+            // Maximum the expensive factors (location, history, co-booking) can add - candidates that cannot reach the top even with it are skipped
+            double maxLocationScore = nearestCity != EventFeatureStore.NO_CITY ? WEIGHT_USER_LOCATION : 0.0;
+            double maxCoBookingScore = neighbours.isEmpty() ? 0.0 : WEIGHT_USER_CO_BOOKING;
+            double maxHistoryScore = (user.historyCount > 0 ? WEIGHT_USER_HISTORY : 0.0) + maxCoBookingScore;
             
-            double locationScore = 0.0;
-            if (longitude != null && latitude != null) {
-                City locationCity = findNearestCity(longitude, latitude);
-                if (locationCity != null) {
-                    if (isEventInCity(event, locationCity)) {
-                        locationScore += 0.5;
+            // Rows of the given events (events no longer in the store cannot be suggested)
+            int[] rows = null;
+            int rowCount = features.size;
+            if (eventIds != null) {
+                rows = new int[eventIds.size()];
+                rowCount = 0;
+                for (Long eventId : eventIds) {
+                    int row = features.rowOf(eventId);
+                    if (row >= 0) {
+                        rows[rowCount++] = row;
                     }
-                    locationScore += (calculateDistanceScore(event, longitude, latitude) * 0.5);
                 }
             }
-            double weightedLocationScore = locationScore * WEIGHT_USER_LOCATION;
-            
-            double freeScore = (event.getPrice() != null && event.getPrice() == 0.0) ? 1.0 : 0.0;
-            double weightedFreeScore = freeScore * WEIGHT_USER_FREE_EVENT;
+            int[] candidateRows = rows;
+            double[] query = nearestCity != EventFeatureStore.NO_CITY ? GeoDistanceKernel.toVector(lat, lon) : null;
             
-            double availabilityScore = calculateAvailabilityScore(event);
-            double weightedAvailabilityScore = availabilityScore * WEIGHT_USER_AVAILABILITY;
-
-            // Enhanced logging with detailed information
-            System.out.printf("Event ID: %d | Name: %s | Category: %s | City: %s | Price: %.2f EUR\n",
-                event.getId(),
-                event.getName(),
-                event.getCategory() != null ? event.getCategory() : "None",
-                cityName,
-                event.getPrice() != null ? event.getPrice() : 0.0
-            );
-            System.out.printf("  Detailed Scores: [Pref: %.2f (raw: %.2f), Hist: %.2f (raw: %.2f), Loc: %.2f, Free: %.2f, Avail: %.2f]\n",
-                weightedPreferenceScore,
-                preferenceScore,
-                weightedHistoryScore,
-                historyScore,
-                weightedLocationScore,
-                weightedFreeScore,
-                weightedAvailabilityScore
-            );
-            System.out.printf("  TOTAL SCORE: %.2f (max possible: 1.0)\n\n", score);
+            // Score the events block by block, the distances of a whole block at once (in parallel parts for many events)
+            return scoringPool.select(rowCount, count, (from, to, selector) -> {
+                double[] chords = query != null ? new double[GeoDistanceKernel.BLOCK_SIZE] : null;
+                for (int block = from; block < to; block += GeoDistanceKernel.BLOCK_SIZE) {
+                    int blockEnd = Math.min(block + GeoDistanceKernel.BLOCK_SIZE, to);
+                    if (query != null) {
+                        if (candidateRows != null) {
+                            GeoDistanceKernel.squaredChords(features, candidateRows, block, blockEnd, query, chords);
+                        } else {
+                            GeoDistanceKernel.squaredChords(features, block, blockEnd, query, chords);
+                        }
+                    }
+                    
+                    // The cheap factors first
+                    for (int r = block; r < blockEnd; r++) {
+                        int i = candidateRows != null ? candidateRows[r] : r;
+                        // Skip unavailable events and events that the user has already reserved
+                        if (!isAvailable(features, i, now) || Arrays.binarySearch(user.reservedEventIds, features.ids[i]) >= 0) {
+                            continue;
+                        }
+                        
+                        // ========== USER PREFERENCES (60%) ==========
+                        double score = calculatePreferenceScore(features, i, user) * WEIGHT_USER_PREFERENCES;
+                        
+                        // Free event bonus (5%)
+                        if (features.prices[i] == 0.0) {
+                            score += WEIGHT_USER_FREE_EVENT;  // Full score (1.0) if free
+                        }
+                        
+                        // Availability/"hotness" score (5%)
+                        score += calculateAvailabilityScore(features.fillRatios[i]) * WEIGHT_USER_AVAILABILITY;
+                        
+                        if (!selector.accepts(score + maxLocationScore + maxHistoryScore)) {
+                            continue;
+                        }
+                        
+                        // ========== LOCATION (10%) ==========
+                        if (nearestCity != EventFeatureStore.NO_CITY) {
+                            double locationScore = 0.0;
+                            if (features.cityIds[i] == nearestCity) {
+                                locationScore += 0.5;  // Half of location score for same city
+                            }
+                            double distanceScore = GeoDistanceKernel.distanceScore(chords[r - block]);
+                            locationScore += (distanceScore * 0.5);  // Half of location score for proximity
+                            score += locationScore * WEIGHT_USER_LOCATION;
+                        }
+                        
+                        if (!selector.accepts(score + maxHistoryScore)) {
+                            continue;
+                        }
+                        
+                        // ========== USER HISTORY (15%) ==========
+                        score += calculateHistoryScore(features, i, user) * WEIGHT_USER_HISTORY;
+                        
+                        if (!selector.accepts(score + maxCoBookingScore)) {
+                            continue;
+                        }
+                        
+                        // ========== PEOPLE WHO BOOKED THE SAME EVENTS (5%) ==========
+                        score += neighbours.similarity(features.ids[i]) * WEIGHT_USER_CO_BOOKING;
+                        
+                        selector.offer(features.ids[i], score, features.starts[i]);
+                    }
+                }
+            }).finish();
         });
-        System.out.println("======================================");
-        
-        // Sort events by score (descending) and take top 12
-        return eventScores.entrySet().stream()
-                .sorted(Map.Entry.<Event, Double>comparingByValue().reversed())
-                .limit(12)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
     }
 
     /**
      * Calculate score based on user preferences (category, price range, city)
      * @return Score between 0.0 and 1.0
      */
-    private double calculatePreferenceScore(Event event, RegisteredUser user) {
+    private double calculatePreferenceScore(EventFeatureStore.Columns features, int i, UserScoringContext user) {
         double score = 0.0;
-        double totalFactors = 0.0;
         
         // 1. Category preference (1/3 of preference score)
-        if (user.getPreferredCategory() != null && !user.getPreferredCategory().isEmpty()) {
-            totalFactors += 1.0;
-            if (event.getCategory() != null && 
-                event.getCategory().equalsIgnoreCase(user.getPreferredCategory())) {
+        if (user.preferredCategories != null) {
+            int category = features.categories[i];
+            if (category != EventFeatureStore.NO_CATEGORY && user.preferredCategories[category]) {
                 score += 1.0;
             }
         }
         
         // 2. Price range preference (1/3 of preference score)
-        if (user.getMinPrice() != null && user.getMaxPrice() != null) {
-            totalFactors += 1.0;
-            if (event.getPrice() != null) {
-                if (event.getPrice() >= user.getMinPrice() && 
-                    event.getPrice() <= user.getMaxPrice()) {
+        if (user.hasPriceRange) {
+            double price = features.prices[i];
+            if (!Double.isNaN(price)) {
+                if (price >= user.minPrice && price <= user.maxPrice) {
                     score += 1.0;
                 } else {
                     // Partial score for prices close to the range
-                    double minDiff = Math.abs(event.getPrice() - user.getMinPrice());
-                    double maxDiff = Math.abs(event.getPrice() - user.getMaxPrice());
-                    double closestDiff = Math.min(minDiff, maxDiff);
-                    
-                    // If within 20% of the range or within 10 EUR
-                    double range = user.getMaxPrice() - user.getMinPrice();
-                    double tolerance = Math.max(range * 0.2, 10.0);
-                    
-                    if (closestDiff <= tolerance) {
-                        score += 1.0 * (1.0 - (closestDiff / tolerance));
+                    double closestDiff = Math.min(Math.abs(price - user.minPrice), Math.abs(price - user.maxPrice));
+                    if (closestDiff <= user.priceTolerance) {
+                        score += 1.0 * (1.0 - (closestDiff / user.priceTolerance));
                     }
                 }
             }
         }
         
         // 3. Preferred city (1/3 of preference score)
-        if (user.getPrefferedCity() != null) {
-            totalFactors += 1.0;
-            if (isEventInCity(event, user.getPrefferedCity())) {
-                score += 1.0;
-            }
+        if (user.preferredCityId != EventFeatureStore.NO_CITY && features.cityIds[i] == user.preferredCityId) {
+            score += 1.0;
         }
         
         // Normalize score if we had at least one preference
-        return totalFactors > 0 ? score / totalFactors : 0.0;
+        return user.preferenceFactors > 0 ? score / user.preferenceFactors : 0.0;
     }
 
     /**
-     * Calculate score based on user history of attended events
+     * Calculate score based on user history of reserved events (looked up in the user's taste profile)
      * @return Score between 0.0 and 1.0
      */
-    private double calculateHistoryScore(Event event, RegisteredUser user) {
-        if (user.getReservations() == null || user.getReservations().isEmpty()) {
-            return 0.0;
-        }
-        
-        // Extract past events from user's reservations
-        List<Event> pastEvents = user.getReservations().stream()
-                .map(Reservation::getEvent)
-                .filter(Objects::nonNull)
-                .toList();
-        
-        if (pastEvents.isEmpty()) {
+    private double calculateHistoryScore(EventFeatureStore.Columns features, int i, UserScoringContext user) {
+        int pastCount = user.historyCount;
+        if (pastCount == 0) {
             return 0.0;
         }
         
         // Count matches for each factor
-        int categoryMatches = 0;
-        int cityMatches = 0;
-        int priceRangeMatches = 0;
+        int category = features.categories[i];
+        int categoryMatches = category != EventFeatureStore.NO_CATEGORY && category < user.categoryCounts.length
+                ? user.categoryCounts[category] : 0;
         
-        // Price similarity tolerance (consider events within 20% of price or 10 EUR)
-        double eventPrice = event.getPrice() != null ? event.getPrice() : 0.0;
-        double priceTolerance = Math.max(eventPrice * 0.25, 10.0);
+        long cityId = features.cityIds[i];
+        int city = cityId != EventFeatureStore.NO_CITY ? Arrays.binarySearch(user.cityIds, cityId) : -1;
+        int cityMatches = city >= 0 ? user.cityCounts[city] : 0;
         
-        for (Event pastEvent : pastEvents) {
-            // Category match
-            if (event.getCategory() != null && pastEvent.getCategory() != null && 
-                event.getCategory().equals(pastEvent.getCategory())) {
-                categoryMatches++;
-            }
-            
-            // City match
-            if (event.getRooms() != null && !event.getRooms().isEmpty() &&
-                pastEvent.getRooms() != null && !pastEvent.getRooms().isEmpty()) {
-                
-                City eventCity = null;
-                City pastEventCity = null;
-                
-                if (event.getRooms().get(0).getLocality() != null &&
-                    event.getRooms().get(0).getLocality().getCity() != null) {
-                    eventCity = event.getRooms().get(0).getLocality().getCity();
-                }
-                
-                if (pastEvent.getRooms().get(0).getLocality() != null &&
-                    pastEvent.getRooms().get(0).getLocality().getCity() != null) {
-                    pastEventCity = pastEvent.getRooms().get(0).getLocality().getCity();
-                }
-                
-                if (eventCity != null && pastEventCity != null &&
-                    eventCity.getId().equals(pastEventCity.getId())) {
-                    cityMatches++;
-                }
-            }
-            
-            // Price similarity
-            if (event.getPrice() != null && pastEvent.getPrice() != null) {
-                if (Math.abs(event.getPrice() - pastEvent.getPrice()) <= priceTolerance) {
-                    priceRangeMatches++;
-                }
-            }
+        double price = features.prices[i];
+        double priceRangeMatches = 0.0;
+        if (!Double.isNaN(price)) {
+            // Price similarity tolerance (consider events within 25% of price or 10 EUR)
+            double priceTolerance = Math.max(price * 0.25, 10.0);
+            priceRangeMatches = user.countPricesWithin(price, priceTolerance);
         }
         
         // Calculate scores as percentages of matches (equal weighting)
-        double categoryScore = (double) categoryMatches / pastEvents.size();
-        double cityScore = (double) cityMatches / pastEvents.size();
-        double priceScore = (double) priceRangeMatches / pastEvents.size();
+        double categoryScore = (double) categoryMatches / pastCount;
+        double cityScore = (double) cityMatches / pastCount;
+        double priceScore = priceRangeMatches / pastCount;
         
         // Combine scores with equal weighting for overall history score
         return (categoryScore + cityScore + priceScore) / 3.0;
     }
+
+    /**
+     * Standard normal cumulative distribution function (erf approximation 7.1.26 of Abramowitz and Stegun,
+     * absolute error below 1e-7)
+     */
+    private static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2.0);
+        double t = 1.0 / (1.0 + 0.3275911 * x);
+        double erf = 1.0 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741
+                + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+        return z >= 0 ? 0.5 * (1.0 + erf) : 0.5 * (1.0 - erf);
+    }
+
+    /**
+     * Per-request scoring inputs of a registered user, resolved once against the feature store
+     */
+    private static final class UserScoringContext {
+        // null when the user has no preferred category
+        final boolean[] preferredCategories;
+        final boolean hasPriceRange;
+        final double minPrice;
+        final double maxPrice;
+        final double priceTolerance;
+        final long preferredCityId;
+        final int preferenceFactors;
+        // Sorted, for binary search
+        final long[] reservedEventIds;
+        // Reservations (not cancelled) in the taste profile, and how many of them are in each category and city
+        final int historyCount;
+        final int[] categoryCounts;
+        // Sorted, cityCounts[c] belongs to cityIds[c]
+        final long[] cityIds;
+        final int[] cityCounts;
+        final int priceCount;
+        final double priceMean;
+        final double priceStdDev;
+
+        UserScoringContext(RegisteredUser user, UserTasteProfile profile, List<Long> reservedEvents,
+                           EventFeatureStore.Columns features) {
+            int factors = 0;
+            if (user.getPreferredCategory() != null && !user.getPreferredCategory().isEmpty()) {
+                preferredCategories = features.categoriesEqualIgnoreCase(user.getPreferredCategory());
+                factors++;
+            } else {
+                preferredCategories = null;
+            }
+            hasPriceRange = user.getMinPrice() != null && user.getMaxPrice() != null;
+            minPrice = hasPriceRange ? user.getMinPrice() : 0.0;
+            maxPrice = hasPriceRange ? user.getMaxPrice() : 0.0;
+            // Prices within 20% of the range or within 10 EUR get a partial score
+            priceTolerance = Math.max((maxPrice - minPrice) * 0.2, 10.0);
+            if (hasPriceRange) {
+                factors++;
+            }
+            preferredCityId = user.getPrefferedCity() != null ? user.getPrefferedCity().getId() : EventFeatureStore.NO_CITY;
+            if (user.getPrefferedCity() != null) {
+                factors++;
+            }
+            preferenceFactors = factors;
+
+            reservedEventIds = reservedEvents.stream().mapToLong(Long::longValue).sorted().toArray();
+
+            // Histograms indexed the way the feature columns are (category ordinal, sorted city id)
+            List<String> categoryNames = new ArrayList<>();
+            if (profile != null) {
+                categoryNames.addAll(profile.getCategoryCounts().keySet());
+            }
+            int categoryCount = 0;
+            for (String name : categoryNames) {
+                categoryCount = Math.max(categoryCount, features.categoryOrdinal(name) + 1);
+            }
+            categoryCounts = new int[categoryCount];
+            for (String name : categoryNames) {
+                int ordinal = features.categoryOrdinal(name);
+                // Categories no upcoming event has cannot match
+                if (ordinal != EventFeatureStore.NO_CATEGORY) {
+                    categoryCounts[ordinal] = profile.getCategoryCounts().get(name);
+                }
+            }
+            Map<Long, Integer> cities = profile != null ? new TreeMap<>(profile.getCityCounts()) : Map.of();
+            cityIds = new long[cities.size()];
+            cityCounts = new int[cities.size()];
+            int c = 0;
+            for (Map.Entry<Long, Integer> city : cities.entrySet()) {
+                cityIds[c] = city.getKey();
+                cityCounts[c] = city.getValue();
+                c++;
+            }
+
+            historyCount = profile != null ? profile.getReservationCount() : 0;
+            priceCount = profile != null ? profile.getPriceCount() : 0;
+            priceMean = profile != null ? profile.getPriceMean() : 0.0;
+            priceStdDev = priceCount > 0 ? Math.sqrt(profile.getPriceM2() / priceCount) : 0.0;
+        }
+
+        /**
+         * Estimated number of reserved events priced within the tolerance of the given price.
+         * Only the mean and variance of their prices are kept, so the prices are taken as normally distributed.
+         */
+        double countPricesWithin(double price, double tolerance) {
+            if (priceCount == 0) {
+                return 0.0;
+            }
+            if (priceStdDev == 0.0) {
+                return Math.abs(price - priceMean) <= tolerance ? priceCount : 0.0;
+            }
+            double share = normalCdf((price + tolerance - priceMean) / priceStdDev)
+                    - normalCdf((price - tolerance - priceMean) / priceStdDev);
+            return share * priceCount;
+        }
+    }
     
     /**
-     * Get upcoming events (events in the future)
+     * Get one keyset page of upcoming events (ACTIVE or FULL, from today on)
+     * @return Page of upcoming event summaries with the cursor of the next page
      */
-    public List<Event> getUpcomingEvents() {
-        // Get all events
-        List<Event> allEvents = eventRepository.findAll();
-        
-        // Update and save status for all events
-        allEvents.forEach(this::updateAndSaveEventStatus);
-        
-        // Filter to exclude INACTIVE events (past events)
-        return allEvents.stream()
-                .filter(event -> event.getStatus() != EventStatus.INACTIVE)
-                .collect(Collectors.toList());
+    public EventPage<EventSummary> getUpcomingEvents(Collection<String> categories, String search,
+                                              Double minPrice, Double maxPrice, Long cityId, String country,
+                                              LocalDate dateFrom, LocalDate dateTo, String cursor, Integer limit) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = dateFrom == null || dateFrom.isBefore(today) ? today : dateFrom;
+        // Identical concurrent requests (e.g. the home page) share one query
+        return requestCoalescer.execute("upcoming",
+                Arrays.asList(categories, search, minPrice, maxPrice, cityId, country, from, dateTo, cursor, limit),
+                () -> getEventsPage(categories, search, minPrice, maxPrice, cityId, country, from, dateTo,
+                        EnumSet.of(EventStatus.ACTIVE, EventStatus.FULL), cursor, limit));
     }
 
     /**
-     * Get available upcoming events (excluding FULL and UNACTIVE events)
-     * @return List of active events with available capacity
+     * Count upcoming events (ACTIVE or FULL, from today on) by category and by city with two grouped queries
+     * @return Counts of the categories and cities that have upcoming events
      */
-    private List<Event> getAvailableUpcomingEvents() {
-        // Get all upcoming events - already updates statuses
-        List<Event> upcomingEvents = getUpcomingEvents();
-        
-        // Filter out FULL events
-        return upcomingEvents.stream()
-                .filter(event -> event.getStatus() != EventStatus.FULL)
-                .collect(Collectors.toList());
+    public UpcomingEventCounts getUpcomingEventCounts() {
+        LocalDate today = LocalDate.now();
+        Collection<EventStatus> statuses = EnumSet.of(EventStatus.ACTIVE, EventStatus.FULL);
+        return requestCoalescer.execute("upcoming-counts", List.of(today), () -> {
+            Map<String, Integer> categories = new LinkedHashMap<>();
+            for (Object[] row : eventRepository.countByCategory(statuses, today)) {
+                categories.put((String) row[0], ((Number) row[1]).intValue());
+            }
+            return new UpcomingEventCounts(categories, eventRepository.countByCity(statuses, today));
+        });
+    }
+
+    /**
+     * Get one page of upcoming events (ACTIVE or FULL) near a point, nearest first.
+     * Searches either a radius around the point or a bounding box (all four edges given), e.g. the visible map;
+     * distances in a box are measured from the point if given, otherwise from the box's centre.
+     * Localities are found by the in-memory spatial index, the database only lists their events:
+     * nearest localities first, each query limited to the rows still missing from the page.
+     * @param radiusKm Search radius, DEFAULT_NEARBY_RADIUS_KM if null (not used with a box)
+     * @param days Events from today to today + days are included, DEFAULT_NEARBY_DAYS if null
+     * @param cursor Cursor returned with the previous page of the same search, null for the first page
+     * @param limit Requested page size, clamped to MAX_PAGE_SIZE
+     * @return Page of events ordered by distance, date, time and id with the cursor of the next page
+     * @throws IllegalArgumentException If the location, radius, box, days or cursor is invalid
+     */
+    public EventPage<NearbyEvent> getNearbyEvents(Double longitude, Double latitude, Double radiusKm,
+                                                  Double minLatitude, Double maxLatitude,
+                                                  Double minLongitude, Double maxLongitude,
+                                                  Integer days, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        NearbyCursor after = NearbyCursor.decode(cursor);
+        int dayCount = days == null ? DEFAULT_NEARBY_DAYS : days;
+        if (dayCount < 0 || dayCount > MAX_NEARBY_DAYS) {
+            throw new IllegalArgumentException("days must be between 0 and " + MAX_NEARBY_DAYS);
+        }
+        if ((longitude == null) != (latitude == null)) {
+            throw new IllegalArgumentException("latitude and longitude must be given together");
+        }
+        if (latitude != null) {
+            checkCoordinates(latitude, longitude);
+        }
+
+        List<LocalitySpatialIndex.Hit> localities;
+        if (minLatitude != null || maxLatitude != null || minLongitude != null || maxLongitude != null) {
+            if (minLatitude == null || maxLatitude == null || minLongitude == null || maxLongitude == null) {
+                throw new IllegalArgumentException("minLatitude, maxLatitude, minLongitude and maxLongitude must be given together");
+            }
+            checkCoordinates(minLatitude, minLongitude);
+            checkCoordinates(maxLatitude, maxLongitude);
+            if (minLatitude > maxLatitude) {
+                throw new IllegalArgumentException("minLatitude must not be greater than maxLatitude");
+            }
+            double fromLatitude = latitude != null ? latitude : (minLatitude + maxLatitude) / 2;
+            double fromLongitude;
+            if (longitude != null) {
+                fromLongitude = longitude;
+            } else if (minLongitude <= maxLongitude) {
+                fromLongitude = (minLongitude + maxLongitude) / 2;
+            } else {
+                // Box across the antimeridian
+                double centre = (minLongitude + maxLongitude + 360.0) / 2;
+                fromLongitude = centre > 180.0 ? centre - 360.0 : centre;
+            }
+            localities = localitySpatialIndex.findInBox(minLatitude, maxLatitude, minLongitude, maxLongitude,
+                    fromLongitude, fromLatitude);
+        } else {
+            if (latitude == null) {
+                throw new IllegalArgumentException("latitude and longitude (or a bounding box) are required");
+            }
+            double radius = radiusKm != null ? radiusKm : DEFAULT_NEARBY_RADIUS_KM;
+            if (!(radius > 0 && radius <= MAX_NEARBY_RADIUS_KM)) {
+                throw new IllegalArgumentException("radiusKm must be greater than 0 and at most " + MAX_NEARBY_RADIUS_KM);
+            }
+            localities = localitySpatialIndex.findWithin(longitude, latitude, radius);
+        }
+        if (localities.isEmpty()) {
+            return new EventPage<>(List.of(), null);
+        }
+
+        // Localities at the same distance (in meters) form one group; the hits come nearest first
+        List<List<LocalitySpatialIndex.Hit>> groups = new ArrayList<>();
+        long groupDistance = -1;
+        for (LocalitySpatialIndex.Hit hit : localities) {
+            long distance = Math.round(hit.distanceKm() * 1000);
+            // Groups nearer than the cursor were returned by the previous pages
+            if (after != null && distance < after.getDistanceMeters()) {
+                continue;
+            }
+            if (distance != groupDistance) {
+                groups.add(new ArrayList<>());
+                groupDistance = distance;
+            }
+            groups.get(groups.size() - 1).add(hit);
+        }
+
+        // Fetch one extra place to know whether another page exists
+        NearbyPlaceQuery query = new NearbyPlaceQuery(LocalDate.now(), dayCount);
+        int wanted = pageSize + 1;
+        List<NearbyPlace> ordered = new ArrayList<>();
+        int next = 0;
+        if (after != null && !groups.isEmpty()
+                && distanceMeters(groups.get(0).get(0)) == after.getDistanceMeters()) {
+            // The rest of the cursor's group continues after its (date, time, id)
+            ordered.addAll(query.fetch(groups.get(0), after, wanted));
+            next = 1;
+        }
+        while (ordered.size() < wanted && next < groups.size()) {
+            int end = next;
+            int size = 0;
+            while (end < groups.size() && (end == next || size + groups.get(end).size() <= NEARBY_RING_SIZE)) {
+                size += groups.get(end).size();
+                end++;
+            }
+            ordered.addAll(query.fetchRing(groups.subList(next, end), wanted - ordered.size()));
+            next = end;
+        }
+        boolean hasMore = ordered.size() > pageSize;
+        List<NearbyPlace> page = hasMore ? ordered.subList(0, pageSize) : ordered;
+
+        Map<Long, EventSummary> summaries = new HashMap<>();
+        if (!page.isEmpty()) {
+            eventRepository.findSummariesByIds(page.stream().map(NearbyPlace::eventId).collect(Collectors.toList()))
+                    .forEach(summary -> summaries.put(summary.getId(), summary));
+        }
+        List<NearbyEvent> items = new ArrayList<>();
+        for (NearbyPlace place : page) {
+            EventSummary summary = summaries.get(place.eventId());
+            // Deleted in the meantime
+            if (summary != null) {
+                items.add(new NearbyEvent(summary, place.locality().localityId(), place.locality().latitude(),
+                        place.locality().longitude(), place.distanceMeters() / 1000.0));
+            }
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            NearbyPlace lastOnPage = page.get(page.size() - 1);
+            nextCursor = new NearbyCursor(lastOnPage.distanceMeters(), lastOnPage.eventDate(), lastOnPage.startTime(),
+                    lastOnPage.eventId()).encode();
+        }
+        return new EventPage<>(items, nextCursor);
+    }
+
+    private static void checkCoordinates(double latitude, double longitude) {
+        if (latitude < -90.0 || latitude > 90.0 || longitude < -180.0 || longitude > 180.0) {
+            throw new IllegalArgumentException("Latitude must be between -90 and 90, longitude between -180 and 180");
+        }
+    }
+
+    // Order of geo search results, the keyset of NearbyCursor
+    private static final Comparator<NearbyPlace> NEARBY_ORDER = Comparator.comparingLong(NearbyPlace::distanceMeters)
+            .thenComparing(NearbyPlace::eventDate)
+            .thenComparing(NearbyPlace::startTime)
+            .thenComparingLong(NearbyPlace::eventId);
+
+    private static long distanceMeters(LocalitySpatialIndex.Hit locality) {
+        return Math.round(locality.distanceKm() * 1000);
+    }
+
+    /**
+     * Reads the events of locality groups (localities at the same distance) in the order of NEARBY_ORDER
+     */
+    private final class NearbyPlaceQuery {
+        private final LocalDate from;
+        private final LocalDate to;
+
+        NearbyPlaceQuery(LocalDate today, int dayCount) {
+            this.from = today;
+            this.to = today.plusDays(dayCount);
+        }
+
+        /**
+         * Up to limit events of consecutive groups. A ring whose events all fit into the limit is read
+         * with one query; a larger one is split, because a query can only order by date, not by distance.
+         */
+        List<NearbyPlace> fetchRing(List<List<LocalitySpatialIndex.Hit>> ring, int limit) {
+            if (ring.size() == 1) {
+                return fetch(ring.get(0), null, limit);
+            }
+            List<LocalitySpatialIndex.Hit> localities = ring.stream().flatMap(List::stream).toList();
+            List<NearbyPlace> places = fetch(localities, null, limit);
+            if (places.size() < limit) {
+                places.sort(NEARBY_ORDER);
+                return places;
+            }
+            List<NearbyPlace> nearer = fetchRing(ring.subList(0, ring.size() / 2), limit);
+            if (nearer.size() < limit) {
+                nearer.addAll(fetchRing(ring.subList(ring.size() / 2, ring.size()), limit - nearer.size()));
+            }
+            return nearer;
+        }
+
+        // Up to limit events of the localities ordered by date, time and id (after the cursor if given)
+        List<NearbyPlace> fetch(List<LocalitySpatialIndex.Hit> localities, NearbyCursor after, int limit) {
+            Map<Long, LocalitySpatialIndex.Hit> localityById = new HashMap<>();
+            localities.forEach(hit -> localityById.put(hit.localityId(), hit));
+            List<Object[]> rows = eventRepository.findPlacePageByLocalityIds(localityById.keySet(),
+                    EnumSet.of(EventStatus.ACTIVE, EventStatus.FULL), from, to,
+                    after != null ? after.getEventDate() : null,
+                    after != null ? after.getStartTime() : null,
+                    after != null ? after.getId() : null,
+                    PageRequest.of(0, limit));
+            List<NearbyPlace> places = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                LocalitySpatialIndex.Hit locality = localityById.get((Long) row[1]);
+                places.add(new NearbyPlace((Long) row[0], locality, distanceMeters(locality),
+                        (LocalDate) row[2], (LocalTime) row[3]));
+            }
+            return places;
+        }
+    }
+
+    /**
+     * Event found by a geo search, distance rounded to meters
+     */
+    private record NearbyPlace(long eventId, LocalitySpatialIndex.Hit locality, long distanceMeters,
+                               LocalDate eventDate, LocalTime startTime) {
     }
 }
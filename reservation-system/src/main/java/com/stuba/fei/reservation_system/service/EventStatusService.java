@@ -2,38 +2,198 @@ package com.stuba.fei.reservation_system.service;
 
 import com.stuba.fei.reservation_system.model.Event;
 import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
 import com.stuba.fei.reservation_system.repository.EventRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Logger;
 
+/**
+ * Time-driven event status engine.
+ * Keeps upcoming event start times in a time-ordered index and arms a single timer
+ * for the earliest one, so ACTIVE/FULL events are switched to INACTIVE exactly when they start.
+ * FULL/ACTIVE changes only when reservations or capacity change, never on reads.
+ */
 @Service
 public class EventStatusService {
+    private static final Logger logger = Logger.getLogger(EventStatusService.class.getName());
+    private static final long RETRY_DELAY_SECONDS = 30;
 
     @Autowired
     private EventRepository eventRepository;
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    // Upcoming starts ordered by time, plus the reverse lookup used for rescheduling
+    private final NavigableSet<StartEntry> startIndex = new ConcurrentSkipListSet<>();
+    private final Map<Long, LocalDateTime> trackedStarts = new ConcurrentHashMap<>();
+
+    private ScheduledFuture<?> nextRun;
+    private LocalDateTime nextRunAt;
 
     /**
-     * Update all event statuses and return the count of updated events
-     * 
+     * Bring all statuses up to date and build the start time index.
+     * Called once on application startup.
+     *
      * @return The number of events whose status was updated
      */
-    @Transactional
-    public int updateAllEventStatuses() {
-        List<Event> allEvents = eventRepository.findAll();
-        int updatedCount = 0;
-
-        for (Event event : allEvents) {
-            EventStatus oldStatus = event.getStatus();
-            event.updateStatus();
-            if (oldStatus != event.getStatus()) {
-                eventRepository.save(event);
-                updatedCount++;
-            }
+    public int initialize() {
+        LocalDateTime now = LocalDateTime.now();
+        int updatedCount = eventRepository.deactivateStartedBefore(
+                now.toLocalDate(), now.toLocalTime(), EventStatus.INACTIVE);
+        // Reconcile the seat counters with the reservation table before deriving FULL/ACTIVE from them
+        eventRepository.recountSeats(ReservationStatus.CONFIRMED, ReservationStatus.PENDING);
+        updatedCount += refreshAllCapacityStatuses();
+
+        startIndex.clear();
+        trackedStarts.clear();
+        for (Object[] row : eventRepository.findStartsByStatusNot(EventStatus.INACTIVE)) {
+            addToIndex((Long) row[0], LocalDateTime.of((LocalDate) row[1], (LocalTime) row[2]));
         }
-        
+        rearm();
         return updatedCount;
     }
+
+    /**
+     * Register a new or updated event in the start time index.
+     * Events that already started are switched to INACTIVE on the entity (caller saves it).
+     * @param event The event after its date/time have been set
+     */
+    public void track(Event event) {
+        if (event.getEventDate() == null || event.getStartTime() == null) {
+            return;
+        }
+        LocalDateTime start = LocalDateTime.of(event.getEventDate(), event.getStartTime());
+        if (!start.isAfter(LocalDateTime.now())) {
+            event.setStatus(EventStatus.INACTIVE);
+        }
+        if (event.getId() == null) {
+            return;
+        }
+        removeFromIndex(event.getId());
+        if (event.getStatus() != EventStatus.INACTIVE) {
+            addToIndex(event.getId(), start);
+        }
+        rearm();
+    }
+
+    /**
+     * Remove an event from the start time index (e.g. when it is deleted)
+     */
+    public void untrack(Long eventId) {
+        removeFromIndex(eventId);
+        rearm();
+    }
+
+    /**
+     * Recompute FULL/ACTIVE for one event after a capacity change.
+     * Reservations switch FULL/ACTIVE themselves through EventRepository.takeSeat/releaseSeat.
+     * @param eventId The event ID
+     */
+    public void refreshCapacityStatus(Long eventId) {
+        eventRepository.refreshCapacityStatus(eventId, EventStatus.FULL, EventStatus.ACTIVE, EventStatus.INACTIVE);
+    }
+
+    private int refreshAllCapacityStatuses() {
+        return eventRepository.refreshCapacityStatus(null, EventStatus.FULL, EventStatus.ACTIVE, EventStatus.INACTIVE);
+    }
+
+    /**
+     * Switch every indexed event whose start time has been reached to INACTIVE and arm the timer
+     * for the next start time.
+     */
+    void deactivateStartedEvents() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> startedIds = new ArrayList<>();
+        StartEntry head;
+        while ((head = startIndex.isEmpty() ? null : startIndex.first()) != null && !head.startAt.isAfter(now)) {
+            if (startIndex.remove(head)) {
+                trackedStarts.remove(head.eventId, head.startAt);
+                startedIds.add(head.eventId);
+            }
+        }
+
+        if (!startedIds.isEmpty()) {
+            try {
+                int updated = eventRepository.deactivateByIds(startedIds, EventStatus.INACTIVE);
+                logger.info("Event status engine: " + updated + " events switched to INACTIVE");
+            } catch (RuntimeException e) {
+                // Put the entries back and try again a bit later
+                logger.severe("Event status engine: failed to deactivate events " + startedIds + ": " + e.getMessage());
+                startedIds.forEach(id -> addToIndex(id, now));
+                scheduleAt(now.plusSeconds(RETRY_DELAY_SECONDS));
+                return;
+            }
+        }
+        rearm();
+    }
+
+    /**
+     * Make sure exactly one timer is armed for the earliest start time in the index
+     */
+    private synchronized void rearm() {
+        LocalDateTime earliest = startIndex.isEmpty() ? null : startIndex.first().startAt;
+        if (earliest == null) {
+            cancelTimer();
+            return;
+        }
+        if (earliest.equals(nextRunAt) && nextRun != null && !nextRun.isDone()) {
+            return;
+        }
+        scheduleAt(earliest);
+    }
+
+    private synchronized void scheduleAt(LocalDateTime runAt) {
+        cancelTimer();
+        nextRunAt = runAt;
+        nextRun = taskScheduler.schedule(this::deactivateStartedEvents,
+                runAt.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private void cancelTimer() {
+        if (nextRun != null) {
+            nextRun.cancel(false);
+        }
+        nextRun = null;
+        nextRunAt = null;
+    }
+
+    private void addToIndex(Long eventId, LocalDateTime startAt) {
+        LocalDateTime previous = trackedStarts.put(eventId, startAt);
+        if (previous != null) {
+            startIndex.remove(new StartEntry(previous, eventId));
+        }
+        startIndex.add(new StartEntry(startAt, eventId));
+    }
+
+    private void removeFromIndex(Long eventId) {
+        LocalDateTime previous = trackedStarts.remove(eventId);
+        if (previous != null) {
+            startIndex.remove(new StartEntry(previous, eventId));
+        }
+    }
+
+    /**
+     * Entry of the start time index, ordered by start time and then by event ID
+     */
+    private record StartEntry(LocalDateTime startAt, Long eventId) implements Comparable<StartEntry> {
+        @Override
+        public int compareTo(StartEntry other) {
+            int byTime = startAt.compareTo(other.startAt);
+            return byTime != 0 ? byTime : eventId.compareTo(other.eventId);
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package com.stuba.fei.reservation_system.service;
+
+/**
+ * Distance scoring of a block of candidates at once.
+ * Event coordinates are stored as 3D unit vectors (see {@link EventFeatureStore.Columns}), so the distance to
+ * the visitor is a squared chord computed with multiplications and additions only - a plain loop over the
+ * columns that the JIT compiles to SIMD instructions. The great-circle distance (one asin) is only needed for
+ * candidates in the band where the score falls from 1 to 0, the thresholds are compared as squared chords.
+ */
+final class GeoDistanceKernel {
+    // Candidates scored per call, the chord buffer stays in the L1 cache
+    static final int BLOCK_SIZE = 512;
+
+    // Full score within 5 km, scaled down to 0 at 15 km
+    private static final double FULL_SCORE_KM = 5.0;
+    private static final double ZERO_SCORE_KM = 15.0;
+    private static final double FULL_SCORE_CHORD_SQUARED = squaredChord(FULL_SCORE_KM);
+    private static final double ZERO_SCORE_CHORD_SQUARED = squaredChord(ZERO_SCORE_KM);
+
+    private GeoDistanceKernel() {
+    }
+
+    /**
+     * @return Unit vector of the location, as stored in the feature columns
+     */
+    static double[] toVector(double latitude, double longitude) {
+        return GeoKdTree.toVector(latitude, longitude);
+    }
+
+    /**
+     * Squared chord distances between the query and the rows from (inclusive) to (exclusive)
+     * @param query Unit vector of the visitor's location
+     * @param out Receives the distance of row from + k at index k, NaN for events without a location
+     */
+    static void squaredChords(EventFeatureStore.Columns features, int from, int to, double[] query, double[] out) {
+        double qx = query[0];
+        double qy = query[1];
+        double qz = query[2];
+        double[] x = features.x;
+        double[] y = features.y;
+        double[] z = features.z;
+        int n = to - from;
+        for (int k = 0; k < n; k++) {
+            double dx = qx - x[from + k];
+            double dy = qy - y[from + k];
+            double dz = qz - z[from + k];
+            out[k] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * Like squaredChords for a range of rows, for the rows listed in rows[from] to rows[to - 1]
+     */
+    static void squaredChords(EventFeatureStore.Columns features, int[] rows, int from, int to,
+                              double[] query, double[] out) {
+        double qx = query[0];
+        double qy = query[1];
+        double qz = query[2];
+        for (int r = from; r < to; r++) {
+            int i = rows[r];
+            double dx = qx - features.x[i];
+            double dy = qy - features.y[i];
+            double dz = qz - features.z[i];
+            out[r - from] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * @param squaredChord Distance from squaredChords
+     * @return 1.0 within 5 km, scaled down to 0 at 15 km, 0 further away or without a location
+     */
+    static double distanceScore(double squaredChord) {
+        // false for NaN
+        if (!(squaredChord < ZERO_SCORE_CHORD_SQUARED)) {
+            return 0.0;
+        }
+        if (squaredChord <= FULL_SCORE_CHORD_SQUARED) {
+            return 1.0;
+        }
+        return 1.0 - ((distanceKm(squaredChord) - FULL_SCORE_KM) / (ZERO_SCORE_KM - FULL_SCORE_KM));
+    }
+
+    /**
+     * @return Great-circle distance in kilometers
+     */
+    static double distanceKm(double squaredChord) {
+        return 2.0 * GeoKdTree.EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(squaredChord) / 2.0));
+    }
+
+    private static double squaredChord(double distanceKm) {
+        double chord = 2.0 * Math.sin(distanceKm / (2.0 * GeoKdTree.EARTH_RADIUS_KM));
+        return chord * chord;
+    }
+}
@@ -0,0 +1,177 @@
+package com.stuba.fei.reservation_system.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable k-d tree over points on the Earth's surface.
+ * Points are stored as 3D unit vectors, where the straight-line (chord) distance grows with the
+ * great-circle distance, so nearest-neighbour and radius queries need no trigonometry per node and
+ * work across the antimeridian. The tree is implicit: the node of range [lo, hi) is its middle element.
+ */
+final class GeoKdTree {
+    static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final long[] ids;
+
+    /**
+     * @param ids Point ids (e.g. city ids)
+     * @param latitudes Latitudes in degrees, same order as ids
+     * @param longitudes Longitudes in degrees, same order as ids
+     */
+    GeoKdTree(long[] ids, double[] latitudes, double[] longitudes) {
+        int n = ids.length;
+        this.ids = ids.clone();
+        this.x = new double[n];
+        this.y = new double[n];
+        this.z = new double[n];
+        for (int i = 0; i < n; i++) {
+            double lat = Math.toRadians(latitudes[i]);
+            double lon = Math.toRadians(longitudes[i]);
+            x[i] = Math.cos(lat) * Math.cos(lon);
+            y[i] = Math.cos(lat) * Math.sin(lon);
+            z[i] = Math.sin(lat);
+        }
+        build(0, n, 0);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return Id of the point nearest to the given coordinates, or -1 if the tree is empty
+     */
+    long nearest(double latitude, double longitude) {
+        if (ids.length == 0) {
+            return -1;
+        }
+        double[] query = toVector(latitude, longitude);
+        // best[0] = squared chord distance, best[1] = index of the point
+        double[] best = {Double.MAX_VALUE, -1};
+        nearest(query, 0, ids.length, 0, best);
+        return ids[(int) best[1]];
+    }
+
+    /**
+     * @return Ids of all points within the given great-circle distance
+     */
+    List<Long> withinRadius(double latitude, double longitude, double radiusKm) {
+        List<Long> result = new ArrayList<>();
+        if (ids.length == 0 || radiusKm < 0) {
+            return result;
+        }
+        double[] query = toVector(latitude, longitude);
+        double chord = radiusKm >= Math.PI * EARTH_RADIUS_KM
+                ? 2.0 : 2.0 * Math.sin(radiusKm / (2.0 * EARTH_RADIUS_KM));
+        withinRadius(query, chord * chord, 0, ids.length, 0, result);
+        return result;
+    }
+
+    private void nearest(double[] query, int lo, int hi, int depth, double[] best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double distance = squaredDistance(query, mid);
+        if (distance < best[0]) {
+            best[0] = distance;
+            best[1] = mid;
+        }
+        double diff = query[depth % 3] - coordinate(mid, depth % 3);
+        // Search the side of the query first, the other side only if the splitting plane is closer than the best match
+        if (diff < 0) {
+            nearest(query, lo, mid, depth + 1, best);
+            if (diff * diff < best[0]) {
+                nearest(query, mid + 1, hi, depth + 1, best);
+            }
+        } else {
+            nearest(query, mid + 1, hi, depth + 1, best);
+            if (diff * diff < best[0]) {
+                nearest(query, lo, mid, depth + 1, best);
+            }
+        }
+    }
+
+    private void withinRadius(double[] query, double maxSquared, int lo, int hi, int depth, List<Long> result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (squaredDistance(query, mid) <= maxSquared) {
+            result.add(ids[mid]);
+        }
+        double diff = query[depth % 3] - coordinate(mid, depth % 3);
+        if (diff < 0 || diff * diff <= maxSquared) {
+            withinRadius(query, maxSquared, lo, mid, depth + 1, result);
+        }
+        if (diff >= 0 || diff * diff <= maxSquared) {
+            withinRadius(query, maxSquared, mid + 1, hi, depth + 1, result);
+        }
+    }
+
+    // Place the median of [lo, hi) on the current axis in the middle, smaller points left of it, then recurse
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, depth % 3);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    // Quickselect: after the call, element k is the one that would be there if [left, right] was sorted by the axis
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = coordinate((left + right) >>> 1, axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(i, axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double coordinate(int index, int axis) {
+        return axis == 0 ? x[index] : axis == 1 ? y[index] : z[index];
+    }
+
+    private double squaredDistance(double[] query, int index) {
+        double dx = query[0] - x[index];
+        double dy = query[1] - y[index];
+        double dz = query[2] - z[index];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void swap(int a, int b) {
+        double t = x[a]; x[a] = x[b]; x[b] = t;
+        t = y[a]; y[a] = y[b]; y[b] = t;
+        t = z[a]; z[a] = z[b]; z[b] = t;
+        long id = ids[a]; ids[a] = ids[b]; ids[b] = id;
+    }
+
+    static double[] toVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        return new double[] {Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+    }
+}
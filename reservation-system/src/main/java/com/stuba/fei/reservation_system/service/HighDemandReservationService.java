@@ -0,0 +1,426 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.ReservationResponse;
+import com.stuba.fei.reservation_system.handler.TemporarilyUnavailableException;
+import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Reservation;
+import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import com.stuba.fei.reservation_system.repository.users.RegisteredUserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in high-demand mode for events with a lot of concurrent reservations.
+ * Remaining seats of a high-demand event are held in memory in a StripedSeatCounter, so reservations
+ * are admitted or rejected without touching the event row. Admitted reservations are persisted
+ * in batches by a write-behind queue and the confirmedCount counter follows with every batch.
+ * The database stays the source of truth - the inventory is rebuilt from it on startup
+ * and whenever the mode is enabled.
+ * An inventory is closed before it is rebuilt or dropped: closing waits for the admissions in progress, so every
+ * admitted reservation is in the write-behind queue before the flush that precedes the rebuild. The flush
+ * itself never raises confirmedCount above the capacity, reservations that would are rejected and counted.
+ */
+@Service
+public class HighDemandReservationService {
+    private static final Logger logger = Logger.getLogger(HighDemandReservationService.class.getName());
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private final EventRepository eventRepository;
+    private final ReservationRepository reservationRepository;
+    private final RegisteredUserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EventFeatureStore eventFeatureStore;
+    private final SuggestionCache suggestionCache;
+    private final UserTasteProfileService userTasteProfileService;
+
+    private final Map<Long, Inventory> inventories = new ConcurrentHashMap<>();
+    private final Queue<PendingReservation> writeBehindQueue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() is O(n), so the queue length is tracked separately
+    private final AtomicInteger queuedCount = new AtomicInteger();
+
+    private final Counter admittedCounter;
+    private final Counter soldOutCounter;
+    private final Counter duplicateCounter;
+    private final Counter closedCounter;
+    private final Counter persistedCounter;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final Timer admissionTimer;
+
+    public HighDemandReservationService(EventRepository eventRepository,
+                                        ReservationRepository reservationRepository,
+                                        RegisteredUserRepository userRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        EventFeatureStore eventFeatureStore,
+                                        SuggestionCache suggestionCache,
+                                        UserTasteProfileService userTasteProfileService,
+                                        MeterRegistry meterRegistry) {
+        this.eventRepository = eventRepository;
+        this.reservationRepository = reservationRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Write-behind batches never join (and never roll back with) a caller's transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventFeatureStore = eventFeatureStore;
+        this.suggestionCache = suggestionCache;
+        this.userTasteProfileService = userTasteProfileService;
+
+        this.admittedCounter = admissions(meterRegistry, "admitted");
+        this.soldOutCounter = admissions(meterRegistry, "sold_out");
+        this.duplicateCounter = admissions(meterRegistry, "duplicate");
+        this.closedCounter = admissions(meterRegistry, "closed");
+        this.persistedCounter = Counter.builder("reservations.high_demand.persisted")
+                .description("Admitted reservations written to the database")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("reservations.high_demand.dropped")
+                .description("Admitted reservations that could not be persisted")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("reservations.high_demand.rejected")
+                .description("Admitted reservations refused by the capacity check of the flush")
+                .register(meterRegistry);
+        this.admissionTimer = Timer.builder("reservations.high_demand.admission")
+                .description("Time to admit or reject a reservation of a high-demand event")
+                .register(meterRegistry);
+        Gauge.builder("reservations.high_demand.queue", queuedCount, AtomicInteger::get)
+                .description("Admitted reservations waiting for the write-behind flush")
+                .register(meterRegistry);
+        Gauge.builder("reservations.high_demand.events", inventories, Map::size)
+                .description("Events currently in high-demand mode")
+                .register(meterRegistry);
+    }
+
+    private static Counter admissions(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("reservations.high_demand.admissions")
+                .description("Reservation attempts of high-demand events by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if reservations of the event are admitted from the in-memory inventory
+     */
+    public boolean isHighDemand(Long eventId) {
+        return inventories.containsKey(eventId);
+    }
+
+    /**
+     * @return Remaining seats of a high-demand event, or null if the event is not in high-demand mode
+     */
+    public Integer getRemainingSeats(Long eventId) {
+        Inventory inventory = inventories.get(eventId);
+        return inventory != null ? inventory.seats.remaining() : null;
+    }
+
+    /**
+     * Admit or reject a reservation of a high-demand event. Admission works only with memory,
+     * the reservation is persisted later by {@link #flush()}.
+     * @param eventId The event ID
+     * @param username Username of the logged user
+     * @return Response of the admitted reservation, with a null ID and queued set - the reservation is listed
+     * among the user's reservations with its ID once the write-behind flush stores it
+     * @throws TemporarilyUnavailableException If the inventory of the event is being rebuilt, the request can be retried
+     * @throws RuntimeException If the event is full, already started or the user already has a reservation
+     */
+    public ReservationResponse reserve(Long eventId, String username) {
+        long started = System.nanoTime();
+        try {
+            return admit(eventId, username);
+        } finally {
+            admissionTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ReservationResponse admit(Long eventId, String username) {
+        Inventory inventory = inventories.get(eventId);
+        if (inventory == null) {
+            throw new TemporarilyUnavailableException("Reservations for this event are being updated, please try again");
+        }
+        // Held until the reservation is queued, so a closed inventory has no admission in progress
+        inventory.lock.readLock().lock();
+        try {
+            if (inventory.closed) {
+                throw new TemporarilyUnavailableException("Reservations for this event are being updated, please try again");
+            }
+            LocalDateTime now = LocalDateTime.now();
+            if (!now.isBefore(inventory.startAt)) {
+                closedCounter.increment();
+                throw new RuntimeException("Cannot reserve an inactive event");
+            }
+            if (!inventory.holders.add(username)) {
+                duplicateCounter.increment();
+                throw new RuntimeException("You already have a reservation for this event");
+            }
+            if (!inventory.seats.tryAcquire()) {
+                inventory.holders.remove(username);
+                soldOutCounter.increment();
+                throw new RuntimeException("Event is fully booked");
+            }
+
+            writeBehindQueue.add(new PendingReservation(eventId, username, now));
+            queuedCount.incrementAndGet();
+            admittedCounter.increment();
+
+            Reservation reservation = new Reservation();
+            reservation.setEvent(inventory.event);
+            reservation.setReservationDate(now);
+            ReservationResponse response = ReservationResponse.fromReservation(reservation);
+            response.setQueued(true);
+            return response;
+        } finally {
+            inventory.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Give a seat back to the inventory after a persisted reservation was cancelled or deleted
+     * @param eventId The event ID
+     * @param username Username of the reservation owner
+     */
+    public void onSeatReleased(Long eventId, String username) {
+        Inventory inventory = inventories.get(eventId);
+        if (inventory != null && inventory.holders.remove(username)) {
+            inventory.seats.release();
+        }
+    }
+
+    /**
+     * Switch an event to high-demand mode and build its inventory from the database
+     * @param eventId The event ID
+     */
+    public synchronized void enable(Long eventId) {
+        close(eventId);
+        flush();
+        // Setting the flag locks the event row, so the counter read afterwards includes every seat
+        // taken through the regular path (which refuses high-demand events from now on)
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.updateHighDemand(eventId, true);
+            load(eventId);
+        });
+    }
+
+    /**
+     * Persist pending reservations of the event and switch it back to regular reservations
+     * @param eventId The event ID
+     */
+    public synchronized void disable(Long eventId) {
+        close(eventId);
+        flush();
+        eventRepository.updateHighDemand(eventId, false);
+    }
+
+    /**
+     * Rebuild the inventory of a high-demand event after its capacity or start time changed
+     * @param eventId The event ID
+     */
+    public synchronized void reload(Long eventId) {
+        close(eventId);
+        flush();
+        transactionTemplate.executeWithoutResult(status -> load(eventId));
+    }
+
+    /**
+     * Drop the inventory and pending reservations of a deleted event
+     * @param eventId The event ID
+     */
+    public synchronized void discard(Long eventId) {
+        close(eventId);
+        Iterator<PendingReservation> iterator = writeBehindQueue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().eventId.equals(eventId)) {
+                iterator.remove();
+                queuedCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Rebuild the inventories of all upcoming high-demand events. Called once on application startup.
+     * @return The number of recovered events
+     */
+    public synchronized int recover() {
+        inventories.keySet().forEach(this::close);
+        List<Long> eventIds = eventRepository.findHighDemandEventIds(EventStatus.INACTIVE);
+        transactionTemplate.executeWithoutResult(status -> eventIds.forEach(this::load));
+        return eventIds.size();
+    }
+
+    // Remove the inventory and wait for the admissions in progress; later ones see it closed
+    private void close(Long eventId) {
+        Inventory inventory = inventories.remove(eventId);
+        if (inventory != null) {
+            inventory.lock.writeLock().lock();
+            try {
+                inventory.closed = true;
+            } finally {
+                inventory.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void load(Long eventId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new EntityNotFoundException("Event s ID " + eventId + " neexistuje"));
+        Set<String> holders = ConcurrentHashMap.newKeySet();
+        holders.addAll(reservationRepository.findUsernamesByEventIdAndStatusNot(eventId, ReservationStatus.CANCELLED));
+        int remaining = event.getMaxCapacity() - event.getConfirmedCount() - event.getHeldCount();
+        inventories.put(eventId, new Inventory(event, LocalDateTime.of(event.getEventDate(), event.getStartTime()),
+                new StripedSeatCounter(remaining), holders));
+    }
+
+    /**
+     * Write admitted reservations to the database in batches (write-behind)
+     */
+    @Scheduled(fixedDelayString = "${reservation.high-demand.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<PendingReservation> batch;
+        while (!(batch = drain()).isEmpty()) {
+            persistBatch(batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private List<PendingReservation> drain() {
+        List<PendingReservation> batch = new ArrayList<>();
+        PendingReservation pending;
+        while (batch.size() < FLUSH_BATCH_SIZE && (pending = writeBehindQueue.poll()) != null) {
+            queuedCount.decrementAndGet();
+            batch.add(pending);
+        }
+        return batch;
+    }
+
+    private void persistBatch(List<PendingReservation> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(batch));
+            persistedCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            // One bad row (e.g. a deleted user) must not lose the whole batch
+            logger.warning("High-demand flush: batch of " + batch.size() + " failed, persisting one by one: " + e.getMessage());
+            for (PendingReservation pending : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persist(List.of(pending)));
+                    persistedCounter.increment();
+                } catch (CapacityExceededException ex) {
+                    logger.severe("High-demand flush: reservation of " + pending.username + " for event "
+                            + pending.eventId + " exceeds the capacity, rejected");
+                    rejectedCounter.increment();
+                    // No seat to give back, the user only loses the admission
+                    Inventory inventory = inventories.get(pending.eventId);
+                    if (inventory != null) {
+                        inventory.holders.remove(pending.username);
+                    }
+                } catch (RuntimeException ex) {
+                    logger.severe("High-demand flush: dropping reservation of " + pending.username
+                            + " for event " + pending.eventId + ": " + ex.getMessage());
+                    droppedCounter.increment();
+                    onSeatReleased(pending.eventId, pending.username);
+                }
+            }
+        }
+    }
+
+    private void persist(List<PendingReservation> batch) {
+        Map<String, RegisteredUser> users = userRepository.findByUsernameIn(
+                        batch.stream().map(PendingReservation::username).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(RegisteredUser::getUsername, Function.identity()));
+
+        List<Reservation> reservations = new ArrayList<>(batch.size());
+        // Sorted by event ID, so concurrent flushes lock event rows in the same order
+        Map<Long, Integer> seatsPerEvent = new TreeMap<>();
+        for (PendingReservation pending : batch) {
+            RegisteredUser user = users.get(pending.username);
+            if (user == null) {
+                throw new EntityNotFoundException("User " + pending.username + " not found");
+            }
+            Reservation reservation = new Reservation();
+            reservation.setEvent(eventRepository.getReferenceById(pending.eventId));
+            reservation.setRegisteredUser(user);
+            reservation.setReservationDate(pending.reservationDate);
+            reservations.add(reservation);
+            seatsPerEvent.merge(pending.eventId, 1, Integer::sum);
+        }
+
+        reservationRepository.saveAll(reservations);
+        users.keySet().forEach(suggestionCache::evictUser);
+        userTasteProfileService.onReserved(reservations);
+        seatsPerEvent.forEach((eventId, seats) -> {
+            if (eventRepository.addConfirmedSeats(eventId, seats, EventStatus.FULL, EventStatus.ACTIVE) == 0) {
+                // Rolls the batch back, its reservations are then persisted one by one
+                throw new CapacityExceededException(eventId);
+            }
+            eventFeatureStore.markChanged(eventId);
+        });
+    }
+
+    /**
+     * In-memory state of one high-demand event. The event is a detached copy used only for responses.
+     * Admissions hold the read lock, closing takes the write lock.
+     */
+    private static final class Inventory {
+        private final Event event;
+        private final LocalDateTime startAt;
+        private final StripedSeatCounter seats;
+        private final Set<String> holders;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        // Guarded by lock
+        private boolean closed;
+
+        Inventory(Event event, LocalDateTime startAt, StripedSeatCounter seats, Set<String> holders) {
+            this.event = event;
+            this.startAt = startAt;
+            this.seats = seats;
+            this.holders = holders;
+        }
+    }
+
+    /**
+     * The seats of a flushed batch would raise confirmedCount above the capacity of the event
+     */
+    private static final class CapacityExceededException extends RuntimeException {
+        CapacityExceededException(Long eventId) {
+            super("Seats of event " + eventId + " exceed its capacity");
+        }
+    }
+
+    /**
+     * Admitted reservation waiting for the write-behind flush
+     */
+    private record PendingReservation(Long eventId, String username, LocalDateTime reservationDate) {
+    }
+}
@@ -0,0 +1,284 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.stuba.fei.reservation_system.model.IdempotencyRecord;
+import com.stuba.fei.reservation_system.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Support for the Idempotency-Key header on POST endpoints.
+ * Successful responses are kept in a bounded LRU cache with a TTL and in the idempotency_record table,
+ * so a retried request gets the original response without running the handler again.
+ * Every response is stored with a hash of its request, a key reused for a different request is refused with 422.
+ * Concurrent duplicates of a request that is still running wait for its result.
+ */
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    private static final Logger logger = Logger.getLogger(IdempotencyService.class.getName());
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final long ttlHours;
+
+    private final Map<String, StoredResponse> cache;
+    private final Map<String, Running> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter memoryHitCounter;
+    private final Counter databaseHitCounter;
+    private final Counter missCounter;
+    private final Counter mismatchCounter;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${idempotency.cache.max-entries:10000}") int maxEntries,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.ttlHours = ttlHours;
+        // Access-ordered LinkedHashMap = LRU; the eldest entry is dropped once the bound is exceeded
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > IdempotencyService.this.maxEntries;
+            }
+        };
+
+        this.memoryHitCounter = lookups(meterRegistry, "memory_hit");
+        this.databaseHitCounter = lookups(meterRegistry, "db_hit");
+        this.missCounter = lookups(meterRegistry, "miss");
+        this.mismatchCounter = lookups(meterRegistry, "mismatch");
+        Gauge.builder("idempotency.cache.size", this, IdempotencyService::cacheSize)
+                .description("Responses kept in the in-memory idempotency cache")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("idempotency.lookups")
+                .description("Requests with an Idempotency-Key by lookup result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the handler once per Idempotency-Key of the logged user and endpoint.
+     * Only 2xx responses are stored, so a failed request can be retried with the same key.
+     * @param idempotencyKey Value of the header, or null to just run the handler
+     * @param endpoint Endpoint the key belongs to, with its path variables (e.g. "POST /api/ratings/event/5")
+     * @param request Request body, a retry has to send the same one
+     * @param handler The request handler
+     * @return The handler's response, the stored response of the original request,
+     * or 422 if the key was used for a different request
+     */
+    public ResponseEntity<?> execute(String idempotencyKey, String endpoint, Object request,
+                                     Supplier<ResponseEntity<?>> handler) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return handler.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("error", HEADER + " is too long"));
+        }
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        String scopeKey = username + "|" + endpoint + "|" + idempotencyKey;
+        String requestHash = hash(endpoint, request);
+
+        Running running = new Running(requestHash, new CompletableFuture<>());
+        while (true) {
+            StoredResponse stored = lookup(scopeKey);
+            if (stored != null) {
+                return stored.matches(requestHash) ? stored.toResponseEntity() : mismatch();
+            }
+
+            Running existing = inFlight.putIfAbsent(scopeKey, running);
+            if (existing == null) {
+                break;
+            }
+            if (!existing.requestHash.equals(requestHash)) {
+                return mismatch();
+            }
+            try {
+                // The same request is being processed right now - answer with its result
+                return existing.result.join().toResponseEntity();
+            } catch (CompletionException e) {
+                // The original request failed without a response, so nothing was stored - handle this one instead
+                logger.fine("Idempotency: original request failed, running the duplicate: " + scopeKey);
+            }
+        }
+
+        try {
+            ResponseEntity<?> response = handler.get();
+            StoredResponse result = StoredResponse.of(response, requestHash, objectMapper);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                save(scopeKey, result);
+            }
+            running.result.complete(result);
+            return response;
+        } catch (RuntimeException e) {
+            running.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(scopeKey, running);
+        }
+    }
+
+    private ResponseEntity<?> mismatch() {
+        mismatchCounter.increment();
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", HEADER + " was already used for a different request"));
+    }
+
+    // SHA-256 of the endpoint and the request body serialized with sorted map keys
+    private String hash(String endpoint, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+
+    private StoredResponse lookup(String scopeKey) {
+        StoredResponse stored;
+        synchronized (cache) {
+            stored = cache.get(scopeKey);
+            if (stored != null && stored.isExpired()) {
+                cache.remove(scopeKey);
+                stored = null;
+            }
+        }
+        if (stored != null) {
+            memoryHitCounter.increment();
+            return stored;
+        }
+
+        stored = idempotencyRecordRepository.findByScopeKey(scopeKey)
+                .filter(record -> record.getExpiresAt().isAfter(LocalDateTime.now()))
+                .map(record -> new StoredResponse(record.getStatusCode(), record.getResponseBody(), record.getRequestHash(),
+                        record.getExpiresAt()))
+                .orElse(null);
+        if (stored != null) {
+            databaseHitCounter.increment();
+            remember(scopeKey, stored);
+            return stored;
+        }
+        missCounter.increment();
+        return null;
+    }
+
+    private void save(String scopeKey, StoredResponse stored) {
+        LocalDateTime now = LocalDateTime.now();
+        StoredResponse expiring = new StoredResponse(stored.statusCode, stored.body, stored.requestHash,
+                now.plusHours(ttlHours));
+        remember(scopeKey, expiring);
+
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setScopeKey(scopeKey);
+        record.setStatusCode(expiring.statusCode);
+        record.setResponseBody(expiring.body);
+        record.setRequestHash(expiring.requestHash);
+        record.setCreatedAt(now);
+        record.setExpiresAt(expiring.expiresAt);
+        try {
+            idempotencyRecordRepository.save(record);
+        } catch (DataIntegrityViolationException e) {
+            // Stored by another instance in the meantime - the in-memory copy is equivalent
+            logger.fine("Idempotency record already exists: " + scopeKey);
+        }
+    }
+
+    private void remember(String scopeKey, StoredResponse stored) {
+        synchronized (cache) {
+            cache.put(scopeKey, stored);
+        }
+    }
+
+    private int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Delete expired records from the database once an hour
+     */
+    @Scheduled(fixedRate = 3_600_000)
+    public void purgeExpired() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Idempotency: deleted " + deleted + " expired records");
+        }
+    }
+
+    /**
+     * Request being processed and its future response
+     */
+    private record Running(String requestHash, CompletableFuture<StoredResponse> result) {
+    }
+
+    /**
+     * Response of the original request, with the body already serialized to JSON
+     */
+    private record StoredResponse(int statusCode, String body, String requestHash, LocalDateTime expiresAt) {
+
+        static StoredResponse of(ResponseEntity<?> response, String requestHash, ObjectMapper objectMapper) {
+            String body = null;
+            if (response.getBody() != null) {
+                try {
+                    body = objectMapper.writeValueAsString(response.getBody());
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Cannot serialize response", e);
+                }
+            }
+            return new StoredResponse(response.getStatusCode().value(), body, requestHash, null);
+        }
+
+        // Records stored before request hashes were kept have none and match any request
+        boolean matches(String requestHash) {
+            return this.requestHash == null || Objects.equals(this.requestHash, requestHash);
+        }
+
+        boolean isExpired() {
+            return expiresAt != null && !expiresAt.isAfter(LocalDateTime.now());
+        }
+
+        ResponseEntity<?> toResponseEntity() {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(statusCode);
+            return body == null ? builder.build() : builder.contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.stuba.fei.reservation_system.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable compressed set of non-negative ints in the layout of Roaring bitmaps: values are split by their
+ * high 16 bits into chunks, a chunk with at most 4096 values is a sorted char array, a denser one a 65536-bit
+ * bitmap. Small sets cost two bytes per value, intersections skip whole chunks and count dense ones word by word.
+ * Updates return a new set that shares every chunk except the changed one.
+ */
+final class IntBitmap {
+    static final IntBitmap EMPTY = new IntBitmap(new char[0], new Object[0], 0);
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    // High 16 bits of the chunks, sorted
+    private final char[] keys;
+    // char[] (sorted low 16 bits) or long[BITMAP_WORDS], one per key
+    private final Object[] chunks;
+    private final int cardinality;
+
+    private IntBitmap(char[] keys, Object[] chunks, int cardinality) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param values Sorted non-negative values (duplicates are ignored)
+     * @param length Number of values to take from the start of the array
+     */
+    static IntBitmap of(int[] values, int length) {
+        char[] keys = new char[Math.min(length, 1 << 16)];
+        Object[] chunks = new Object[keys.length];
+        int chunkCount = 0;
+        int cardinality = 0;
+        int start = 0;
+        while (start < length) {
+            checkValue(values[start]);
+            char key = high(values[start]);
+            int end = start;
+            while (end < length && high(values[end]) == key) {
+                end++;
+            }
+            // One chunk from values[start, end)
+            char[] array = new char[end - start];
+            int size = 0;
+            for (int v = start; v < end; v++) {
+                if (size == 0 || array[size - 1] != low(values[v])) {
+                    array[size++] = low(values[v]);
+                }
+            }
+            keys[chunkCount] = key;
+            chunks[chunkCount++] = size <= ARRAY_MAX_SIZE ? Arrays.copyOf(array, size) : toWords(Arrays.copyOf(array, size));
+            cardinality += size;
+            start = end;
+        }
+        return chunkCount == 0 ? EMPTY
+                : new IntBitmap(Arrays.copyOf(keys, chunkCount), Arrays.copyOf(chunks, chunkCount), cardinality);
+    }
+
+    /**
+     * Union of the given sets
+     */
+    static IntBitmap union(Collection<IntBitmap> bitmaps) {
+        Builder builder = new Builder();
+        for (IntBitmap bitmap : bitmaps) {
+            builder.addAll(bitmap);
+        }
+        return builder.build();
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean contains(int value) {
+        int k = Arrays.binarySearch(keys, high(value));
+        return k >= 0 && chunkContains(chunks[k], low(value));
+    }
+
+    IntBitmap with(int value) {
+        checkValue(value);
+        char key = high(value);
+        char low = low(value);
+        int k = Arrays.binarySearch(keys, key);
+        if (k < 0) {
+            int at = -k - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Object[] newChunks = new Object[chunks.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(chunks, 0, newChunks, 0, at);
+            newKeys[at] = key;
+            newChunks[at] = new char[] {low};
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(chunks, at, newChunks, at + 1, chunks.length - at);
+            return new IntBitmap(newKeys, newChunks, cardinality + 1);
+        }
+        if (chunkContains(chunks[k], low)) {
+            return this;
+        }
+        Object chunk;
+        if (chunks[k] instanceof char[] array) {
+            if (array.length < ARRAY_MAX_SIZE) {
+                int at = -Arrays.binarySearch(array, low) - 1;
+                char[] grown = new char[array.length + 1];
+                System.arraycopy(array, 0, grown, 0, at);
+                grown[at] = low;
+                System.arraycopy(array, at, grown, at + 1, array.length - at);
+                chunk = grown;
+            } else {
+                long[] words = toWords(array);
+                words[low >>> 6] |= 1L << low;
+                chunk = words;
+            }
+        } else {
+            long[] words = ((long[]) chunks[k]).clone();
+            words[low >>> 6] |= 1L << low;
+            chunk = words;
+        }
+        return replaceChunk(k, chunk, cardinality + 1);
+    }
+
+    IntBitmap without(int value) {
+        if (value < 0) {
+            return this;
+        }
+        int k = Arrays.binarySearch(keys, high(value));
+        char low = low(value);
+        if (k < 0 || !chunkContains(chunks[k], low)) {
+            return this;
+        }
+        Object chunk;
+        if (chunks[k] instanceof char[] array) {
+            if (array.length == 1) {
+                char[] newKeys = new char[keys.length - 1];
+                Object[] newChunks = new Object[chunks.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, k);
+                System.arraycopy(chunks, 0, newChunks, 0, k);
+                System.arraycopy(keys, k + 1, newKeys, k, keys.length - k - 1);
+                System.arraycopy(chunks, k + 1, newChunks, k, chunks.length - k - 1);
+                return new IntBitmap(newKeys, newChunks, cardinality - 1);
+            }
+            int at = Arrays.binarySearch(array, low);
+            char[] shrunk = new char[array.length - 1];
+            System.arraycopy(array, 0, shrunk, 0, at);
+            System.arraycopy(array, at + 1, shrunk, at, array.length - at - 1);
+            chunk = shrunk;
+        } else {
+            long[] words = ((long[]) chunks[k]).clone();
+            words[low >>> 6] &= ~(1L << low);
+            chunk = compact(words);
+        }
+        return replaceChunk(k, chunk, cardinality - 1);
+    }
+
+    /**
+     * @return Size of the intersection with the other set (without building it)
+     */
+    int andCardinality(IntBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += andCardinality(chunks[i], other.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int andCardinality(Object a, Object b) {
+        if (a instanceof long[] wordsA) {
+            if (b instanceof long[] wordsB) {
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    count += Long.bitCount(wordsA[w] & wordsB[w]);
+                }
+                return count;
+            }
+            return andCardinality((char[]) b, wordsA);
+        }
+        if (b instanceof long[] wordsB) {
+            return andCardinality((char[]) a, wordsB);
+        }
+        char[] arrayA = (char[]) a;
+        char[] arrayB = (char[]) b;
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < arrayA.length && j < arrayB.length) {
+            if (arrayA[i] < arrayB[j]) {
+                i++;
+            } else if (arrayA[i] > arrayB[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int andCardinality(char[] array, long[] words) {
+        int count = 0;
+        for (char low : array) {
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private IntBitmap replaceChunk(int k, Object chunk, int newCardinality) {
+        Object[] newChunks = chunks.clone();
+        newChunks[k] = chunk;
+        return new IntBitmap(keys, newChunks, newCardinality);
+    }
+
+    private static boolean chunkContains(Object chunk, char low) {
+        if (chunk instanceof char[] array) {
+            return Arrays.binarySearch(array, low) >= 0;
+        }
+        return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    private static long[] toWords(char[] array) {
+        long[] words = new long[BITMAP_WORDS];
+        for (char low : array) {
+            words[low >>> 6] |= 1L << low;
+        }
+        return words;
+    }
+
+    // A bitmap chunk that dropped to the array size limit becomes an array again
+    private static Object compact(long[] words) {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        if (size > ARRAY_MAX_SIZE) {
+            return words;
+        }
+        char[] array = new char[size];
+        int n = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                array[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+    }
+
+    /**
+     * Accumulates a union in bitmap chunks, arrays are made for the sparse ones in build()
+     */
+    static final class Builder {
+        private final TreeMap<Character, long[]> words = new TreeMap<>();
+
+        Builder addAll(IntBitmap bitmap) {
+            for (int k = 0; k < bitmap.keys.length; k++) {
+                long[] target = words.computeIfAbsent(bitmap.keys[k], key -> new long[BITMAP_WORDS]);
+                if (bitmap.chunks[k] instanceof char[] array) {
+                    for (char low : array) {
+                        target[low >>> 6] |= 1L << low;
+                    }
+                } else {
+                    long[] source = (long[]) bitmap.chunks[k];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        target[w] |= source[w];
+                    }
+                }
+            }
+            return this;
+        }
+
+        IntBitmap build() {
+            char[] keys = new char[words.size()];
+            Object[] chunks = new Object[words.size()];
+            int cardinality = 0;
+            int k = 0;
+            for (Map.Entry<Character, long[]> entry : words.entrySet()) {
+                keys[k] = entry.getKey();
+                chunks[k] = compact(entry.getValue());
+                cardinality += chunks[k] instanceof char[] array ? array.length : bitCount(entry.getValue());
+                k++;
+            }
+            return keys.length == 0 ? EMPTY : new IntBitmap(keys, chunks, cardinality);
+        }
+
+        private static int bitCount(long[] words) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+    }
+}
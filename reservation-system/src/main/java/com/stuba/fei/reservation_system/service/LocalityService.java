@@ -1,5 +1,9 @@
 package com.stuba.fei.reservation_system.service;
 
+import com.stuba.fei.reservation_system.dto.EventCursor;
+import com.stuba.fei.reservation_system.dto.EventPage;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import com.stuba.fei.reservation_system.dto.LocalityDashboard;
 import com.stuba.fei.reservation_system.handler.ResourceNotFoundException;
 import com.stuba.fei.reservation_system.model.*;
 import com.stuba.fei.reservation_system.model.dto.CityRequest;
@@ -14,6 +18,7 @@ import com.stuba.fei.reservation_system.service.users.SpaceRenterService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,10 +26,16 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.AccessDeniedException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -37,15 +48,23 @@ public class LocalityService {
     private final SpaceRenterRepository spaceRenterRepository;
     private final CityService cityService;
     private final SpaceRenterService spaceRenterService;
+    private final RequestCoalescer requestCoalescer;
+    private final LocalitySpatialIndex localitySpatialIndex;
+    private final RoomIntervalIndex roomIntervalIndex;
+    private final RoomCapacityIndex roomCapacityIndex;
 
 
-    public LocalityService(LocalityRepository localityRepository, PersonRepository personRepository, EventRepository eventRepository, SpaceRenterRepository spaceRenterRepository, CityService cityService, SpaceRenterService spaceRenterService) {
+    public LocalityService(LocalityRepository localityRepository, PersonRepository personRepository, EventRepository eventRepository, SpaceRenterRepository spaceRenterRepository, CityService cityService, SpaceRenterService spaceRenterService, RequestCoalescer requestCoalescer, LocalitySpatialIndex localitySpatialIndex, RoomIntervalIndex roomIntervalIndex, RoomCapacityIndex roomCapacityIndex) {
         this.localityRepository = localityRepository;
         this.personRepository = personRepository;
         this.eventRepository = eventRepository;
         this.spaceRenterRepository = spaceRenterRepository;
         this.cityService = cityService;
         this.spaceRenterService = spaceRenterService;
+        this.requestCoalescer = requestCoalescer;
+        this.localitySpatialIndex = localitySpatialIndex;
+        this.roomIntervalIndex = roomIntervalIndex;
+        this.roomCapacityIndex = roomCapacityIndex;
     }
 
     // Získať všetky lokality
@@ -90,9 +109,12 @@ public class LocalityService {
         locality.setTotalCapacity(request.getTotalCapacity());
         locality.setCity(city);
         locality.setSpaceRenter(spaceRenter); // Priradenie k prihlásenému SpaceRenterovi
+        setAddressCoordinates(locality);
 
         // Uloženie a predvolený priestor
         Locality savedLocality = localityRepository.save(locality);
+        localitySpatialIndex.put(savedLocality);
+        roomCapacityIndex.invalidate();
 
         return savedLocality;
     }
@@ -110,6 +132,7 @@ public class LocalityService {
         }
 
         // Aktualizácia polí
+        boolean addressChanged = !Objects.equals(locality.getAddress(), request.getAddress());
         locality.setName(request.getName());
         locality.setAddress(request.getAddress());
         locality.setTotalCapacity(request.getTotalCapacity());
@@ -119,9 +142,25 @@ public class LocalityService {
         if (!isCitySame(locality.getCity(), cityRequest)) {
             City newCity = cityService.findOrCreateCity(cityRequest.getName(), cityRequest.getCountry());
             locality.setCity(newCity);
+            addressChanged = true;
         }
 
-        return localityRepository.save(locality);
+        // Nové súradnice iba pri zmene adresy
+        if (addressChanged) {
+            setAddressCoordinates(locality);
+        }
+
+        Locality savedLocality = localityRepository.save(locality);
+        localitySpatialIndex.put(savedLocality);
+        roomCapacityIndex.invalidate();
+        return savedLocality;
+    }
+
+    // Geokódovanie adresy lokality (ak sa nepodarí, vyhľadávanie v okolí použije súradnice mesta)
+    private void setAddressCoordinates(Locality locality) {
+        Map<String, Double> coordinates = cityService.getAddressCoordinates(locality.getAddress(), locality.getCity());
+        locality.setLatitude(coordinates.get("latitude"));
+        locality.setLongitude(coordinates.get("longitude"));
     }
 
     private boolean isCitySame(City existingCity, CityRequest request) {
@@ -152,40 +191,52 @@ public class LocalityService {
             }
 
             room.getEvents().clear();
+            roomIntervalIndex.evictRoom(room.getId());
         }
 
         localityRepository.delete(locality); // automaticky zmaže aj rooms kvôli cascade = ALL
+        localitySpatialIndex.remove(id);
+        roomCapacityIndex.invalidate();
     }
 
 
     /**
-     * Get all events associated with a specific locality
+     * Get one keyset page of the events at a locality
      * @param localityId The ID of the locality
-     * @return List of events at the specified locality
+     * @param cursor Cursor returned with the previous page, null for the first page
+     * @param limit Requested page size, clamped to EventService.MAX_PAGE_SIZE
+     * @return Page of event summaries (any status) ordered by date, time and id with the cursor of the next page
+     * @throws IllegalArgumentException If the cursor is invalid
      */
-    public List<Event> getEventsByLocality(Long localityId) {
-        // First verify that the locality exists
-        Locality locality = localityRepository.findById(localityId)
-                .orElseThrow(() -> new EntityNotFoundException("Locality with ID " + localityId + " not found"));
-        
-        // Get all events from the repository
-        List<Event> allEvents = eventRepository.findAll();
-        
-        // Filter events to those containing rooms with the specified locality
-        List<Event> localityEvents = allEvents.stream()
-                .filter(event -> event.getRooms() != null && !event.getRooms().isEmpty())
-                .filter(event -> event.getRooms().stream()
-                        .anyMatch(room -> room.getLocality() != null && 
-                                room.getLocality().getId().equals(localityId)))
-                .collect(Collectors.toList());
-        
-        // Update status for all events and save if changed
-        localityEvents.forEach(this::updateAndSaveEventStatus);
-        
-        // Sort events by date (soonest first)
-        localityEvents.sort(Comparator.comparing(Event::getEventDate));
-        
-        return localityEvents;
+    public EventPage<EventSummary> getEventsByLocality(Long localityId, String cursor, Integer limit) {
+        int pageSize = limit == null ? EventService.DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(limit, EventService.MAX_PAGE_SIZE));
+        EventCursor after = EventCursor.decode(cursor);
+
+        // Concurrent requests for the same page share one lookup
+        return requestCoalescer.execute("locality-events", Arrays.asList(localityId, cursor, pageSize), () -> {
+            // First verify that the locality exists
+            if (!localityRepository.existsById(localityId)) {
+                throw new EntityNotFoundException("Locality with ID " + localityId + " not found");
+            }
+
+            // Fetch one extra row to know whether another page exists
+            List<EventSummary> rows = eventRepository.findSummaryPageByLocalityId(
+                    localityId,
+                    after != null ? after.getEventDate() : null,
+                    after != null ? after.getStartTime() : null,
+                    after != null ? after.getId() : null,
+                    PageRequest.of(0, pageSize + 1));
+
+            boolean hasMore = rows.size() > pageSize;
+            List<EventSummary> items = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+            String nextCursor = null;
+            if (hasMore) {
+                EventSummary last = items.get(items.size() - 1);
+                nextCursor = new EventCursor(last.getEventDate(), last.getStartTime(), last.getId()).encode();
+            }
+            return new EventPage<>(items, nextCursor);
+        });
     }
 
     /**
@@ -194,37 +245,69 @@ public class LocalityService {
      * @return Map containing counts of active and total events
      */
     public Map<String, Integer> getEventCountsByLocality(Long localityId) {
-        // First verify that the locality exists
-        Locality locality = localityRepository.findById(localityId)
-                .orElseThrow(() -> new EntityNotFoundException("Locality with ID " + localityId + " not found"));
-        
-        // Get events for this locality - using the same method we use to display events
-        List<Event> localityEvents = getEventsByLocality(localityId);
-        
-        // Events are already updated by getEventsByLocality
-        
-        // Count active events (those with ACTIVE status)
-        long activeEventsCount = localityEvents.stream()
-                .filter(event -> EventStatus.ACTIVE.equals(event.getStatus()))
-                .count();
-        
+        if (!localityRepository.existsById(localityId)) {
+            throw new EntityNotFoundException("Locality with ID " + localityId + " not found");
+        }
+
+        // One grouped count instead of loading the events
+        int active = 0;
+        int total = 0;
+        for (Object[] row : eventRepository.countByStatusInLocality(localityId)) {
+            int count = ((Number) row[1]).intValue();
+            if (EventStatus.ACTIVE.equals(row[0])) {
+                active = count;
+            }
+            total += count;
+        }
+
         Map<String, Integer> counts = new HashMap<>();
-        counts.put("active", (int) activeEventsCount);
-        counts.put("total", localityEvents.size());
+        counts.put("active", active);
+        counts.put("total", total);
         
         return counts;
     }
-    
+
     /**
-     * Helper method to update and save event status
-     * @param event The event to update
+     * Dashboard of the logged in space renter: every locality with its room count, capacity, event counts
+     * and next event. Computed with four queries whatever the number of localities.
      */
-    private void updateAndSaveEventStatus(Event event) {
-        EventStatus oldStatus = event.getStatus();
-        event.updateStatus();
-        // Only save if status has changed
-        if (oldStatus != event.getStatus()) {
-            eventRepository.save(event);
+    public List<LocalityDashboard> getDashboard() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SpaceRenter spaceRenter = spaceRenterService.getSpaceRenterByUsername(authentication.getName());
+
+        List<LocalityDashboard> localities = localityRepository.findDashboardBySpaceRenterId(spaceRenter.getId());
+        if (localities.isEmpty()) {
+            return localities;
+        }
+        Map<Long, LocalityDashboard> byId = new HashMap<>();
+        localities.forEach(locality -> byId.put(locality.getLocalityId(), locality));
+
+        LocalDate today = LocalDate.now();
+        LocalTime now = LocalTime.now();
+        for (Object[] row : eventRepository.countEventsPerLocalityOfSpaceRenter(spaceRenter.getId(), EventStatus.ACTIVE, today, now)) {
+            LocalityDashboard locality = byId.get((Long) row[0]);
+            if (locality != null) {
+                locality.setActiveEvents(((Number) row[1]).intValue());
+                locality.setUpcomingEvents(((Number) row[2]).intValue());
+                locality.setPastEvents(((Number) row[3]).intValue());
+            }
+        }
+
+        // Next event of every locality, summaries loaded in one query
+        Map<Long, Long> nextEventIds = new HashMap<>();
+        for (Object[] row : eventRepository.findNextEventPerLocalityOfSpaceRenter(spaceRenter.getId(), EventStatus.INACTIVE, today, now)) {
+            nextEventIds.put((Long) row[0], (Long) row[1]);
+        }
+        if (!nextEventIds.isEmpty()) {
+            Map<Long, EventSummary> summaries = eventRepository.findSummariesByIds(new HashSet<>(nextEventIds.values())).stream()
+                    .collect(Collectors.toMap(EventSummary::getId, summary -> summary));
+            nextEventIds.forEach((localityId, eventId) -> {
+                LocalityDashboard locality = byId.get(localityId);
+                if (locality != null) {
+                    locality.setNextEvent(summaries.get(eventId));
+                }
+            });
         }
+        return localities;
     }
 }
@@ -0,0 +1,252 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.City;
+import com.stuba.fei.reservation_system.model.Locality;
+import com.stuba.fei.reservation_system.repository.LocalityRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory spatial index over locality coordinates for radius and bounding-box searches.
+ * Localities are kept sorted by latitude, so a query reads only the latitude band of its bounding box
+ * (two binary searches), checks the longitude range and, for a radius, refines the remaining candidates
+ * with the exact great-circle distance. A locality whose address could not be geocoded is indexed
+ * at its city's coordinates, one without either is not indexed.
+ * Localities are loaded lazily on first access, changes made by {@link LocalityService} are applied after commit.
+ */
+@Component
+public class LocalitySpatialIndex {
+    private final LocalityRepository localityRepository;
+
+    // Coordinates [latitude, longitude] by locality id, the source the index is rebuilt from
+    private final Map<Long, double[]> coordinates = new HashMap<>();
+    private volatile Points points;
+
+    public LocalitySpatialIndex(LocalityRepository localityRepository) {
+        this.localityRepository = localityRepository;
+    }
+
+    /**
+     * Locality found by a search and its great-circle distance from the query point
+     */
+    public record Hit(long localityId, double latitude, double longitude, double distanceKm) {
+    }
+
+    /**
+     * @return Localities within the given distance (in kilometers), nearest first
+     */
+    public List<Hit> findWithin(double longitude, double latitude, double radiusKm) {
+        Points current = points();
+        List<Hit> hits = new ArrayList<>();
+        if (radiusKm < 0) {
+            return hits;
+        }
+        // Bounding box of the circle, the whole longitude range if it contains a pole
+        double angle = radiusKm / GeoKdTree.EARTH_RADIUS_KM;
+        double latitudeDelta = Math.toDegrees(angle);
+        double minLatitude = latitude - latitudeDelta;
+        double maxLatitude = latitude + latitudeDelta;
+        double minLongitude = -180.0;
+        double maxLongitude = 180.0;
+        if (minLatitude > -90.0 && maxLatitude < 90.0) {
+            double longitudeDelta = Math.toDegrees(Math.asin(Math.min(1.0, Math.sin(angle) / Math.cos(Math.toRadians(latitude)))));
+            minLongitude = normalizeLongitude(longitude - longitudeDelta);
+            maxLongitude = normalizeLongitude(longitude + longitudeDelta);
+        }
+
+        double[] query = GeoKdTree.toVector(latitude, longitude);
+        double maxSquaredChord = squaredChord(radiusKm);
+        current.inBox(minLatitude, maxLatitude, minLongitude, maxLongitude, i -> {
+            double squaredChord = current.squaredChord(i, query);
+            if (squaredChord <= maxSquaredChord) {
+                hits.add(current.hit(i, squaredChord));
+            }
+        });
+        hits.sort(Comparator.comparingDouble(Hit::distanceKm));
+        return hits;
+    }
+
+    /**
+     * @param minLongitude Western edge, greater than maxLongitude for a box across the antimeridian
+     * @return Localities inside the box, nearest to the given point first
+     */
+    public List<Hit> findInBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                               double longitude, double latitude) {
+        Points current = points();
+        List<Hit> hits = new ArrayList<>();
+        double[] query = GeoKdTree.toVector(latitude, longitude);
+        current.inBox(minLatitude, maxLatitude, minLongitude, maxLongitude,
+                i -> hits.add(current.hit(i, current.squaredChord(i, query))));
+        hits.sort(Comparator.comparingDouble(Hit::distanceKm));
+        return hits;
+    }
+
+    /**
+     * Add or move a saved locality. Inside a transaction the change is applied after commit.
+     */
+    public void put(Locality locality) {
+        if (locality.getId() == null) {
+            return;
+        }
+        Long id = locality.getId();
+        double[] location = locationOf(locality);
+        afterCommit(() -> update(id, location));
+    }
+
+    /**
+     * Remove a deleted locality. Inside a transaction the change is applied after commit.
+     */
+    public void remove(Long localityId) {
+        afterCommit(() -> update(localityId, null));
+    }
+
+    // [latitude, longitude] of the address, or of the city if the address has no coordinates
+    private static double[] locationOf(Locality locality) {
+        if (locality.getLatitude() != null && locality.getLongitude() != null) {
+            return new double[] {locality.getLatitude(), locality.getLongitude()};
+        }
+        City city = locality.getCity();
+        if (city != null && city.getLatitude() != null && city.getLongitude() != null) {
+            return new double[] {city.getLatitude(), city.getLongitude()};
+        }
+        return null;
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private Points points() {
+        Points current = points;
+        if (current == null) {
+            synchronized (this) {
+                if (points == null) {
+                    for (Object[] row : localityRepository.findCoordinates()) {
+                        if (row[1] != null && row[2] != null) {
+                            coordinates.put((Long) row[0], new double[] {(Double) row[1], (Double) row[2]});
+                        }
+                    }
+                    points = new Points(coordinates);
+                }
+                current = points;
+            }
+        }
+        return current;
+    }
+
+    // Localities change rarely, so the arrays are rebuilt (O(n log n)) and queries never take a lock
+    // location null removes the locality
+    private synchronized void update(Long id, double[] location) {
+        if (points == null) {
+            // Not loaded yet - the locality will be read together with the others
+            return;
+        }
+        if (location != null) {
+            coordinates.put(id, location);
+        } else if (coordinates.remove(id) == null) {
+            return;
+        }
+        points = new Points(coordinates);
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        if (longitude < -180.0) {
+            return longitude + 360.0;
+        }
+        if (longitude > 180.0) {
+            return longitude - 360.0;
+        }
+        return longitude;
+    }
+
+    private static double squaredChord(double distanceKm) {
+        if (distanceKm >= Math.PI * GeoKdTree.EARTH_RADIUS_KM) {
+            return 4.0;
+        }
+        double chord = 2.0 * Math.sin(distanceKm / (2.0 * GeoKdTree.EARTH_RADIUS_KM));
+        return chord * chord;
+    }
+
+    /**
+     * Immutable snapshot of the indexed localities, sorted by latitude
+     */
+    private static final class Points {
+        private final long[] ids;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double[][] vectors;
+
+        Points(Map<Long, double[]> coordinates) {
+            List<Map.Entry<Long, double[]>> entries = new ArrayList<>(coordinates.entrySet());
+            entries.sort(Comparator.comparingDouble(entry -> entry.getValue()[0]));
+            int n = entries.size();
+            ids = new long[n];
+            latitudes = new double[n];
+            longitudes = new double[n];
+            vectors = new double[n][];
+            for (int i = 0; i < n; i++) {
+                Map.Entry<Long, double[]> entry = entries.get(i);
+                ids[i] = entry.getKey();
+                latitudes[i] = entry.getValue()[0];
+                longitudes[i] = entry.getValue()[1];
+                vectors[i] = GeoKdTree.toVector(latitudes[i], longitudes[i]);
+            }
+        }
+
+        void inBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                   IntConsumer consumer) {
+            boolean acrossAntimeridian = minLongitude > maxLongitude;
+            for (int i = firstAtLeast(minLatitude); i < latitudes.length && latitudes[i] <= maxLatitude; i++) {
+                double longitude = longitudes[i];
+                boolean inside = acrossAntimeridian
+                        ? longitude >= minLongitude || longitude <= maxLongitude
+                        : longitude >= minLongitude && longitude <= maxLongitude;
+                if (inside) {
+                    consumer.accept(i);
+                }
+            }
+        }
+
+        double squaredChord(int i, double[] query) {
+            double dx = query[0] - vectors[i][0];
+            double dy = query[1] - vectors[i][1];
+            double dz = query[2] - vectors[i][2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        Hit hit(int i, double squaredChord) {
+            return new Hit(ids[i], latitudes[i], longitudes[i], GeoDistanceKernel.distanceKm(squaredChord));
+        }
+
+        // Index of the first locality with at least the given latitude
+        private int firstAtLeast(double latitude) {
+            int index = Arrays.binarySearch(latitudes, latitude);
+            if (index < 0) {
+                return -index - 1;
+            }
+            // Equal latitudes may precede the one found
+            while (index > 0 && latitudes[index - 1] == latitude) {
+                index--;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.PrecomputedSuggestions;
+import com.stuba.fei.reservation_system.repository.PrecomputedSuggestionsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access to the nightly precomputed suggestions (see {@link PrecomputedSuggestions}) together with what
+ * has made them out of date: users whose reservations or preferences changed, and events that may now rank
+ * higher (new, or with a changed price, category, place or start) since a list was computed.
+ * Changes are tracked in memory from the start of the last completed batch run (or from application start),
+ * lists computed before that are not served.
+ */
+@Component
+public class PrecomputedSuggestionStore {
+    private final PrecomputedSuggestionsRepository repository;
+    private final long maxAgeMillis;
+
+    // Time of the last change (epoch milliseconds) by user ID / event ID
+    private final Map<Long, Long> userChangedAt = new ConcurrentHashMap<>();
+    private final Map<Long, Long> candidateChangedAt = new ConcurrentHashMap<>();
+    private volatile long trackedSince = System.currentTimeMillis();
+
+    public PrecomputedSuggestionStore(PrecomputedSuggestionsRepository repository,
+                                      EventFeatureStore eventFeatureStore,
+                                      UserTasteProfileService userTasteProfileService,
+                                      @Value("${suggestion.batch.max-age-hours:36}") long maxAgeHours) {
+        this.repository = repository;
+        this.maxAgeMillis = maxAgeHours * 3_600_000;
+        eventFeatureStore.addListener(this::onEventsChanged);
+        // Already called after the commit
+        userTasteProfileService.addListener((userId, eventId, added) -> userChanged(userId));
+    }
+
+    /**
+     * @return The user's precomputed suggestions, unless they are missing, too old or older than the user's last change
+     */
+    public Optional<PrecomputedSuggestions> findFresh(Long userId) {
+        return repository.findById(userId).filter(suggestions -> {
+            long computedAt = toMillis(suggestions.getComputedAt());
+            Long changedAt = userChangedAt.get(userId);
+            return computedAt >= trackedSince
+                    && computedAt >= System.currentTimeMillis() - maxAgeMillis
+                    && (changedAt == null || changedAt < computedAt);
+        });
+    }
+
+    /**
+     * @return Events that may rank higher now than at the given time
+     */
+    public List<Long> candidatesChangedSince(LocalDateTime computedAt) {
+        long since = toMillis(computedAt);
+        List<Long> eventIds = new ArrayList<>();
+        candidateChangedAt.forEach((eventId, changedAt) -> {
+            if (changedAt >= since) {
+                eventIds.add(eventId);
+            }
+        });
+        return eventIds;
+    }
+
+    /**
+     * The user's precomputed suggestions are out of date once the current transaction commits
+     */
+    public void invalidate(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userChanged(userId);
+                }
+            });
+        } else {
+            userChanged(userId);
+        }
+    }
+
+    /**
+     * A batch run that started at the given time has completed, the changes before it are no longer needed
+     */
+    void runCompleted(long startedAt) {
+        trackedSince = startedAt;
+        userChangedAt.values().removeIf(changedAt -> changedAt < startedAt);
+        candidateChangedAt.values().removeIf(changedAt -> changedAt < startedAt);
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void userChanged(Long userId) {
+        userChangedAt.put(userId, System.currentTimeMillis());
+    }
+
+    private void onEventsChanged(Collection<Long> eventIds, boolean newCandidates) {
+        // Without new candidates only fill ratios changed or events stopped being available (filtered when serving)
+        if (newCandidates) {
+            long now = System.currentTimeMillis();
+            eventIds.forEach(eventId -> candidateChangedAt.put(eventId, now));
+        }
+    }
+}
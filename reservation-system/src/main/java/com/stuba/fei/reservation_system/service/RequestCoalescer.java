@@ -0,0 +1,81 @@
+package com.stuba.fei.reservation_system.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of expensive reads: concurrent callers asking for the same result share one computation.
+ * The first caller computes on its own thread, callers arriving while it runs wait for its result (or exception).
+ * Nothing is kept once the computation finishes, so only overlapping requests are coalesced - a waiter may get a
+ * result that started computing shortly before its request, never an older one.
+ * Shared results are handed to every waiter and must not be modified.
+ * The counter requests.coalesced (per endpoint) tells computed calls from shared ones, i.e. computations saved.
+ */
+@Component
+public class RequestCoalescer {
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param endpoint Name of the read (metric tag)
+     * @param key Parameters the result depends on (null elements allowed)
+     * @param computation Computes the result, run by the first of the concurrent callers only
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String endpoint, List<?> key, Supplier<T> computation) {
+        Flight flight = new Flight(endpoint, key);
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flight, result);
+        if (running != null) {
+            counter(endpoint, "shared").increment();
+            try {
+                return (T) running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        counter(endpoint, "computed").increment();
+        try {
+            T value = computation.get();
+            result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, result);
+        }
+    }
+
+    private Counter counter(String endpoint, String outcome) {
+        return counters.computeIfAbsent(endpoint + "|" + outcome, name -> Counter.builder("requests.coalesced")
+                .description("Calls of coalesced reads by whether they computed the result or shared one in flight")
+                .tag("endpoint", endpoint)
+                .tag("result", outcome)
+                .register(meterRegistry));
+    }
+
+    private record Flight(String endpoint, List<?> key) {
+    }
+}
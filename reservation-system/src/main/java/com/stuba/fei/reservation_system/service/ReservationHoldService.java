@@ -0,0 +1,150 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Reservation;
+import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Expiry of timed seat holds (PENDING reservations).
+ * Deadlines live in a hashed timing wheel ticked once per second, so an expiring hold costs O(1)
+ * and the reservation table is never swept. The wheel is rebuilt from PENDING reservations on startup.
+ */
+@Service
+public class ReservationHoldService {
+    private static final Logger logger = Logger.getLogger(ReservationHoldService.class.getName());
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 1024;
+    private static final long RETRY_DELAY_MILLIS = 30_000;
+
+    private final ReservationRepository reservationRepository;
+    private final EventRepository eventRepository;
+    private final WaitlistService waitlistService;
+    private final HighDemandReservationService highDemandReservationService;
+    private final EventFeatureStore eventFeatureStore;
+    private final SuggestionCache suggestionCache;
+    private final UserTasteProfileService userTasteProfileService;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final TimingWheel wheel = new TimingWheel(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+
+    @Value("${reservation.hold.duration-minutes:10}")
+    private int holdDurationMinutes;
+
+    public ReservationHoldService(ReservationRepository reservationRepository,
+                                  EventRepository eventRepository,
+                                  WaitlistService waitlistService,
+                                  HighDemandReservationService highDemandReservationService,
+                                  EventFeatureStore eventFeatureStore,
+                                  SuggestionCache suggestionCache,
+                                  UserTasteProfileService userTasteProfileService,
+                                  TaskScheduler taskScheduler,
+                                  PlatformTransactionManager transactionManager) {
+        this.reservationRepository = reservationRepository;
+        this.eventRepository = eventRepository;
+        this.waitlistService = waitlistService;
+        this.highDemandReservationService = highDemandReservationService;
+        this.eventFeatureStore = eventFeatureStore;
+        this.suggestionCache = suggestionCache;
+        this.userTasteProfileService = userTasteProfileService;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void startTicking() {
+        taskScheduler.scheduleAtFixedRate(this::tick, Duration.ofMillis(TICK_MILLIS));
+    }
+
+    /**
+     * @return Expiry time of a hold created now
+     */
+    public LocalDateTime newHoldExpiry() {
+        return LocalDateTime.now().plusMinutes(holdDurationMinutes);
+    }
+
+    /**
+     * Schedule the expiry of a hold
+     */
+    public void track(Long reservationId, LocalDateTime expiresAt) {
+        wheel.schedule(reservationId, expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    public void untrack(Long reservationId) {
+        wheel.cancel(reservationId);
+    }
+
+    /**
+     * Cancel a hold and give its seat to the waitlist (or back to the event).
+     * Joins the caller's transaction.
+     * @return true if this call cancelled the hold, false if it was already confirmed, cancelled or expired
+     */
+    public boolean releaseHold(Reservation reservation) {
+        if (reservationRepository.updateStatusIfCurrent(
+                reservation.getId(), ReservationStatus.PENDING, ReservationStatus.CANCELLED) == 0) {
+            return false;
+        }
+        wheel.cancel(reservation.getId());
+        Long eventId = reservation.getEvent().getId();
+        eventRepository.releaseHeldSeat(eventId, EventStatus.FULL, EventStatus.ACTIVE);
+        eventFeatureStore.markChanged(eventId);
+        suggestionCache.evictUser(reservation.getRegisteredUser().getUsername());
+        userTasteProfileService.onCancelled(reservation.getRegisteredUser().getId(), eventId);
+        if (highDemandReservationService.isHighDemand(eventId)) {
+            highDemandReservationService.onSeatReleased(eventId, reservation.getRegisteredUser().getUsername());
+        } else {
+            waitlistService.promoteHead(reservation.getEvent());
+        }
+        return true;
+    }
+
+    /**
+     * Expire holds found in the database: overdue ones right away, the rest through the wheel.
+     * Called once on application startup.
+     * @return The number of holds that are still running
+     */
+    public int reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        int running = 0;
+        for (Object[] row : reservationRepository.findHolds(ReservationStatus.PENDING)) {
+            Long reservationId = (Long) row[0];
+            LocalDateTime expiresAt = (LocalDateTime) row[1];
+            if (expiresAt != null && expiresAt.isAfter(now)) {
+                track(reservationId, expiresAt);
+                running++;
+            } else {
+                expire(reservationId);
+            }
+        }
+        return running;
+    }
+
+    void tick() {
+        for (Long reservationId : wheel.advance(System.currentTimeMillis())) {
+            try {
+                expire(reservationId);
+            } catch (RuntimeException e) {
+                logger.severe("Hold expiry: failed to expire reservation " + reservationId + ": " + e.getMessage());
+                wheel.schedule(reservationId, System.currentTimeMillis() + RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void expire(Long reservationId) {
+        transactionTemplate.executeWithoutResult(status ->
+                reservationRepository.findById(reservationId).ifPresent(this::releaseHold));
+    }
+}
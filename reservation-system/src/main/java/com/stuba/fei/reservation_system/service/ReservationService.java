@@ -2,6 +2,7 @@ package com.stuba.fei.reservation_system.service;
 
 import com.stuba.fei.reservation_system.dto.ReservationRequest;
 import com.stuba.fei.reservation_system.dto.ReservationResponse;
+import com.stuba.fei.reservation_system.handler.TemporarilyUnavailableException;
 import com.stuba.fei.reservation_system.model.Event;
 import com.stuba.fei.reservation_system.model.EventStatus;
 import com.stuba.fei.reservation_system.model.Reservation;
@@ -14,6 +15,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,14 +27,32 @@ public class ReservationService {
     private final ReservationRepository reservationRepository;
     private final RegisteredUserRepository userRepository;
     private final EventRepository eventRepository;
+    private final HighDemandReservationService highDemandReservationService;
+    private final WaitlistService waitlistService;
+    private final ReservationHoldService reservationHoldService;
+    private final EventFeatureStore eventFeatureStore;
+    private final SuggestionCache suggestionCache;
+    private final UserTasteProfileService userTasteProfileService;
 
     @Autowired
     public ReservationService(ReservationRepository reservationRepository, 
                               RegisteredUserRepository userRepository,
-                              EventRepository eventRepository) {
+                              EventRepository eventRepository,
+                              HighDemandReservationService highDemandReservationService,
+                              WaitlistService waitlistService,
+                              ReservationHoldService reservationHoldService,
+                              EventFeatureStore eventFeatureStore,
+                              SuggestionCache suggestionCache,
+                              UserTasteProfileService userTasteProfileService) {
         this.reservationRepository = reservationRepository;
         this.userRepository = userRepository;
         this.eventRepository = eventRepository;
+        this.highDemandReservationService = highDemandReservationService;
+        this.waitlistService = waitlistService;
+        this.reservationHoldService = reservationHoldService;
+        this.eventFeatureStore = eventFeatureStore;
+        this.suggestionCache = suggestionCache;
+        this.userTasteProfileService = userTasteProfileService;
     }
 
     public List<Reservation> getAllReservations() {
@@ -67,10 +87,17 @@ public class ReservationService {
         return reservationRepository.findByEventId(eventId);
     }
 
+    @Transactional
     public ReservationResponse createReservationForLoggedUser(ReservationRequest reservationRequest) {
         // Get the authenticated user from Security Context
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
+        suggestionCache.evictUser(username);
+
+        // High-demand events are admitted from the in-memory inventory and persisted later
+        if (highDemandReservationService.isHighDemand(reservationRequest.getEventId())) {
+            return highDemandReservationService.reserve(reservationRequest.getEventId(), username);
+        }
 
         // Fetch user by username
         RegisteredUser user = userRepository.findByUsername(username)
@@ -79,32 +106,110 @@ public class ReservationService {
         // Fetch the event
         Event event = eventRepository.findById(reservationRequest.getEventId())
             .orElseThrow(() -> new RuntimeException("Event not found"));
-        
-        // Check if event is INACTIVE or FULL
-        if (event.getStatus() == EventStatus.INACTIVE) {
-            throw new RuntimeException("Cannot reserve an inactive event");
+        if (event.isHighDemand()) {
+            // Its inventory is being rebuilt right now, the regular path would refuse the seat as fully booked
+            throw new TemporarilyUnavailableException("Reservations for this event are being updated, please try again");
         }
+        checkCanReserve(user, event);
         
-        if (event.getStatus() == EventStatus.FULL) {
-            throw new RuntimeException("Cannot reserve a fully booked event");
+        // Take a seat with one conditional UPDATE - fails when the last seat was taken concurrently.
+        // The last seat also switches the event to FULL.
+        if (eventRepository.takeSeat(event.getId(), EventStatus.FULL, EventStatus.ACTIVE) == 0) {
+            throw new RuntimeException("Event is fully booked");
         }
+        eventFeatureStore.markChanged(event.getId());
         
-        // Create a new reservation
+        // Create a new reservation (rolled back together with the seat if saving fails)
         Reservation reservation = new Reservation();
         reservation.setEvent(event);
         reservation.setRegisteredUser(user);
         reservation.setReservationDate(LocalDateTime.now());
+        Reservation savedReservation = reservationRepository.save(reservation);
+        waitlistService.onReserved(event.getId(), user.getId());
+        userTasteProfileService.onReserved(user.getId(), event.getId());
         
-        // Check capacity
-        long existingReservations = reservationRepository.countByEventIdAndStatusNot(
-            event.getId(), ReservationStatus.CANCELLED);
-        
-        if (existingReservations >= event.getMaxCapacity()) {
-            // Update event status to FULL if it reaches capacity
-            event.setStatus(EventStatus.FULL);
-            eventRepository.save(event);
+        // Convert to response DTO
+        return ReservationResponse.fromReservation(savedReservation);
+    }
+
+    /**
+     * Hold a seat for the logged user for a limited time (PENDING reservation).
+     * The hold has to be confirmed before it expires, otherwise the seat is released.
+     */
+    @Transactional
+    public ReservationResponse holdReservationForLoggedUser(ReservationRequest reservationRequest) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        RegisteredUser user = userRepository.findByUsername(authentication.getName())
+            .orElseThrow(() -> new RuntimeException("Authenticated user not found"));
+
+        Event event = eventRepository.findById(reservationRequest.getEventId())
+            .orElseThrow(() -> new RuntimeException("Event not found"));
+        if (event.isHighDemand()) {
+            throw new RuntimeException("Seat holds are not available for this event");
+        }
+        checkCanReserve(user, event);
+
+        if (eventRepository.holdSeat(event.getId(), EventStatus.FULL, EventStatus.ACTIVE) == 0) {
             throw new RuntimeException("Event is fully booked");
         }
+        eventFeatureStore.markChanged(event.getId());
+        suggestionCache.evictUser(user.getUsername());
+
+        Reservation reservation = new Reservation();
+        reservation.setEvent(event);
+        reservation.setRegisteredUser(user);
+        reservation.setReservationDate(LocalDateTime.now());
+        reservation.setStatus(ReservationStatus.PENDING);
+        reservation.setHoldExpiresAt(reservationHoldService.newHoldExpiry());
+        Reservation savedReservation = reservationRepository.save(reservation);
+        waitlistService.onReserved(event.getId(), user.getId());
+        userTasteProfileService.onReserved(user.getId(), event.getId());
+
+        // Expiry is idempotent, so a hold whose transaction rolls back is simply ignored by the wheel
+        reservationHoldService.track(savedReservation.getId(), savedReservation.getHoldExpiresAt());
+        return ReservationResponse.fromReservation(savedReservation);
+    }
+
+    /**
+     * Turn a held seat (PENDING reservation) of the logged user into a CONFIRMED reservation
+     */
+    @Transactional
+    public ReservationResponse confirmReservation(Long id) {
+        Reservation reservation = reservationRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Reservation not found"));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!reservation.getRegisteredUser().getUsername().equals(authentication.getName())) {
+            throw new RuntimeException("You can only confirm your own reservations");
+        }
+        if (reservation.getStatus() != ReservationStatus.PENDING) {
+            throw new RuntimeException("Reservation is not pending");
+        }
+
+        // Races with the expiry on the same conditional UPDATE - only one of them wins
+        if (reservation.getHoldExpiresAt().isBefore(LocalDateTime.now())
+                || reservationRepository.updateStatusIfCurrent(
+                        id, ReservationStatus.PENDING, ReservationStatus.CONFIRMED) == 0) {
+            throw new RuntimeException("Seat hold has expired");
+        }
+        eventRepository.confirmHeldSeat(reservation.getEvent().getId());
+        eventFeatureStore.markChanged(reservation.getEvent().getId());
+        reservationHoldService.untrack(id);
+
+        reservation.setStatus(ReservationStatus.CONFIRMED);
+        reservation.setHoldExpiresAt(null);
+        return ReservationResponse.fromReservation(reservation);
+    }
+
+    private void checkCanReserve(RegisteredUser user, Event event) {
+        // Check if event is INACTIVE or FULL
+        if (event.getStatus() == EventStatus.INACTIVE) {
+            throw new RuntimeException("Cannot reserve an inactive event");
+        }
+        
+        if (event.getStatus() == EventStatus.FULL) {
+            throw new RuntimeException("Cannot reserve a fully booked event");
+        }
         
         // Check for existing reservation
         boolean hasReservation = reservationRepository.existsByRegisteredUserIdAndEventIdAndStatusNot(
@@ -113,38 +218,67 @@ public class ReservationService {
         if (hasReservation) {
             throw new RuntimeException("You already have a reservation for this event");
         }
-        
-        // Save the reservation
-        Reservation savedReservation = reservationRepository.save(reservation);
-        
-        // Convert to response DTO
-        return ReservationResponse.fromReservation(savedReservation);
     }
 
+    @Transactional
     public Reservation updateReservation(Long id, Reservation reservationDetails) {
         Reservation reservation = reservationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Reservation not found"));
+        suggestionCache.evictUser(reservation.getRegisteredUser().getUsername());
+        Long previousUserId = reservation.getRegisteredUser().getId();
+        Long previousEventId = reservation.getEvent().getId();
         
         // Only update references if provided
         if (reservationDetails.getRegisteredUser() != null && reservationDetails.getRegisteredUser().getId() != null) {
             RegisteredUser user = userRepository.findById(reservationDetails.getRegisteredUser().getId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
             reservation.setRegisteredUser(user);
+            suggestionCache.evictUser(user.getUsername());
         }
         
         if (reservationDetails.getEvent() != null && reservationDetails.getEvent().getId() != null) {
             Event event = eventRepository.findById(reservationDetails.getEvent().getId())
                 .orElseThrow(() -> new RuntimeException("Event not found"));
+            if (reservation.getStatus() == ReservationStatus.PENDING
+                    && !event.getId().equals(reservation.getEvent().getId())) {
+                throw new RuntimeException("Confirm or cancel the seat hold first");
+            }
+            // Move the seat of a confirmed reservation to the new event
+            if (reservation.getStatus() == ReservationStatus.CONFIRMED
+                    && !event.getId().equals(reservation.getEvent().getId())) {
+                if (eventRepository.takeSeat(event.getId(), EventStatus.FULL, EventStatus.ACTIVE) == 0) {
+                    throw new RuntimeException("Event is fully booked");
+                }
+                eventFeatureStore.markChanged(event.getId());
+                releaseSeat(reservation);
+            }
             reservation.setEvent(event);
         }
 
+        if (reservation.getStatus() != ReservationStatus.CANCELLED
+                && (!previousUserId.equals(reservation.getRegisteredUser().getId())
+                        || !previousEventId.equals(reservation.getEvent().getId()))) {
+            userTasteProfileService.onCancelled(previousUserId, previousEventId);
+            userTasteProfileService.onReserved(reservation.getRegisteredUser().getId(), reservation.getEvent().getId());
+        }
         return reservationRepository.save(reservation);
     }
 
+    @Transactional
     public void deleteReservation(Long id) {
-        reservationRepository.deleteById(id);
+        reservationRepository.findById(id).ifPresent(reservation -> {
+            suggestionCache.evictUser(reservation.getRegisteredUser().getUsername());
+            if (reservation.getStatus() == ReservationStatus.CONFIRMED) {
+                releaseSeat(reservation);
+                userTasteProfileService.onCancelled(reservation.getRegisteredUser().getId(), reservation.getEvent().getId());
+            } else if (reservation.getStatus() == ReservationStatus.PENDING) {
+                reservationHoldService.releaseHold(reservation);
+            }
+            reservationRepository.delete(reservation);
+        });
     }
 
+    @Transactional
     public ReservationResponse cancelReservation(Long id) {
         Reservation reservation = reservationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Reservation not found"));
@@ -159,16 +293,36 @@ public class ReservationService {
         if (!reservation.getRegisteredUser().getId().equals(user.getId())) {
             throw new RuntimeException("You can only cancel your own reservations");
         }
+        suggestionCache.evictUser(username);
         
         // Check if already cancelled
         if (reservation.getStatus() == ReservationStatus.CANCELLED) {
             throw new RuntimeException("Reservation is already cancelled");
         }
         
-        // Update status to CANCELLED
+        // Release the seat (a FULL event becomes ACTIVE again) and update status to CANCELLED
+        if (reservation.getStatus() == ReservationStatus.CONFIRMED) {
+            releaseSeat(reservation);
+            userTasteProfileService.onCancelled(user.getId(), reservation.getEvent().getId());
+        } else if (reservation.getStatus() == ReservationStatus.PENDING) {
+            reservationHoldService.releaseHold(reservation);
+        }
         reservation.setStatus(ReservationStatus.CANCELLED);
+        reservation.setHoldExpiresAt(null);
         Reservation savedReservation = reservationRepository.save(reservation);
         
         return ReservationResponse.fromReservation(savedReservation);
     }
+
+    private void releaseSeat(Reservation reservation) {
+        Long eventId = reservation.getEvent().getId();
+        eventRepository.releaseSeat(eventId, EventStatus.FULL, EventStatus.ACTIVE);
+        eventFeatureStore.markChanged(eventId);
+        if (highDemandReservationService.isHighDemand(eventId)) {
+            highDemandReservationService.onSeatReleased(eventId, reservation.getRegisteredUser().getUsername());
+        } else {
+            // The freed seat goes straight to the head of the waitlist (same transaction, event row still locked)
+            waitlistService.promoteHead(reservation.getEvent());
+        }
+    }
 }
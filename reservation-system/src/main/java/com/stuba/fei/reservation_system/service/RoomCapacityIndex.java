@@ -0,0 +1,138 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.repository.RoomRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory rooms of every city and locality sorted by capacity, for the venue search.
+ * The rooms with at least a given capacity are a suffix of the sorted array found with one binary search,
+ * returned as a view in increasing capacity (best fit first), so a search reads only the rooms it needs.
+ * Rooms are loaded with one query on first access. Rooms and localities change rarely, so any change
+ * drops the whole snapshot (after commit) and the next search loads it again.
+ */
+@Component
+public class RoomCapacityIndex {
+    private static final Comparator<Venue> CAPACITY_ORDER = Comparator.comparingInt(Venue::capacity)
+            .thenComparingLong(Venue::roomId);
+
+    private final RoomRepository roomRepository;
+    private volatile Rooms rooms;
+
+    public RoomCapacityIndex(RoomRepository roomRepository) {
+        this.roomRepository = roomRepository;
+    }
+
+    /**
+     * Room with its locality and city
+     */
+    public record Venue(long roomId, String roomName, Integer floor, int capacity, long localityId,
+                        String localityName, String address, Long cityId, String cityName) {
+    }
+
+    /**
+     * @return Rooms in the city with at least the given capacity, smallest capacity first
+     */
+    public List<Venue> inCity(Long cityId, int minCapacity) {
+        return atLeast(rooms().byCity.get(cityId), minCapacity);
+    }
+
+    /**
+     * @return Rooms of the locality with at least the given capacity, smallest capacity first
+     */
+    public List<Venue> inLocality(Long localityId, int minCapacity) {
+        return atLeast(rooms().byLocality.get(localityId), minCapacity);
+    }
+
+    /**
+     * Drop the loaded rooms after a room or locality changed. Inside a transaction they are dropped after commit.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        } else {
+            clear();
+        }
+    }
+
+    // Waits for a load in progress, which may have read the rows before the change
+    private synchronized void clear() {
+        rooms = null;
+    }
+
+    private Rooms rooms() {
+        Rooms current = rooms;
+        if (current == null) {
+            synchronized (this) {
+                if (rooms == null) {
+                    rooms = new Rooms(roomRepository.findVenueRows());
+                }
+                current = rooms;
+            }
+        }
+        return current;
+    }
+
+    private static List<Venue> atLeast(Venue[] venues, int minCapacity) {
+        if (venues == null) {
+            return List.of();
+        }
+        // First room with at least the capacity
+        int lo = 0;
+        int hi = venues.length;
+        while (lo < hi) {
+            int middle = (lo + hi) >>> 1;
+            if (venues[middle].capacity() < minCapacity) {
+                lo = middle + 1;
+            } else {
+                hi = middle;
+            }
+        }
+        return Arrays.asList(venues).subList(lo, venues.length);
+    }
+
+    /**
+     * Immutable snapshot of the rooms, grouped by city and by locality and sorted by capacity
+     */
+    private static final class Rooms {
+        private final Map<Long, Venue[]> byCity = new HashMap<>();
+        private final Map<Long, Venue[]> byLocality = new HashMap<>();
+
+        Rooms(List<Object[]> rows) {
+            Map<Long, List<Venue>> cities = new HashMap<>();
+            Map<Long, List<Venue>> localities = new HashMap<>();
+            for (Object[] row : rows) {
+                if (row[3] == null) {
+                    continue;
+                }
+                Venue venue = new Venue((Long) row[0], (String) row[1], (Integer) row[2], (Integer) row[3],
+                        (Long) row[4], (String) row[5], (String) row[6], (Long) row[7], (String) row[8]);
+                if (venue.cityId() != null) {
+                    cities.computeIfAbsent(venue.cityId(), id -> new ArrayList<>()).add(venue);
+                }
+                localities.computeIfAbsent(venue.localityId(), id -> new ArrayList<>()).add(venue);
+            }
+            cities.forEach((id, venues) -> byCity.put(id, sorted(venues)));
+            localities.forEach((id, venues) -> byLocality.put(id, sorted(venues)));
+        }
+
+        private static Venue[] sorted(List<Venue> venues) {
+            Venue[] array = venues.toArray(new Venue[0]);
+            Arrays.sort(array, CAPACITY_ORDER);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.Room;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory schedule of every room, one interval tree per room and day, used for occupied times
+ * and to refuse double-bookings.
+ * An interval is [start, end) in minutes from the midnight of the event date (the end may pass midnight).
+ * A room-day keeps its intervals sorted by start as an implicit balanced tree augmented with the greatest
+ * end of every subtree, so an overlap query is O(log n + k). Room-days are immutable snapshots replaced
+ * on change, readers never take a lock.
+ * Room-days are loaded lazily from the database, outside of any lock. A booking is checked and entered under
+ * one lock (in memory only), so a concurrent booking of the same room in this JVM sees it before the transaction
+ * commits; on rollback it is undone. The check holds within one application instance only: another instance
+ * neither sees the booking nor refreshes the room-days it has loaded, so running several instances needs a
+ * database-level guard against double-bookings.
+ */
+@Component
+public class RoomIntervalIndex {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final EventRepository eventRepository;
+    private final Map<RoomDay, Intervals> days = new ConcurrentHashMap<>();
+
+    public RoomIntervalIndex(EventRepository eventRepository) {
+        this.eventRepository = eventRepository;
+    }
+
+    /**
+     * Rooms and time an event occupies
+     */
+    public record Placement(Set<Long> roomIds, LocalDate date, int startMinute, int endMinute) {
+
+        /**
+         * @return Placement of the event, or null if its rooms, date or start time are not set
+         */
+        public static Placement of(Event event) {
+            if (event.getRooms() == null || event.getRooms().isEmpty()
+                    || event.getEventDate() == null || event.getStartTime() == null) {
+                return null;
+            }
+            Set<Long> roomIds = new TreeSet<>();
+            for (Room room : event.getRooms()) {
+                roomIds.add(room.getId());
+            }
+            int start = event.getStartTime().toSecondOfDay() / 60;
+            return new Placement(roomIds, event.getEventDate(), start, start + event.getDuration());
+        }
+    }
+
+    /**
+     * Time an event occupies on a day, in minutes from midnight
+     */
+    public record Interval(long eventId, int startMinute, int endMinute) {
+    }
+
+    /**
+     * @return Events in any of the rooms on the date, each once, ordered by start
+     */
+    public List<Interval> occupied(Collection<Long> roomIds, LocalDate date) {
+        List<RoomDay> keys = new ArrayList<>();
+        for (Long roomId : roomIds) {
+            keys.add(new RoomDay(roomId, date));
+        }
+        Map<RoomDay, Intervals> loaded = load(keys);
+
+        Set<Long> seen = new HashSet<>();
+        List<Interval> result = new ArrayList<>();
+        for (RoomDay key : keys) {
+            Intervals intervals = loaded.get(key);
+            for (int i = 0; i < intervals.size(); i++) {
+                if (seen.add(intervals.eventIds[i])) {
+                    result.add(intervals.interval(i));
+                }
+            }
+        }
+        result.sort(Comparator.comparingInt(Interval::startMinute).thenComparingLong(Interval::eventId));
+        return result;
+    }
+
+    /**
+     * Occupied times of the rooms on every day between the dates (inclusive), the missing room-days read
+     * with one range query
+     * @return Intervals by date, in minutes from the midnight of that date, in no particular order
+     */
+    public Map<LocalDate, List<Interval>> occupied(Collection<Long> roomIds, LocalDate from, LocalDate to) {
+        List<RoomDay> keys = new ArrayList<>();
+        LocalDate missingFrom = null;
+        LocalDate missingTo = null;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            for (Long roomId : roomIds) {
+                RoomDay key = new RoomDay(roomId, date);
+                keys.add(key);
+                if (!days.containsKey(key)) {
+                    missingFrom = missingFrom == null ? date : missingFrom;
+                    missingTo = date;
+                }
+            }
+        }
+
+        Map<RoomDay, List<Interval>> loaded = new HashMap<>();
+        if (missingFrom != null) {
+            for (Object[] row : eventRepository.findRoomIntervalsBetween(roomIds, missingFrom, missingTo)) {
+                addRow(loaded, row);
+            }
+        }
+        Map<LocalDate, List<Interval>> result = new HashMap<>();
+        for (RoomDay key : keys) {
+            Intervals intervals = days.computeIfAbsent(key, k -> new Intervals(loaded.getOrDefault(k, List.of())));
+            List<Interval> ofDay = result.computeIfAbsent(key.date(), date -> new ArrayList<>());
+            for (int i = 0; i < intervals.size(); i++) {
+                ofDay.add(intervals.interval(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rooms in which no event overlaps the time, checked across midnight like a booking.
+     * The missing room-days of all rooms are read with one query.
+     * @param startMinute Start in minutes from the midnight of the date
+     * @param endMinute End (exclusive), may pass midnight
+     * @return The free rooms among the given ones
+     */
+    public Set<Long> freeRooms(Collection<Long> roomIds, LocalDate date, int startMinute, int endMinute) {
+        List<RoomDay> keys = new ArrayList<>();
+        for (Long roomId : roomIds) {
+            keys.add(new RoomDay(roomId, date.minusDays(1)));
+            keys.add(new RoomDay(roomId, date));
+            keys.add(new RoomDay(roomId, date.plusDays(1)));
+        }
+        Map<RoomDay, Intervals> loaded = load(keys);
+
+        Set<Long> free = new HashSet<>();
+        for (Long roomId : roomIds) {
+            // Stops at the first overlap
+            if (forEachOverlap(loaded, roomId, date, startMinute, endMinute, (day, interval) -> false)) {
+                free.add(roomId);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Move an event from its previous placement to the next one if no other event in the rooms overlaps it.
+     * Inside a transaction the move is visible at once and undone on rollback.
+     * Events are checked across midnight for a day before and after the date.
+     * @param previous Placement before the change, null for a new event
+     * @param next Placement after the change
+     * @throws IllegalStateException If a room is occupied by another event in that time
+     */
+    public void book(Long eventId, Placement previous, Placement next) {
+        List<RoomDay> keys = new ArrayList<>();
+        for (Long roomId : next.roomIds()) {
+            keys.add(new RoomDay(roomId, next.date().minusDays(1)));
+            keys.add(new RoomDay(roomId, next.date()));
+            keys.add(new RoomDay(roomId, next.date().plusDays(1)));
+        }
+        // The previous room-days are loaded before the change is written, a later load would miss it
+        keys.addAll(keysOf(previous));
+
+        while (true) {
+            // The database is read without the lock, bookings of loaded rooms do not wait for it
+            load(keys);
+            synchronized (this) {
+                // Re-read under the lock: other bookings may have replaced the room-days since
+                Map<RoomDay, Intervals> loaded = loaded(keys);
+                if (loaded == null) {
+                    // Evicted meanwhile, load it again
+                    continue;
+                }
+
+                for (Long roomId : next.roomIds()) {
+                    forEachOverlap(loaded, roomId, next.date(), next.startMinute(), next.endMinute(),
+                            (date, interval) -> {
+                                if (interval.eventId() != eventId) {
+                                    throw conflict(roomId, date, interval);
+                                }
+                                return true;
+                            });
+                }
+
+                move(eventId, previous, next);
+            }
+            break;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        // Room-days loaded meanwhile by readers are brought up to date as well
+                        move(eventId, previous, next);
+                    } else {
+                        move(eventId, next, previous);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Remove a deleted event. Call before the delete is written; inside a transaction it is removed after commit.
+     */
+    public void release(Long eventId, Placement placement) {
+        if (placement == null) {
+            return;
+        }
+        load(keysOf(placement));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    move(eventId, placement, null);
+                }
+            });
+        } else {
+            move(eventId, placement, null);
+        }
+    }
+
+    /**
+     * Forget the schedule of a deleted room (after commit inside a transaction)
+     */
+    public void evictRoom(Long roomId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(roomId);
+                }
+            });
+        } else {
+            evict(roomId);
+        }
+    }
+
+    /**
+     * Drop room-days older than yesterday once a day, they are loaded again if asked for
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public synchronized void evictPast() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        days.keySet().removeIf(key -> key.date().isBefore(yesterday));
+    }
+
+    private synchronized void evict(Long roomId) {
+        days.keySet().removeIf(key -> key.roomId().equals(roomId));
+    }
+
+    /**
+     * Visitor of the intervals overlapping a time
+     */
+    private interface OverlapVisitor {
+        /**
+         * @param date Date the interval belongs to
+         * @return false to stop the visit
+         */
+        boolean visit(LocalDate date, Interval interval);
+    }
+
+    // Visit the intervals of the room overlapping [start, end) on the date, including the neighbouring days
+    // (whose intervals may cross midnight); false if the visitor stopped
+    private static boolean forEachOverlap(Map<RoomDay, Intervals> loaded, Long roomId, LocalDate date,
+                                          int start, int end, OverlapVisitor visitor) {
+        for (int dayOffset = -1; dayOffset <= 1; dayOffset++) {
+            LocalDate day = date.plusDays(dayOffset);
+            Intervals intervals = loaded.get(new RoomDay(roomId, day));
+            // The time measured from the midnight of that day
+            int from = start - dayOffset * MINUTES_PER_DAY;
+            int to = end - dayOffset * MINUTES_PER_DAY;
+            if (!intervals.overlapping(from, to, i -> visitor.visit(day, intervals.interval(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IllegalStateException conflict(Long roomId, LocalDate date, Interval interval) {
+        LocalTime start = LocalTime.MIN.plusMinutes(interval.startMinute());
+        LocalTime end = LocalTime.MIN.plusMinutes(interval.endMinute());
+        return new IllegalStateException("Miestnosť " + roomId + " je " + date + " od " + start.format(TIME_FORMATTER)
+                + " do " + end.format(TIME_FORMATTER) + " obsadená inou udalosťou");
+    }
+
+    private static List<RoomDay> keysOf(Placement placement) {
+        List<RoomDay> keys = new ArrayList<>();
+        if (placement != null) {
+            for (Long roomId : placement.roomIds()) {
+                keys.add(new RoomDay(roomId, placement.date()));
+            }
+        }
+        return keys;
+    }
+
+    // Replace the intervals of the event in the loaded room-days of both placements (either may be null)
+    private synchronized void move(Long eventId, Placement from, Placement to) {
+        Set<RoomDay> keys = new LinkedHashSet<>(keysOf(from));
+        keys.addAll(keysOf(to));
+        for (RoomDay key : keys) {
+            Intervals intervals = days.get(key);
+            if (intervals == null) {
+                // Not loaded - read from the database when needed
+                continue;
+            }
+            boolean placed = to != null && to.date().equals(key.date()) && to.roomIds().contains(key.roomId());
+            days.put(key, intervals.with(eventId, placed ? to.startMinute() : -1, placed ? to.endMinute() : -1));
+        }
+    }
+
+    // Room-days of the keys, the missing ones loaded with one query
+    private Map<RoomDay, Intervals> load(Collection<RoomDay> keys) {
+        Set<Long> roomIds = new HashSet<>();
+        Set<LocalDate> dates = new HashSet<>();
+        for (RoomDay key : keys) {
+            if (!days.containsKey(key)) {
+                roomIds.add(key.roomId());
+                dates.add(key.date());
+            }
+        }
+        Map<RoomDay, List<Interval>> loaded = new HashMap<>();
+        if (!roomIds.isEmpty()) {
+            for (Object[] row : eventRepository.findRoomIntervals(roomIds, dates)) {
+                addRow(loaded, row);
+            }
+        }
+
+        Map<RoomDay, Intervals> result = new HashMap<>();
+        for (RoomDay key : keys) {
+            // A room-day loaded meanwhile is already up to date
+            result.put(key, days.computeIfAbsent(key, k -> new Intervals(loaded.getOrDefault(k, List.of()))));
+        }
+        return result;
+    }
+
+    // Current room-days of the keys, null if one of them is not loaded
+    private Map<RoomDay, Intervals> loaded(Collection<RoomDay> keys) {
+        Map<RoomDay, Intervals> result = new HashMap<>();
+        for (RoomDay key : keys) {
+            Intervals intervals = days.get(key);
+            if (intervals == null) {
+                return null;
+            }
+            result.put(key, intervals);
+        }
+        return result;
+    }
+
+    // [roomId, eventId, eventDate, startTime, duration] row of the schedule queries
+    private static void addRow(Map<RoomDay, List<Interval>> loaded, Object[] row) {
+        int start = ((LocalTime) row[3]).toSecondOfDay() / 60;
+        loaded.computeIfAbsent(new RoomDay((Long) row[0], (LocalDate) row[2]), key -> new ArrayList<>())
+                .add(new Interval((Long) row[1], start, start + (Integer) row[4]));
+    }
+
+    private record RoomDay(Long roomId, LocalDate date) {
+    }
+
+    /**
+     * Immutable intervals of one room-day sorted by start. The middle of every range [lo, hi) is the root of
+     * its subtree and maxEnd[middle] the greatest end within the range.
+     */
+    private static final class Intervals {
+        private final long[] eventIds;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] maxEnds;
+
+        Intervals(List<Interval> intervals) {
+            List<Interval> sorted = new ArrayList<>(intervals);
+            sorted.sort(Comparator.comparingInt(Interval::startMinute).thenComparingLong(Interval::eventId));
+            int n = sorted.size();
+            eventIds = new long[n];
+            starts = new int[n];
+            ends = new int[n];
+            maxEnds = new int[n];
+            for (int i = 0; i < n; i++) {
+                eventIds[i] = sorted.get(i).eventId();
+                starts[i] = sorted.get(i).startMinute();
+                ends[i] = sorted.get(i).endMinute();
+            }
+            buildMaxEnds(0, n);
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        Interval interval(int i) {
+            return new Interval(eventIds[i], starts[i], ends[i]);
+        }
+
+        /**
+         * Report the intervals overlapping [from, to) in the order of their start until the consumer returns false
+         * @return false if the consumer stopped the search
+         */
+        boolean overlapping(int from, int to, IntPredicate consumer) {
+            return overlapping(0, starts.length, from, to, consumer);
+        }
+
+        /**
+         * @return Copy with the interval of the event replaced, or removed if start is negative
+         */
+        Intervals with(long eventId, int start, int end) {
+            List<Interval> intervals = new ArrayList<>(size() + 1);
+            for (int i = 0; i < size(); i++) {
+                if (eventIds[i] != eventId) {
+                    intervals.add(interval(i));
+                }
+            }
+            if (start >= 0) {
+                intervals.add(new Interval(eventId, start, end));
+            }
+            return new Intervals(intervals);
+        }
+
+        private boolean overlapping(int lo, int hi, int from, int to, IntPredicate consumer) {
+            if (lo >= hi) {
+                return true;
+            }
+            int middle = (lo + hi) >>> 1;
+            // Nothing in this subtree ends after the query starts
+            if (maxEnds[middle] <= from) {
+                return true;
+            }
+            if (!overlapping(lo, middle, from, to, consumer)) {
+                return false;
+            }
+            // This interval and the right subtree start after the query ends
+            if (starts[middle] >= to) {
+                return true;
+            }
+            if (ends[middle] > from && !consumer.test(middle)) {
+                return false;
+            }
+            return overlapping(middle + 1, hi, from, to, consumer);
+        }
+
+        private int buildMaxEnds(int lo, int hi) {
+            if (lo >= hi) {
+                return Integer.MIN_VALUE;
+            }
+            int middle = (lo + hi) >>> 1;
+            int max = Math.max(ends[middle], Math.max(buildMaxEnds(lo, middle), buildMaxEnds(middle + 1, hi)));
+            maxEnds[middle] = max;
+            return max;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.stuba.fei.reservation_system.service;
 
+import com.stuba.fei.reservation_system.dto.FreeSlot;
 import com.stuba.fei.reservation_system.model.Event;
 import com.stuba.fei.reservation_system.model.EventStatus;
 import com.stuba.fei.reservation_system.model.Locality;
@@ -7,6 +8,7 @@ import com.stuba.fei.reservation_system.model.Room;
 import com.stuba.fei.reservation_system.model.users.SpaceRenter;
 import com.stuba.fei.reservation_system.repository.RoomRepository;
 import com.stuba.fei.reservation_system.service.users.SpaceRenterService;
+import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -14,19 +16,36 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.AccessDeniedException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 public class RoomService {
+    // Longest date range of a free slot search
+    public static final int MAX_FREE_SLOT_DAYS = 31;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
     private final RoomRepository roomRepository;
     private final LocalityService localityService;
+    private final RoomIntervalIndex roomIntervalIndex;
+    private final RoomCapacityIndex roomCapacityIndex;
     
     @Autowired
     private SpaceRenterService spaceRenterService;
 
-    public RoomService(RoomRepository roomRepository, LocalityService localityService) {
+    public RoomService(RoomRepository roomRepository, LocalityService localityService, RoomIntervalIndex roomIntervalIndex,
+                       RoomCapacityIndex roomCapacityIndex) {
         this.roomRepository = roomRepository;
         this.localityService = localityService;
+        this.roomIntervalIndex = roomIntervalIndex;
+        this.roomCapacityIndex = roomCapacityIndex;
     }
 
     public Room createRoom(Long localityId, Room room) {
@@ -35,7 +54,9 @@ public class RoomService {
 
         locality.setTotalCapacity(locality.getTotalCapacity() + room.getCapacity());
         room.setLocality(locality);
-        return roomRepository.save(room);
+        Room savedRoom = roomRepository.save(room);
+        roomCapacityIndex.invalidate();
+        return savedRoom;
     }
 
     public List<Room> getRoomsByLocality(Long localityId) {
@@ -57,7 +78,9 @@ public class RoomService {
         room.setName(roomDetails.getName());
         room.setFloor(roomDetails.getFloor());
         room.setCapacity(roomDetails.getCapacity());
-        return roomRepository.save(room);
+        Room savedRoom = roomRepository.save(room);
+        roomCapacityIndex.invalidate();
+        return savedRoom;
     }
 
     @Transactional
@@ -85,8 +108,112 @@ public class RoomService {
 
         // Odstránenie miestnosti
         roomRepository.deleteById(id);
+        roomIntervalIndex.evictRoom(id);
+        roomCapacityIndex.invalidate();
     }
     
+    /**
+     * Find the windows in which all the given rooms are free for at least the given duration.
+     * Occupied intervals of all rooms (including events of the previous day running past midnight) are
+     * sorted and merged in one sweep, the free windows are the gaps of the merged timeline within the opening
+     * hours of every day. Windows that already passed are left out.
+     * @param dateFrom First day (inclusive)
+     * @param dateTo Last day (inclusive), at most MAX_FREE_SLOT_DAYS days after dateFrom
+     * @param duration Minimal length of a window in minutes
+     * @param openFrom Opening time of every day, null for midnight
+     * @param openTo Closing time of every day, null or 00:00 for the end of the day
+     * @return Free windows ordered by start
+     * @throws IllegalArgumentException If the range, duration or opening hours are invalid
+     * @throws EntityNotFoundException If a room does not exist
+     */
+    public List<FreeSlot> getFreeSlots(List<Long> roomIds, LocalDate dateFrom, LocalDate dateTo, int duration,
+                                       LocalTime openFrom, LocalTime openTo) {
+        return getFreeSlots(roomIds, dateFrom, dateTo, duration, openFrom, openTo, LocalDateTime.now());
+    }
+
+    /**
+     * Same as {@link #getFreeSlots(List, LocalDate, LocalDate, int, LocalTime, LocalTime)} with windows
+     * before the given time left out
+     */
+    List<FreeSlot> getFreeSlots(List<Long> roomIds, LocalDate dateFrom, LocalDate dateTo, int duration,
+                                LocalTime openFrom, LocalTime openTo, LocalDateTime now) {
+        if (roomIds == null || roomIds.isEmpty()) {
+            throw new IllegalArgumentException("Musíte zadať aspoň jednu miestnosť");
+        }
+        if (dateTo.isBefore(dateFrom)) {
+            throw new IllegalArgumentException("dateTo must not be before dateFrom");
+        }
+        if (ChronoUnit.DAYS.between(dateFrom, dateTo) >= MAX_FREE_SLOT_DAYS) {
+            throw new IllegalArgumentException("The date range can span at most " + MAX_FREE_SLOT_DAYS + " days");
+        }
+        if (duration < 15) {
+            throw new IllegalArgumentException("Dĺžka trvania udalosti musí byť aspoň 15 minút.");
+        }
+        int open = openFrom == null ? 0 : openFrom.toSecondOfDay() / 60;
+        int close = openTo == null || openTo.equals(LocalTime.MIDNIGHT) ? MINUTES_PER_DAY : openTo.toSecondOfDay() / 60;
+        if (close <= open) {
+            throw new IllegalArgumentException("Opening time must be before closing time");
+        }
+        Set<Long> rooms = new TreeSet<>(roomIds);
+        if (roomRepository.findAllById(rooms).size() != rooms.size()) {
+            throw new EntityNotFoundException("Nenašli sa všetky miestnosti s ID: " + rooms);
+        }
+
+        // Occupied intervals on one timeline, in minutes from the midnight of the day before dateFrom
+        LocalDate origin = dateFrom.minusDays(1);
+        List<int[]> busy = new ArrayList<>();
+        roomIntervalIndex.occupied(rooms, origin, dateTo).forEach((date, intervals) -> {
+            int offset = (int) ChronoUnit.DAYS.between(origin, date) * MINUTES_PER_DAY;
+            for (RoomIntervalIndex.Interval interval : intervals) {
+                busy.add(new int[] {offset + interval.startMinute(), offset + interval.endMinute()});
+            }
+        });
+        busy.sort(Comparator.comparingInt(interval -> interval[0]));
+
+        // Sweep: merge overlapping intervals into disjoint busy blocks
+        List<int[]> blocks = new ArrayList<>();
+        for (int[] interval : busy) {
+            int[] last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+            if (last != null && interval[0] <= last[1]) {
+                last[1] = Math.max(last[1], interval[1]);
+            } else {
+                blocks.add(new int[] {interval[0], interval[1]});
+            }
+        }
+
+        // Gaps between the blocks inside the opening hours of every day
+        int nowMinute = now.isBefore(origin.atStartOfDay()) ? 0
+                : (int) Math.min(Integer.MAX_VALUE, ChronoUnit.MINUTES.between(origin.atStartOfDay(), now.plusSeconds(59)));
+        List<FreeSlot> slots = new ArrayList<>();
+        int block = 0;
+        for (LocalDate date = dateFrom; !date.isAfter(dateTo); date = date.plusDays(1)) {
+            int offset = (int) ChronoUnit.DAYS.between(origin, date) * MINUTES_PER_DAY;
+            int start = Math.max(offset + open, nowMinute);
+            int end = offset + close;
+            // Blocks ending before this day's window are not needed any more, days are visited in order
+            while (block < blocks.size() && blocks.get(block)[1] <= start) {
+                block++;
+            }
+            for (int i = block; i < blocks.size() && start < end; i++) {
+                int[] busyBlock = blocks.get(i);
+                if (busyBlock[0] >= end) {
+                    break;
+                }
+                addSlot(slots, origin, start, Math.min(busyBlock[0], end), duration);
+                start = Math.max(start, busyBlock[1]);
+            }
+            addSlot(slots, origin, start, end, duration);
+        }
+        return slots;
+    }
+
+    private static void addSlot(List<FreeSlot> slots, LocalDate origin, int start, int end, int duration) {
+        if (end - start >= duration) {
+            LocalDateTime midnight = origin.atStartOfDay();
+            slots.add(new FreeSlot(midnight.plusMinutes(start), midnight.plusMinutes(end), end - start));
+        }
+    }
+
     /**
      * Verifies that the current authenticated user is the owner of the locality
      * @param locality The locality to check ownership of
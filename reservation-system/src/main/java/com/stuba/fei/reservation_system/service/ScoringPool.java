@@ -0,0 +1,94 @@
+package com.stuba.fei.reservation_system.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Selection of the best scored candidates, in parallel for large candidate sets.
+ * Below the threshold the candidates are scored on the caller's thread. Above it the candidate range is split
+ * recursively on a dedicated fork-join pool (request threads never wait for the common pool), every leaf
+ * scores its part into its own {@link TopKSelector} and the partial selections are merged on the way up.
+ */
+@Component
+public class ScoringPool {
+    // Smallest part worth a task of its own
+    private static final int MIN_CHUNK_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ScoringPool(@Value("${suggestion.scoring.parallel-threshold:50000}") int threshold,
+                       @Value("${suggestion.scoring.threads:0}") int threads) {
+        this.threshold = threshold;
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("suggestion-scoring-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * @param size Number of candidates (indexes 0 to size - 1)
+     * @param count Number of best candidates to select
+     * @param scorer Scores a range of candidates into a selector; called concurrently for disjoint ranges
+     * @return The best candidates, not yet sorted
+     */
+    TopKSelector select(int size, int count, RangeScorer scorer) {
+        if (size < threshold || pool.getParallelism() == 1) {
+            TopKSelector top = new TopKSelector(count);
+            scorer.score(0, size, top);
+            return top;
+        }
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4));
+        return pool.invoke(new ScoreTask(0, size, count, chunkSize, scorer));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Scores the candidates from (inclusive) to (exclusive) and offers them to the selector
+     */
+    interface RangeScorer {
+        void score(int from, int to, TopKSelector top);
+    }
+
+    private static final class ScoreTask extends RecursiveTask<TopKSelector> {
+        private final int from;
+        private final int to;
+        private final int count;
+        private final int chunkSize;
+        private final RangeScorer scorer;
+
+        ScoreTask(int from, int to, int count, int chunkSize, RangeScorer scorer) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.chunkSize = chunkSize;
+            this.scorer = scorer;
+        }
+
+        @Override
+        protected TopKSelector compute() {
+            if (to - from <= chunkSize) {
+                TopKSelector top = new TopKSelector(count);
+                scorer.score(from, to, top);
+                return top;
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask right = new ScoreTask(middle, to, count, chunkSize, scorer);
+            right.fork();
+            TopKSelector top = new ScoreTask(from, middle, count, chunkSize, scorer).compute();
+            top.addAll(right.join());
+            return top;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.stuba.fei.reservation_system.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free counter of remaining seats split into independent stripes, so concurrent reservations
+ * of one event rarely contend on the same atomic value.
+ * Every seat lives in exactly one stripe and is only taken by a compare-and-set on a positive value,
+ * so the counter can never hand out more seats than it was created with.
+ */
+final class StripedSeatCounter {
+    private final AtomicInteger[] stripes;
+
+    /**
+     * @param seats Number of remaining seats
+     */
+    StripedSeatCounter(int seats) {
+        int seatCount = Math.max(0, seats);
+        int stripeCount = 1;
+        int maxStripes = Runtime.getRuntime().availableProcessors() * 2;
+        while (stripeCount < maxStripes && stripeCount < seatCount) {
+            stripeCount <<= 1;
+        }
+        stripes = new AtomicInteger[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicInteger(seatCount / stripeCount + (i < seatCount % stripeCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Take one seat, starting at a random stripe and moving on to the others when it is empty
+     * @return true if a seat was taken, false if no seat is left
+     */
+    boolean tryAcquire() {
+        int mask = stripes.length - 1;
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            AtomicInteger stripe = stripes[(start + i) & mask];
+            int left;
+            while ((left = stripe.get()) > 0) {
+                if (stripe.compareAndSet(left, left - 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return one seat
+     */
+    void release() {
+        stripes[ThreadLocalRandom.current().nextInt(stripes.length)].incrementAndGet();
+    }
+
+    /**
+     * @return Number of remaining seats (a snapshot, exact only when no reservation is in progress)
+     */
+    int remaining() {
+        int sum = 0;
+        for (AtomicInteger stripe : stripes) {
+            sum += stripe.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,183 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.PrecomputedSuggestion;
+import com.stuba.fei.reservation_system.model.PrecomputedSuggestions;
+import com.stuba.fei.reservation_system.model.UserTasteProfile;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import com.stuba.fei.reservation_system.repository.PrecomputedSuggestionsRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import com.stuba.fei.reservation_system.repository.UserTasteProfileRepository;
+import com.stuba.fei.reservation_system.repository.users.RegisteredUserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Nightly materialization of every registered user's suggestions (see {@link PrecomputedSuggestions}),
+ * so a suggestion request only ranks a short stored list instead of scoring all events.
+ * Users are processed in chunks, each chunk in its own transaction and several chunks in parallel.
+ * The lists are scored without a location, which is added when they are served.
+ * The nightly run executes on a thread of its own, so it does not hold up the shared scheduler thread.
+ */
+@Service
+public class SuggestionBatchService {
+    private static final Logger logger = Logger.getLogger(SuggestionBatchService.class.getName());
+
+    private final RegisteredUserRepository userRepository;
+    private final UserTasteProfileRepository profileRepository;
+    private final ReservationRepository reservationRepository;
+    private final PrecomputedSuggestionsRepository suggestionsRepository;
+    private final PrecomputedSuggestionStore precomputedSuggestionStore;
+    private final EventService eventService;
+    private final TransactionTemplate transactionTemplate;
+    private final int size;
+    private final int chunkSize;
+    private final int threads;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // One run at a time, a trigger while it is busy is dropped instead of queued
+    private final ThreadPoolExecutor runner = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "suggestion-batch");
+                thread.setDaemon(true);
+                return thread;
+            }, (runnable, executor) -> logger.warning("Suggestion batch: previous run still in progress, skipped"));
+
+    public SuggestionBatchService(RegisteredUserRepository userRepository,
+                                  UserTasteProfileRepository profileRepository,
+                                  ReservationRepository reservationRepository,
+                                  PrecomputedSuggestionsRepository suggestionsRepository,
+                                  PrecomputedSuggestionStore precomputedSuggestionStore,
+                                  EventService eventService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${suggestion.batch.size:36}") int size,
+                                  @Value("${suggestion.batch.chunk-size:500}") int chunkSize,
+                                  @Value("${suggestion.batch.threads:0}") int threads) {
+        this.userRepository = userRepository;
+        this.profileRepository = profileRepository;
+        this.reservationRepository = reservationRepository;
+        this.suggestionsRepository = suggestionsRepository;
+        this.precomputedSuggestionStore = precomputedSuggestionStore;
+        this.eventService = eventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Start the nightly run on the batch thread and return right away
+     */
+    @Scheduled(cron = "${suggestion.batch.cron:0 30 3 * * *}")
+    public void schedulePrecompute() {
+        runner.execute(() -> {
+            try {
+                precomputeAll();
+            } catch (RuntimeException e) {
+                logger.severe("Suggestion batch: run failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Compute and store the suggestions of all registered users
+     * @return The number of users whose suggestions were stored, -1 if a run is already in progress
+     */
+    public int precomputeAll() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        long startedAt = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Long> userIds = userRepository.findAllIds();
+            AtomicInteger stored = new AtomicInteger();
+            AtomicInteger failedChunks = new AtomicInteger();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int start = 0; start < userIds.size(); start += chunkSize) {
+                List<Long> chunk = userIds.subList(start, Math.min(start + chunkSize, userIds.size()));
+                tasks.add(pool.submit(() -> {
+                    try {
+                        stored.addAndGet(transactionTemplate.execute(status -> precompute(chunk)));
+                    } catch (RuntimeException e) {
+                        failedChunks.incrementAndGet();
+                        logger.severe("Suggestion batch: failed to precompute users " + chunk.get(0) + " - "
+                                + chunk.get(chunk.size() - 1) + ": " + e.getMessage());
+                    }
+                }));
+            }
+            tasks.forEach(ForkJoinTask::join);
+
+            // Users of failed chunks keep their older lists, so the changes since then are still needed
+            if (failedChunks.get() == 0) {
+                precomputedSuggestionStore.runCompleted(startedAt);
+            }
+            logger.info("Suggestion batch: stored suggestions of " + stored.get() + " users in "
+                    + (System.currentTimeMillis() - startedAt) + " ms (" + failedChunks.get() + " chunks failed)");
+            return stored.get();
+        } finally {
+            pool.shutdown();
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private int precompute(List<Long> userIds) {
+        // Taken before anything is read, so every change the lists do not contain is newer
+        LocalDateTime computedAt = LocalDateTime.now();
+
+        Map<Long, UserTasteProfile> profiles = profileRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(UserTasteProfile::getId, Function.identity()));
+        Map<Long, List<Long>> reservedEventIds = new HashMap<>();
+        for (Object[] row : reservationRepository.findUserAndEventIdsByRegisteredUserIdIn(userIds)) {
+            reservedEventIds.computeIfAbsent((Long) row[0], userId -> new ArrayList<>()).add((Long) row[1]);
+        }
+        Map<Long, PrecomputedSuggestions> existing = suggestionsRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(PrecomputedSuggestions::getId, Function.identity()));
+
+        List<PrecomputedSuggestions> results = new ArrayList<>();
+        for (RegisteredUser user : userRepository.findAllById(userIds)) {
+            // One more than stored, its score is the cutoff for the events left out
+            TopKSelector top = eventService.scoreRegisteredUser(user, profiles.get(user.getId()),
+                    reservedEventIds.getOrDefault(user.getId(), List.of()),
+                    EventFeatureStore.NO_CITY, 0.0, 0.0, size + 1, null);
+
+            PrecomputedSuggestions suggestions = existing.get(user.getId());
+            if (suggestions == null) {
+                suggestions = new PrecomputedSuggestions();
+                suggestions.setRegisteredUser(user);
+            }
+            suggestions.setComputedAt(computedAt);
+            suggestions.setCutoffScore(top.size() > size ? top.score(size) : null);
+            suggestions.getEvents().clear();
+            for (int rank = 0; rank < Math.min(size, top.size()); rank++) {
+                suggestions.getEvents().add(new PrecomputedSuggestion(top.id(rank), top.score(rank)));
+            }
+            results.add(suggestions);
+        }
+        suggestionsRepository.saveAll(results);
+        return results.size();
+    }
+}
@@ -0,0 +1,175 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache (with a TTL) of suggestion results per user and coarse location.
+ * An entry is dropped when its user reserves, cancels or changes preferences and when one of its events changes.
+ * All entries are dropped when an event appears or changes in a way that can put it into anybody's results.
+ * A fill ratio change of an event that is not in an entry only moves its small availability score,
+ * such entries are kept until they expire - so are entries whose co-booking scores moved with other users' reservations.
+ */
+@Component
+public class SuggestionCache {
+    private static final String ANONYMOUS = "";
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final double locationScale;
+
+    private final Map<String, Entry> cache;
+    // Incremented by every invalidation, a result computed across one is not stored
+    private long version;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Timer computeTimer;
+
+    public SuggestionCache(EventFeatureStore eventFeatureStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${suggestion.cache.max-entries:10000}") int maxEntries,
+                           @Value("${suggestion.cache.ttl-seconds:300}") long ttlSeconds,
+                           @Value("${suggestion.cache.location-precision:2}") int locationPrecision) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.locationScale = Math.pow(10, locationPrecision);
+        // Access-ordered LinkedHashMap = LRU; the eldest entry is dropped once the bound is exceeded
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > SuggestionCache.this.maxEntries;
+            }
+        };
+
+        this.hitCounter = lookups(meterRegistry, "hit");
+        this.missCounter = lookups(meterRegistry, "miss");
+        this.computeTimer = Timer.builder("suggestions.compute")
+                .description("Time to compute suggestions on a cache miss")
+                .register(meterRegistry);
+        Gauge.builder("suggestions.cache.size", this, SuggestionCache::size)
+                .description("Suggestion results kept in memory")
+                .register(meterRegistry);
+
+        eventFeatureStore.addListener(this::onEventsChanged);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("suggestions.cache.lookups")
+                .description("Suggestion requests by cache lookup result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Round a coordinate to the precision the results are cached for.
+     * Suggestions are computed from the rounded coordinates, so every user in the same cell gets the same result.
+     */
+    public Double coarsen(Double coordinate) {
+        return coordinate == null ? null : Math.round(coordinate * locationScale) / locationScale;
+    }
+
+    /**
+     * Cached suggestions, or the result of compute (stored unless an invalidation happened while computing)
+     * @param username Logged user, or null for anonymous suggestions
+     * @param longitude Coarsened longitude (can be null)
+     * @param latitude Coarsened latitude (can be null)
+     */
+    public List<EventSummary> get(String username, Double longitude, Double latitude,
+                                  Supplier<List<EventSummary>> compute) {
+        String user = username != null ? username : ANONYMOUS;
+        String key = user + "|" + longitude + "|" + latitude;
+        long now = System.currentTimeMillis();
+        long startVersion;
+        synchronized (this) {
+            Entry entry = cache.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hitCounter.increment();
+                return entry.suggestions;
+            }
+            startVersion = version;
+        }
+        missCounter.increment();
+
+        List<EventSummary> suggestions = List.copyOf(computeTimer.record(compute));
+        long[] eventIds = suggestions.stream().mapToLong(EventSummary::getId).toArray();
+        synchronized (this) {
+            if (version == startVersion) {
+                cache.put(key, new Entry(user, eventIds, suggestions, System.currentTimeMillis() + ttlMillis));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Drop the user's results once the current transaction commits (right away without a transaction)
+     */
+    public void evictUser(String username) {
+        if (username == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUser(username);
+                }
+            });
+        } else {
+            removeUser(username);
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        cache.clear();
+    }
+
+    private synchronized void removeUser(String username) {
+        version++;
+        cache.values().removeIf(entry -> entry.username.equals(username));
+    }
+
+    private void onEventsChanged(Collection<Long> eventIds, boolean newCandidates) {
+        if (newCandidates) {
+            clear();
+            return;
+        }
+        Set<Long> changed = new HashSet<>(eventIds);
+        synchronized (this) {
+            version++;
+            Iterator<Entry> entries = cache.values().iterator();
+            while (entries.hasNext()) {
+                for (long eventId : entries.next().eventIds) {
+                    if (changed.contains(eventId)) {
+                        entries.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized int size() {
+        return cache.size();
+    }
+
+    private record Entry(String username, long[] eventIds, List<EventSummary> suggestions, long expiresAt) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.stuba.fei.reservation_system.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel of IDs with deadlines. Scheduling and cancelling are O(1);
+ * every tick only looks at the one slot it points to. Deadlines further away than one
+ * rotation stay in their slot until the wheel comes around to them again.
+ */
+final class TimingWheel {
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<Map<Long, Long>> slots; // slot -> (id -> deadline tick)
+    private final Map<Long, Integer> slotOfId = new HashMap<>();
+    private final int mask;
+    private long currentTick;
+
+    /**
+     * @param tickMillis Length of one tick
+     * @param wheelSize Number of slots, must be a power of two
+     * @param startMillis Time of tick 0
+     */
+    TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = wheelSize - 1;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Schedule (or reschedule) an ID. Deadlines in the past expire on the next tick.
+     */
+    synchronized void schedule(Long id, long deadlineMillis) {
+        cancel(id);
+        long deadlineTick = Math.max(currentTick + 1,
+                Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis));
+        int slot = (int) (deadlineTick & mask);
+        slots.get(slot).put(id, deadlineTick);
+        slotOfId.put(id, slot);
+    }
+
+    synchronized void cancel(Long id) {
+        Integer slot = slotOfId.remove(id);
+        if (slot != null) {
+            slots.get(slot).remove(id);
+        }
+    }
+
+    synchronized int size() {
+        return slotOfId.size();
+    }
+
+    /**
+     * Advance the wheel to the given time, catching up on missed ticks
+     * @return IDs whose deadline has passed
+     */
+    synchronized List<Long> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        List<Long> expired = new ArrayList<>();
+        // After a pause longer than one rotation every slot is visited once
+        long firstTick = Math.max(currentTick + 1, targetTick - mask);
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Iterator<Map.Entry<Long, Long>> iterator = slots.get((int) (tick & mask)).entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Long> entry = iterator.next();
+                if (entry.getValue() <= targetTick) {
+                    iterator.remove();
+                    slotOfId.remove(entry.getKey());
+                    expired.add(entry.getKey());
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+}
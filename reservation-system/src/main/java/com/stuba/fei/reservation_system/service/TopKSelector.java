@@ -0,0 +1,157 @@
+package com.stuba.fei.reservation_system.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming selection of the k best scored events.
+ * A min-heap of primitives holds the current top k with the weakest one at the root, so selecting from
+ * n candidates takes O(n log k) time and O(k) memory. Ties go to the event that starts sooner, then to the
+ * lower id, so the selection is the head of a full sort whatever order the candidates come in.
+ * Callers can skip candidates whose upper-bound score cannot beat the root (see {@link #accepts}).
+ */
+final class TopKSelector {
+    private final int k;
+    private final long[] ids;
+    private final double[] scores;
+    private final long[] starts;
+    private int size;
+    private boolean sorted;
+
+    TopKSelector(int k) {
+        this.k = k;
+        this.ids = new long[k];
+        this.scores = new double[k];
+        this.starts = new long[k];
+    }
+
+    /**
+     * @param bound Upper bound of a candidate's score
+     * @return false if no candidate with this bound can get into the top k
+     */
+    boolean accepts(double bound) {
+        return size < k || (k > 0 && bound >= scores[0]);
+    }
+
+    /**
+     * Offer a scored candidate
+     * @return true if it is (for now) among the top k
+     */
+    boolean offer(long id, double score, long start) {
+        if (sorted) {
+            throw new IllegalStateException("Selection is already finished");
+        }
+        if (size < k) {
+            int i = size++;
+            set(i, id, score, start);
+            siftUp(i);
+            return true;
+        }
+        if (k == 0 || !isBetter(score, start, id, scores[0], starts[0], ids[0])) {
+            return false;
+        }
+        set(0, id, score, start);
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * Add the entries of another selector (e.g. a partial result of another worker)
+     */
+    void addAll(TopKSelector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i], other.starts[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sort the selection best first (heap sort in place). No more candidates can be offered afterwards.
+     */
+    TopKSelector finish() {
+        if (!sorted) {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            sorted = true;
+        }
+        return this;
+    }
+
+    long id(int rank) {
+        return ids[rank];
+    }
+
+    double score(int rank) {
+        return scores[rank];
+    }
+
+    /**
+     * @return Event IDs best first
+     */
+    List<Long> toIds() {
+        finish();
+        List<Long> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    private static boolean isBetter(double score, long start, long id,
+                                    double otherScore, long otherStart, long otherId) {
+        if (score != otherScore) {
+            return score > otherScore;
+        }
+        return start != otherStart ? start < otherStart : id < otherId;
+    }
+
+    // Root = weakest entry
+    private boolean isWeaker(int a, int b) {
+        return isBetter(scores[b], starts[b], ids[b], scores[a], starts[a], ids[a]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWeaker(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && isWeaker(child + 1, child)) {
+                child++;
+            }
+            if (!isWeaker(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void set(int i, long id, double score, long start) {
+        ids[i] = id;
+        scores[i] = score;
+        starts[i] = start;
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a]; ids[a] = ids[b]; ids[b] = id;
+        double score = scores[a]; scores[a] = scores[b]; scores[b] = score;
+        long start = starts[a]; starts[a] = starts[b]; starts[b] = start;
+    }
+}
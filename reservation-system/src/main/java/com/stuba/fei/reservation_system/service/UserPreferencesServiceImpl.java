@@ -13,13 +13,19 @@ public class UserPreferencesServiceImpl implements UserPreferencesService {
 
     private final RegisteredUserRepository userRepository;
     private final CityService cityService;
+    private final SuggestionCache suggestionCache;
+    private final PrecomputedSuggestionStore precomputedSuggestionStore;
 
     @Autowired
     public UserPreferencesServiceImpl(
             RegisteredUserRepository userRepository,
-            CityService cityService) {
+            CityService cityService,
+            SuggestionCache suggestionCache,
+            PrecomputedSuggestionStore precomputedSuggestionStore) {
         this.userRepository = userRepository;
         this.cityService = cityService;
+        this.suggestionCache = suggestionCache;
+        this.precomputedSuggestionStore = precomputedSuggestionStore;
     }
 
     @Override
@@ -67,8 +73,10 @@ public class UserPreferencesServiceImpl implements UserPreferencesService {
         // Handle category if provided
         user.setPreferredCategory(preferencesDTO.getCategory());
         
-        // Save and return
+        // Save and return (cached suggestions were computed from the old preferences)
         RegisteredUser savedUser = userRepository.save(user);
+        suggestionCache.evictUser(username);
+        precomputedSuggestionStore.invalidate(savedUser.getId());
         return convertToDto(savedUser);
     }
     
@@ -0,0 +1,346 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.EventFeatures;
+import com.stuba.fei.reservation_system.model.Reservation;
+import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
+import com.stuba.fei.reservation_system.model.UserTasteProfile;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import com.stuba.fei.reservation_system.repository.UserTasteProfileRepository;
+import com.stuba.fei.reservation_system.repository.users.RegisteredUserRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps every user's taste profile (see {@link UserTasteProfile}) in step with their reservations,
+ * so suggestion scoring reads a few histograms instead of the whole reservation history.
+ * New and cancelled reservations are queued once their transaction commits and applied as deltas
+ * in one batch every second by a single thread, so reservation transactions never touch profile rows.
+ * A profile is rebuilt from the reservation table when it is missing, when an event its user reserved
+ * changes or is deleted, and when its reservation count does not match the table (checked on startup
+ * and then periodically, which also repairs changes lost in a crash).
+ * Other in-memory views of reservations (e.g. {@link CoBookingIndex}) follow the same committed changes
+ * through a {@link ReservationListener}.
+ */
+@Service
+public class UserTasteProfileService {
+    private static final Logger logger = Logger.getLogger(UserTasteProfileService.class.getName());
+    private static final int REBUILD_BATCH_SIZE = 200;
+    // A change is queued right after its commit, so one queued this long after a rebuild cannot have been seen by it
+    private static final long REBUILD_OVERLAP_NANOS = 60_000_000_000L;
+
+    private final UserTasteProfileRepository profileRepository;
+    private final ReservationRepository reservationRepository;
+    private final EventRepository eventRepository;
+    private final RegisteredUserRepository userRepository;
+    private final SuggestionCache suggestionCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    private final Set<Long> staleUserIds = ConcurrentHashMap.newKeySet();
+    private final List<ReservationListener> listeners = new CopyOnWriteArrayList<>();
+    // Guarded by this: start (System.nanoTime) of the last batch that rebuilt the user's profile
+    private final Map<Long, Long> rebuiltAt = new HashMap<>();
+
+    public UserTasteProfileService(UserTasteProfileRepository profileRepository,
+                                   ReservationRepository reservationRepository,
+                                   EventRepository eventRepository,
+                                   RegisteredUserRepository userRepository,
+                                   SuggestionCache suggestionCache,
+                                   PlatformTransactionManager transactionManager) {
+        this.profileRepository = profileRepository;
+        this.reservationRepository = reservationRepository;
+        this.eventRepository = eventRepository;
+        this.userRepository = userRepository;
+        this.suggestionCache = suggestionCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public Optional<UserTasteProfile> findProfile(Long userId) {
+        return profileRepository.findById(userId);
+    }
+
+    public void addListener(ReservationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Count a new PENDING or CONFIRMED reservation once the current transaction commits
+     */
+    public void onReserved(Long userId, Long eventId) {
+        committed(List.of(new Change(userId, eventId, 1)));
+    }
+
+    public void onReserved(Collection<Reservation> reservations) {
+        committed(reservations.stream()
+                .map(reservation -> new Change(reservation.getRegisteredUser().getId(), reservation.getEvent().getId(), 1))
+                .toList());
+    }
+
+    /**
+     * Remove a cancelled or deleted reservation (that was PENDING or CONFIRMED) once the current transaction commits
+     */
+    public void onCancelled(Long userId, Long eventId) {
+        committed(List.of(new Change(userId, eventId, -1)));
+    }
+
+    /**
+     * Rebuild the profiles of the event's users once the current transaction commits.
+     * Call before the event's category, price or rooms are changed or the event is deleted
+     * (its reservations are deleted with it).
+     */
+    public void onEventChanged(Long eventId) {
+        List<Long> userIds = reservationRepository.findUserIdsByEventIdAndStatusNot(eventId, ReservationStatus.CANCELLED);
+        if (!userIds.isEmpty()) {
+            afterCommit(() -> staleUserIds.addAll(userIds));
+        }
+    }
+
+    /**
+     * Schedule a rebuild of every profile whose reservation count does not match the reservation table,
+     * including missing profiles of users with reservations
+     * @return The number of profiles to rebuild
+     */
+    @Scheduled(initialDelayString = "${suggestion.profiles.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${suggestion.profiles.reconcile-interval-ms:3600000}")
+    public int reconcile() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : reservationRepository.countByUserAndStatusNot(ReservationStatus.CANCELLED)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        Set<Long> stale = new HashSet<>();
+        for (Object[] row : profileRepository.findReservationCounts()) {
+            Long userId = (Long) row[0];
+            Long count = counts.remove(userId);
+            if ((count != null ? count : 0L) != ((Number) row[1]).longValue()) {
+                stale.add(userId);
+            }
+        }
+        stale.addAll(counts.keySet());
+        staleUserIds.addAll(stale);
+        return stale.size();
+    }
+
+    /**
+     * Apply the queued changes and rebuild (a batch of) stale profiles in one transaction
+     */
+    @Scheduled(fixedDelayString = "${suggestion.profiles.refresh-interval-ms:1000}")
+    public synchronized void applyChanges() {
+        List<Change> batch = new ArrayList<>();
+        Change change;
+        while ((change = changes.poll()) != null) {
+            batch.add(change);
+        }
+        List<Long> stale = staleUserIds.stream().limit(REBUILD_BATCH_SIZE).toList();
+        stale.forEach(staleUserIds::remove);
+        if (batch.isEmpty() && stale.isEmpty()) {
+            return;
+        }
+        // Taken before the transaction reads anything, so every change queued earlier is visible to a rebuild
+        long batchStart = System.nanoTime();
+        rebuiltAt.values().removeIf(start -> batchStart - start > REBUILD_OVERLAP_NANOS);
+        try {
+            Set<Long> rebuilt = transactionTemplate.execute(status -> apply(batch, stale));
+            rebuilt.forEach(userId -> rebuiltAt.put(userId, batchStart));
+        } catch (RuntimeException e) {
+            logger.severe("Taste profiles: failed to apply " + batch.size() + " changes and "
+                    + stale.size() + " rebuilds: " + e.getMessage());
+            changes.addAll(batch);
+            staleUserIds.addAll(stale);
+        }
+    }
+
+    /**
+     * @return Users whose profiles were rebuilt
+     */
+    private Set<Long> apply(List<Change> batch, List<Long> stale) {
+        Set<Long> toRebuild = new HashSet<>(stale);
+        // A profile rebuilt now already contains the changes of the batch. One rebuilt by an earlier batch contains
+        // the changes queued before that batch started; a change queued later may or may not have been visible
+        // to it (it commits before it is queued), so the profile is rebuilt once more instead of counting it twice.
+        Map<Long, List<Change>> changesByUser = new TreeMap<>();
+        for (Change change : batch) {
+            Long previousRebuild = rebuiltAt.get(change.userId);
+            if (toRebuild.contains(change.userId) || (previousRebuild != null && change.queuedAt - previousRebuild < 0)) {
+                continue;
+            }
+            if (previousRebuild != null) {
+                toRebuild.add(change.userId);
+                changesByUser.remove(change.userId);
+                continue;
+            }
+            changesByUser.computeIfAbsent(change.userId, userId -> new ArrayList<>()).add(change);
+        }
+        Set<Long> eventIds = changesByUser.values().stream()
+                .flatMap(List::stream)
+                .map(Change::eventId)
+                .collect(Collectors.toSet());
+        Map<Long, EventFeatures> events = eventIds.isEmpty() ? Map.of()
+                : eventRepository.findFeaturesByIds(eventIds).stream()
+                        .collect(Collectors.toMap(EventFeatures::getId, Function.identity()));
+
+        Set<Long> rebuilt = new HashSet<>(toRebuild);
+        changesByUser.forEach((userId, userChanges) -> {
+            Optional<UserTasteProfile> existing = profileRepository.findById(userId);
+            if (existing.isEmpty()) {
+                rebuild(userId);
+                rebuilt.add(userId);
+                return;
+            }
+            UserTasteProfile profile = existing.get();
+            for (Change change : userChanges) {
+                EventFeatures event = events.get(change.eventId);
+                // A deleted event rebuilds the profiles of its users anyway
+                if (event != null) {
+                    add(profile, event, change.delta);
+                }
+            }
+            profileRepository.save(profile);
+            suggestionCache.evictUser(profile.getRegisteredUser().getUsername());
+        });
+        toRebuild.forEach(this::rebuild);
+        return rebuilt;
+    }
+
+    private void rebuild(Long userId) {
+        List<EventFeatures> reserved = eventRepository.findFeaturesOfReservedEvents(userId, ReservationStatus.CANCELLED);
+        UserTasteProfile profile = profileRepository.findById(userId).orElse(null);
+        if (profile == null) {
+            Optional<RegisteredUser> user = userRepository.findById(userId);
+            if (reserved.isEmpty() || user.isEmpty()) {
+                return;
+            }
+            profile = new UserTasteProfile();
+            profile.setRegisteredUser(user.get());
+        }
+        profile.setReservationCount(0);
+        profile.setPriceCount(0);
+        profile.setPriceMean(0.0);
+        profile.setPriceM2(0.0);
+        profile.getCategoryCounts().clear();
+        profile.getCityCounts().clear();
+        for (EventFeatures event : reserved) {
+            add(profile, event, 1);
+        }
+        profileRepository.save(profile);
+        suggestionCache.evictUser(profile.getRegisteredUser().getUsername());
+    }
+
+    /**
+     * Add (delta 1) or remove (delta -1) one reservation of the event
+     */
+    private static void add(UserTasteProfile profile, EventFeatures event, int delta) {
+        profile.setReservationCount(Math.max(0, profile.getReservationCount() + delta));
+        if (event.getCategory() != null) {
+            addCount(profile.getCategoryCounts(), event.getCategory(), delta);
+        }
+        if (event.getCityId() != null) {
+            addCount(profile.getCityCounts(), event.getCityId(), delta);
+        }
+        if (event.getPrice() != null) {
+            addPrice(profile, event.getPrice(), delta);
+        }
+    }
+
+    private static <K> void addCount(Map<K, Integer> counts, K key, int delta) {
+        int count = counts.getOrDefault(key, 0) + delta;
+        if (count > 0) {
+            counts.put(key, count);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    // Welford's online mean and variance, run backwards for a removal
+    private static void addPrice(UserTasteProfile profile, double price, int delta) {
+        int n = profile.getPriceCount();
+        double mean = profile.getPriceMean();
+        double m2 = profile.getPriceM2();
+        if (delta > 0) {
+            n++;
+            double previousMean = mean;
+            mean += (price - previousMean) / n;
+            m2 += (price - previousMean) * (price - mean);
+        } else if (n <= 1) {
+            n = 0;
+            mean = 0.0;
+            m2 = 0.0;
+        } else {
+            n--;
+            double previousMean = mean - (price - mean) / n;
+            m2 = Math.max(0.0, m2 - (price - previousMean) * (price - mean));
+            mean = previousMean;
+        }
+        profile.setPriceCount(n);
+        profile.setPriceMean(mean);
+        profile.setPriceM2(m2);
+    }
+
+    private void committed(List<Change> committedChanges) {
+        afterCommit(() -> {
+            long queuedAt = System.nanoTime();
+            committedChanges.forEach(change -> changes.add(change.queued(queuedAt)));
+            for (ReservationListener listener : listeners) {
+                for (Change change : committedChanges) {
+                    try {
+                        listener.reservationChanged(change.userId, change.eventId, change.delta > 0);
+                    } catch (RuntimeException e) {
+                        logger.severe("Taste profiles: listener failed: " + e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Notified once a transaction that added or removed (cancelled, deleted) a PENDING or CONFIRMED reservation commits
+     */
+    public interface ReservationListener {
+        void reservationChanged(Long userId, Long eventId, boolean added);
+    }
+
+    private record Change(Long userId, Long eventId, int delta, long queuedAt) {
+        Change(Long userId, Long eventId, int delta) {
+            this(userId, eventId, delta, 0L);
+        }
+
+        Change queued(long time) {
+            return new Change(userId, eventId, delta, time);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.VenueMatch;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search of rooms for an event: rooms in a city or around a point with at least the requested capacity,
+ * optionally free in a time window, ranked by fit (the smallest sufficient room first, then the nearest).
+ * Candidates come from {@link RoomCapacityIndex} already in rank order, their occupancy is checked in batches
+ * against {@link RoomIntervalIndex} and the search stops as soon as enough free rooms are found.
+ */
+@Service
+public class VenueSearchService {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    // Candidates checked for occupancy at once (one query for the room-days not loaded yet). The first batch
+    // is twice the limit, every next one twice the previous, up to the maximum
+    private static final int MAX_FREE_CHECK_BATCH = 1024;
+
+    private final RoomCapacityIndex roomCapacityIndex;
+    private final RoomIntervalIndex roomIntervalIndex;
+    private final LocalitySpatialIndex localitySpatialIndex;
+
+    public VenueSearchService(RoomCapacityIndex roomCapacityIndex, RoomIntervalIndex roomIntervalIndex,
+                              LocalitySpatialIndex localitySpatialIndex) {
+        this.roomCapacityIndex = roomCapacityIndex;
+        this.roomIntervalIndex = roomIntervalIndex;
+        this.localitySpatialIndex = localitySpatialIndex;
+    }
+
+    /**
+     * Find rooms for an event, either in a city or within a radius around a point
+     * @param minCapacity Required capacity, 1 if null
+     * @param date Date of the event, with startTime and duration given together or not at all
+     * @param duration Length of the event in minutes
+     * @param limit Maximal number of results, clamped to MAX_LIMIT
+     * @return Matching rooms, best fit first
+     * @throws IllegalArgumentException If the location, capacity, time window or radius is invalid
+     */
+    public List<VenueMatch> search(Long cityId, Double latitude, Double longitude, Double radiusKm,
+                                   Integer minCapacity, LocalDate date, LocalTime startTime, Integer duration,
+                                   Integer limit) {
+        int count = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        int capacity = minCapacity == null ? 1 : minCapacity;
+        if (capacity < 1) {
+            throw new IllegalArgumentException("minCapacity must be at least 1");
+        }
+        if ((date == null) != (startTime == null) || (date == null) != (duration == null)) {
+            throw new IllegalArgumentException("date, startTime and duration must be given together");
+        }
+        if (duration != null && duration < 15) {
+            throw new IllegalArgumentException("Dĺžka trvania udalosti musí byť aspoň 15 minút.");
+        }
+        if ((latitude == null) != (longitude == null)) {
+            throw new IllegalArgumentException("latitude and longitude must be given together");
+        }
+
+        List<RoomCapacityIndex.Venue> candidates;
+        Map<Long, Double> distanceByLocality = null;
+        if (cityId != null) {
+            if (latitude != null) {
+                throw new IllegalArgumentException("Search either in a city or around a point, not both");
+            }
+            candidates = roomCapacityIndex.inCity(cityId, capacity);
+        } else {
+            if (latitude == null) {
+                throw new IllegalArgumentException("cityId or latitude and longitude are required");
+            }
+            if (latitude < -90.0 || latitude > 90.0 || longitude < -180.0 || longitude > 180.0) {
+                throw new IllegalArgumentException("Latitude must be between -90 and 90, longitude between -180 and 180");
+            }
+            double radius = radiusKm != null ? radiusKm : EventService.DEFAULT_NEARBY_RADIUS_KM;
+            if (!(radius > 0 && radius <= EventService.MAX_NEARBY_RADIUS_KM)) {
+                throw new IllegalArgumentException("radiusKm must be greater than 0 and at most " + EventService.MAX_NEARBY_RADIUS_KM);
+            }
+            // Rooms of the localities in the radius, in the same order as in a city: capacity, then distance
+            Map<Long, Double> distances = new HashMap<>();
+            candidates = new ArrayList<>();
+            for (LocalitySpatialIndex.Hit hit : localitySpatialIndex.findWithin(longitude, latitude, radius)) {
+                distances.put(hit.localityId(), hit.distanceKm());
+                candidates.addAll(roomCapacityIndex.inLocality(hit.localityId(), capacity));
+            }
+            candidates.sort(Comparator.comparingInt(RoomCapacityIndex.Venue::capacity)
+                    .thenComparing(venue -> distances.get(venue.localityId()))
+                    .thenComparingLong(RoomCapacityIndex.Venue::roomId));
+            distanceByLocality = distances;
+        }
+
+        List<VenueMatch> matches = new ArrayList<>();
+        int from = 0;
+        int batchSize = 2 * count;
+        while (from < candidates.size() && matches.size() < count) {
+            List<RoomCapacityIndex.Venue> batch = candidates.subList(from, Math.min(from + batchSize, candidates.size()));
+            from += batch.size();
+            batchSize = Math.min(2 * batchSize, MAX_FREE_CHECK_BATCH);
+            Set<Long> free = null;
+            if (date != null) {
+                List<Long> roomIds = batch.stream().map(RoomCapacityIndex.Venue::roomId).toList();
+                int start = startTime.toSecondOfDay() / 60;
+                free = roomIntervalIndex.freeRooms(roomIds, date, start, start + duration);
+            }
+            for (RoomCapacityIndex.Venue venue : batch) {
+                if (matches.size() == count) {
+                    break;
+                }
+                if (free == null || free.contains(venue.roomId())) {
+                    Double distance = distanceByLocality != null ? distanceByLocality.get(venue.localityId()) : null;
+                    matches.add(toMatch(venue, distance, capacity));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static VenueMatch toMatch(RoomCapacityIndex.Venue venue, Double distanceKm, int minCapacity) {
+        return new VenueMatch(venue.roomId(), venue.roomName(), venue.floor(), venue.capacity(), venue.localityId(),
+                venue.localityName(), venue.address(), venue.cityId(), venue.cityName(), distanceKm,
+                (double) minCapacity / venue.capacity());
+    }
+}
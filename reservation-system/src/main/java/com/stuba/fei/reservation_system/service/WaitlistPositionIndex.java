@@ -0,0 +1,131 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.WaitlistEntry.WaitlistStatus;
+import com.stuba.fei.reservation_system.repository.WaitlistEntryRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory queue positions of waiting users, one Fenwick (binary indexed) tree per event over its tickets.
+ * A position is the number of waiting tickets up to the user's ticket, so both lookups
+ * and updates are O(log n). Queues are loaded lazily from the database on first access.
+ */
+@Component
+public class WaitlistPositionIndex {
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final Map<Long, FenwickQueue> queues = new ConcurrentHashMap<>();
+
+    public WaitlistPositionIndex(WaitlistEntryRepository waitlistEntryRepository) {
+        this.waitlistEntryRepository = waitlistEntryRepository;
+    }
+
+    public void add(Long eventId, int ticket) {
+        queue(eventId).add(ticket);
+    }
+
+    public void remove(Long eventId, int ticket) {
+        queue(eventId).remove(ticket);
+    }
+
+    /**
+     * @return 1-based position of the ticket in the event's queue, or 0 if it is not waiting
+     */
+    public int position(Long eventId, int ticket) {
+        return queue(eventId).position(ticket);
+    }
+
+    /**
+     * @return Number of users waiting for the event
+     */
+    public int size(Long eventId) {
+        return queue(eventId).size();
+    }
+
+    public void evict(Long eventId) {
+        queues.remove(eventId);
+    }
+
+    private FenwickQueue queue(Long eventId) {
+        return queues.computeIfAbsent(eventId, id -> {
+            FenwickQueue queue = new FenwickQueue();
+            List<Integer> tickets = waitlistEntryRepository.findTickets(id, WaitlistStatus.WAITING);
+            tickets.forEach(queue::add);
+            return queue;
+        });
+    }
+
+    /**
+     * Fenwick tree over tickets (1-based). The bit set makes add/remove idempotent, so an entry
+     * already loaded from the database is not counted twice when its commit callback arrives.
+     */
+    private static final class FenwickQueue {
+        private int[] tree = new int[64];
+        private final BitSet present = new BitSet();
+        private int size;
+
+        synchronized void add(int ticket) {
+            if (ticket <= 0 || present.get(ticket)) {
+                return;
+            }
+            if (ticket >= tree.length) {
+                grow(ticket);
+            }
+            present.set(ticket);
+            size++;
+            update(ticket, 1);
+        }
+
+        synchronized void remove(int ticket) {
+            if (ticket <= 0 || !present.get(ticket)) {
+                return;
+            }
+            present.clear(ticket);
+            size--;
+            update(ticket, -1);
+        }
+
+        synchronized int position(int ticket) {
+            if (ticket <= 0 || !present.get(ticket)) {
+                return 0;
+            }
+            int sum = 0;
+            for (int i = ticket; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void update(int ticket, int delta) {
+            for (int i = ticket; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Rebuild into a larger tree in O(n): each node pushes its sum to its parent
+        private void grow(int ticket) {
+            int length = tree.length;
+            while (length <= ticket) {
+                length <<= 1;
+            }
+            int[] grown = new int[length];
+            for (int i = present.nextSetBit(1); i >= 0; i = present.nextSetBit(i + 1)) {
+                grown[i] = 1;
+            }
+            for (int i = 1; i < length; i++) {
+                int parent = i + (i & -i);
+                if (parent < length) {
+                    grown[parent] += grown[i];
+                }
+            }
+            tree = grown;
+        }
+    }
+}
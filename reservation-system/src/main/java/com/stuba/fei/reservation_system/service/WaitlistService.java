@@ -0,0 +1,241 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.WaitlistResponse;
+import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Reservation;
+import com.stuba.fei.reservation_system.model.Reservation.ReservationStatus;
+import com.stuba.fei.reservation_system.model.WaitlistEntry;
+import com.stuba.fei.reservation_system.model.WaitlistEntry.WaitlistStatus;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import com.stuba.fei.reservation_system.repository.WaitlistEntryRepository;
+import com.stuba.fei.reservation_system.repository.users.RegisteredUserRepository;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * FIFO waitlist for FULL events. A seat freed by a cancellation is handed to the head of the queue
+ * in the same transaction, so it is never offered to the retrying crowd in between.
+ */
+@Service
+public class WaitlistService {
+
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final EventRepository eventRepository;
+    private final ReservationRepository reservationRepository;
+    private final RegisteredUserRepository userRepository;
+    private final WaitlistPositionIndex positionIndex;
+    private final EventFeatureStore eventFeatureStore;
+    private final SuggestionCache suggestionCache;
+    private final UserTasteProfileService userTasteProfileService;
+
+    public WaitlistService(WaitlistEntryRepository waitlistEntryRepository,
+                           EventRepository eventRepository,
+                           ReservationRepository reservationRepository,
+                           RegisteredUserRepository userRepository,
+                           WaitlistPositionIndex positionIndex,
+                           EventFeatureStore eventFeatureStore,
+                           SuggestionCache suggestionCache,
+                           UserTasteProfileService userTasteProfileService) {
+        this.waitlistEntryRepository = waitlistEntryRepository;
+        this.eventRepository = eventRepository;
+        this.reservationRepository = reservationRepository;
+        this.userRepository = userRepository;
+        this.positionIndex = positionIndex;
+        this.eventFeatureStore = eventFeatureStore;
+        this.suggestionCache = suggestionCache;
+        this.userTasteProfileService = userTasteProfileService;
+    }
+
+    /**
+     * Put the logged user at the end of the event's waitlist
+     * @param eventId The event ID
+     * @return The waitlist entry with its position (an existing entry if the user is already waiting)
+     */
+    @Transactional
+    public WaitlistResponse joinWaitlist(Long eventId) {
+        RegisteredUser user = getLoggedUser();
+        // Locking the event row serializes ticket numbers and the FULL check with reservations
+        Event event = eventRepository.findByIdForUpdate(eventId)
+                .orElseThrow(() -> new RuntimeException("Event not found"));
+
+        if (event.getStatus() == EventStatus.INACTIVE) {
+            throw new RuntimeException("Cannot join the waitlist of an inactive event");
+        }
+        if (event.isHighDemand()) {
+            throw new RuntimeException("Waitlist is not available for this event");
+        }
+        if (event.getStatus() != EventStatus.FULL) {
+            throw new RuntimeException("Event has free seats, reserve it directly");
+        }
+        if (reservationRepository.existsByRegisteredUserIdAndEventIdAndStatusNot(
+                user.getId(), eventId, ReservationStatus.CANCELLED)) {
+            throw new RuntimeException("You already have a reservation for this event");
+        }
+
+        Optional<WaitlistEntry> existing = waitlistEntryRepository
+                .findByEventIdAndRegisteredUserIdAndStatus(eventId, user.getId(), WaitlistStatus.WAITING);
+        if (existing.isPresent()) {
+            return toResponse(existing.get());
+        }
+
+        // The new ticket is the highest one, so everyone already waiting is in front of it
+        // (read before the insert, so a lazy load of the index sees only committed entries)
+        int position = positionIndex.size(eventId) + 1;
+
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setEvent(event);
+        entry.setRegisteredUser(user);
+        entry.setJoinedAt(LocalDateTime.now());
+        entry.setTicket(waitlistEntryRepository.findMaxTicket(eventId) + 1);
+        WaitlistEntry savedEntry = waitlistEntryRepository.save(entry);
+
+        int ticket = savedEntry.getTicket();
+        afterCommit(() -> positionIndex.add(eventId, ticket));
+        return WaitlistResponse.fromEntry(savedEntry, position, position);
+    }
+
+    /**
+     * Latest waitlist entry of the logged user for the event - cheap to poll, the position comes from memory
+     * @param eventId The event ID
+     */
+    @Transactional(readOnly = true)
+    public WaitlistResponse getMyEntry(Long eventId) {
+        RegisteredUser user = getLoggedUser();
+        WaitlistEntry entry = waitlistEntryRepository
+                .findFirstByEventIdAndRegisteredUserIdOrderByTicketDesc(eventId, user.getId())
+                .orElseThrow(() -> new RuntimeException("You are not on the waitlist for this event"));
+        return toResponse(entry);
+    }
+
+    /**
+     * @return All events the logged user is waiting for, with positions
+     */
+    @Transactional(readOnly = true)
+    public List<WaitlistResponse> getMyWaitlist() {
+        RegisteredUser user = getLoggedUser();
+        return waitlistEntryRepository.findByRegisteredUserIdAndStatus(user.getId(), WaitlistStatus.WAITING).stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    /**
+     * Remove the logged user from the event's waitlist
+     * @param eventId The event ID
+     */
+    @Transactional
+    public void leaveWaitlist(Long eventId) {
+        RegisteredUser user = getLoggedUser();
+        WaitlistEntry entry = waitlistEntryRepository
+                .findByEventIdAndRegisteredUserIdAndStatus(eventId, user.getId(), WaitlistStatus.WAITING)
+                .orElseThrow(() -> new RuntimeException("You are not on the waitlist for this event"));
+        markLeft(entry);
+    }
+
+    /**
+     * The user got a seat on their own, so they no longer wait for it
+     */
+    public void onReserved(Long eventId, Long userId) {
+        waitlistEntryRepository.findByEventIdAndRegisteredUserIdAndStatus(eventId, userId, WaitlistStatus.WAITING)
+                .ifPresent(this::markLeft);
+    }
+
+    /**
+     * Hand a freed seat to the head of the event's waitlist. Must run inside the transaction that
+     * released the seat - its UPDATE still holds the event row lock, so nobody else can take the seat first.
+     * @param event The event whose seat was released
+     * @return The reservation created for the promoted user, or null if nobody is waiting
+     */
+    public Reservation promoteHead(Event event) {
+        Long eventId = event.getId();
+        Optional<WaitlistEntry> head;
+        while ((head = waitlistEntryRepository.findFirstByEventIdAndStatusOrderByTicketAsc(
+                eventId, WaitlistStatus.WAITING)).isPresent()) {
+            WaitlistEntry entry = head.get();
+            RegisteredUser user = entry.getRegisteredUser();
+
+            if (reservationRepository.existsByRegisteredUserIdAndEventIdAndStatusNot(
+                    user.getId(), eventId, ReservationStatus.CANCELLED)) {
+                markLeft(entry);
+                continue;
+            }
+            if (eventRepository.takeSeat(eventId, EventStatus.FULL, EventStatus.ACTIVE) == 0) {
+                return null;
+            }
+            eventFeatureStore.markChanged(eventId);
+            suggestionCache.evictUser(user.getUsername());
+
+            Reservation reservation = new Reservation();
+            reservation.setEvent(event);
+            reservation.setRegisteredUser(user);
+            reservation.setReservationDate(LocalDateTime.now());
+            Reservation savedReservation = reservationRepository.save(reservation);
+            userTasteProfileService.onReserved(user.getId(), eventId);
+
+            entry.setStatus(WaitlistStatus.PROMOTED);
+            entry.setReservationId(savedReservation.getId());
+            int ticket = entry.getTicket();
+            afterCommit(() -> positionIndex.remove(eventId, ticket));
+            return savedReservation;
+        }
+        return null;
+    }
+
+    /**
+     * Hand the seats added by a capacity increase to the head of the event's waitlist, one seat per waiting user,
+     * until the event is full again or nobody is waiting. Must run inside the transaction that raised the capacity.
+     * @param event The event whose capacity was increased
+     * @return Number of promoted users
+     */
+    public int promoteToFreeSeats(Event event) {
+        int promoted = 0;
+        while (promoteHead(event) != null) {
+            promoted++;
+        }
+        return promoted;
+    }
+
+    private void markLeft(WaitlistEntry entry) {
+        entry.setStatus(WaitlistStatus.LEFT);
+        waitlistEntryRepository.save(entry);
+        Long eventId = entry.getEvent().getId();
+        int ticket = entry.getTicket();
+        afterCommit(() -> positionIndex.remove(eventId, ticket));
+    }
+
+    private WaitlistResponse toResponse(WaitlistEntry entry) {
+        Long eventId = entry.getEvent().getId();
+        int position = entry.getStatus() == WaitlistStatus.WAITING
+                ? positionIndex.position(eventId, entry.getTicket()) : 0;
+        return WaitlistResponse.fromEntry(entry, position, positionIndex.size(eventId));
+    }
+
+    // The in-memory index follows the database only once the change is committed
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private RegisteredUser getLoggedUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Authenticated user not found"));
+    }
+}
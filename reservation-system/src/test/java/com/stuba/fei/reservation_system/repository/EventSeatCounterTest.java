@@ -0,0 +1,106 @@
+package com.stuba.fei.reservation_system.repository;
+
+import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.users.EventOrganizer;
+import com.stuba.fei.reservation_system.security.controller.UserRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Seat counters are written only by the conditional UPDATEs of EventRepository,
+ * saving an edited event must not overwrite them with the values it was loaded with
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class EventSeatCounterTest {
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void editingEventKeepsSeatTakenAfterItWasLoaded() {
+        Long eventId = persistEvent(2);
+        Event edited = eventRepository.findById(eventId).orElseThrow();
+
+        assertEquals(1, eventRepository.takeSeat(eventId, EventStatus.FULL, EventStatus.ACTIVE));
+        assertEquals(1, eventRepository.holdSeat(eventId, EventStatus.FULL, EventStatus.ACTIVE));
+
+        // Organizer edits the event loaded before the seats were taken
+        edited.setName("Renamed");
+        eventRepository.saveAndFlush(edited);
+        entityManager.clear();
+
+        Event stored = eventRepository.findById(eventId).orElseThrow();
+        assertEquals("Renamed", stored.getName());
+        assertEquals(1, stored.getConfirmedCount());
+        assertEquals(1, stored.getHeldCount());
+        assertEquals(EventStatus.FULL, stored.getStatus());
+    }
+
+    @Test
+    void editingEventKeepsHighDemandMode() {
+        Long eventId = persistEvent(10);
+        Event edited = eventRepository.findById(eventId).orElseThrow();
+
+        eventRepository.updateHighDemand(eventId, true);
+        edited.setPrice(20.0);
+        eventRepository.saveAndFlush(edited);
+        entityManager.clear();
+
+        assertTrue(eventRepository.findById(eventId).orElseThrow().isHighDemand());
+    }
+
+    @Test
+    void confirmedSeatsNeverExceedCapacity() {
+        Long eventId = persistEvent(3);
+        assertEquals(1, eventRepository.holdSeat(eventId, EventStatus.FULL, EventStatus.ACTIVE));
+
+        // One held + three more seats do not fit, nothing is added
+        assertEquals(0, eventRepository.addConfirmedSeats(eventId, 3, EventStatus.FULL, EventStatus.ACTIVE));
+        assertEquals(1, eventRepository.addConfirmedSeats(eventId, 2, EventStatus.FULL, EventStatus.ACTIVE));
+        entityManager.clear();
+
+        Event stored = eventRepository.findById(eventId).orElseThrow();
+        assertEquals(2, stored.getConfirmedCount());
+        assertEquals(EventStatus.FULL, stored.getStatus());
+    }
+
+    private Long persistEvent(int capacity) {
+        EventOrganizer organizer = new EventOrganizer();
+        organizer.setUsername("organizer");
+        organizer.setEmail("organizer@example.com");
+        organizer.setPassword("password");
+        organizer.setFirstName("Test");
+        organizer.setLastName("Organizer");
+        organizer.setRole(UserRole.EVENT_ORGANIZER);
+        organizer.setMobilePhoneNumber("0900000000");
+        organizer.setOrganizationName("Test");
+        entityManager.persist(organizer);
+
+        Event event = new Event();
+        event.setName("Concert");
+        event.setMaxCapacity(capacity);
+        event.setCategory("Music");
+        event.setPrice(10.0);
+        event.setEventDate(LocalDate.now().plusDays(7));
+        event.setStartTime(LocalTime.of(18, 0));
+        event.setDuration(120);
+        event.setRooms(new ArrayList<>());
+        event.setEventOrganizer(organizer);
+        Long eventId = entityManager.persistAndFlush(event).getId();
+        entityManager.clear();
+        return eventId;
+    }
+}
@@ -0,0 +1,167 @@
+package com.stuba.fei.reservation_system.repository;
+
+import com.stuba.fei.reservation_system.dto.CityEventCount;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import com.stuba.fei.reservation_system.model.City;
+import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Locality;
+import com.stuba.fei.reservation_system.model.Room;
+import com.stuba.fei.reservation_system.model.users.EventOrganizer;
+import com.stuba.fei.reservation_system.model.users.SpaceRenter;
+import com.stuba.fei.reservation_system.security.controller.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Filters of the event summary page and the grouped counts of upcoming events
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class EventSummaryPageTest {
+    private static final LocalDate DAY = LocalDate.now().plusDays(7);
+    private static final Collection<EventStatus> UPCOMING = EnumSet.of(EventStatus.ACTIVE, EventStatus.FULL);
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private EventOrganizer organizer;
+    private Room bratislava;
+    private Room kosice;
+    private Room vienna;
+
+    @BeforeEach
+    void setUp() {
+        organizer = new EventOrganizer();
+        organizer.setUsername("organizer");
+        organizer.setEmail("organizer@example.com");
+        organizer.setPassword("password");
+        organizer.setFirstName("Test");
+        organizer.setLastName("Organizer");
+        organizer.setRole(UserRole.EVENT_ORGANIZER);
+        organizer.setMobilePhoneNumber("0900000000");
+        organizer.setOrganizationName("Test");
+        entityManager.persist(organizer);
+
+        SpaceRenter renter = new SpaceRenter();
+        renter.setUsername("renter");
+        renter.setEmail("renter@example.com");
+        renter.setPassword("password");
+        renter.setFirstName("Test");
+        renter.setLastName("Renter");
+        renter.setRole(UserRole.SPACE_RENTER);
+        renter.setMobilePhoneNumber("0900000001");
+        entityManager.persist(renter);
+
+        bratislava = room(renter, "Bratislava", "Slovakia");
+        kosice = room(renter, "Košice", "Slovakia");
+        vienna = room(renter, "Vienna", "Austria");
+    }
+
+    @Test
+    void severalCategoriesAndCountryAreFilteredInQuery() {
+        persistEvent("Rock night", "Music", bratislava, DAY, EventStatus.ACTIVE);
+        persistEvent("Derby", "Sports", kosice, DAY, EventStatus.ACTIVE);
+        persistEvent("Opera", "Music", vienna, DAY, EventStatus.ACTIVE);
+        persistEvent("Hackathon", "Technology", bratislava, DAY, EventStatus.ACTIVE);
+
+        assertEquals(List.of("Rock night", "Derby", "Opera"),
+                names(page(List.of("Music", "Sports"), null, null)));
+        assertEquals(List.of("Rock night", "Derby"),
+                names(page(List.of("Music", "Sports"), null, "Slovakia")));
+        assertEquals(List.of("Rock night", "Derby", "Opera", "Hackathon"), names(page(List.of(), null, null)));
+    }
+
+    @Test
+    void searchMatchesNameAndDescriptionCaseInsensitively() {
+        Event described = persistEvent("Evening", "Music", bratislava, DAY, EventStatus.ACTIVE);
+        persistEvent("Jazz evening", "Music", bratislava, DAY, EventStatus.ACTIVE);
+        persistEvent("100% fun", "Fun", bratislava, DAY, EventStatus.ACTIVE);
+        persistEvent("1000 fun", "Fun", bratislava, DAY, EventStatus.ACTIVE);
+        described.setDescription("Smooth JAZZ under the stars");
+        entityManager.persistAndFlush(described);
+
+        assertEquals(List.of("Evening", "Jazz evening"), names(page(List.of(), "%jazz%", null)));
+        // The wildcard of the search text is escaped, so it matches only itself
+        assertEquals(List.of("100% fun"), names(page(List.of(), "%100!%%", null)));
+    }
+
+    @Test
+    void upcomingEventsAreCountedByCategoryAndCity() {
+        persistEvent("Rock night", "Music", bratislava, DAY, EventStatus.ACTIVE);
+        persistEvent("Sold out", "Music", bratislava, DAY, EventStatus.FULL);
+        persistEvent("Opera", "Music", vienna, DAY, EventStatus.ACTIVE);
+        persistEvent("Derby", "Sports", kosice, DAY, EventStatus.ACTIVE);
+        persistEvent("Draft", "Sports", kosice, DAY, EventStatus.INACTIVE);
+        persistEvent("Past", "Sports", kosice, LocalDate.now().minusDays(1), EventStatus.ACTIVE);
+
+        Map<String, Long> categories = eventRepository.countByCategory(UPCOMING, LocalDate.now()).stream()
+                .collect(Collectors.toMap(row -> (String) row[0], row -> ((Number) row[1]).longValue()));
+        assertEquals(Map.of("Music", 3L, "Sports", 1L), categories);
+
+        List<String> cities = eventRepository.countByCity(UPCOMING, LocalDate.now()).stream()
+                .map(city -> city.getCountry() + "/" + city.getCityName() + "=" + city.getCount())
+                .toList();
+        assertEquals(List.of("Austria/Vienna=1", "Slovakia/Bratislava=2", "Slovakia/Košice=1"), cities);
+        CityEventCount first = eventRepository.countByCity(UPCOMING, LocalDate.now()).get(0);
+        assertEquals(vienna.getLocality().getCity().getId(), first.getCityId());
+    }
+
+    private List<EventSummary> page(List<String> categories, String search, String country) {
+        return eventRepository.findSummaryPage(UPCOMING, categories.isEmpty(),
+                categories.isEmpty() ? List.of("") : categories, search, null, null, null, null, null, country,
+                null, null, null, PageRequest.of(0, 10));
+    }
+
+    private static List<String> names(List<EventSummary> summaries) {
+        return summaries.stream().map(EventSummary::getName).toList();
+    }
+
+    private Room room(SpaceRenter renter, String cityName, String country) {
+        City city = new City();
+        city.setName(cityName);
+        city.setCountry(country);
+        entityManager.persist(city);
+
+        Locality locality = new Locality();
+        locality.setName(cityName + " hall");
+        locality.setAddress("Main street 1");
+        locality.setTotalCapacity(100);
+        locality.setCity(city);
+        locality.setSpaceRenter(renter);
+        entityManager.persist(locality);
+        return locality.getRooms().get(0);
+    }
+
+    private Event persistEvent(String name, String category, Room room, LocalDate date, EventStatus status) {
+        Event event = new Event();
+        event.setName(name);
+        event.setMaxCapacity(10);
+        event.setCategory(category);
+        event.setPrice(10.0);
+        event.setEventDate(date);
+        event.setStartTime(LocalTime.of(18, 0));
+        event.setDuration(120);
+        event.setStatus(status);
+        event.setRooms(new ArrayList<>(List.of(room)));
+        event.setEventOrganizer(organizer);
+        return entityManager.persistAndFlush(event);
+    }
+}
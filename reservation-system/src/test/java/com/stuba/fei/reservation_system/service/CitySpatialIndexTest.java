@@ -0,0 +1,122 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.City;
+import com.stuba.fei.reservation_system.repository.CityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.stuba.fei.reservation_system.service.GeoDistanceKernelBenchmark.calculateDistance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CitySpatialIndexTest {
+    // Rows of the city table
+    private final List<City> cities = new ArrayList<>();
+    private CityRepository cityRepository;
+    private CitySpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        cityRepository = mock(CityRepository.class);
+        when(cityRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(cities));
+        index = new CitySpatialIndex(cityRepository);
+    }
+
+    @Test
+    void queriesMatchScanOfCityTable() {
+        Random random = new Random(21);
+        for (long id = 1; id <= 300; id++) {
+            // Every tenth city has no coordinates and is never returned
+            cities.add(id % 10 == 0 ? city(id, null, null)
+                    : city(id, 35 + random.nextDouble() * 35, -10 + random.nextDouble() * 50));
+        }
+
+        for (int q = 0; q < 100; q++) {
+            double latitude = 35 + random.nextDouble() * 35;
+            double longitude = -10 + random.nextDouble() * 50;
+            double radiusKm = random.nextDouble() * 500;
+
+            City nearest = null;
+            Set<Long> within = new HashSet<>();
+            for (City city : cities) {
+                if (city.getLatitude() == null) {
+                    continue;
+                }
+                double distance = distance(city, latitude, longitude);
+                if (nearest == null || distance < distance(nearest, latitude, longitude)) {
+                    nearest = city;
+                }
+                if (distance <= radiusKm) {
+                    within.add(city.getId());
+                }
+            }
+            assertEquals(nearest.getId(), index.findNearestCityId(longitude, latitude));
+            assertEquals(within, new HashSet<>(index.findCityIdsWithin(longitude, latitude, radiusKm)));
+        }
+        verify(cityRepository, times(1)).findAll();
+    }
+
+    @Test
+    void noCityWithCoordinates() {
+        cities.add(city(1L, null, null));
+
+        assertNull(index.findNearestCityId(17.1, 48.1));
+        assertEquals(List.of(), index.findCityIdsWithin(17.1, 48.1, 1_000));
+    }
+
+    @Test
+    void addedCityIsFoundWithoutReload() {
+        cities.add(city(1L, 48.1486, 17.1077));
+        assertEquals(1L, index.findNearestCityId(21.26, 48.72));
+
+        index.add(city(2L, 48.7164, 21.2611));
+        index.add(city(3L, null, null));
+
+        assertEquals(2L, index.findNearestCityId(21.26, 48.72));
+        assertEquals(Set.of(1L, 2L), new HashSet<>(index.findCityIdsWithin(19.0, 48.5, 200)));
+        verify(cityRepository, times(1)).findAll();
+    }
+
+    @Test
+    void cityAddedInTransactionShowsUpAfterCommit() {
+        cities.add(city(1L, 48.1486, 17.1077));
+        index.findNearestCityId(17.1, 48.1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.add(city(2L, 48.7164, 21.2611));
+            assertEquals(1L, index.findNearestCityId(21.26, 48.72));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(2L, index.findNearestCityId(21.26, 48.72));
+    }
+
+    private static double distance(City city, double latitude, double longitude) {
+        return calculateDistance(latitude, longitude, city.getLatitude(), city.getLongitude());
+    }
+
+    private static City city(Long id, Double latitude, Double longitude) {
+        City city = new City();
+        city.setId(id);
+        city.setName("City " + id);
+        city.setCountry("Slovakia");
+        city.setLatitude(latitude);
+        city.setLongitude(longitude);
+        return city;
+    }
+}
@@ -0,0 +1,141 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.EventPage;
+import com.stuba.fei.reservation_system.dto.EventSummary;
+import com.stuba.fei.reservation_system.dto.NearbyEvent;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset paging of the geo search against a brute-force ordering of all events in range
+ */
+class EventServiceNearbyTest {
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final int LOCALITIES = 200;
+    private static final int DAYS = 30;
+
+    // Events of the "database" as [id, localityId, eventDate, startTime]
+    private final List<Object[]> events = new ArrayList<>();
+    private final List<LocalitySpatialIndex.Hit> hits = new ArrayList<>();
+    private int rowsRead;
+    private EventService eventService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Random random = new Random(42);
+        long eventId = 1;
+        for (int i = 0; i < LOCALITIES; i++) {
+            // Pairs of localities at the same distance share a group
+            hits.add(new LocalitySpatialIndex.Hit(i, 48.0, 17.0, (i / 2) * 0.25));
+            for (int j = 0; j < 20; j++) {
+                // Some events fall outside of the searched days
+                LocalDate date = TODAY.plusDays(random.nextInt(DAYS + 10));
+                events.add(new Object[] {eventId++, (long) i, date, LocalTime.of(8 + random.nextInt(12), 0)});
+            }
+        }
+
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findPlacePageByLocalityIds(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Collection<Long> localityIds = invocation.getArgument(0);
+                    LocalDate from = invocation.getArgument(2);
+                    LocalDate to = invocation.getArgument(3);
+                    LocalDate afterDate = invocation.getArgument(4);
+                    LocalTime afterTime = invocation.getArgument(5);
+                    Long afterId = invocation.getArgument(6);
+                    Pageable pageable = invocation.getArgument(7);
+                    List<Object[]> rows = events.stream()
+                            .filter(row -> localityIds.contains((Long) row[1]))
+                            .filter(row -> !date(row).isBefore(from) && !date(row).isAfter(to))
+                            .filter(row -> afterDate == null || DATE_ORDER.compare(row,
+                                    new Object[] {afterId, null, afterDate, afterTime}) > 0)
+                            .sorted(DATE_ORDER)
+                            .limit(pageable.getPageSize())
+                            .toList();
+                    rowsRead += rows.size();
+                    return rows;
+                });
+        when(eventRepository.findSummariesByIds(any())).thenAnswer(invocation -> {
+            List<EventSummary> summaries = new ArrayList<>();
+            for (Long id : (Collection<Long>) invocation.getArgument(0)) {
+                Object[] row = events.get((int) (id - 1));
+                summaries.add(new EventSummary(id, "Event " + id, null, date(row), (LocalTime) row[3], 60, 10.0,
+                        "Music", "Bratislava", "Slovakia", EventStatus.ACTIVE, 100, 0, null));
+            }
+            return summaries;
+        });
+        LocalitySpatialIndex localitySpatialIndex = mock(LocalitySpatialIndex.class);
+        when(localitySpatialIndex.findWithin(anyDouble(), anyDouble(), anyDouble())).thenReturn(hits);
+
+        eventService = new EventService();
+        ReflectionTestUtils.setField(eventService, "eventRepository", eventRepository);
+        ReflectionTestUtils.setField(eventService, "localitySpatialIndex", localitySpatialIndex);
+    }
+
+    @Test
+    void pagesFollowDistanceThenDateOrder() {
+        List<Long> expected = events.stream()
+                .filter(row -> !date(row).isAfter(TODAY.plusDays(DAYS)))
+                .sorted(Comparator.<Object[]>comparingDouble(row -> hits.get((int) (long) (Long) row[1]).distanceKm())
+                        .thenComparing(DATE_ORDER))
+                .map(row -> (Long) row[0])
+                .toList();
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        int maxRowsPerPage = 0;
+        do {
+            rowsRead = 0;
+            EventPage<NearbyEvent> page = eventService.getNearbyEvents(17.0, 48.0, 50.0, null, null, null, null,
+                    DAYS, cursor, 10);
+            page.getItems().forEach(event -> paged.add(event.getEvent().getId()));
+            cursor = page.getNextCursor();
+            maxRowsPerPage = Math.max(maxRowsPerPage, rowsRead);
+        } while (cursor != null);
+
+        assertEquals(expected, paged);
+        // Thousands of events in range, a page reads only a few of them
+        assertTrue(expected.size() > 3000);
+        assertTrue(maxRowsPerPage <= 100, "rows read by one page: " + maxRowsPerPage);
+    }
+
+    @Test
+    void distanceOfEventIsThatOfItsLocality() {
+        EventPage<NearbyEvent> page = eventService.getNearbyEvents(17.0, 48.0, 50.0, null, null, null, null,
+                DAYS, null, 50);
+
+        for (NearbyEvent event : page.getItems()) {
+            Object[] row = events.get((int) (event.getEvent().getId() - 1));
+            assertEquals(hits.get((int) (long) (Long) row[1]).distanceKm(), event.getDistanceKm(), 1e-9);
+            assertEquals((Long) row[1], event.getLocalityId());
+        }
+    }
+
+    private static final Comparator<Object[]> DATE_ORDER = Comparator.<Object[], LocalDate>comparing(row -> date(row))
+            .thenComparing(row -> (LocalTime) row[3])
+            .thenComparingLong(row -> (Long) row[0]);
+
+    private static LocalDate date(Object[] row) {
+        return (LocalDate) row[2];
+    }
+}
@@ -0,0 +1,150 @@
+package com.stuba.fei.reservation_system.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Distance scores of all rows: the per-event haversine against the block kernel.
+ * Not a unit test (surefire skips the name), run it from reservation-system after test-compile with
+ * <pre>
+ * mvn -q dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) \
+ *     com.stuba.fei.reservation_system.service.GeoDistanceKernelBenchmark [events...]
+ * </pre>
+ * Events are clustered in 60 cities, 5% have no location; the best of 15 rounds is printed after warm-up.
+ */
+public class GeoDistanceKernelBenchmark {
+    private static final int CITIES = 60;
+    private static final double WITHOUT_LOCATION = 0.05;
+    private static final int WARM_UP_ROUNDS = 10;
+    private static final int ROUNDS = 15;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {5_000, 50_000, 500_000};
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Random random = new Random(size);
+        EventFeatureStore.Columns features = columns(size, random);
+        // Visitor in the middle of one of the cities
+        double latitude = features.latitudes[0];
+        double longitude = features.longitudes[0];
+        double[] query = GeoDistanceKernel.toVector(latitude, longitude);
+        double[] haversineScores = new double[size];
+        double[] kernelScores = new double[size];
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            haversine(features, latitude, longitude, haversineScores);
+            kernel(features, query, kernelScores);
+        }
+        long haversineNanos = Long.MAX_VALUE;
+        long kernelNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            haversine(features, latitude, longitude, haversineScores);
+            haversineNanos = Math.min(haversineNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            kernel(features, query, kernelScores);
+            kernelNanos = Math.min(kernelNanos, System.nanoTime() - start);
+        }
+
+        int different = 0;
+        for (int i = 0; i < size; i++) {
+            if (Math.abs(haversineScores[i] - kernelScores[i]) > 1e-9) {
+                different++;
+            }
+        }
+        System.out.printf("%,9d events   haversine %8.1f us   kernel %8.1f us   %5.1fx   different scores %d%n",
+                size, haversineNanos / 1e3, kernelNanos / 1e3, (double) haversineNanos / kernelNanos, different);
+    }
+
+    private static void haversine(EventFeatureStore.Columns features, double latitude, double longitude,
+                                  double[] scores) {
+        for (int i = 0; i < features.size; i++) {
+            scores[i] = Double.isNaN(features.latitudes[i]) ? 0.0
+                    : calculateDistanceScore(calculateDistance(latitude, longitude,
+                            features.latitudes[i], features.longitudes[i]));
+        }
+    }
+
+    // The way EventService scans the columns
+    private static void kernel(EventFeatureStore.Columns features, double[] query, double[] scores) {
+        double[] chords = new double[GeoDistanceKernel.BLOCK_SIZE];
+        for (int block = 0; block < features.size; block += GeoDistanceKernel.BLOCK_SIZE) {
+            int end = Math.min(block + GeoDistanceKernel.BLOCK_SIZE, features.size);
+            GeoDistanceKernel.squaredChords(features, block, end, query, chords);
+            for (int i = block; i < end; i++) {
+                scores[i] = GeoDistanceKernel.distanceScore(chords[i - block]);
+            }
+        }
+    }
+
+    static EventFeatureStore.Columns columns(int size, Random random) {
+        double[][] cities = new double[CITIES][];
+        for (int c = 0; c < CITIES; c++) {
+            cities[c] = new double[] {35 + random.nextDouble() * 25, -10 + random.nextDouble() * 40};
+        }
+        EventFeatureStore.Columns features = new EventFeatureStore(null).new Columns();
+        features.latitudes = new double[size];
+        features.longitudes = new double[size];
+        features.x = new double[size];
+        features.y = new double[size];
+        features.z = new double[size];
+        features.size = size;
+        for (int i = 0; i < size; i++) {
+            double[] vector;
+            if (i > 0 && random.nextDouble() < WITHOUT_LOCATION) {
+                features.latitudes[i] = Double.NaN;
+                features.longitudes[i] = Double.NaN;
+                vector = new double[] {Double.NaN, Double.NaN, Double.NaN};
+            } else {
+                // Within about 30 km of the city
+                double[] city = cities[random.nextInt(CITIES)];
+                features.latitudes[i] = city[0] + (random.nextDouble() - 0.5) * 0.5;
+                features.longitudes[i] = city[1] + (random.nextDouble() - 0.5) * 0.5;
+                vector = GeoDistanceKernel.toVector(features.latitudes[i], features.longitudes[i]);
+            }
+            features.x[i] = vector[0];
+            features.y[i] = vector[1];
+            features.z[i] = vector[2];
+        }
+        return features;
+    }
+
+    /**
+     * Scalar score the kernel replaced: full score (1.0) if within 5km, scaled down to 0 at 15km
+     */
+    static double calculateDistanceScore(double distance) {
+        if (distance <= 5) {
+            return 1.0;
+        } else if (distance <= 15) {
+            return 1.0 - ((distance - 5) / 10);
+        } else {
+            return 0.0;
+        }
+    }
+
+    /**
+     * Calculate Haversine distance between two points (as EventService did before the kernel)
+     * @return Distance in kilometers
+     */
+    static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+        final int R = 6371; // Earth's radius in kilometers
+
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return R * c;
+    }
+}
@@ -0,0 +1,125 @@
+package com.stuba.fei.reservation_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static com.stuba.fei.reservation_system.service.GeoDistanceKernelBenchmark.calculateDistance;
+import static com.stuba.fei.reservation_system.service.GeoDistanceKernelBenchmark.calculateDistanceScore;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoDistanceKernelTest {
+    // One millimeter
+    private static final double DISTANCE_TOLERANCE_KM = 1e-6;
+
+    @Test
+    void distanceMatchesHaversineAnywhereOnEarth() {
+        Random random = new Random(19);
+        double[] chord = new double[1];
+        for (int i = 0; i < 100_000; i++) {
+            double lat1 = random.nextDouble() * 180 - 90;
+            double lon1 = random.nextDouble() * 360 - 180;
+            // Half of the pairs close to each other, where the score changes
+            double lat2 = i % 2 == 0 ? random.nextDouble() * 180 - 90
+                    : Math.max(-90, Math.min(90, lat1 + (random.nextDouble() - 0.5) * 0.4));
+            double lon2 = i % 2 == 0 ? random.nextDouble() * 360 - 180 : lon1 + (random.nextDouble() - 0.5) * 0.4;
+
+            EventFeatureStore.Columns features = columns(new double[][] {{lat2, lon2}});
+            GeoDistanceKernel.squaredChords(features, 0, 1, GeoDistanceKernel.toVector(lat1, lon1), chord);
+
+            double expected = calculateDistance(lat1, lon1, lat2, lon2);
+            // Nearly antipodal pairs lose precision in asin, they are still within a meter
+            double tolerance = expected > 20_000 ? 1e-3 : DISTANCE_TOLERANCE_KM;
+            assertEquals(expected, GeoDistanceKernel.distanceKm(chord[0]), tolerance,
+                    () -> lat1 + "," + lon1 + " -> " + lat2 + "," + lon2);
+        }
+    }
+
+    @Test
+    void blockScoresMatchScalarScores() {
+        Random random = new Random(5);
+        EventFeatureStore.Columns features = GeoDistanceKernelBenchmark.columns(20 * GeoDistanceKernel.BLOCK_SIZE + 17,
+                random);
+        double latitude = features.latitudes[0];
+        double longitude = features.longitudes[0];
+        double[] query = GeoDistanceKernel.toVector(latitude, longitude);
+
+        double[] chords = new double[GeoDistanceKernel.BLOCK_SIZE];
+        int scored = 0;
+        int inBand = 0;
+        for (int block = 0; block < features.size; block += GeoDistanceKernel.BLOCK_SIZE) {
+            int end = Math.min(block + GeoDistanceKernel.BLOCK_SIZE, features.size);
+            GeoDistanceKernel.squaredChords(features, block, end, query, chords);
+            for (int i = block; i < end; i++) {
+                double expected = Double.isNaN(features.latitudes[i]) ? 0.0
+                        : calculateDistanceScore(calculateDistance(latitude, longitude,
+                                features.latitudes[i], features.longitudes[i]));
+                assertEquals(expected, GeoDistanceKernel.distanceScore(chords[i - block]), 1e-9);
+                if (expected > 0.0 && expected < 1.0) {
+                    inBand++;
+                }
+                scored++;
+            }
+        }
+        assertEquals(features.size, scored);
+        // The sample reaches the band between 5 and 15 km, not only the constant scores
+        assertTrue(inBand > 10);
+    }
+
+    @Test
+    void listedRowsMatchRangeOfRows() {
+        EventFeatureStore.Columns features = GeoDistanceKernelBenchmark.columns(1_000, new Random(11));
+        double[] query = GeoDistanceKernel.toVector(48.15, 17.11);
+        double[] all = new double[features.size];
+        GeoDistanceKernel.squaredChords(features, 0, features.size, query, all);
+
+        int[] rows = {999, 3, 500, 0, 3, 42};
+        double[] listed = new double[4];
+        GeoDistanceKernel.squaredChords(features, rows, 1, 5, query, listed);
+
+        for (int r = 1; r < 5; r++) {
+            assertEquals(all[rows[r]], listed[r - 1], 0.0);
+        }
+    }
+
+    @Test
+    void scoreAtThresholdsAndWithoutLocation() {
+        double[] query = GeoDistanceKernel.toVector(48.0, 17.0);
+        // Points 5 km, 10 km and 15 km due north, one degree of latitude is R * pi / 180 km
+        double degreesPerKm = 180.0 / (Math.PI * GeoKdTree.EARTH_RADIUS_KM);
+        EventFeatureStore.Columns features = columns(new double[][] {
+                {48.0, 17.0}, {48.0 + 5 * degreesPerKm, 17.0}, {48.0 + 10 * degreesPerKm, 17.0},
+                {48.0 + 15 * degreesPerKm, 17.0}, {Double.NaN, Double.NaN}});
+        double[] chords = new double[features.size];
+        GeoDistanceKernel.squaredChords(features, 0, features.size, query, chords);
+
+        assertEquals(1.0, GeoDistanceKernel.distanceScore(chords[0]));
+        assertEquals(1.0, GeoDistanceKernel.distanceScore(chords[1]), 1e-9);
+        assertEquals(0.5, GeoDistanceKernel.distanceScore(chords[2]), 1e-9);
+        assertEquals(0.0, GeoDistanceKernel.distanceScore(chords[3]), 1e-9);
+        assertTrue(Double.isNaN(chords[4]));
+        assertEquals(0.0, GeoDistanceKernel.distanceScore(chords[4]));
+    }
+
+    private static EventFeatureStore.Columns columns(double[][] locations) {
+        EventFeatureStore.Columns features = new EventFeatureStore(null).new Columns();
+        int size = locations.length;
+        features.latitudes = new double[size];
+        features.longitudes = new double[size];
+        features.x = new double[size];
+        features.y = new double[size];
+        features.z = new double[size];
+        features.size = size;
+        for (int i = 0; i < size; i++) {
+            features.latitudes[i] = locations[i][0];
+            features.longitudes[i] = locations[i][1];
+            double[] vector = Double.isNaN(locations[i][0]) ? new double[] {Double.NaN, Double.NaN, Double.NaN}
+                    : GeoDistanceKernel.toVector(locations[i][0], locations[i][1]);
+            features.x[i] = vector[0];
+            features.y[i] = vector[1];
+            features.z[i] = vector[2];
+        }
+        return features;
+    }
+}
@@ -0,0 +1,176 @@
+package com.stuba.fei.reservation_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.stuba.fei.reservation_system.service.GeoDistanceKernelBenchmark.calculateDistance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nearest-neighbour and radius queries against a brute-force scan of the points
+ */
+class GeoKdTreeTest {
+    // Points this close to the radius may fall on either side of it, by rounding
+    private static final double BOUNDARY_KM = 1e-6;
+
+    @Test
+    void randomPointsMatchBruteForce() {
+        Random random = new Random(9);
+        for (int n : new int[] {1, 2, 3, 10, 100, 2_000}) {
+            double[][] points = new double[n][];
+            for (int i = 0; i < n; i++) {
+                points[i] = new double[] {Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                        random.nextDouble() * 360 - 180};
+            }
+            GeoKdTree tree = tree(points);
+            assertEquals(n, tree.size());
+            for (int q = 0; q < 200; q++) {
+                double latitude = random.nextDouble() * 180 - 90;
+                double longitude = random.nextDouble() * 360 - 180;
+                assertNearest(points, tree, latitude, longitude);
+                assertWithinRadius(points, tree, latitude, longitude, random.nextDouble() * 3_000);
+            }
+        }
+    }
+
+    @Test
+    void duplicatePointsAreAllFound() {
+        // Many cities sharing a few coordinates, also on the splitting planes
+        Random random = new Random(3);
+        double[][] locations = {{48.1486, 17.1077}, {48.7164, 21.2611}, {0.0, 0.0}, {-33.87, 151.21}};
+        double[][] points = new double[400][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = locations[random.nextInt(locations.length)].clone();
+        }
+        GeoKdTree tree = tree(points);
+
+        for (double[] location : locations) {
+            Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < points.length; i++) {
+                if (points[i][0] == location[0] && points[i][1] == location[1]) {
+                    expected.add((long) i);
+                }
+            }
+            List<Long> found = tree.withinRadius(location[0], location[1], 0.0);
+            assertEquals(expected.size(), found.size());
+            assertEquals(expected, new HashSet<>(found));
+            assertTrue(expected.contains(tree.nearest(location[0], location[1])));
+            assertNearest(points, tree, location[0] + 0.01, location[1] - 0.01);
+        }
+    }
+
+    @Test
+    void nearestAndRadiusWorkAcrossAntimeridian() {
+        Random random = new Random(180);
+        double[][] points = new double[500][];
+        for (int i = 0; i < points.length; i++) {
+            double longitude = 178 + random.nextDouble() * 4;
+            points[i] = new double[] {-20 + random.nextDouble() * 40, longitude > 180 ? longitude - 360 : longitude};
+        }
+        GeoKdTree tree = tree(points);
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = -20 + random.nextDouble() * 40;
+            double longitude = q % 2 == 0 ? 179.99 : -179.99;
+            assertNearest(points, tree, latitude, longitude);
+            assertWithinRadius(points, tree, latitude, longitude, 50 + random.nextDouble() * 200);
+        }
+        // Two points 22 km apart on either side of the line, not 40 000 km
+        GeoKdTree pair = tree(new double[][] {{0.0, 179.9}, {0.0, -179.9}});
+        assertEquals(List.of(0L, 1L), sorted(pair.withinRadius(0.0, 180.0, 12.0)));
+        assertEquals(1L, pair.nearest(0.0, -179.95));
+    }
+
+    @Test
+    void nearestAndRadiusWorkAroundPoles() {
+        Random random = new Random(90);
+        double[][] points = new double[500][];
+        for (int i = 0; i < points.length; i++) {
+            double latitude = 89 + random.nextDouble();
+            points[i] = new double[] {i % 2 == 0 ? latitude : -latitude, random.nextDouble() * 360 - 180};
+        }
+        // The poles themselves, with longitudes that mean nothing there
+        points[0] = new double[] {90.0, 0.0};
+        points[1] = new double[] {90.0, 123.0};
+        points[2] = new double[] {-90.0, -45.0};
+        GeoKdTree tree = tree(points);
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = q % 2 == 0 ? 89.5 + random.nextDouble() * 0.5 : -89.5 - random.nextDouble() * 0.5;
+            double longitude = random.nextDouble() * 360 - 180;
+            assertNearest(points, tree, latitude, longitude);
+            assertWithinRadius(points, tree, latitude, longitude, random.nextDouble() * 150);
+        }
+        assertEquals(Set.of(0L, 1L), new HashSet<>(tree.withinRadius(90.0, -170.0, 0.001)));
+        assertEquals(2L, tree.nearest(-90.0, 77.0));
+    }
+
+    @Test
+    void emptyTreeAndRadiusBeyondAllPoints() {
+        GeoKdTree empty = tree(new double[0][]);
+        assertEquals(-1, empty.nearest(48.0, 17.0));
+        assertEquals(List.of(), empty.withinRadius(48.0, 17.0, 100_000));
+
+        Random random = new Random(1);
+        double[][] points = new double[50][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] {random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180};
+        }
+        GeoKdTree tree = tree(points);
+        List<Long> all = new ArrayList<>();
+        for (long i = 0; i < points.length; i++) {
+            all.add(i);
+        }
+        // Half of the circumference reaches the antipode, so every point; more than that changes nothing
+        assertEquals(all, sorted(tree.withinRadius(10.0, 20.0, Math.PI * GeoKdTree.EARTH_RADIUS_KM)));
+        assertEquals(all, sorted(tree.withinRadius(10.0, 20.0, 1e9)));
+        assertEquals(List.of(), tree.withinRadius(10.0, 20.0, -1.0));
+    }
+
+    private static void assertNearest(double[][] points, GeoKdTree tree, double latitude, double longitude) {
+        double best = Double.MAX_VALUE;
+        for (double[] point : points) {
+            best = Math.min(best, calculateDistance(latitude, longitude, point[0], point[1]));
+        }
+        double[] found = points[(int) tree.nearest(latitude, longitude)];
+        // Another point at the same distance may be returned
+        assertEquals(best, calculateDistance(latitude, longitude, found[0], found[1]), 1e-6,
+                () -> "nearest to " + latitude + "," + longitude);
+    }
+
+    private static void assertWithinRadius(double[][] points, GeoKdTree tree, double latitude, double longitude,
+                                           double radiusKm) {
+        List<Long> found = tree.withinRadius(latitude, longitude, radiusKm);
+        assertEquals(found.size(), new HashSet<>(found).size(), "no point twice");
+        Set<Long> foundIds = new HashSet<>(found);
+        for (int i = 0; i < points.length; i++) {
+            double distance = calculateDistance(latitude, longitude, points[i][0], points[i][1]);
+            if (Math.abs(distance - radiusKm) > BOUNDARY_KM) {
+                assertEquals(distance < radiusKm, foundIds.contains((long) i),
+                        "point " + i + " at " + distance + " km, radius " + radiusKm);
+            }
+        }
+    }
+
+    private static GeoKdTree tree(double[][] points) {
+        long[] ids = new long[points.length];
+        double[] latitudes = new double[points.length];
+        double[] longitudes = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ids[i] = i;
+            latitudes[i] = points[i][0];
+            longitudes[i] = points[i][1];
+        }
+        return new GeoKdTree(ids, latitudes, longitudes);
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
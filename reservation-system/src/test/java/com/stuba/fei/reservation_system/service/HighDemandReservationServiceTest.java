@@ -0,0 +1,304 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.ReservationResponse;
+import com.stuba.fei.reservation_system.handler.TemporarilyUnavailableException;
+import com.stuba.fei.reservation_system.model.Event;
+import com.stuba.fei.reservation_system.model.EventStatus;
+import com.stuba.fei.reservation_system.model.Reservation;
+import com.stuba.fei.reservation_system.model.users.RegisteredUser;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import com.stuba.fei.reservation_system.repository.ReservationRepository;
+import com.stuba.fei.reservation_system.repository.users.RegisteredUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Admission, write-behind flush and recovery of {@link HighDemandReservationService} against an in-memory
+ * "database" of one event, whose transactions keep the reservations and seats of a rolled back flush out
+ */
+class HighDemandReservationServiceTest {
+    private static final Long EVENT = 1L;
+
+    private final Database db = new Database();
+    private SimpleMeterRegistry meterRegistry;
+    private HighDemandReservationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findById(EVENT)).thenAnswer(invocation -> Optional.of(db.event()));
+        when(eventRepository.getReferenceById(anyLong())).thenAnswer(invocation -> new Event());
+        when(eventRepository.updateHighDemand(anyLong(), anyBoolean())).thenReturn(1);
+        when(eventRepository.findHighDemandEventIds(any())).thenAnswer(invocation -> List.of(EVENT));
+        when(eventRepository.addConfirmedSeats(eq(EVENT), anyInt(), any(), any()))
+                .thenAnswer(invocation -> db.addConfirmedSeats(invocation.getArgument(1)));
+
+        ReservationRepository reservationRepository = mock(ReservationRepository.class);
+        when(reservationRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Reservation> reservations = invocation.getArgument(0);
+            reservations.forEach(reservation -> db.save(reservation.getRegisteredUser().getUsername()));
+            return reservations;
+        });
+        when(reservationRepository.findUsernamesByEventIdAndStatusNot(eq(EVENT), any()))
+                .thenAnswer(invocation -> db.usernames());
+
+        RegisteredUserRepository userRepository = mock(RegisteredUserRepository.class);
+        when(userRepository.findByUsernameIn(any())).thenAnswer(invocation -> {
+            List<RegisteredUser> users = new ArrayList<>();
+            for (String username : (Collection<String>) invocation.getArgument(0)) {
+                RegisteredUser user = new RegisteredUser();
+                user.setUsername(username);
+                users.add(user);
+            }
+            return users;
+        });
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        doAnswer(invocation -> {
+            db.commit();
+            return null;
+        }).when(transactionManager).commit(any());
+        doAnswer(invocation -> {
+            db.rollback();
+            return null;
+        }).when(transactionManager).rollback(any());
+
+        meterRegistry = new SimpleMeterRegistry();
+        service = new HighDemandReservationService(eventRepository, reservationRepository, userRepository,
+                transactionManager, mock(EventFeatureStore.class), mock(SuggestionCache.class),
+                mock(UserTasteProfileService.class), meterRegistry);
+    }
+
+    @Test
+    void concurrentAdmissionsNeverOversell() throws Exception {
+        db.capacity = 50;
+        service.enable(EVENT);
+
+        int admitted = admitConcurrently(8, 100);
+        service.flush();
+
+        assertEquals(50, admitted);
+        assertEquals(50, db.confirmed);
+        assertEquals(50, db.usernames().size());
+        assertEquals(0, service.getRemainingSeats(EVENT));
+        assertEquals(0.0, rejected());
+    }
+
+    @Test
+    void reloadDuringAdmissionsLosesNoSeatAndSellsNoExtraOne() throws Exception {
+        db.capacity = 300;
+        service.enable(EVENT);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reloader = new Thread(() -> {
+            while (!done.get()) {
+                service.reload(EVENT);
+            }
+        });
+        reloader.start();
+
+        int admitted;
+        try {
+            admitted = admitConcurrently(8, 60);
+        } finally {
+            done.set(true);
+            reloader.join();
+        }
+        service.flush();
+
+        // Every admitted reservation was queued before the flush preceding a rebuild, so the rebuilt
+        // inventory never offered its seat again and the capacity check of the flush had nothing to refuse
+        assertEquals(admitted, db.confirmed);
+        assertEquals(admitted, new HashSet<>(db.usernames()).size());
+        assertTrue(admitted <= 300);
+        assertEquals(0.0, rejected());
+        assertEquals(300 - admitted, service.getRemainingSeats(EVENT));
+    }
+
+    @Test
+    void userIsAdmittedOnlyOnce() {
+        db.capacity = 10;
+        service.enable(EVENT);
+
+        ReservationResponse response = service.reserve(EVENT, "alice");
+        assertNull(response.getId());
+        assertTrue(response.isQueued());
+
+        RuntimeException duplicate = assertThrows(RuntimeException.class, () -> service.reserve(EVENT, "alice"));
+        assertEquals("You already have a reservation for this event", duplicate.getMessage());
+
+        // Also after the reservation was persisted and the inventory rebuilt from the database
+        service.reload(EVENT);
+        assertThrows(RuntimeException.class, () -> service.reserve(EVENT, "alice"));
+        assertEquals(List.of("alice"), db.usernames());
+        assertEquals(9, service.getRemainingSeats(EVENT));
+    }
+
+    @Test
+    void recoverRebuildsInventoryFromDatabase() {
+        db.capacity = 3;
+        db.stored.add("alice");
+        db.confirmed = 1;
+
+        assertEquals(1, service.recover());
+
+        assertEquals(2, service.getRemainingSeats(EVENT));
+        assertThrows(RuntimeException.class, () -> service.reserve(EVENT, "alice"));
+        service.reserve(EVENT, "bob");
+        service.reserve(EVENT, "carol");
+        RuntimeException soldOut = assertThrows(RuntimeException.class, () -> service.reserve(EVENT, "dave"));
+        assertEquals("Event is fully booked", soldOut.getMessage());
+
+        service.flush();
+        assertEquals(3, db.confirmed);
+        assertEquals(List.of("alice", "bob", "carol"), db.usernames());
+    }
+
+    @Test
+    void flushRefusesSeatsAboveCapacity() {
+        db.capacity = 2;
+        service.enable(EVENT);
+        service.reserve(EVENT, "alice");
+        service.reserve(EVENT, "bob");
+        // Capacity lowered in the database behind the inventory's back
+        db.capacity = 1;
+
+        service.flush();
+
+        assertEquals(1, db.confirmed);
+        assertEquals(List.of("alice"), db.usernames());
+        assertEquals(1.0, rejected());
+    }
+
+    @Test
+    void eventWithoutInventoryIsTemporarilyUnavailable() {
+        db.capacity = 5;
+
+        assertThrows(TemporarilyUnavailableException.class, () -> service.reserve(EVENT, "alice"));
+    }
+
+    // Each of the threads admits its own users, retrying the ones refused during a rebuild
+    private int admitConcurrently(int threads, int usersPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int admitted = 0;
+                    for (int i = 0; i < usersPerThread; i++) {
+                        String username = "user-" + thread + "-" + i;
+                        while (true) {
+                            try {
+                                service.reserve(EVENT, username);
+                                admitted++;
+                                break;
+                            } catch (TemporarilyUnavailableException e) {
+                                Thread.onSpinWait();
+                            } catch (RuntimeException e) {
+                                break;
+                            }
+                        }
+                    }
+                    return admitted;
+                }));
+            }
+            start.countDown();
+
+            int admitted = 0;
+            for (Future<Integer> result : results) {
+                admitted += result.get(30, TimeUnit.SECONDS);
+            }
+            return admitted;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("reservations.high_demand.rejected").count();
+    }
+
+    /**
+     * The event row and its reservations; changes of the running transaction are applied on commit
+     */
+    private static final class Database {
+        private volatile int capacity;
+        private volatile int confirmed;
+        private final List<String> stored = new ArrayList<>();
+        private final List<String> staged = new ArrayList<>();
+        private int stagedSeats;
+
+        synchronized Event event() {
+            Event event = new Event();
+            event.setId(EVENT);
+            event.setStatus(EventStatus.ACTIVE);
+            event.setMaxCapacity(capacity);
+            event.setConfirmedCount(confirmed + stagedSeats);
+            event.setEventDate(LocalDate.now().plusDays(7));
+            event.setStartTime(LocalTime.of(18, 0));
+            return event;
+        }
+
+        synchronized List<String> usernames() {
+            return new ArrayList<>(stored);
+        }
+
+        synchronized void save(String username) {
+            staged.add(username);
+        }
+
+        synchronized int addConfirmedSeats(int seats) {
+            if (confirmed + stagedSeats + seats > capacity) {
+                return 0;
+            }
+            stagedSeats += seats;
+            return 1;
+        }
+
+        synchronized void commit() {
+            stored.addAll(staged);
+            confirmed += stagedSeats;
+            staged.clear();
+            stagedSeats = 0;
+        }
+
+        synchronized void rollback() {
+            staged.clear();
+            stagedSeats = 0;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stuba.fei.reservation_system.model.IdempotencyRecord;
+import com.stuba.fei.reservation_system.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+    private static final String ENDPOINT = "POST /api/reservations";
+
+    // Rows of the idempotency_record table by scope key
+    private final Map<String, IdempotencyRecord> table = new ConcurrentHashMap<>();
+    private final AtomicInteger handled = new AtomicInteger();
+    private IdempotencyRecordRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRecordRepository.class);
+        when(repository.findByScopeKey(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<String>getArgument(0))));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = invocation.getArgument(0);
+            table.put(record.getScopeKey(), record);
+            return record;
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void retryGetsStoredResponseWithoutRunningHandler() {
+        IdempotencyService service = service(10, 24);
+
+        ResponseEntity<?> first = service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+        ResponseEntity<?> retry = service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+
+        assertEquals(1, handled.get());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals("{\"id\":1}", retry.getBody());
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        assertEquals(1.0, lookups("memory_hit"));
+    }
+
+    @Test
+    void keyReusedForDifferentRequestIsRefused() {
+        IdempotencyService service = service(10, 24);
+        service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+
+        ResponseEntity<?> other = service.execute("key-1", ENDPOINT, Map.of("eventId", 6), this::created);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, other.getStatusCode());
+        assertEquals(1, handled.get());
+        assertEquals(1.0, lookups("mismatch"));
+    }
+
+    @Test
+    void sameKeyOnAnotherEndpointIsIndependent() {
+        IdempotencyService service = service(10, 24);
+        service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+
+        ResponseEntity<?> hold = service.execute("key-1", ENDPOINT + "/hold", Map.of("eventId", 5), this::created);
+
+        assertEquals(HttpStatus.CREATED, hold.getStatusCode());
+        assertEquals(2, handled.get());
+    }
+
+    @Test
+    void failedResponseIsNotStored() {
+        IdempotencyService service = service(10, 24);
+
+        service.execute("key-1", ENDPOINT, Map.of("eventId", 5), () -> {
+            handled.incrementAndGet();
+            return ResponseEntity.badRequest().body(Map.of("error", "Event is fully booked"));
+        });
+        ResponseEntity<?> retry = service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(2, handled.get());
+        assertTrue(table.containsKey("alice|" + ENDPOINT + "|key-1"));
+    }
+
+    @Test
+    void leastRecentlyUsedResponseIsEvictedFromMemoryButFoundInDatabase() {
+        IdempotencyService service = service(2, 24);
+        service.execute("a", ENDPOINT, Map.of("eventId", 1), this::created);
+        service.execute("b", ENDPOINT, Map.of("eventId", 2), this::created);
+        // Touch "a", so "b" is the least recently used one when "c" is added
+        service.execute("a", ENDPOINT, Map.of("eventId", 1), this::created);
+        service.execute("c", ENDPOINT, Map.of("eventId", 3), this::created);
+
+        assertEquals(1.0, lookups("memory_hit"));
+        service.execute("a", ENDPOINT, Map.of("eventId", 1), this::created);
+        assertEquals(2.0, lookups("memory_hit"));
+        ResponseEntity<?> evicted = service.execute("b", ENDPOINT, Map.of("eventId", 2), this::created);
+        assertEquals(1.0, lookups("db_hit"));
+
+        assertEquals(HttpStatus.CREATED, evicted.getStatusCode());
+        assertEquals(3, handled.get());
+        assertEquals(2.0, meterRegistry.get("idempotency.cache.size").gauge().value());
+    }
+
+    @Test
+    void storedResponseOfAnotherInstanceIsCheckedAgainstRequest() {
+        service(10, 24).execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+        // Another application instance only has the database record
+        IdempotencyService other = service(10, 24);
+
+        assertEquals(HttpStatus.CREATED,
+                other.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                other.execute("key-1", ENDPOINT, Map.of("eventId", 7), this::created).getStatusCode());
+        assertEquals(1, handled.get());
+        assertNotNull(table.get("alice|" + ENDPOINT + "|key-1").getRequestHash());
+    }
+
+    @Test
+    void expiredResponseIsNotReplayed() {
+        // Zero TTL - stored responses expire right away, in memory and in the database
+        IdempotencyService service = service(10, 0);
+        service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+
+        service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created);
+
+        assertEquals(2, handled.get());
+        assertEquals(2.0, lookups("miss"));
+    }
+
+    @Test
+    void duplicateOfFailedRequestRunsItself() throws Exception {
+        IdempotencyService service = service(10, 24);
+        CountDownLatch originalStarted = new CountDownLatch(1);
+        CountDownLatch failOriginal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> original = executor.submit(() -> asAlice(() ->
+                    service.execute("key-1", ENDPOINT, Map.of("eventId", 5), () -> {
+                        originalStarted.countDown();
+                        await(failOriginal);
+                        throw new IllegalStateException("Database is down");
+                    })));
+            originalStarted.await();
+            Future<ResponseEntity<?>> duplicate = executor.submit(() -> asAlice(() ->
+                    service.execute("key-1", ENDPOINT, Map.of("eventId", 5), this::created)));
+            // Give the duplicate time to start waiting for the original
+            Thread.sleep(100);
+            failOriginal.countDown();
+
+            Exception failure = assertThrows(Exception.class, () -> original.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+            assertEquals(HttpStatus.CREATED, duplicate.get(5, TimeUnit.SECONDS).getStatusCode());
+            assertEquals(1, handled.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IdempotencyService service(int maxEntries, long ttlHours) {
+        return new IdempotencyService(repository, new ObjectMapper(), meterRegistry, maxEntries, ttlHours);
+    }
+
+    private ResponseEntity<?> created() {
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", handled.incrementAndGet()));
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("idempotency.lookups").tag("result", result).counter().count();
+    }
+
+    private static <T> T asAlice(Supplier<T> call) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        try {
+            return call.get();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.stuba.fei.reservation_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntBitmapTest {
+    // Largest chunk kept as a sorted array, one more value turns it into a bitmap
+    private static final int ARRAY_MAX_SIZE = 4096;
+
+    @Test
+    void randomAddsAndRemovesMatchHashSet() {
+        Random random = new Random(7);
+        // Bounds with one chunk, a few chunks and many sparse chunks
+        for (int bound : new int[] {1_000, 200_000, 50_000_000}) {
+            IntBitmap bitmap = IntBitmap.EMPTY;
+            Set<Integer> reference = new HashSet<>();
+            for (int i = 0; i < 20_000; i++) {
+                int value = random.nextInt(bound);
+                if (random.nextInt(4) == 0) {
+                    bitmap = bitmap.without(value);
+                    reference.remove(value);
+                } else {
+                    bitmap = bitmap.with(value);
+                    reference.add(value);
+                }
+            }
+            assertSameContent(reference, bitmap);
+            for (int i = 0; i < 1_000; i++) {
+                int value = random.nextInt(bound);
+                assertEquals(reference.contains(value), bitmap.contains(value));
+            }
+        }
+    }
+
+    @Test
+    void chunkConvertsAcrossArrayThresholdBothWays() {
+        IntBitmap bitmap = IntBitmap.EMPTY;
+        Set<Integer> reference = new HashSet<>();
+        // Every second value, so the chunk is sparse enough to tell members from gaps
+        for (int i = 0; i < ARRAY_MAX_SIZE; i++) {
+            bitmap = bitmap.with(2 * i);
+            reference.add(2 * i);
+        }
+        assertSameContent(reference, bitmap);
+
+        // One value over the limit: array -> bitmap
+        bitmap = bitmap.with(1);
+        reference.add(1);
+        assertSameContent(reference, bitmap);
+        assertFalse(bitmap.contains(3));
+
+        // Back at the limit: bitmap -> array
+        bitmap = bitmap.without(0);
+        reference.remove(0);
+        assertSameContent(reference, bitmap);
+        bitmap = bitmap.without(1);
+        reference.remove(1);
+        assertSameContent(reference, bitmap);
+
+        // Intersections between the array and the bitmap form of the same chunk
+        IntBitmap dense = IntBitmap.EMPTY;
+        for (int value = 0; value < 2 * ARRAY_MAX_SIZE; value++) {
+            dense = dense.with(value);
+        }
+        assertEquals(reference.size(), bitmap.andCardinality(dense));
+        assertEquals(reference.size(), dense.andCardinality(bitmap));
+    }
+
+    @Test
+    void idsInDifferentChunksAreKeptApart() {
+        int[] values = {0, 65_535, 65_536, 131_071, 131_072, 1 << 20, Integer.MAX_VALUE};
+        IntBitmap bitmap = IntBitmap.EMPTY;
+        for (int value : values) {
+            bitmap = bitmap.with(value);
+        }
+        assertEquals(values.length, bitmap.cardinality());
+        for (int value : values) {
+            assertTrue(bitmap.contains(value));
+        }
+        // Same low 16 bits in a chunk that is not present
+        assertFalse(bitmap.contains(196_608));
+        assertFalse(bitmap.contains((1 << 20) + 65_536));
+
+        // Removing the only value of a chunk drops the chunk, the others stay
+        IntBitmap removed = bitmap.without(1 << 20);
+        assertFalse(removed.contains(1 << 20));
+        assertEquals(values.length - 1, removed.cardinality());
+        assertTrue(removed.contains(Integer.MAX_VALUE));
+
+        IntBitmap otherChunk = IntBitmap.EMPTY.with(196_608).with(196_608 + 65_535);
+        assertEquals(0, bitmap.andCardinality(otherChunk));
+        assertEquals(2, bitmap.andCardinality(IntBitmap.EMPTY.with(65_535).with(65_536)));
+    }
+
+    @Test
+    void updatesLeaveOriginalUnchanged() {
+        IntBitmap original = IntBitmap.EMPTY.with(1).with(70_000);
+        IntBitmap added = original.with(2);
+        IntBitmap removed = original.without(70_000);
+
+        assertEquals(2, original.cardinality());
+        assertFalse(original.contains(2));
+        assertTrue(original.contains(70_000));
+        assertEquals(3, added.cardinality());
+        assertEquals(1, removed.cardinality());
+        assertSame(original, original.with(1));
+        assertSame(original, original.without(5));
+    }
+
+    @Test
+    void ofAndUnionMatchHashSet() {
+        Random random = new Random(11);
+        Set<Integer> first = new HashSet<>();
+        Set<Integer> second = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            first.add(random.nextInt(300_000));
+            second.add(random.nextInt(300_000));
+        }
+        // Sorted input with every value twice
+        int[] withDuplicates = first.stream().sorted().flatMapToInt(value -> IntStream.of(value, value)).toArray();
+        IntBitmap a = IntBitmap.of(withDuplicates, withDuplicates.length);
+        IntBitmap b = IntBitmap.of(second.stream().sorted().mapToInt(Integer::intValue).toArray(), second.size());
+        assertSameContent(first, a);
+        assertSameContent(second, b);
+
+        Set<Integer> common = new HashSet<>(first);
+        common.retainAll(second);
+        assertEquals(common.size(), a.andCardinality(b));
+
+        Set<Integer> all = new HashSet<>(first);
+        all.addAll(second);
+        assertSameContent(all, IntBitmap.union(List.of(a, b)));
+    }
+
+    @Test
+    void negativeValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> IntBitmap.EMPTY.with(-1));
+        assertSame(IntBitmap.EMPTY, IntBitmap.EMPTY.without(-1));
+    }
+
+    private static void assertSameContent(Set<Integer> expected, IntBitmap actual) {
+        assertEquals(expected.size(), actual.cardinality());
+        for (int value : expected) {
+            assertTrue(actual.contains(value), "missing " + value);
+        }
+    }
+}
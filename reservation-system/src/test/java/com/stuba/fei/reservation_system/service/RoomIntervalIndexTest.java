@@ -0,0 +1,236 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoomIntervalIndexTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 5, 10);
+    private static final Long ROOM = 1L;
+
+    // Rows of the "database" as [roomId, eventId, eventDate, startTime, duration]
+    private final List<Object[]> schedule = new ArrayList<>();
+    // Reads of this room's schedule wait for slowReadRelease
+    private volatile Long slowRoom;
+    private final CountDownLatch slowReadStarted = new CountDownLatch(1);
+    private final CountDownLatch slowReadRelease = new CountDownLatch(1);
+    private RoomIntervalIndex index;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findRoomIntervals(any(), any())).thenAnswer(invocation -> {
+            Collection<Long> roomIds = invocation.getArgument(0);
+            Collection<LocalDate> dates = invocation.getArgument(1);
+            if (slowRoom != null && roomIds.contains(slowRoom)) {
+                slowReadStarted.countDown();
+                slowReadRelease.await();
+            }
+            return schedule.stream()
+                    .filter(row -> roomIds.contains((Long) row[0]) && dates.contains((LocalDate) row[2]))
+                    .toList();
+        });
+        index = new RoomIntervalIndex(eventRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void touchingIntervalsDoNotOverlap() {
+        stored(10L, ROOM, DAY, "10:00", 120);
+
+        assertDoesNotThrow(() -> index.book(20L, null, placement(DAY, "12:00", 60)));
+        assertDoesNotThrow(() -> index.book(21L, null, placement(DAY, "09:00", 60)));
+
+        assertThrows(IllegalStateException.class, () -> index.book(22L, null, placement(DAY, "11:59", 30)));
+        assertThrows(IllegalStateException.class, () -> index.book(23L, null, placement(DAY, "08:30", 31)));
+        assertEquals(List.of(21L, 10L, 20L), eventIds(index.occupied(List.of(ROOM), DAY)));
+    }
+
+    @Test
+    void eventCrossingMidnightBlocksStartOfNextDay() {
+        // 23:00 - 01:00 of the next day
+        stored(10L, ROOM, DAY, "23:00", 120);
+        LocalDate nextDay = DAY.plusDays(1);
+
+        assertThrows(IllegalStateException.class, () -> index.book(20L, null, placement(nextDay, "00:30", 60)));
+        assertDoesNotThrow(() -> index.book(21L, null, placement(nextDay, "01:00", 60)));
+        assertEquals(Set.of(), index.freeRooms(List.of(ROOM), nextDay, 0, 60));
+        assertEquals(Set.of(ROOM), index.freeRooms(List.of(ROOM), nextDay, 120, 180));
+    }
+
+    @Test
+    void newEventCrossingMidnightConflictsWithNextDay() {
+        stored(10L, ROOM, DAY.plusDays(1), "00:15", 30);
+
+        IllegalStateException conflict = assertThrows(IllegalStateException.class,
+                () -> index.book(20L, null, placement(DAY, "23:30", 60)));
+        assertEquals("Miestnosť 1 je " + DAY.plusDays(1) + " od 00:15 do 00:45 obsadená inou udalosťou",
+                conflict.getMessage());
+        assertDoesNotThrow(() -> index.book(21L, null, placement(DAY, "23:00", 75)));
+    }
+
+    @Test
+    void conflictingMoveKeepsPreviousPlacement() {
+        stored(10L, ROOM, DAY, "10:00", 60);
+        stored(11L, ROOM, DAY, "14:00", 60);
+
+        assertThrows(IllegalStateException.class,
+                () -> index.book(10L, placement(DAY, "10:00", 60), placement(DAY, "13:30", 60)));
+
+        assertEquals(List.of(new RoomIntervalIndex.Interval(10L, 600, 660), new RoomIntervalIndex.Interval(11L, 840, 900)),
+                index.occupied(List.of(ROOM), DAY));
+    }
+
+    @Test
+    void rolledBackMoveRestoresPreviousPlacement() {
+        stored(10L, ROOM, DAY, "10:00", 60);
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.book(10L, placement(DAY, "10:00", 60), placement(DAY.plusDays(1), "15:00", 60));
+
+        // Visible before commit, so a concurrent booking of the new time is refused
+        assertThrows(IllegalStateException.class, () -> index.book(20L, null, placement(DAY.plusDays(1), "15:30", 60)));
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(List.of(new RoomIntervalIndex.Interval(10L, 600, 660)), index.occupied(List.of(ROOM), DAY));
+        assertEquals(List.of(), index.occupied(List.of(ROOM), DAY.plusDays(1)));
+    }
+
+    @Test
+    void committedMoveKeepsNextPlacement() {
+        stored(10L, ROOM, DAY, "10:00", 60);
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.book(10L, placement(DAY, "10:00", 60), placement(DAY, "15:00", 60));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(List.of(new RoomIntervalIndex.Interval(10L, 900, 960)), index.occupied(List.of(ROOM), DAY));
+    }
+
+    @Test
+    void moveOverlappingItsOwnPreviousTimeIsAllowed() {
+        stored(10L, ROOM, DAY, "10:00", 120);
+
+        assertDoesNotThrow(() -> index.book(10L, placement(DAY, "10:00", 120), placement(DAY, "11:00", 120)));
+
+        assertEquals(List.of(new RoomIntervalIndex.Interval(10L, 660, 780)), index.occupied(List.of(ROOM), DAY));
+    }
+
+    @Test
+    void bookingOfLoadedRoomDoesNotWaitForDatabase() throws Exception {
+        Long slow = 2L;
+        index.occupied(List.of(ROOM), DAY);
+        slowRoom = slow;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> slowBooking = executor.submit(() -> index.book(30L, null,
+                    new RoomIntervalIndex.Placement(Set.of(slow), DAY, 600, 660)));
+            assertTrue(slowReadStarted.await(5, TimeUnit.SECONDS));
+
+            // The room-days of ROOM are loaded, the booking needs no query while the other one waits for its own
+            executor.submit(() -> index.book(20L, null, placement(DAY, "10:00", 60))).get(5, TimeUnit.SECONDS);
+
+            slowReadRelease.countDown();
+            slowBooking.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(30L), eventIds(index.occupied(List.of(slow), DAY)));
+            assertEquals(List.of(20L), eventIds(index.occupied(List.of(ROOM), DAY)));
+        } finally {
+            slowReadRelease.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentBookingsOfSameTimeAdmitOne() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Every round books another day, so the room-day is loaded by the racing bookings themselves
+            for (int round = 0; round < 50; round++) {
+                LocalDate day = DAY.plusDays(round * 3L);
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger booked = new AtomicInteger();
+                List<Future<?>> bookings = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    long eventId = 100L + t;
+                    // Overlapping, but not equal times
+                    String time = "10:0" + t;
+                    bookings.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            index.book(eventId, null, placement(day, time, 60));
+                            booked.incrementAndGet();
+                        } catch (IllegalStateException e) {
+                            // Room taken by another booking
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> booking : bookings) {
+                    booking.get(5, TimeUnit.SECONDS);
+                }
+
+                assertEquals(1, booked.get());
+                assertEquals(1, index.occupied(List.of(ROOM), day).size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void stored(Long eventId, Long roomId, LocalDate date, String start, int duration) {
+        schedule.add(new Object[] {roomId, eventId, date, LocalTime.parse(start), duration});
+    }
+
+    private static RoomIntervalIndex.Placement placement(LocalDate date, String start, int duration) {
+        int startMinute = LocalTime.parse(start).toSecondOfDay() / 60;
+        return new RoomIntervalIndex.Placement(Set.of(ROOM), date, startMinute, startMinute + duration);
+    }
+
+    // Ends the transaction the index registered its callbacks with
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private static List<Long> eventIds(List<RoomIntervalIndex.Interval> intervals) {
+        return intervals.stream().map(RoomIntervalIndex.Interval::eventId).toList();
+    }
+}
@@ -0,0 +1,157 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.dto.FreeSlot;
+import com.stuba.fei.reservation_system.model.Room;
+import com.stuba.fei.reservation_system.repository.EventRepository;
+import com.stuba.fei.reservation_system.repository.RoomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Free slot search of {@link RoomService} over the schedule of a real {@link RoomIntervalIndex}
+ */
+class RoomServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 5, 10);
+    private static final LocalDateTime LONG_AGO = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    // Rows of the "database" as [roomId, eventId, eventDate, startTime, duration]
+    private final List<Object[]> schedule = new ArrayList<>();
+    private RoomService roomService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findRoomIntervalsBetween(any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Long> roomIds = invocation.getArgument(0);
+            LocalDate from = invocation.getArgument(1);
+            LocalDate to = invocation.getArgument(2);
+            return schedule.stream()
+                    .filter(row -> roomIds.contains((Long) row[0])
+                            && !((LocalDate) row[2]).isBefore(from) && !((LocalDate) row[2]).isAfter(to))
+                    .toList();
+        });
+        RoomRepository roomRepository = mock(RoomRepository.class);
+        when(roomRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Room> rooms = new ArrayList<>();
+            for (Long id : (Iterable<Long>) invocation.getArgument(0)) {
+                Room room = new Room();
+                room.setId(id);
+                rooms.add(room);
+            }
+            return rooms;
+        });
+        roomService = new RoomService(roomRepository, mock(LocalityService.class),
+                new RoomIntervalIndex(eventRepository), mock(RoomCapacityIndex.class));
+    }
+
+    @Test
+    void eventOfPreviousDayRunningPastMidnightBlocksMorning() {
+        // 22:00 - 02:00 of the searched day
+        stored(10L, 1L, DAY.minusDays(1), "22:00", 240);
+
+        List<String> slots = windows(roomService.getFreeSlots(List.of(1L), DAY, DAY, 60, null, null, LONG_AGO));
+
+        assertEquals(List.of(slot(DAY, "02:00", DAY.plusDays(1), "00:00")), slots);
+    }
+
+    @Test
+    void openingHoursCutTheGaps() {
+        stored(10L, 1L, DAY, "10:00", 60);
+        stored(11L, 1L, DAY, "16:30", 30);
+        // Starts before opening on the second day
+        stored(12L, 1L, DAY.plusDays(1), "07:00", 90);
+
+        List<String> slots = windows(roomService.getFreeSlots(List.of(1L), DAY, DAY.plusDays(1), 90,
+                LocalTime.of(8, 0), LocalTime.of(18, 0), LONG_AGO));
+
+        // 17:00 - 18:00 of the first day is shorter than the duration
+        assertEquals(List.of(
+                slot(DAY, "08:00", DAY, "10:00"),
+                slot(DAY, "11:00", DAY, "16:30"),
+                slot(DAY.plusDays(1), "08:30", DAY.plusDays(1), "18:00")), slots);
+    }
+
+    @Test
+    void busyTimesOfAllRoomsAreMerged() {
+        stored(10L, 1L, DAY, "10:00", 120);
+        stored(11L, 2L, DAY, "11:00", 120);
+        // Touches the merged block, so no gap between them
+        stored(12L, 2L, DAY, "13:00", 60);
+
+        List<String> slots = windows(roomService.getFreeSlots(List.of(1L, 2L), DAY, DAY, 30,
+                LocalTime.of(9, 0), LocalTime.of(17, 0), LONG_AGO));
+
+        assertEquals(List.of(slot(DAY, "09:00", DAY, "10:00"), slot(DAY, "14:00", DAY, "17:00")), slots);
+    }
+
+    @Test
+    void slotPartlyInThePastStartsNow() {
+        stored(10L, 1L, DAY, "09:00", 60);
+        stored(11L, 1L, DAY, "15:00", 60);
+        LocalDateTime now = DAY.atTime(13, 20, 30);
+
+        List<String> slots = windows(roomService.getFreeSlots(List.of(1L), DAY, DAY, 60, null, null, now));
+
+        // Rounded up to the next whole minute, the gaps before 09:00 and between the events are already past
+        assertEquals(List.of(slot(DAY, "13:21", DAY, "15:00"), slot(DAY, "16:00", DAY.plusDays(1), "00:00")), slots);
+
+        // What is left of the gap is shorter than the duration
+        assertEquals(List.of(slot(DAY, "16:00", DAY.plusDays(1), "00:00")),
+                windows(roomService.getFreeSlots(List.of(1L), DAY, DAY, 60, null, null, DAY.atTime(14, 30))));
+    }
+
+    @Test
+    void dateRangeIsLimitedTo31Days() {
+        LocalDate lastAllowed = DAY.plusDays(RoomService.MAX_FREE_SLOT_DAYS - 1);
+
+        List<FreeSlot> slots = assertDoesNotThrow(
+                () -> roomService.getFreeSlots(List.of(1L), DAY, lastAllowed, 60, null, null, LONG_AGO));
+        assertEquals(RoomService.MAX_FREE_SLOT_DAYS, slots.size());
+        assertThrows(IllegalArgumentException.class,
+                () -> roomService.getFreeSlots(List.of(1L), DAY, lastAllowed.plusDays(1), 60, null, null, LONG_AGO));
+    }
+
+    @Test
+    void invalidSearchIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> roomService.getFreeSlots(List.of(), DAY, DAY, 60, null, null, LONG_AGO));
+        assertThrows(IllegalArgumentException.class,
+                () -> roomService.getFreeSlots(List.of(1L), DAY, DAY.minusDays(1), 60, null, null, LONG_AGO));
+        assertThrows(IllegalArgumentException.class,
+                () -> roomService.getFreeSlots(List.of(1L), DAY, DAY, 10, null, null, LONG_AGO));
+        assertThrows(IllegalArgumentException.class, () -> roomService.getFreeSlots(List.of(1L), DAY, DAY, 60,
+                LocalTime.of(18, 0), LocalTime.of(8, 0), LONG_AGO));
+    }
+
+    private void stored(Long eventId, Long roomId, LocalDate date, String start, int duration) {
+        schedule.add(new Object[] {roomId, eventId, date, LocalTime.parse(start), duration});
+    }
+
+    private static String slot(LocalDate startDate, String start, LocalDate endDate, String end) {
+        LocalDateTime from = startDate.atTime(LocalTime.parse(start));
+        LocalDateTime to = endDate.atTime(LocalTime.parse(end));
+        return from + " - " + to + " (" + Duration.between(from, to).toMinutes() + " min)";
+    }
+
+    private static List<String> windows(List<FreeSlot> slots) {
+        return slots.stream()
+                .map(slot -> slot.getStart() + " - " + slot.getEnd() + " (" + slot.getDurationMinutes() + " min)")
+                .toList();
+    }
+}
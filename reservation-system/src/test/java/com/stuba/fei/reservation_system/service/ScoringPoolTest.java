@@ -0,0 +1,104 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.service.TopKSelectorTest.Candidate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.stuba.fei.reservation_system.service.TopKSelectorTest.candidates;
+import static com.stuba.fei.reservation_system.service.TopKSelectorTest.fullSort;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoringPoolTest {
+    private final List<ScoringPool> pools = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        pools.forEach(ScoringPool::shutdown);
+    }
+
+    @Test
+    void parallelAndSequentialSelectionMatchFullSort() {
+        List<Candidate> candidates = candidates(new Random(3), 100_000, 50, 20);
+        for (ScoringPool scoringPool : List.of(pool(1_000, 4), pool(1_000_000, 4), pool(1_000, 1))) {
+            for (int k : new int[] {1, 12, 500}) {
+                TopKSelector top = scoringPool.select(candidates.size(), k, (from, to, selector) -> {
+                    for (int i = from; i < to; i++) {
+                        Candidate candidate = candidates.get(i);
+                        selector.offer(candidate.id(), candidate.score(), candidate.start());
+                    }
+                });
+
+                assertEquals(fullSort(candidates, k), top.toIds());
+            }
+        }
+    }
+
+    @Test
+    void partsCoverAllCandidatesOnce() {
+        int size = 60_000;
+        Set<Integer> scored = ConcurrentHashMap.newKeySet();
+        AtomicInteger calls = new AtomicInteger();
+
+        pool(1_000, 4).select(size, 12, (from, to, selector) -> {
+            calls.incrementAndGet();
+            for (int i = from; i < to; i++) {
+                assertTrue(scored.add(i), "scored twice: " + i);
+            }
+        });
+
+        assertEquals(size, scored.size());
+        assertTrue(calls.get() > 1);
+    }
+
+    @Test
+    void prunedParallelSelectionMatchesFullSort() {
+        List<Candidate> candidates = candidates(new Random(5), 100_000, 1_000, 10);
+        AtomicInteger skipped = new AtomicInteger();
+
+        TopKSelector top = pool(1_000, 4).select(candidates.size(), 12, (from, to, selector) -> {
+            for (int i = from; i < to; i++) {
+                Candidate candidate = candidates.get(i);
+                // Upper bound of the score known before the expensive part is computed
+                if (!selector.accepts(Math.floor(candidate.score() * 10) / 10 + 0.1)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                selector.offer(candidate.id(), candidate.score(), candidate.start());
+            }
+        });
+
+        assertEquals(fullSort(candidates, 12), top.toIds());
+        assertTrue(skipped.get() > candidates.size() / 2, "skipped " + skipped);
+    }
+
+    @Test
+    void countAtLeastCandidatesOrZero() {
+        List<Candidate> candidates = candidates(new Random(7), 20_000, 10, 5);
+        ScoringPool scoringPool = pool(1_000, 4);
+        ScoringPool.RangeScorer scorer = (from, to, selector) -> {
+            for (int i = from; i < to; i++) {
+                Candidate candidate = candidates.get(i);
+                if (selector.accepts(candidate.score())) {
+                    selector.offer(candidate.id(), candidate.score(), candidate.start());
+                }
+            }
+        };
+
+        assertEquals(fullSort(candidates, 20_000), scoringPool.select(20_000, 25_000, scorer).toIds());
+        assertEquals(List.of(), scoringPool.select(20_000, 0, scorer).toIds());
+    }
+
+    private ScoringPool pool(int threshold, int threads) {
+        ScoringPool scoringPool = new ScoringPool(threshold, threads);
+        pools.add(scoringPool);
+        return scoringPool;
+    }
+}
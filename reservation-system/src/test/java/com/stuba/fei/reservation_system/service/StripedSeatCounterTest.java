@@ -0,0 +1,85 @@
+package com.stuba.fei.reservation_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedSeatCounterTest {
+
+    @Test
+    void handsOutExactlyTheCreatedSeats() {
+        StripedSeatCounter counter = new StripedSeatCounter(37);
+
+        for (int i = 0; i < 37; i++) {
+            assertTrue(counter.tryAcquire());
+        }
+        assertFalse(counter.tryAcquire());
+        assertEquals(0, counter.remaining());
+    }
+
+    @Test
+    void noSeatsForZeroOrNegativeCapacity() {
+        assertFalse(new StripedSeatCounter(0).tryAcquire());
+        StripedSeatCounter overbooked = new StripedSeatCounter(-3);
+        assertFalse(overbooked.tryAcquire());
+        assertEquals(0, overbooked.remaining());
+    }
+
+    @Test
+    void releasedSeatCanBeTakenAgain() {
+        // Fewer seats than stripes, so the released seat may land in a stripe that was empty
+        StripedSeatCounter counter = new StripedSeatCounter(1);
+        assertTrue(counter.tryAcquire());
+        assertFalse(counter.tryAcquire());
+
+        counter.release();
+
+        assertEquals(1, counter.remaining());
+        assertTrue(counter.tryAcquire());
+        assertFalse(counter.tryAcquire());
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedTheSeats() throws Exception {
+        int seats = 1_000;
+        int threads = 8;
+        StripedSeatCounter counter = new StripedSeatCounter(seats);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int taken = 0;
+                    for (int i = 0; i < seats; i++) {
+                        if (counter.tryAcquire()) {
+                            taken++;
+                        }
+                    }
+                    return taken;
+                }));
+            }
+            start.countDown();
+
+            int taken = 0;
+            for (Future<Integer> result : results) {
+                taken += result.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(seats, taken);
+            assertEquals(0, counter.remaining());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
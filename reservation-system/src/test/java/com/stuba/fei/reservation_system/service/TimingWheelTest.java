@@ -0,0 +1,71 @@
+package com.stuba.fei.reservation_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimingWheelTest {
+    // 8 slots of 100 ms, one revolution is 800 ms
+    private final TimingWheel wheel = new TimingWheel(100, 8, 0);
+
+    @Test
+    void deadlineAfterFullRevolutionExpiresOnlyWhenReached() {
+        wheel.schedule(1L, 1500);
+
+        // The wheel passes the slot of the deadline once before the deadline is due
+        assertThat(wheel.advance(700)).isEmpty();
+        assertThat(wheel.advance(1400)).isEmpty();
+        assertEquals(1, wheel.size());
+
+        assertThat(wheel.advance(1500)).containsExactly(1L);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pauseLongerThanRevolutionExpiresEverythingDue() {
+        wheel.schedule(1L, 200);
+        wheel.schedule(2L, 900);
+        wheel.schedule(3L, 2500);
+        wheel.schedule(4L, 5000);
+
+        assertThat(wheel.advance(3000)).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(wheel.advance(5000)).containsExactly(4L);
+    }
+
+    @Test
+    void cancelledTimerNeverExpires() {
+        wheel.schedule(1L, 300);
+        wheel.schedule(2L, 300);
+
+        wheel.cancel(1L);
+        wheel.cancel(99L);
+
+        assertEquals(1, wheel.size());
+        assertThat(wheel.advance(1000)).containsExactly(2L);
+    }
+
+    @Test
+    void rescheduleReplacesPreviousDeadline() {
+        wheel.schedule(1L, 300);
+        wheel.schedule(1L, 1200);
+
+        assertThat(wheel.advance(1000)).isEmpty();
+        assertThat(wheel.advance(1200)).containsExactly(1L);
+    }
+
+    @Test
+    void deadlineInThePastExpiresOnNextTick() {
+        wheel.advance(1000);
+        wheel.schedule(1L, 100);
+
+        assertThat(wheel.advance(1050)).isEmpty();
+        assertThat(wheel.advance(1100)).containsExactly(1L);
+    }
+
+    @Test
+    void wheelSizeMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(100, 6, 0));
+    }
+}
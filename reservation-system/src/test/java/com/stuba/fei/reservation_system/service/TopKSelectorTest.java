@@ -0,0 +1,150 @@
+package com.stuba.fei.reservation_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The selection against the head of a full sort by score (best first), start and id
+ */
+class TopKSelectorTest {
+
+    @Test
+    void randomCandidatesMatchFullSort() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 500; trial++) {
+            // Few distinct scores and starts, so there are many ties
+            List<Candidate> candidates = candidates(random, random.nextInt(200), 5, 4);
+            int k = random.nextInt(20);
+
+            TopKSelector top = new TopKSelector(k);
+            candidates.forEach(candidate -> top.offer(candidate.id, candidate.score, candidate.start));
+
+            assertEquals(fullSort(candidates, k), top.toIds());
+        }
+    }
+
+    @Test
+    void tiesAreOrderedById() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            ids.add(id);
+        }
+        Collections.shuffle(ids, new Random(2));
+        TopKSelector top = new TopKSelector(5);
+        // Same score and start for all, only the id decides
+        ids.forEach(id -> top.offer(id, 0.5, 1_000L));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), top.toIds());
+    }
+
+    @Test
+    void kAtLeastNumberOfCandidatesKeepsAllSorted() {
+        List<Candidate> candidates = candidates(new Random(4), 30, 3, 3);
+        for (int k : new int[] {30, 31, 100}) {
+            TopKSelector top = new TopKSelector(k);
+            for (Candidate candidate : candidates) {
+                assertTrue(top.accepts(0.0));
+                assertTrue(top.offer(candidate.id, candidate.score, candidate.start));
+            }
+            assertEquals(30, top.size());
+            assertEquals(fullSort(candidates, 30), top.toIds());
+        }
+    }
+
+    @Test
+    void zeroKSelectsNothing() {
+        TopKSelector top = new TopKSelector(0);
+
+        assertFalse(top.accepts(Double.MAX_VALUE));
+        assertFalse(top.offer(1, 1.0, 0));
+        assertEquals(List.of(), top.toIds());
+    }
+
+    @Test
+    void mergedPartsMatchSinglePass() {
+        Random random = new Random(8);
+        for (int trial = 0; trial < 100; trial++) {
+            List<Candidate> candidates = candidates(random, 300, 6, 3);
+            int k = 1 + random.nextInt(40);
+            TopKSelector merged = new TopKSelector(k);
+            // Parts in any order, as the workers of the scoring pool finish
+            for (int part = 3; part >= 0; part--) {
+                TopKSelector partial = new TopKSelector(k);
+                candidates.subList(part * 75, (part + 1) * 75)
+                        .forEach(candidate -> partial.offer(candidate.id, candidate.score, candidate.start));
+                merged.addAll(partial);
+            }
+
+            assertEquals(fullSort(candidates, k), merged.toIds());
+        }
+    }
+
+    @Test
+    void pruningSkipsCandidatesWithoutChangingSelection() {
+        Random random = new Random(6);
+        List<Candidate> candidates = candidates(random, 10_000, 1_000, 10);
+        int skipped = 0;
+        TopKSelector top = new TopKSelector(12);
+        for (Candidate candidate : candidates) {
+            // The cheap part of the score is known, the expensive part adds at most 0.1
+            double cheap = Math.floor(candidate.score * 10) / 10;
+            if (!top.accepts(cheap + 0.1)) {
+                skipped++;
+                continue;
+            }
+            top.offer(candidate.id, candidate.score, candidate.start);
+        }
+
+        assertEquals(fullSort(candidates, 12), top.toIds());
+        assertTrue(skipped > candidates.size() / 2, "skipped " + skipped);
+    }
+
+    @Test
+    void finishedSelectionTakesNoMoreCandidates() {
+        TopKSelector top = new TopKSelector(3);
+        top.offer(1, 0.5, 0);
+        top.offer(2, 0.9, 0);
+
+        top.finish();
+
+        assertEquals(2L, top.id(0));
+        assertEquals(0.9, top.score(0));
+        assertThrows(IllegalStateException.class, () -> top.offer(3, 1.0, 0));
+    }
+
+    record Candidate(long id, double score, long start) {
+    }
+
+    /**
+     * @param scores Number of distinct scores (between 0 and 1)
+     * @param starts Number of distinct starts
+     */
+    static List<Candidate> candidates(Random random, int n, int scores, int starts) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            candidates.add(new Candidate(i, random.nextInt(scores) / (double) scores, random.nextInt(starts)));
+        }
+        Collections.shuffle(candidates, random);
+        return candidates;
+    }
+
+    static List<Long> fullSort(List<Candidate> candidates, int k) {
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(Candidate::score).reversed()
+                        .thenComparingLong(Candidate::start)
+                        .thenComparingLong(Candidate::id))
+                .limit(k)
+                .map(Candidate::id)
+                .toList();
+    }
+}
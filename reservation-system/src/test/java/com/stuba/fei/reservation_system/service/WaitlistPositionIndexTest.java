@@ -0,0 +1,96 @@
+package com.stuba.fei.reservation_system.service;
+
+import com.stuba.fei.reservation_system.model.WaitlistEntry.WaitlistStatus;
+import com.stuba.fei.reservation_system.repository.WaitlistEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WaitlistPositionIndexTest {
+    private static final Long EVENT_ID = 1L;
+
+    private WaitlistEntryRepository waitlistEntryRepository;
+    private WaitlistPositionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        waitlistEntryRepository = mock(WaitlistEntryRepository.class);
+        when(waitlistEntryRepository.findTickets(anyLong(), eq(WaitlistStatus.WAITING))).thenReturn(List.of());
+        index = new WaitlistPositionIndex(waitlistEntryRepository);
+    }
+
+    @Test
+    void positionsMoveUpAfterRemovalsInTheMiddle() {
+        for (int ticket = 1; ticket <= 6; ticket++) {
+            index.add(EVENT_ID, ticket);
+        }
+
+        index.remove(EVENT_ID, 3);
+        index.remove(EVENT_ID, 4);
+
+        assertEquals(1, index.position(EVENT_ID, 1));
+        assertEquals(2, index.position(EVENT_ID, 2));
+        assertEquals(0, index.position(EVENT_ID, 3));
+        assertEquals(0, index.position(EVENT_ID, 4));
+        assertEquals(3, index.position(EVENT_ID, 5));
+        assertEquals(4, index.position(EVENT_ID, 6));
+        assertEquals(4, index.size(EVENT_ID));
+    }
+
+    @Test
+    void addAndRemoveAreIdempotent() {
+        index.add(EVENT_ID, 1);
+        index.add(EVENT_ID, 2);
+        index.add(EVENT_ID, 2);
+        index.remove(EVENT_ID, 1);
+        index.remove(EVENT_ID, 1);
+
+        assertEquals(1, index.position(EVENT_ID, 2));
+        assertEquals(1, index.size(EVENT_ID));
+    }
+
+    @Test
+    void queueIsLoadedOnceAndCommitCallbackOfLoadedTicketIsNotCountedTwice() {
+        when(waitlistEntryRepository.findTickets(EVENT_ID, WaitlistStatus.WAITING)).thenReturn(List.of(2, 5, 9));
+
+        index.add(EVENT_ID, 9);
+
+        assertEquals(3, index.size(EVENT_ID));
+        assertEquals(2, index.position(EVENT_ID, 5));
+        assertEquals(3, index.position(EVENT_ID, 9));
+        verify(waitlistEntryRepository, times(1)).findTickets(EVENT_ID, WaitlistStatus.WAITING);
+    }
+
+    @Test
+    void positionsMatchSortedSetWhileTheTreeGrows() {
+        Random random = new Random(42);
+        TreeSet<Integer> waiting = new TreeSet<>();
+        for (int ticket = 1; ticket <= 1000; ticket++) {
+            index.add(EVENT_ID, ticket);
+            waiting.add(ticket);
+            if (random.nextInt(3) == 0) {
+                int removed = 1 + random.nextInt(ticket);
+                index.remove(EVENT_ID, removed);
+                waiting.remove(removed);
+            }
+        }
+
+        List<Integer> expected = new ArrayList<>(waiting);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, index.position(EVENT_ID, expected.get(i)));
+        }
+        assertEquals(waiting.size(), index.size(EVENT_ID));
+    }
+}